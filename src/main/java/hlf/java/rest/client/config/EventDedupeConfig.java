@@ -3,14 +3,22 @@ package hlf.java.rest.client.config;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.service.impl.CuckooFilterRecencyTransactionContext;
 import hlf.java.rest.client.service.impl.DefaultCacheBasedRecencyTransactionContext;
+import hlf.java.rest.client.service.impl.KafkaRecencyTransactionContext;
 import hlf.java.rest.client.service.impl.NoOpRecencyTransactionContext;
+import hlf.java.rest.client.service.impl.TxIdRecencyTransactionContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.concurrent.TimeUnit;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
 
 @Data
 @Configuration
@@ -19,11 +27,41 @@ import org.springframework.context.annotation.Configuration;
 public class EventDedupeConfig {
 
   private boolean enable;
+  private Store store = Store.LOCAL;
   private int recencyWindowSize;
+  // Bounds the recency cache in approximate bytes instead of entries when set
+  private long recencyWindowMaxBytes;
   private int recencyWindowExpiryInMinutes;
+  // Applicable only to the KAFKA store, how long an event waits for the replicas to agree on
+  // which one of them publishes it
+  private long claimTimeoutInMillis = 5000;
+  private Filter filter = new Filter();
+
+  public enum Store {
+    LOCAL,
+    KAFKA,
+    FILTER,
+    PACKED
+  }
+
+  /**
+   * Applicable only to the FILTER store, which remembers the submissions of each of 'timeBuckets'
+   * buckets of the recency window in a cuckoo filter. The filters share 'maxBytes', and their
+   * fingerprints are sized for 'falsePositiveRate'.
+   */
+  @Data
+  public static class Filter {
+    private double falsePositiveRate = 0.001;
+    private long maxBytes = 64L * 1024 * 1024;
+    private int timeBuckets = 4;
+  }
 
   @Bean
-  public RecencyTransactionContext recencyTransactionContext() {
+  public RecencyTransactionContext recencyTransactionContext(
+      MeterRegistry meterRegistry,
+      @Qualifier("dedupeTemplate") ObjectProvider<KafkaTemplate<String, String>> dedupeTemplate,
+      @Qualifier("dedupeConsumerFactory")
+          ObjectProvider<ConsumerFactory<String, String>> dedupeConsumerFactory) {
 
     if (!this.isEnable()) {
       log.info(
@@ -31,17 +69,64 @@ public class EventDedupeConfig {
       return new NoOpRecencyTransactionContext();
     }
 
-    Cache<String, Object> recencyCache =
+    if (store == Store.FILTER) {
+      log.info(
+          "Enabling recency check with filters of {} bytes, false positive rate {} and TTL {}"
+              + " minutes",
+          filter.getMaxBytes(),
+          filter.getFalsePositiveRate(),
+          recencyWindowExpiryInMinutes);
+      return new CuckooFilterRecencyTransactionContext(
+          filter.getTimeBuckets(),
+          TimeUnit.MINUTES.toMillis(recencyWindowExpiryInMinutes),
+          filter.getMaxBytes(),
+          filter.getFalsePositiveRate(),
+          meterRegistry);
+    }
+
+    if (store == Store.PACKED) {
+      log.info(
+          "Enabling recency check of packed Transaction IDs with window size {} and TTL {} minutes",
+          recencyWindowSize,
+          recencyWindowExpiryInMinutes);
+      return new TxIdRecencyTransactionContext(
+          recencyWindowSize,
+          TimeUnit.MINUTES.toMillis(recencyWindowExpiryInMinutes),
+          meterRegistry);
+    }
+
+    CacheBuilder<String, Object> cacheBuilder =
         CacheBuilder.newBuilder()
-            .maximumSize(this.getRecencyWindowSize())
             .expireAfterAccess(this.getRecencyWindowExpiryInMinutes(), TimeUnit.MINUTES)
-            .build();
+            .removalListener(
+                DefaultCacheBasedRecencyTransactionContext.removalRecorder(meterRegistry));
+    if (this.getRecencyWindowMaxBytes() > 0) {
+      cacheBuilder
+          .maximumWeight(this.getRecencyWindowMaxBytes())
+          .weigher(DefaultCacheBasedRecencyTransactionContext::weigh);
+    } else {
+      cacheBuilder.maximumSize(this.getRecencyWindowSize());
+    }
+    Cache<String, Object> recencyCache = cacheBuilder.build();
 
     log.info(
-        "Enabling recency check with cache size {} and TTL {} minutes",
+        "Enabling {} recency check with cache size {}, max bytes {} and TTL {} minutes",
+        store,
         recencyWindowSize,
+        recencyWindowMaxBytes,
         recencyWindowExpiryInMinutes);
 
-    return new DefaultCacheBasedRecencyTransactionContext(recencyCache);
+    if (store == Store.KAFKA) {
+      KafkaRecencyTransactionContext kafkaRecencyTransactionContext =
+          new KafkaRecencyTransactionContext(
+              recencyCache,
+              dedupeTemplate.getObject(),
+              dedupeConsumerFactory.getObject(),
+              claimTimeoutInMillis,
+              meterRegistry);
+      kafkaRecencyTransactionContext.start();
+      return kafkaRecencyTransactionContext;
+    }
+    return new DefaultCacheBasedRecencyTransactionContext(recencyCache, meterRegistry);
   }
 }
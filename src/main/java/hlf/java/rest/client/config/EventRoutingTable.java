@@ -0,0 +1,243 @@
+package hlf.java.rest.client.config;
+
+import static hlf.java.rest.client.util.EventHeaderFactory.header;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.util.FabricClientConstants;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Routes of the outbound block and chaincode events, precomputed from the event configuration so
+ * that routing an event is a hash lookup. The table is immutable and replaced as a whole when the
+ * configuration is refreshed.
+ *
+ * <p>Events of a channel or chaincode without details of its own, or whose details list no topics,
+ * are routed to the topic of the first event listener in the JSON format. Without event listeners,
+ * such a route has no topics: a warning is logged once per route, and its events are dropped. Up
+ * to 1000 of these fallback routes of each kind are kept, the least recently used being rebuilt on
+ * their next event.
+ */
+@Slf4j
+@Component
+public class EventRoutingTable {
+
+  private static final int MAX_FALLBACK_ROUTES = 1000;
+
+  @Autowired private FabricProperties fabricProperties;
+
+  @Autowired private KafkaProperties kafkaProperties;
+
+  private volatile Routes routes;
+
+  @PostConstruct
+  private void initialize() {
+    routes = buildRoutes();
+  }
+
+  @EventListener(RefreshScopeRefreshedEvent.class)
+  public void onRefresh(RefreshScopeRefreshedEvent event) {
+    log.info("Rebuilding event routing table..");
+    routes = buildRoutes();
+  }
+
+  /**
+   * @param channelName String name of the channel
+   * @return the route of the block events of the channel
+   */
+  public Route getBlockRoute(String channelName) {
+    Routes currentRoutes = routes;
+    Route route = currentRoutes.blockRoutes.get(channelName);
+    if (route != null) {
+      return route;
+    }
+    return currentRoutes.fallbackBlockRoutes.getUnchecked(channelName);
+  }
+
+  /**
+   * @param channelName String name of the channel
+   * @param chaincodeId String ID of the chaincode
+   * @return the route of the events of the chaincode on the channel
+   */
+  public Route getChaincodeRoute(String channelName, String chaincodeId) {
+    Routes currentRoutes = routes;
+    Map<String, Route> channelRoutes = currentRoutes.chaincodeRoutes.get(channelName);
+    Route route = channelRoutes == null ? null : channelRoutes.get(chaincodeId);
+    if (route != null) {
+      return route;
+    }
+    return currentRoutes.fallbackChaincodeRoutes.getUnchecked(
+        Maps.immutableEntry(channelName, chaincodeId));
+  }
+
+  private Routes buildRoutes() {
+    List<String> defaultTopics =
+        CollectionUtils.isEmpty(kafkaProperties.getEventListeners())
+            ? Collections.emptyList()
+            : Collections.singletonList(kafkaProperties.getEventListeners().get(0).getTopic());
+    if (defaultTopics.isEmpty()) {
+      log.warn("No event listener is configured, events without listener topics are dropped");
+    }
+
+    Map<String, Route> blockRoutes = new HashMap<>();
+    Map<String, Map<String, Route>> chaincodeRoutes = new HashMap<>();
+    FabricProperties.Events events = fabricProperties.getEvents();
+
+    if (events != null && events.getBlockDetails() != null) {
+      for (FabricProperties.BlockDetails blockDetails : events.getBlockDetails()) {
+        // the first details of a channel win, as they did when looked up per event
+        blockRoutes.putIfAbsent(
+            blockDetails.getChannelName(),
+            blockRoute(
+                blockDetails.getChannelName(),
+                topicsOrDefault(blockDetails.getListenerTopics(), defaultTopics),
+                blockDetails.getPayloadFormat()));
+      }
+    }
+
+    if (events != null && events.getChaincodeDetails() != null) {
+      for (FabricProperties.ChaincodeDetails chaincodeDetails : events.getChaincodeDetails()) {
+        chaincodeRoutes
+            .computeIfAbsent(chaincodeDetails.getChannelName(), name -> new HashMap<>())
+            .putIfAbsent(
+                chaincodeDetails.getChaincodeId(),
+                chaincodeRoute(
+                    chaincodeDetails.getChannelName(),
+                    chaincodeDetails.getChaincodeId(),
+                    topicsOrDefault(chaincodeDetails.getListenerTopics(), defaultTopics),
+                    chaincodeDetails.getPayloadFormat()));
+      }
+    }
+
+    log.info(
+        "Event routing table built with {} block routes and chaincode routes on {} channels",
+        blockRoutes.size(),
+        chaincodeRoutes.size());
+    return new Routes(defaultTopics, blockRoutes, chaincodeRoutes);
+  }
+
+  private static List<String> topicsOrDefault(List<String> topics, List<String> defaultTopics) {
+    return CollectionUtils.isEmpty(topics)
+        ? defaultTopics
+        : Collections.unmodifiableList(new ArrayList<>(topics));
+  }
+
+  private static Route blockRoute(
+      String channelName, List<String> topics, EventPayloadFormat payloadFormat) {
+    if (topics.isEmpty()) {
+      log.warn(
+          "Block events of channel {} are not routed to any topic and are dropped", channelName);
+    }
+    List<Header> headers = new ArrayList<>();
+    headers.add(header(FabricClientConstants.FABRIC_CHANNEL_NAME, channelName));
+    headers.add(
+        header(
+            FabricClientConstants.FABRIC_EVENT_TYPE,
+            FabricClientConstants.FABRIC_EVENT_TYPE_BLOCK));
+    headers.add(header(FabricClientConstants.FABRIC_EVENT_PAYLOAD_FORMAT, payloadFormat.name()));
+    return new Route(topics, payloadFormat, headers);
+  }
+
+  private static Route chaincodeRoute(
+      String channelName,
+      String chaincodeId,
+      List<String> topics,
+      EventPayloadFormat payloadFormat) {
+    if (topics.isEmpty()) {
+      log.warn(
+          "Events of chaincode {} on channel {} are not routed to any topic and are dropped",
+          chaincodeId,
+          channelName);
+    }
+    List<Header> headers = new ArrayList<>();
+    headers.add(header(FabricClientConstants.FABRIC_CHAINCODE_NAME, chaincodeId));
+    headers.add(header(FabricClientConstants.FABRIC_CHANNEL_NAME, channelName));
+    headers.add(
+        header(
+            FabricClientConstants.FABRIC_EVENT_TYPE,
+            FabricClientConstants.FABRIC_EVENT_TYPE_CHAINCODE));
+    headers.add(header(FabricClientConstants.FABRIC_EVENT_PAYLOAD_FORMAT, payloadFormat.name()));
+    return new Route(topics, payloadFormat, headers);
+  }
+
+  /** Topics, payload format and the headers shared by all the events of a route. */
+  public static class Route {
+
+    private final List<String> topics;
+    private final EventPayloadFormat payloadFormat;
+    private final List<Header> headers;
+
+    private Route(List<String> topics, EventPayloadFormat payloadFormat, List<Header> headers) {
+      this.topics = topics;
+      this.payloadFormat = payloadFormat;
+      this.headers = Collections.unmodifiableList(headers);
+    }
+
+    /** @return the topics the events are published to */
+    public List<String> getTopics() {
+      return topics;
+    }
+
+    /** @return the wire format of the events */
+    public EventPayloadFormat getPayloadFormat() {
+      return payloadFormat;
+    }
+
+    /** @return the pre-encoded headers shared by all the events of the route */
+    public List<Header> getHeaders() {
+      return headers;
+    }
+  }
+
+  private static class Routes {
+
+    private final List<String> defaultTopics;
+    private final Map<String, Route> blockRoutes;
+    private final Map<String, Map<String, Route>> chaincodeRoutes;
+    // routes of channels and chaincodes without details, created as their events are published
+    private final LoadingCache<String, Route> fallbackBlockRoutes;
+    private final LoadingCache<Map.Entry<String, String>, Route> fallbackChaincodeRoutes;
+
+    private Routes(
+        List<String> defaultTopics,
+        Map<String, Route> blockRoutes,
+        Map<String, Map<String, Route>> chaincodeRoutes) {
+      this.defaultTopics = defaultTopics;
+      this.blockRoutes = blockRoutes;
+      this.chaincodeRoutes = chaincodeRoutes;
+      this.fallbackBlockRoutes =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_FALLBACK_ROUTES)
+              .build(
+                  CacheLoader.from(
+                      channelName ->
+                          blockRoute(channelName, defaultTopics, EventPayloadFormat.JSON)));
+      this.fallbackChaincodeRoutes =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_FALLBACK_ROUTES)
+              .build(
+                  CacheLoader.from(
+                      chaincode ->
+                          chaincodeRoute(
+                              chaincode.getKey(),
+                              chaincode.getValue(),
+                              defaultTopics,
+                              EventPayloadFormat.JSON)));
+    }
+  }
+}
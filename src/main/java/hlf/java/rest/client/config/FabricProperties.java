@@ -1,5 +1,9 @@
 package hlf.java.rest.client.config;
 
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.util.FabricEventParseUtil;
+import hlf.java.rest.client.util.TextSanitiser;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.PostConstruct;
 import lombok.Data;
@@ -27,6 +31,7 @@ public class FabricProperties {
   private OrgConnectionConfig orgConnectionConfig;
   private Client client;
   private Events events;
+  private Submission submission = new Submission();
 
   @Data
   public static class WalletConfig {
@@ -52,6 +57,45 @@ public class FabricProperties {
     private int defaultCommitTimeoutInSeconds = 60;
   }
 
+  /**
+   * With async commit enabled, the Kafka batch listener submits transactions without holding a
+   * thread for the commit wait. Commit completion is tracked through a shared block listener per
+   * channel, and the number of transactions awaiting commit is bounded by
+   * 'maxInFlightTransactions'. A transaction submitted while the window is full waits up to
+   * 'inFlightWaitTimeoutInMillis' for a free slot, and fails without being submitted after that.
+   *
+   * <p>The transactions of a batch are endorsed and sent to the orderer on 'batchConcurrency'
+   * concurrent lanes, run by 'batchLaneThreads' threads shared by all batches, and their commits
+   * count towards the same in-flight window, a lane waiting for a slot while the window is full.
+   *
+   * <p>Transactions of the Kafka integration points calling a function listed in 'coalescing' are
+   * held back for up to 'maxDelayInMillis' and submitted together, as one transaction calling the
+   * batch function of the chaincode. The batches are submitted by 'coalescingThreads' threads, with
+   * up to 'coalescingQueueSize' batches waiting for one, and a batch finding the queue full fails.
+   */
+  @Data
+  public static class Submission {
+    private boolean asyncCommitEnabled;
+    private int maxInFlightTransactions = 1000;
+    private long inFlightWaitTimeoutInMillis = 60000;
+    private int batchConcurrency = 16;
+    private int batchLaneThreads = 64;
+    private int maxBatchSize = 10000;
+    private int coalescingThreads = 16;
+    private int coalescingQueueSize = 1000;
+    private List<Coalescing> coalescing = new ArrayList<>();
+  }
+
+  @Data
+  public static class Coalescing {
+    private String channelName;
+    private String chaincodeName;
+    private String functionName;
+    private String batchFunctionName;
+    private int maxBatchSize = 100;
+    private long maxDelayInMillis = 20;
+  }
+
   @Data
   public static class Client {
     private Rest rest;
@@ -73,12 +117,73 @@ public class FabricProperties {
     private boolean useFairPartitionerBetaFeature;
     private List<BlockDetails> blockDetails;
     private List<ChaincodeDetails> chaincodeDetails;
+    // Capacity of the queue of each per channel (and chaincode) event pipeline
+    private int pipelineQueueCapacity = 10000;
+    // Sanitisation applied to the keys and values of ledger writes published in events
+    private TextSanitiser.Policy textSanitisationPolicy = TextSanitiser.Policy.STRIP;
+    // Embeds the write-sets of block events as JSON arrays instead of JSON encoded strings
+    private boolean embedWriteSetsAsJson;
+    // Flushes the producers once per block instead of leaving each event to linger on its own
+    private boolean blockBatchPublishing;
+    // Commits the events of each block along with a checkpoint of the block in a Kafka transaction
+    private boolean exactlyOnceBlockPublishing;
+    private BlockPublishRetry blockPublishRetry = new BlockPublishRetry();
+    private Checkpoint checkpoint = new Checkpoint();
+    private Replay replay = new Replay();
+  }
+
+  /**
+   * With exactly-once block publishing, a block that fails to commit is retried until it commits,
+   * waiting from 'initialBackoffInMillis' up to 'maxBackoffInMillis' between the attempts, while
+   * the later blocks of the channel wait for it.
+   */
+  @Data
+  public static class BlockPublishRetry {
+    private long initialBackoffInMillis = 500;
+    private long maxBackoffInMillis = 30000;
+  }
+
+  /**
+   * Replays run as asynchronous jobs. With 'deliverStream', the blocks are streamed by the deliver
+   * service of an event source peer, otherwise, or once the peer rejects the stream, they are
+   * queried from the ledger query peers in parallel, on 'fetchThreads' threads shared by all jobs.
+   * Up to 'prefetchWindow' blocks ahead of the block being published are fetched, and encoded on
+   * 'decodeThreads' threads. The states of the last 'retainedJobs' finished jobs are kept.
+   */
+  @Data
+  public static class Replay {
+    private boolean deliverStream = true;
+    private int prefetchWindow = 16;
+    private int fetchThreads = 8;
+    private int decodeThreads = 4;
+    private int retainedJobs = 100;
+  }
+
+  /**
+   * Store of the last published block per channel and per chaincode, from which the block and
+   * contract listeners resume once restarted or refreshed. Checkpoints are written in batches,
+   * every 'flushIntervalInMillis'. The Kafka store commits them in transactions whose IDs start
+   * with 'transactionIdPrefix', which must be unique per replica and stable across its restarts.
+   */
+  @Data
+  public static class Checkpoint {
+    private Store store = Store.NONE;
+    private String filePath = "checkpoints.properties";
+    private long flushIntervalInMillis = 1000;
+    private String transactionIdPrefix;
+
+    public enum Store {
+      NONE,
+      FILE,
+      KAFKA
+    }
   }
 
   @Data
   public static class BlockDetails {
     private String channelName;
     private List<String> listenerTopics;
+    private EventPayloadFormat payloadFormat = EventPayloadFormat.JSON;
   }
 
   @Data
@@ -86,6 +191,7 @@ public class FabricProperties {
     private String channelName;
     private String chaincodeId;
     private List<String> listenerTopics;
+    private EventPayloadFormat payloadFormat = EventPayloadFormat.JSON;
   }
 
   /**
@@ -100,4 +206,12 @@ public class FabricProperties {
         SYSTEM_PROP_FABRIC_SERVICE_DISCOVERY_LOCALHOST,
         String.valueOf(this.isLocalhostReportAddress()));
   }
+
+  /** Applies the configured sanitisation policy to the parsing of block events. */
+  @PostConstruct
+  private void textSanitisationSetup() {
+    if (events != null && events.getTextSanitisationPolicy() != null) {
+      FabricEventParseUtil.setTextSanitisationPolicy(events.getTextSanitisationPolicy());
+    }
+  }
 }
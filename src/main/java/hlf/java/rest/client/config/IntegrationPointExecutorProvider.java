@@ -0,0 +1,188 @@
+package hlf.java.rest.client.config;
+
+import hlf.java.rest.client.util.CallerRunsUnlessShutdownPolicy;
+import hlf.java.rest.client.util.ConcurrencyLimitedTaskExecutor;
+import hlf.java.rest.client.util.VirtualThreadSupport;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the task executor of each integration point. Integration points configured with an
+ * executor profile get an isolated, separately metered executor, so that a noisy topic cannot
+ * starve the others. The rest share the submission task executor.
+ *
+ * <p>An executor replaced on refresh is drained in the background, so that registering the new
+ * containers does not wait for the tasks of the old ones.
+ */
+@Slf4j
+@Component
+public class IntegrationPointExecutorProvider {
+
+  private static final String EXECUTOR_METRICS_PREFIX = "executor";
+  private static final String EXECUTOR_NAME_TAG = "name";
+  private static final int SHUTDOWN_GRACE_PERIOD_IN_SECONDS = 30;
+
+  @Autowired private TaskExecutor submissionTaskExecutor;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final Map<String, ExecutorService> isolatedExecutors = new ConcurrentHashMap<>();
+
+  private final ExecutorService executorDrainer =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "integration-point-drainer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * @param consumer the integration point
+   * @return the isolated executor of the integration point if it is configured with an executor
+   *     profile, else the shared submission task executor
+   */
+  public TaskExecutor getTaskExecutor(KafkaProperties.Consumer consumer) {
+    KafkaProperties.ExecutorProfile executorProfile = consumer.getExecutor();
+    if (executorProfile == null) {
+      return submissionTaskExecutor;
+    }
+
+    String executorName = "integration-point-" + consumer.getGroupId() + "-" + consumer.getTopic();
+    retireExecutor(executorName);
+
+    Optional<ExecutorService> virtualThreadExecutor = Optional.empty();
+    if (executorProfile.isVirtualThreads()) {
+      virtualThreadExecutor =
+          VirtualThreadSupport.newVirtualThreadPerTaskExecutor(executorName + "-");
+      if (!virtualThreadExecutor.isPresent()) {
+        log.warn(
+            "Virtual threads are not supported by the running JVM, falling back to a pool for {}",
+            executorName);
+      }
+    }
+
+    TaskExecutor taskExecutor;
+    ExecutorService executorService;
+    if (virtualThreadExecutor.isPresent()) {
+      log.info("Created virtual thread executor {}", executorName);
+      executorService = virtualThreadExecutor.get();
+      taskExecutor =
+          new ConcurrencyLimitedTaskExecutor(
+              executorService,
+              executorProfile.getMaxConcurrency(),
+              executorProfile.getMaxWaitInMillis());
+    } else {
+      ThreadPoolTaskExecutor threadPoolTaskExecutor =
+          createThreadPoolTaskExecutor(executorName, executorProfile);
+      executorService = threadPoolTaskExecutor.getThreadPoolExecutor();
+      taskExecutor = threadPoolTaskExecutor;
+    }
+
+    isolatedExecutors.put(executorName, executorService);
+    new ExecutorServiceMetrics(
+            executorService,
+            executorName,
+            Tags.of("topic", consumer.getTopic(), "group", consumer.getGroupId()))
+        .bindTo(meterRegistry);
+
+    return taskExecutor;
+  }
+
+  /**
+   * Retires the isolated executors and removes their meters, typically once the integration point
+   * containers are destroyed on refresh. Tasks already submitted are allowed to complete in the
+   * background, for up to the shutdown grace period.
+   */
+  public void retire() {
+    new ArrayList<>(isolatedExecutors.keySet()).forEach(this::retireExecutor);
+  }
+
+  /**
+   * Retires the isolated executors and waits for them, and for the executors retired earlier, to
+   * be drained.
+   */
+  @PreDestroy
+  public void shutdown() {
+    retire();
+    executorDrainer.shutdown();
+    try {
+      if (!executorDrainer.awaitTermination(
+          SHUTDOWN_GRACE_PERIOD_IN_SECONDS + 1L, TimeUnit.SECONDS)) {
+        log.warn("Integration point executors were not drained within the grace period");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ThreadPoolTaskExecutor createThreadPoolTaskExecutor(
+      String executorName, KafkaProperties.ExecutorProfile executorProfile) {
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(executorProfile.getCorePoolSize());
+    taskExecutor.setMaxPoolSize(executorProfile.getMaxPoolSize());
+    taskExecutor.setQueueCapacity(executorProfile.getQueueCapacity());
+    taskExecutor.setThreadNamePrefix(executorName + "-");
+    taskExecutor.setRejectedExecutionHandler(new CallerRunsUnlessShutdownPolicy());
+    taskExecutor.initialize();
+
+    log.info(
+        "Created executor {} with core pool size {}, max pool size {} and queue capacity {}",
+        executorName,
+        executorProfile.getCorePoolSize(),
+        executorProfile.getMaxPoolSize(),
+        executorProfile.getQueueCapacity());
+    return taskExecutor;
+  }
+
+  private void retireExecutor(String executorName) {
+    ExecutorService executorService = isolatedExecutors.remove(executorName);
+    if (executorService == null) {
+      return;
+    }
+
+    removeExecutorMeters(executorName);
+    executorService.shutdown();
+    executorDrainer.execute(() -> drainExecutor(executorName, executorService));
+  }
+
+  private void drainExecutor(String executorName, ExecutorService executorService) {
+    try {
+      if (!executorService.awaitTermination(SHUTDOWN_GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Executor {} did not terminate within the grace period", executorName);
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executorService.shutdownNow();
+    }
+  }
+
+  private void removeExecutorMeters(String executorName) {
+    Tag executorNameTag = Tag.of(EXECUTOR_NAME_TAG, executorName);
+    List<Meter> executorMeters = new ArrayList<>();
+    for (Meter meter : meterRegistry.getMeters()) {
+      if (meter.getId().getName().startsWith(EXECUTOR_METRICS_PREFIX)
+          && meter.getId().getTags().contains(executorNameTag)) {
+        executorMeters.add(meter);
+      }
+    }
+    executorMeters.forEach(meterRegistry::remove);
+  }
+}
@@ -0,0 +1,24 @@
+package hlf.java.rest.client.config;
+
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+/**
+ * Matches when the block checkpoints are kept in the Kafka checkpoint topic, either as configured
+ * or as required by exactly-once block publishing.
+ */
+public class KafkaCheckpointStoreCondition extends AnyNestedCondition {
+
+  public KafkaCheckpointStoreCondition() {
+    super(ConfigurationPhase.REGISTER_BEAN);
+  }
+
+  @ConditionalOnProperty(prefix = "fabric.events.checkpoint", name = "store", havingValue = "KAFKA")
+  static class KafkaStore {}
+
+  @ConditionalOnProperty(
+      prefix = "fabric.events",
+      name = "exactly-once-block-publishing",
+      havingValue = "true")
+  static class ExactlyOnceBlockPublishing {}
+}
@@ -0,0 +1,105 @@
+package hlf.java.rest.client.config;
+
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+
+/**
+ * Configures the producer and consumer of the compacted dedupe topic, which the connector replicas
+ * share their recently submitted transactions through.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "dedupe", name = "store", havingValue = "KAFKA")
+public class KafkaDedupeConfig extends BaseKafkaConfig {
+
+  // Submissions and claims are written in batches, bounded by this delay unless configured
+  private static final int DEFAULT_LINGER_MS = 5;
+
+  @Autowired private KafkaProperties kafkaProperties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Bean
+  public KafkaTemplate<String, String> dedupeTemplate() {
+    KafkaProperties.Producer dedupeProducer = dedupeProducer();
+    Map<String, Object> props = new HashMap<>();
+    props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, dedupeProducer.getBrokerHost());
+    props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    // keeps the records of a transaction in the order they are sent, the first claim wins
+    props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    props.put(ProducerConfig.ACKS_CONFIG, "all");
+    props.put(
+        ProducerConfig.LINGER_MS_CONFIG,
+        Objects.isNull(dedupeProducer.getLingerMs())
+            ? DEFAULT_LINGER_MS
+            : dedupeProducer.getLingerMs());
+    if (dedupeProducer.getBatchSize() != null) {
+      props.put(ProducerConfig.BATCH_SIZE_CONFIG, dedupeProducer.getBatchSize());
+    }
+    if (dedupeProducer.getCompressionType() != null) {
+      props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, dedupeProducer.getCompressionType());
+    }
+
+    configureSaslProperties(props, dedupeProducer.getSaslJaasConfig());
+    configureSSLProperties(props, dedupeProducer, dedupeProducer.getTopic(), meterRegistry);
+
+    log.info("Recent transactions will be shared through topic {}", dedupeProducer.getTopic());
+
+    DefaultKafkaProducerFactory<String, String> producerFactory =
+        new DefaultKafkaProducerFactory<>(props);
+    producerFactory.addListener(new MicrometerProducerListener<>(meterRegistry));
+    KafkaTemplate<String, String> dedupeTemplate = new KafkaTemplate<>(producerFactory);
+    dedupeTemplate.setDefaultTopic(dedupeProducer.getTopic());
+    return dedupeTemplate;
+  }
+
+  /** Consumer factory materialising the dedupe topic into the recency index of the replica. */
+  @Bean
+  public ConsumerFactory<String, String> dedupeConsumerFactory() {
+    KafkaProperties.Producer dedupeProducer = dedupeProducer();
+    Map<String, Object> props = new HashMap<>();
+    props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, dedupeProducer.getBrokerHost());
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+    configureSaslProperties(props, dedupeProducer.getSaslJaasConfig());
+    configureSSLProperties(props, dedupeProducer, dedupeProducer.getTopic(), meterRegistry);
+
+    return new DefaultKafkaConsumerFactory<>(props);
+  }
+
+  private KafkaProperties.Producer dedupeProducer() {
+    KafkaProperties.Producer dedupeProducer = kafkaProperties.getDedupe();
+    if (Objects.isNull(dedupeProducer) || StringUtils.isBlank(dedupeProducer.getTopic())) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED, "The KAFKA dedupe store requires the dedupe producer and topic");
+    }
+    return dedupeProducer;
+  }
+
+  @Override
+  protected ConfigType getConfigType() {
+    return ConfigType.PRODUCER;
+  }
+}
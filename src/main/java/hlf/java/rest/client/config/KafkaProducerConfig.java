@@ -3,6 +3,8 @@ package hlf.java.rest.client.config;
 import hlf.java.rest.client.exception.ErrorCode;
 import hlf.java.rest.client.exception.ServiceException;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -11,18 +13,29 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.RoundRobinPartitioner;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.core.RoutingKafkaTemplate;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
 
 /** This class is the configuration class for sending to Chaincode event to eventHub/Kafka Topic. */
 @Slf4j
@@ -32,22 +45,18 @@ import org.springframework.kafka.core.RoutingKafkaTemplate;
 public class KafkaProducerConfig extends BaseKafkaConfig {
 
   private static final int RETRIES_CONFIG_FOR_AT_MOST_ONCE = 0;
+  private static final String BLOCK_TRANSACTION_ID_PREFIX = "hlf-connector-block-";
 
   @Autowired private KafkaProperties kafkaProperties;
   @Autowired private FabricProperties fabricProperties;
 
   @Autowired private MeterRegistry meterRegistry;
 
-  public ProducerFactory<Object, Object> eventProducerFactory(
+  public DefaultKafkaProducerFactory<Object, Object> eventProducerFactory(
       KafkaProperties.Producer kafkaProducerProperties) {
     Map<String, Object> props = new HashMap<>();
     props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaProducerProperties.getBrokerHost());
-    props.put(
-        ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
-        org.apache.kafka.common.serialization.StringSerializer.class);
-    props.put(
-        ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-        org.apache.kafka.common.serialization.StringSerializer.class);
+    props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
     props.put(
         ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, kafkaProducerProperties.getEnableIdempotence());
     if (!Objects.isNull(fabricProperties.getEvents())
@@ -60,6 +69,8 @@ public class KafkaProducerConfig extends BaseKafkaConfig {
       }
     }
 
+    configureBatching(props, kafkaProducerProperties);
+
     if (kafkaProducerProperties.getEnableAtMostOnceSemantics()) {
       // at-most once requires retries to be set as zero since the client wouldn't re-attempt a
       // publish in case of Broker failure.
@@ -80,11 +91,48 @@ public class KafkaProducerConfig extends BaseKafkaConfig {
 
     DefaultKafkaProducerFactory<Object, Object> defaultKafkaProducerFactory =
         new DefaultKafkaProducerFactory<>(props);
+    defaultKafkaProducerFactory.setValueSerializer(eventValueSerializer());
     defaultKafkaProducerFactory.addListener(new MicrometerProducerListener<>(meterRegistry));
 
     return defaultKafkaProducerFactory;
   }
 
+  private void configureBatching(
+      Map<String, Object> props, KafkaProperties.Producer kafkaProducerProperties) {
+    if (kafkaProducerProperties.getBatchSize() != null) {
+      props.put(ProducerConfig.BATCH_SIZE_CONFIG, kafkaProducerProperties.getBatchSize());
+    }
+    if (kafkaProducerProperties.getLingerMs() != null) {
+      props.put(ProducerConfig.LINGER_MS_CONFIG, kafkaProducerProperties.getLingerMs());
+    }
+    if (kafkaProducerProperties.getCompressionType() != null) {
+      props.put(
+          ProducerConfig.COMPRESSION_TYPE_CONFIG, kafkaProducerProperties.getCompressionType());
+    }
+    if (kafkaProducerProperties.getBufferMemory() != null) {
+      props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, kafkaProducerProperties.getBufferMemory());
+    }
+    log.info(
+        "Kafka producer for topic {} batching with batch size {}, linger {} ms, compression {} and"
+            + " buffer memory {}",
+        kafkaProducerProperties.getTopic(),
+        props.getOrDefault(ProducerConfig.BATCH_SIZE_CONFIG, "default"),
+        props.getOrDefault(ProducerConfig.LINGER_MS_CONFIG, "default"),
+        props.getOrDefault(ProducerConfig.COMPRESSION_TYPE_CONFIG, "default"),
+        props.getOrDefault(ProducerConfig.BUFFER_MEMORY_CONFIG, "default"));
+  }
+
+  /**
+   * Chaincode events and dead-lettered records are published as Strings, block events are
+   * published as the bytes they are encoded into.
+   */
+  private Serializer<Object> eventValueSerializer() {
+    Map<Class<?>, Serializer<?>> serializers = new LinkedHashMap<>();
+    serializers.put(String.class, new StringSerializer());
+    serializers.put(byte[].class, new ByteArraySerializer());
+    return new DelegatingByTypeSerializer(serializers);
+  }
+
   @Bean
   @RefreshScope
   public RoutingKafkaTemplate routingTemplate(GenericApplicationContext context) {
@@ -108,6 +156,92 @@ public class KafkaProducerConfig extends BaseKafkaConfig {
     return new RoutingKafkaTemplate(map);
   }
 
+  /**
+   * Transactional template of the block checkpoint producer, whose default topic receives the
+   * checkpoints. With exactly-once block publishing, the events of a block are sent through it
+   * along with the checkpoint of the block.
+   */
+  @Bean
+  @RefreshScope
+  @Conditional(KafkaCheckpointStoreCondition.class)
+  public KafkaTemplate<Object, Object> blockCheckpointTemplate() {
+    KafkaProperties.Producer checkpointProducer = blockCheckpointProducer();
+    if (Boolean.TRUE.equals(checkpointProducer.getEnableAtMostOnceSemantics())) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED,
+          "At-most once semantics cannot be combined with transactional block checkpoints");
+    }
+
+    DefaultKafkaProducerFactory<Object, Object> transactionalProducerFactory =
+        eventProducerFactory(checkpointProducer);
+    Map<String, Object> transactionalConfigs = new HashMap<>();
+    transactionalConfigs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    transactionalConfigs.put(ProducerConfig.ACKS_CONFIG, "all");
+    transactionalProducerFactory.updateConfigs(transactionalConfigs);
+    // a prefix stable across restarts lets a restarted replica fence the transactions it left
+    // open, while replicas with the same prefix would fence each other
+    String transactionIdPrefix = blockTransactionIdPrefix();
+    transactionalProducerFactory.setTransactionIdPrefix(transactionIdPrefix);
+
+    log.info(
+        "Block checkpoints will be committed in transactions {}* to topic {}",
+        transactionIdPrefix,
+        checkpointProducer.getTopic());
+
+    KafkaTemplate<Object, Object> blockCheckpointTemplate =
+        new KafkaTemplate<>(transactionalProducerFactory);
+    blockCheckpointTemplate.setDefaultTopic(checkpointProducer.getTopic());
+    return blockCheckpointTemplate;
+  }
+
+  /** Consumer factory reading back the committed block checkpoints. */
+  @Bean
+  @RefreshScope
+  @Conditional(KafkaCheckpointStoreCondition.class)
+  public ConsumerFactory<String, String> blockCheckpointConsumerFactory() {
+    KafkaProperties.Producer checkpointProducer = blockCheckpointProducer();
+    Map<String, Object> props = new HashMap<>();
+    props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, checkpointProducer.getBrokerHost());
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    // checkpoints of aborted transactions are never read
+    props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+    configureSaslProperties(props, checkpointProducer.getSaslJaasConfig());
+    configureSSLProperties(props, checkpointProducer, checkpointProducer.getTopic(), meterRegistry);
+
+    return new DefaultKafkaConsumerFactory<>(props);
+  }
+
+  /** The configured prefix, else a prefix unique to the host the replica runs on. */
+  private String blockTransactionIdPrefix() {
+    String transactionIdPrefix =
+        fabricProperties.getEvents().getCheckpoint().getTransactionIdPrefix();
+    if (StringUtils.isNotBlank(transactionIdPrefix)) {
+      return transactionIdPrefix;
+    }
+    try {
+      return BLOCK_TRANSACTION_ID_PREFIX + InetAddress.getLocalHost().getHostName() + "-";
+    } catch (UnknownHostException e) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED,
+          "Host name is unknown, fabric.events.checkpoint.transactionIdPrefix is required",
+          e);
+    }
+  }
+
+  private KafkaProperties.Producer blockCheckpointProducer() {
+    KafkaProperties.Producer checkpointProducer = kafkaProperties.getBlockCheckpoint();
+    if (Objects.isNull(checkpointProducer)
+        || StringUtils.isBlank(checkpointProducer.getTopic())) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED,
+          "Kafka block checkpoints require the block-checkpoint producer and its topic");
+    }
+    return checkpointProducer;
+  }
+
   @Override
   protected ConfigType getConfigType() {
     return ConfigType.PRODUCER;
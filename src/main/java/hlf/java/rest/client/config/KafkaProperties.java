@@ -22,6 +22,25 @@ public class KafkaProperties {
   private List<Consumer> integrationPoints;
   private List<EventProducer> eventListeners;
   private Producer failedMessageListener;
+  private Producer blockCheckpoint;
+  private Producer dedupe;
+  private Backpressure backpressure = new Backpressure();
+
+  /**
+   * With backpressure enabled, integration point containers are paused once a pressure signal
+   * crosses its high watermark, and resumed once every signal has dropped below 'resumeRatio' of
+   * its watermark. The signals of a container are the number of its Records in flight, the wait
+   * queue utilisation of its executor and its average Record processing latency.
+   */
+  @Data
+  public static class Backpressure {
+    private boolean enabled;
+    private long samplingIntervalInMillis = 500;
+    private int inFlightHighWatermark = 800;
+    private double queueUtilisationHighWatermark = 0.8;
+    private long latencyHighWatermarkInMillis = 10000;
+    private double resumeRatio = 0.5;
+  }
 
   @Getter
   @Setter
@@ -31,6 +50,11 @@ public class KafkaProperties {
     private String saslJaasConfig;
     private Boolean enableIdempotence;
     private Boolean enableAtMostOnceSemantics;
+    // Batching and compression of the producer, the Kafka client defaults apply when left unset
+    private Integer batchSize;
+    private Integer lingerMs;
+    private String compressionType;
+    private Long bufferMemory;
 
     @Override
     public String toString() {
@@ -76,6 +100,24 @@ public class KafkaProperties {
     }
   }
 
+  /**
+   * Executor profile of an integration point. An integration point configured with a profile
+   * dispatches its Records to an isolated pool, else to the shared submission task executor. With
+   * 'virtualThreads' enabled and the Connector running on Java 21 or later, Records are dispatched
+   * to virtual threads instead of a pool, at most 'maxConcurrency' at a time. A Record waits up to
+   * 'maxWaitInMillis' for a free slot, after which it is rejected like on a saturated pool.
+   */
+  @Getter
+  @Setter
+  public static class ExecutorProfile {
+    private int corePoolSize = 20;
+    private int maxPoolSize = 30;
+    private int queueCapacity = 400;
+    private boolean virtualThreads;
+    private int maxConcurrency = 10000;
+    private long maxWaitInMillis = 1000;
+  }
+
   @Getter
   @Setter
   public static class Consumer extends SSLProperties {
@@ -84,8 +126,11 @@ public class KafkaProperties {
     private String topic;
     private int topicPartitions = 1;
     private boolean enableParallelListenerCapabilities = false;
+    private boolean enableKeyOrderedListenerCapabilities = false;
+    private String orderingKeyHeader;
     private String saslJaasConfig;
     private String offsetResetPolicy;
+    private ExecutorProfile executor;
 
     @Override
     public String toString() {
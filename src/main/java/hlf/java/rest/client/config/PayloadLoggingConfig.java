@@ -0,0 +1,29 @@
+package hlf.java.rest.client.config;
+
+import hlf.java.rest.client.util.PayloadLogger;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "payload-logging")
+@Slf4j
+public class PayloadLoggingConfig {
+
+  private PayloadLogger.Mode mode = PayloadLogger.Mode.TRUNCATED;
+  private int maxLength = 256;
+  private int sampleRate = 100;
+
+  @Bean
+  public PayloadLogger payloadLogger() {
+    log.info(
+        "Payload logging mode {} with max length {} and sample rate 1 in {}",
+        mode,
+        maxLength,
+        sampleRate);
+    return new PayloadLogger(mode, maxLength, sampleRate);
+  }
+}
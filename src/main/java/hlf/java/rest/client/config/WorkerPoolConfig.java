@@ -1,12 +1,22 @@
 package hlf.java.rest.client.config;
 
+import hlf.java.rest.client.util.CallerRunsUnlessShutdownPolicy;
+import hlf.java.rest.client.util.ConcurrencyLimitedTaskExecutor;
+import hlf.java.rest.client.util.VirtualThreadSupport;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+@Slf4j
 @Configuration
 @RefreshScope
 public class WorkerPoolConfig {
@@ -25,13 +35,112 @@ public class WorkerPoolConfig {
   @Value("${executors.defaultExecutor.waitQueueSize:400}")
   private int defaultExecutorQueueSize;
 
-  /** A general-purpose, re-usable Task executor. */
+  /**
+   * Fabric submissions are blocking calls that park their thread until the commit. When running on
+   * Java 21 or later, they can be run on virtual threads instead, capped by the max concurrency.
+   * A submission finding the cap reached waits up to the max wait, after which it is rejected.
+   */
+  @Value("${executors.virtualThreads.enabled:false}")
+  private boolean virtualThreadsEnabled;
+
+  @Value("${executors.virtualThreads.maxConcurrency:10000}")
+  private int virtualThreadsMaxConcurrency;
+
+  @Value("${executors.virtualThreads.maxWaitInMillis:1000}")
+  private long virtualThreadsMaxWaitInMillis;
+
+  @Autowired private FabricProperties fabricProperties;
+
+  /**
+   * A general-purpose, re-usable Task executor. Once the wait queue is full, tasks are run on the
+   * submitting thread, which slows down the submitting Kafka consumer instead of failing its batch.
+   * Once the executor is shut down, tasks are rejected so that their futures fail.
+   */
   @Bean
   public TaskExecutor defaultTaskExecutor() {
     ThreadPoolTaskExecutor defaultTaskExecutor = new ThreadPoolTaskExecutor();
     defaultTaskExecutor.setCorePoolSize(defaultTaskExecutorCorePoolSize);
     defaultTaskExecutor.setMaxPoolSize(defaultExecutorMaxPoolSize);
     defaultTaskExecutor.setQueueCapacity(defaultExecutorQueueSize);
+    defaultTaskExecutor.setRejectedExecutionHandler(new CallerRunsUnlessShutdownPolicy());
     return defaultTaskExecutor;
   }
+
+  /**
+   * Task executor for Fabric submissions of the Kafka integration points. Runs tasks on virtual
+   * threads, at most 'maxConcurrency' at a time, if virtual threads are enabled and supported by
+   * the running JVM. Else it is the default task executor.
+   */
+  @Bean
+  public TaskExecutor submissionTaskExecutor() {
+    if (virtualThreadsEnabled) {
+      Optional<ExecutorService> virtualThreadExecutor =
+          VirtualThreadSupport.newVirtualThreadPerTaskExecutor("fabric-submission-");
+      if (virtualThreadExecutor.isPresent()) {
+        log.info(
+            "Fabric submissions run on virtual threads with max concurrency {}",
+            virtualThreadsMaxConcurrency);
+        return new ConcurrencyLimitedTaskExecutor(
+            virtualThreadExecutor.get(),
+            virtualThreadsMaxConcurrency,
+            virtualThreadsMaxWaitInMillis);
+      }
+      log.warn("Virtual threads are not supported by the running JVM, using the default executor");
+    }
+    return defaultTaskExecutor();
+  }
+
+  /**
+   * Runs the lanes of the transaction batches, on 'fabric.submission.batch-lane-threads' threads
+   * shared by all batches. A lane that finds no free thread is rejected rather than queued or run
+   * on the submitting thread, which may be the request thread streaming the results of the batch.
+   */
+  @Bean
+  public TaskExecutor batchLaneTaskExecutor() {
+    int batchLaneThreads = Math.max(1, fabricProperties.getSubmission().getBatchLaneThreads());
+    ThreadPoolTaskExecutor batchLaneTaskExecutor = new ThreadPoolTaskExecutor();
+    batchLaneTaskExecutor.setCorePoolSize(batchLaneThreads);
+    batchLaneTaskExecutor.setMaxPoolSize(batchLaneThreads);
+    batchLaneTaskExecutor.setQueueCapacity(0);
+    batchLaneTaskExecutor.setThreadNamePrefix("batch-lane-");
+    batchLaneTaskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return batchLaneTaskExecutor;
+  }
+
+  /**
+   * Submits the coalesced batches, on 'fabric.submission.coalescing-threads' threads. A batch
+   * finding the queue full is rejected rather than run on the submitting thread, which is the flush
+   * timer of every pending batch once their delay elapses.
+   */
+  @Bean
+  public TaskExecutor coalescingTaskExecutor() {
+    FabricProperties.Submission submission = fabricProperties.getSubmission();
+    int coalescingThreads = Math.max(1, submission.getCoalescingThreads());
+    ThreadPoolTaskExecutor coalescingTaskExecutor = new ThreadPoolTaskExecutor();
+    coalescingTaskExecutor.setCorePoolSize(coalescingThreads);
+    coalescingTaskExecutor.setMaxPoolSize(coalescingThreads);
+    coalescingTaskExecutor.setQueueCapacity(submission.getCoalescingQueueSize());
+    coalescingTaskExecutor.setThreadNamePrefix("coalesced-batch-");
+    coalescingTaskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return coalescingTaskExecutor;
+  }
+
+  /**
+   * Serves REST requests on virtual threads, if virtual threads are enabled and supported by the
+   * running JVM. The number of concurrent requests is bounded by 'server.tomcat.max-connections'.
+   */
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    return protocolHandler -> {
+      if (!virtualThreadsEnabled) {
+        return;
+      }
+      VirtualThreadSupport.newVirtualThreadPerTaskExecutor("http-request-")
+          .ifPresent(
+              virtualThreadExecutor -> {
+                log.info("REST requests are served on virtual threads");
+                protocolHandler.setExecutor(virtualThreadExecutor);
+              });
+    };
+  }
 }
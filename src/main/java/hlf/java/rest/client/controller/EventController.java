@@ -8,6 +8,9 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -27,7 +30,8 @@ public class EventController {
    * @param endBlockNumber end block number
    * @param networkName networkName/channel
    * @param eventType type of event
-   * @return the ClientResponseModel status indicating that the request is accepted
+   * @return the ClientResponseModel status indicating that the request is accepted, with the
+   *     state of the replay job
    */
   @PostMapping(value = "/blocks/events")
   public ResponseEntity<ClientResponseModel> replayEvents(
@@ -45,4 +49,27 @@ public class EventController {
     return eventFulfillment.replayEvents(
         startBlockNumber, endBlockNumber, transactionId, networkName, eventType);
   }
+
+  /**
+   * The REST Endpoint for the state and progress of a replay job.
+   *
+   * @param jobId ID of the replay job
+   * @return the ClientResponseModel with the state of the replay job
+   */
+  @GetMapping(value = "/blocks/events/jobs/{job-id}")
+  public ResponseEntity<ClientResponseModel> getReplayJob(@PathVariable("job-id") String jobId) {
+    return eventFulfillment.getReplayJob(jobId);
+  }
+
+  /**
+   * The REST Endpoint for cancelling a replay job.
+   *
+   * @param jobId ID of the replay job
+   * @return the ClientResponseModel with the state of the cancelled replay job
+   */
+  @DeleteMapping(value = "/blocks/events/jobs/{job-id}")
+  public ResponseEntity<ClientResponseModel> cancelReplayJob(@PathVariable("job-id") String jobId) {
+    log.info("Cancelling replay job: {}", jobId);
+    return eventFulfillment.cancelReplayJob(jobId);
+  }
 }
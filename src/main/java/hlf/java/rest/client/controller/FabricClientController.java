@@ -1,17 +1,26 @@
 package hlf.java.rest.client.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import hlf.java.rest.client.metrics.MetricsTrackedEndpoint;
 import hlf.java.rest.client.model.ClientResponseModel;
 import hlf.java.rest.client.model.EventAPIResponseModel;
 import hlf.java.rest.client.model.MultiDataTransactionPayload;
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import hlf.java.rest.client.service.BatchTransactionService;
 import hlf.java.rest.client.service.TransactionFulfillment;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,6 +30,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Exposes REST endpoints to take actions from the client on the fabric ledger
@@ -33,6 +43,10 @@ public class FabricClientController {
 
   @Autowired TransactionFulfillment transactionFulfillment;
 
+  @Autowired BatchTransactionService batchTransactionService;
+
+  @Autowired ObjectMapper objectMapper;
+
   /**
    * The REST Endpoint for writing a transaction to the ledger
    *
@@ -163,6 +177,111 @@ public class FabricClientController {
     }
   }
 
+  /**
+   * The REST Endpoint for writing a transaction to the ledger without holding a request thread for
+   * the commit wait. The response is returned once the transaction is committed.
+   *
+   * @param channelName String channel name
+   * @param chaincodeName String chaincode name
+   * @param functionName String function name in chaincode
+   * @param peerNames String endorsing peers
+   * @param collections String collection name for PDC transactions
+   * @param transientKey String transient key name to be added to the Transient Map
+   * @param payload JSON String for arguments to the chaincode.
+   * @return future of the responseEntity ResponseEntity Transaction Response
+   */
+  @PostMapping(value = "/invoke_transaction/async")
+  @MetricsTrackedEndpoint(
+      name = "Invoke Transaction Async",
+      method = "POST",
+      uri = "/invoke_transaction/async")
+  public CompletableFuture<ResponseEntity<ClientResponseModel>> invokeTransactionAsync(
+      @RequestHeader("channel") @Validated String channelName,
+      @RequestHeader("chaincode") @Validated String chaincodeName,
+      @RequestHeader("function") @Validated String functionName,
+      @RequestHeader(value = "peers", required = false) String peerNames,
+      @RequestHeader(value = "collection", required = false) String collections,
+      @RequestHeader(value = "transientKey", required = false) String transientKey,
+      @RequestBody @Validated String payload) {
+    log.info(
+        "Initiated asynchronous Transaction Write for Network Name: {}, Contract Name: {}, Transaction Function Name: {}, Endorsing Peers: {},Transaction Parameters: {}",
+        channelName,
+        chaincodeName,
+        functionName,
+        peerNames,
+        payload);
+    Optional<List<String>> lstPeerNames =
+        StringUtils.isNotBlank(peerNames)
+            ? Optional.of(Arrays.asList(peerNames.split(",")))
+            : Optional.empty();
+    if (StringUtils.isNotBlank(collections) && StringUtils.isNotBlank(transientKey)) {
+      return transactionFulfillment.writePrivateTransactionToLedgerAsync(
+          channelName, chaincodeName, functionName, collections, transientKey, lstPeerNames, payload);
+    }
+    return transactionFulfillment.writeTransactionToLedgerAsync(
+        channelName, chaincodeName, functionName, lstPeerNames, payload);
+  }
+
+  /**
+   * The REST Endpoint for writing a batch of transactions to the ledger. The transactions are
+   * submitted concurrently, and the result of each transaction is streamed as a line of JSON as
+   * soon as it is committed or has failed, so the lines are not in the order of the batch.
+   *
+   * @param channelName String channel name
+   * @param chaincodeName String chaincode name
+   * @param functionName String function name of the transactions that do not name their own
+   * @param peerNames String endorsing peers of the transactions that do not name their own
+   * @param invocations JSON array of {@link TransactionInvocation}
+   * @return responseEntity ResponseEntity streaming a {@link TransactionInvocationResult} per line
+   */
+  @PostMapping(value = "/invoke_transaction/batch")
+  @MetricsTrackedEndpoint(
+      name = "Invoke Transaction Batch",
+      method = "POST",
+      uri = "/invoke_transaction/batch")
+  public ResponseEntity<StreamingResponseBody> invokeTransactionBatch(
+      @RequestHeader("channel") @Validated String channelName,
+      @RequestHeader("chaincode") @Validated String chaincodeName,
+      @RequestHeader(value = "function", required = false) String functionName,
+      @RequestHeader(value = "peers", required = false) String peerNames,
+      @RequestBody List<TransactionInvocation> invocations) {
+    log.info(
+        "Initiated Transaction Batch Write for Network Name: {}, Contract Name: {}, Transaction Function Name: {}, Endorsing Peers: {}, Batch Size: {}",
+        channelName,
+        chaincodeName,
+        functionName,
+        peerNames,
+        invocations != null ? invocations.size() : 0);
+    Optional<List<String>> lstPeerNames =
+        StringUtils.isNotBlank(peerNames)
+            ? Optional.of(Arrays.asList(peerNames.split(",")))
+            : Optional.empty();
+
+    BlockingQueue<TransactionInvocationResult> results = new LinkedBlockingQueue<>();
+    batchTransactionService.submitBatch(
+        channelName,
+        chaincodeName,
+        Optional.ofNullable(StringUtils.trimToNull(functionName)),
+        lstPeerNames,
+        invocations,
+        results::add);
+
+    StreamingResponseBody resultStream =
+        outputStream -> {
+          for (int written = 0; written < invocations.size(); written++) {
+            try {
+              outputStream.write(objectMapper.writeValueAsBytes(results.take()));
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException("Interrupted while awaiting the batch results");
+            }
+            outputStream.write('\n');
+            outputStream.flush();
+          }
+        };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(resultStream);
+  }
+
   /**
    * The REST Endpoint for reading a transaction from the ledger
    *
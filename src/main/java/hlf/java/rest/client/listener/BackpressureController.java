@@ -0,0 +1,206 @@
+package hlf.java.rest.client.listener;
+
+import hlf.java.rest.client.config.KafkaProperties;
+import hlf.java.rest.client.util.ConcurrencyLimitedTaskExecutor;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pauses and resumes the integration point containers based on the pressure observed downstream,
+ * so that consumers slow down smoothly when the orderer slows down, instead of failing batches on
+ * executor rejections and retrying them through the error handler.
+ *
+ * <p>Pressure is sampled periodically, per container, from the number of its Records in flight,
+ * the wait queue utilisation of the executor it dispatches to (the utilisation of the concurrency
+ * cap of a virtual thread executor) and its average Record processing latency, so that a slow
+ * integration point does not pause the others. A paused container stops fetching Records after
+ * its current batch, without leaving the consumer group.
+ *
+ * <p>The sampler is only scheduled if backpressure is enabled at startup.
+ */
+@Slf4j
+@Component
+public class BackpressureController {
+
+  @Autowired private KafkaProperties kafkaProperties;
+
+  private final List<ConsumerBackpressure> registrations = new CopyOnWriteArrayList<>();
+
+  private final ScheduledExecutorService pressureSampler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "backpressure-sampler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @PostConstruct
+  private void initialize() {
+    if (!kafkaProperties.getBackpressure().isEnabled()) {
+      return;
+    }
+    long samplingInterval = kafkaProperties.getBackpressure().getSamplingIntervalInMillis();
+    pressureSampler.scheduleWithFixedDelay(
+        this::samplePressure, samplingInterval, samplingInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    pressureSampler.shutdownNow();
+  }
+
+  /**
+   * Registers an integration point for backpressure. The container is attached once created.
+   *
+   * @param name String name of the integration point, used for logging
+   * @param taskExecutor TaskExecutor the Records of the integration point are dispatched to
+   * @return the registration, to which processing latencies are reported
+   */
+  public ConsumerBackpressure register(String name, TaskExecutor taskExecutor) {
+    ConsumerBackpressure consumerBackpressure = new ConsumerBackpressure(name, taskExecutor);
+    registrations.add(consumerBackpressure);
+    return consumerBackpressure;
+  }
+
+  /** Drops all registrations, typically as the containers are destroyed on refresh. */
+  public void clear() {
+    registrations.clear();
+  }
+
+  void samplePressure() {
+    KafkaProperties.Backpressure backpressure = kafkaProperties.getBackpressure();
+    if (!backpressure.isEnabled()) {
+      registrations.forEach(ConsumerBackpressure::resume);
+      return;
+    }
+
+    try {
+      for (ConsumerBackpressure registration : registrations) {
+        double pressure = registration.pressure(backpressure);
+        if (pressure >= 1.0) {
+          registration.pause(pressure);
+        } else if (pressure < backpressure.getResumeRatio()) {
+          registration.resume();
+        }
+      }
+    } catch (Exception e) {
+      log.error("Failed to sample consumer backpressure", e);
+    }
+  }
+
+  /** Backpressure state of a single integration point. */
+  public static class ConsumerBackpressure {
+
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+
+    private final String name;
+    private final TaskExecutor taskExecutor;
+    private volatile ConcurrentMessageListenerContainer<?, ?> container;
+    private final AtomicInteger inFlightRecords = new AtomicInteger();
+    private double averageLatencyInMillis;
+    private int latencyReportsSinceSample;
+    private boolean paused;
+
+    private ConsumerBackpressure(String name, TaskExecutor taskExecutor) {
+      this.name = name;
+      this.taskExecutor = taskExecutor;
+    }
+
+    public void attach(ConcurrentMessageListenerContainer<?, ?> container) {
+      this.container = container;
+    }
+
+    /** Reports a Record dispatched for processing, to be followed by {@link #recordLatency}. */
+    public void recordDispatch() {
+      inFlightRecords.incrementAndGet();
+    }
+
+    /**
+     * Reports the time taken to process a dispatched Record, from dispatch until its transaction
+     * is committed or has failed.
+     *
+     * @param latencyInMillis long processing latency
+     */
+    public synchronized void recordLatency(long latencyInMillis) {
+      inFlightRecords.decrementAndGet();
+      latencyReportsSinceSample++;
+      averageLatencyInMillis =
+          averageLatencyInMillis == 0
+              ? latencyInMillis
+              : averageLatencyInMillis
+                  + LATENCY_SMOOTHING_FACTOR * (latencyInMillis - averageLatencyInMillis);
+    }
+
+    /** @return the highest ratio of a pressure signal to its high watermark */
+    private synchronized double pressure(KafkaProperties.Backpressure backpressure) {
+      // A paused container reports no latencies, let the average decay so that it can resume
+      if (latencyReportsSinceSample == 0) {
+        averageLatencyInMillis *= 1 - LATENCY_SMOOTHING_FACTOR;
+      }
+      latencyReportsSinceSample = 0;
+
+      double inFlightPressure =
+          (double) inFlightRecords.get() / Math.max(backpressure.getInFlightHighWatermark(), 1);
+      double latencyPressure =
+          averageLatencyInMillis / Math.max(backpressure.getLatencyHighWatermarkInMillis(), 1);
+      double queuePressure = 0;
+
+      if (taskExecutor instanceof ThreadPoolTaskExecutor) {
+        ThreadPoolExecutor threadPoolExecutor =
+            ((ThreadPoolTaskExecutor) taskExecutor).getThreadPoolExecutor();
+        int queueDepth = threadPoolExecutor.getQueue().size();
+        int queueCapacity = queueDepth + threadPoolExecutor.getQueue().remainingCapacity();
+        if (queueCapacity > 0) {
+          queuePressure =
+              ((double) queueDepth / queueCapacity)
+                  / Math.max(backpressure.getQueueUtilisationHighWatermark(), 0.01);
+        }
+      } else if (taskExecutor instanceof ConcurrencyLimitedTaskExecutor) {
+        // tasks wait for a permit rather than in a queue, pause before they are rejected
+        ConcurrencyLimitedTaskExecutor concurrencyLimitedTaskExecutor =
+            (ConcurrencyLimitedTaskExecutor) taskExecutor;
+        int maxConcurrency = Math.max(concurrencyLimitedTaskExecutor.getMaxConcurrency(), 1);
+        queuePressure =
+            ((double) (maxConcurrency - concurrencyLimitedTaskExecutor.getAvailablePermits())
+                    / maxConcurrency)
+                / Math.max(backpressure.getQueueUtilisationHighWatermark(), 0.01);
+      }
+
+      return Math.max(inFlightPressure, Math.max(latencyPressure, queuePressure));
+    }
+
+    private synchronized void pause(double pressure) {
+      if (paused || container == null || !container.isRunning()) {
+        return;
+      }
+      log.warn(
+          "Pausing consumer {} under backpressure, pressure ratio {}",
+          name,
+          String.format("%.2f", pressure));
+      container.pause();
+      paused = true;
+    }
+
+    private synchronized void resume() {
+      if (!paused || container == null) {
+        return;
+      }
+      log.info("Resuming consumer {} as backpressure has eased", name);
+      container.resume();
+      paused = false;
+    }
+  }
+}
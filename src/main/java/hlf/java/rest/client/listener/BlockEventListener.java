@@ -2,14 +2,33 @@ package hlf.java.rest.client.listener;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.protobuf.InvalidProtocolBufferException;
+import hlf.java.rest.client.config.EventRoutingTable;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.model.BlockTransactionEvent;
+import hlf.java.rest.client.model.EncodedBlockEvent;
+import hlf.java.rest.client.model.EventPayloadFormat;
 import hlf.java.rest.client.model.EventType;
+import hlf.java.rest.client.service.BlockCheckpointStore;
 import hlf.java.rest.client.service.EventPublishService;
-import hlf.java.rest.client.util.FabricClientConstants;
+import hlf.java.rest.client.util.BlockEventEncoder;
 import hlf.java.rest.client.util.FabricEventParseUtil;
+import hlf.java.rest.client.util.PayloadLogger;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import lombok.SneakyThrows;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.BlockInfo;
 import org.hyperledger.fabric.sdk.BlockListener;
@@ -27,100 +46,366 @@ public class BlockEventListener implements BlockListener {
   @Autowired(required = false)
   EventPublishService eventPublishServiceImpl;
 
-  private static String blockTxId = FabricClientConstants.FABRIC_TRANSACTION_ID;
+  @Autowired private FabricProperties fabricProperties;
 
-  @SneakyThrows
+  @Autowired private EventRoutingTable eventRoutingTable;
+
+  @Autowired private PayloadLogger payloadLogger;
+
+  @Autowired private EventPipelines eventPipelines;
+
+  @Autowired(required = false)
+  private BlockCheckpointStore blockCheckpointStore;
+
+  // Last published block per channel, only written by the pipeline of the channel
+  private final Map<String, Long> lastPublishedBlockNumbers = new ConcurrentHashMap<>();
+
+  // Channels whose block events could not be committed, with exactly-once block publishing
+  private final Set<String> haltedChannels = ConcurrentHashMap.newKeySet();
+
+  // Set once the listener is destroyed on refresh or shutdown, ends the retries of its pipelines
+  private volatile boolean destroyed;
+
+  // Channels a block event of which failed to send, whose checkpoint no longer moves forward
+  private final Set<String> uncheckpointedChannels = ConcurrentHashMap.newKeySet();
+
+  @PreDestroy
+  private void destroy() {
+    destroyed = true;
+  }
+
+  /**
+   * Hands the block over to the pipeline of its channel, so that the SDK event thread is released
+   * while the blocks of a channel are still processed in order.
+   */
   @Override
   public void received(BlockEvent blockEvent) {
     if (blockEvent.getTransactionEvents().iterator().hasNext()) {
-      BlockEvent.TransactionEvent transactionEvent =
-          blockEvent.getTransactionEvents().iterator().next();
-      synchronized (this) {
-        if (!transactionEvent.getTransactionID().equalsIgnoreCase(BlockEventListener.blockTxId)) {
-          log.info("Channel ID: {}", transactionEvent.getChannelId());
-          log.info("Envelop Type: {}", transactionEvent.getType().toString());
-          log.info("Transaction ID: {}", transactionEvent.getTransactionID());
-          log.info("Is Valid: {}", transactionEvent.isValid());
-          log.info("Block Number: {}", blockEvent.getBlockNumber());
-          log.info(
-              "Chaincode Name: {}",
-              transactionEvent.getTransactionActionInfo(0).getChaincodeIDName());
-          log.info(
-              "Function Name: {}",
-              new String(
-                  transactionEvent.getTransactionActionInfo(0).getChaincodeInputArgs(0),
-                  StandardCharsets.UTF_8));
-          String privateDataPayload =
-              FabricEventParseUtil.getPrivateDataFromBlock(blockEvent.getBlockAndPrivateData());
-          log.info("Private Data: {}", privateDataPayload);
-          String blockPayload = FabricEventParseUtil.getWriteInfoFromBlock(transactionEvent);
-          log.info("Block Data: {}", blockPayload);
-
-          if (eventPublishServiceImpl == null) {
-            log.info("Event Publish is disabled, block event is not sent...");
-            return;
-          }
-
-          eventPublishServiceImpl.publishBlockEvents(
-              FabricEventParseUtil.createEventStructure(
-                  blockPayload,
-                  privateDataPayload,
-                  transactionEvent.getTransactionID(),
-                  blockEvent.getBlockNumber(),
-                  EventType.BLOCK_EVENT),
-              transactionEvent.getTransactionID(),
-              transactionEvent.getChannelId(),
-              transactionEvent.getTransactionActionInfo(0).getChaincodeIDName(),
-              new String(
-                  transactionEvent.getTransactionActionInfo(0).getChaincodeInputArgs(0),
-                  StandardCharsets.UTF_8),
-              StringUtils.isNotEmpty(privateDataPayload));
-          BlockEventListener.blockTxId = transactionEvent.getTransactionID();
-        }
+      String channelId = blockEvent.getTransactionEvents().iterator().next().getChannelId();
+      eventPipelines.dispatch(
+          EventPipelines.PipelineKey.block(channelId),
+          () -> publishLiveBlock(channelId, blockEvent));
+    }
+  }
+
+  private void publishLiveBlock(String channelId, BlockEvent blockEvent) {
+    // a block re-delivered on reconnect to the peer is skipped
+    Long lastPublishedBlockNumber = lastPublishedBlockNumbers.get(channelId);
+    if (lastPublishedBlockNumber != null
+        && blockEvent.getBlockNumber() <= lastPublishedBlockNumber) {
+      log.debug(
+          "Block {} of channel {} is already published", blockEvent.getBlockNumber(), channelId);
+      return;
+    }
+    if (!fabricProperties.getEvents().isExactlyOnceBlockPublishing()
+        || eventPublishServiceImpl == null) {
+      CompletableFuture<Void> blockSent;
+      try {
+        blockSent = publishBlock(blockEvent);
+      } catch (RuntimeException e) {
+        uncheckpointedChannels.add(channelId);
+        throw e;
+      }
+      lastPublishedBlockNumbers.put(channelId, blockEvent.getBlockNumber());
+      if (blockCheckpointStore != null) {
+        checkpointOnceSent(channelId, blockEvent.getBlockNumber(), blockSent);
       }
+      return;
+    }
+
+    // publishing the blocks that follow a block that failed to commit would move the checkpoint
+    // past it, so a failed commit is retried. A block that fails to encode, or is still not
+    // committed as the listener is destroyed, halts the channel until the listeners are restarted
+    // or refreshed, from which it resumes at its checkpoint
+    if (haltedChannels.contains(channelId)) {
+      log.warn(
+          "Block {} of channel {} is not published, block events of the channel are halted",
+          blockEvent.getBlockNumber(),
+          channelId);
+      return;
+    }
+    boolean committed;
+    try {
+      committed = publishCheckpointedBlock(channelId, blockEvent);
+    } catch (RuntimeException e) {
+      log.error(
+          "Failed to publish block {} of channel {}", blockEvent.getBlockNumber(), channelId, e);
+      committed = false;
+    }
+    if (committed) {
+      lastPublishedBlockNumbers.put(channelId, blockEvent.getBlockNumber());
+    } else {
+      haltedChannels.add(channelId);
+      log.error(
+          "Block events of channel {} are halted at block {}, they resume from the last"
+              + " checkpoint once the event listeners are restarted or refreshed",
+          channelId,
+          blockEvent.getBlockNumber());
     }
   }
 
+  /**
+   * Records the checkpoint of a block once all of its events are sent, which they are once the
+   * producers are flushed. Once an event of a block fails to send, the checkpoint of the channel
+   * stays before that block, so that the channel resumes from it once the listeners are restarted.
+   */
+  private void checkpointOnceSent(
+      String channelId, long blockNumber, CompletableFuture<Void> blockSent) {
+    if (uncheckpointedChannels.contains(channelId)) {
+      return;
+    }
+    try {
+      blockSent.join();
+    } catch (CompletionException | CancellationException e) {
+      uncheckpointedChannels.add(channelId);
+      log.error(
+          "Events of block {} of channel {} failed to send, the checkpoint of the channel stays"
+              + " before the block until the event listeners are restarted or refreshed",
+          blockNumber,
+          channelId,
+          e);
+      return;
+    }
+    blockCheckpointStore.checkpoint(channelId, blockNumber);
+  }
+
+  /**
+   * Publishes the transactions of a block requested for replay, on the calling thread.
+   *
+   * @param blockInfo BlockInfo of the replayed block
+   */
   public void receivedBlockInfo(BlockInfo blockInfo)
       throws InvalidProtocolBufferException, JsonProcessingException {
-    if (blockInfo.getEnvelopeInfos().iterator().hasNext()) {
-      BlockInfo.EnvelopeInfo envelopeInfo = blockInfo.getEnvelopeInfos().iterator().next();
-      synchronized (this) {
-        if (!envelopeInfo.getTransactionID().equalsIgnoreCase(BlockEventListener.blockTxId)) {
-          log.info("Channel ID: {}", envelopeInfo.getChannelId());
-          log.info("Envelop Type: {}", envelopeInfo.getType().toString());
-          log.info("Transaction ID: {}", envelopeInfo.getTransactionID());
-          log.info("Is Valid: {}", envelopeInfo.isValid());
-          log.info("Block Number: {}", blockInfo.getBlockNumber());
-          String privateDataPayload =
-              FabricEventParseUtil.getPrivateDataFromBlock(blockInfo.getBlockAndPrivateData());
-          log.info("Private Data: {}", privateDataPayload);
-          BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo =
-              (BlockInfo.TransactionEnvelopeInfo) envelopeInfo;
-          String blockPayload = FabricEventParseUtil.getWriteInfoFromBlock(transactionEnvelopeInfo);
-          log.info("Block Data: {}", blockPayload);
-
-          if (eventPublishServiceImpl == null) {
-            log.info("Event Publish is disabled, block event is not sent...");
-            return;
-          }
-
-          eventPublishServiceImpl.publishBlockEvents(
-              FabricEventParseUtil.createEventStructure(
-                  blockPayload,
-                  privateDataPayload,
-                  transactionEnvelopeInfo.getTransactionID(),
+    publishBlock(blockInfo);
+  }
+
+  /**
+   * Encodes the transactions of a block requested for replay, so that blocks can be encoded in
+   * parallel and published in order with {@link #publishEncodedBlock(EncodedBlock)}.
+   *
+   * @param blockInfo BlockInfo of the replayed block
+   * @return the encoded block
+   */
+  public EncodedBlock encodeBlock(BlockInfo blockInfo) {
+    return new EncodedBlock(blockInfo.getBlockNumber(), toTransactionBlockEvents(blockInfo));
+  }
+
+  /**
+   * Publishes the transactions of an encoded block requested for replay, on the calling thread.
+   *
+   * @param encodedBlock EncodedBlock of the replayed block
+   */
+  public void publishEncodedBlock(EncodedBlock encodedBlock) {
+    publishTransactions(encodedBlock.blockNumber, encodedBlock.transactionBlockEvents);
+  }
+
+  private CompletableFuture<Void> publishBlock(BlockInfo blockInfo) {
+    return publishTransactions(blockInfo.getBlockNumber(), toTransactionBlockEvents(blockInfo));
+  }
+
+  /**
+   * Publishes the events of the transactions of a block in block order. The producers are flushed
+   * at the end of the block when batching, or when the block is to be checkpointed once sent.
+   *
+   * @return a future completed once all the events of the block are sent
+   */
+  private CompletableFuture<Void> publishTransactions(
+      long blockNumber, List<TransactionBlockEvent> transactionBlockEvents) {
+    List<CompletableFuture<Void>> sends = new ArrayList<>(transactionBlockEvents.size());
+    for (TransactionBlockEvent transactionBlockEvent : transactionBlockEvents) {
+      sends.add(publishTransaction(blockNumber, transactionBlockEvent));
+    }
+
+    if (eventPublishServiceImpl != null
+        && (fabricProperties.getEvents().isBlockBatchPublishing() || blockCheckpointStore != null)
+        && !transactionBlockEvents.isEmpty()) {
+      eventPublishServiceImpl.flushBlockEvents(
+          transactionBlockEvents.get(0).channelId, transactionBlockEvents.size());
+    }
+    return CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Publishes the transactions of a block along with the checkpoint of the block, in a single Kafka
+   * transaction. A transaction that fails to commit is retried on the pipeline of the channel, with
+   * a backoff doubling from 'initialBackoffInMillis' up to 'maxBackoffInMillis', so that the later
+   * blocks of the channel wait for it in order. A block that fails to encode is not retried.
+   *
+   * @return whether the events and the checkpoint of the block are committed, false only if the
+   *     block failed to encode or the listener was destroyed before the block could be committed
+   */
+  private boolean publishCheckpointedBlock(String channelId, BlockInfo blockInfo) {
+    List<TransactionBlockEvent> transactionBlockEvents = toTransactionBlockEvents(blockInfo);
+
+    List<BlockTransactionEvent> events = new ArrayList<>(transactionBlockEvents.size());
+    for (TransactionBlockEvent transactionBlockEvent : transactionBlockEvents) {
+      logTransaction(blockInfo.getBlockNumber(), transactionBlockEvent);
+      events.add(
+          new BlockTransactionEvent(
+              transactionBlockEvent.transactionId,
+              transactionBlockEvent.chaincodeName,
+              transactionBlockEvent.functionName,
+              transactionBlockEvent.encodedEvent));
+    }
+
+    FabricProperties.BlockPublishRetry retry = fabricProperties.getEvents().getBlockPublishRetry();
+    long backoffInMillis = Math.max(retry.getInitialBackoffInMillis(), 1);
+    while (!eventPublishServiceImpl.publishBlockEventsTransactionally(
+        channelId, blockInfo.getBlockNumber(), events)) {
+      if (destroyed) {
+        return false;
+      }
+      log.warn(
+          "Retrying the commit of block {} of channel {} in {} ms",
+          blockInfo.getBlockNumber(),
+          channelId,
+          backoffInMillis);
+      try {
+        Thread.sleep(backoffInMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      backoffInMillis = Math.min(backoffInMillis * 2, retry.getMaxBackoffInMillis());
+    }
+    return true;
+  }
+
+  /**
+   * Encodes the write-set and private data of every transaction envelope of the block, in parallel
+   * across envelopes, into events in block order.
+   */
+  private List<TransactionBlockEvent> toTransactionBlockEvents(BlockInfo blockInfo) {
+    List<IndexedEnvelope> transactionEnvelopes = new ArrayList<>();
+    int envelopeIndex = 0;
+    for (BlockInfo.EnvelopeInfo envelopeInfo : blockInfo.getEnvelopeInfos()) {
+      if (envelopeInfo.getType() == BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE) {
+        transactionEnvelopes.add(
+            new IndexedEnvelope(envelopeIndex, (BlockInfo.TransactionEnvelopeInfo) envelopeInfo));
+      }
+      envelopeIndex++;
+    }
+
+    Stream<IndexedEnvelope> envelopeStream =
+        transactionEnvelopes.size() > 1
+            ? transactionEnvelopes.parallelStream()
+            : transactionEnvelopes.stream();
+    // the parallel stream is ordered, the collected events retain the order of the block
+    List<TransactionBlockEvent> transactionBlockEvents =
+        envelopeStream
+            .map(indexedEnvelope -> toTransactionBlockEvent(blockInfo, indexedEnvelope))
+            .collect(Collectors.toList());
+
+    log.info(
+        "Block {} carries {} transactions",
+        blockInfo.getBlockNumber(),
+        transactionBlockEvents.size());
+    return transactionBlockEvents;
+  }
+
+  private TransactionBlockEvent toTransactionBlockEvent(
+      BlockInfo blockInfo, IndexedEnvelope indexedEnvelope) {
+    BlockInfo.TransactionEnvelopeInfo envelopeInfo = indexedEnvelope.envelopeInfo;
+    try {
+      TransactionBlockEvent transactionBlockEvent = new TransactionBlockEvent();
+      transactionBlockEvent.transactionId = envelopeInfo.getTransactionID();
+      transactionBlockEvent.channelId = envelopeInfo.getChannelId();
+      transactionBlockEvent.isValid = envelopeInfo.isValid();
+      transactionBlockEvent.chaincodeName =
+          envelopeInfo.getTransactionActionInfo(0).getChaincodeIDName();
+      transactionBlockEvent.functionName =
+          new String(
+              envelopeInfo.getTransactionActionInfo(0).getChaincodeInputArgs(0),
+              StandardCharsets.UTF_8);
+      transactionBlockEvent.payloadFormat =
+          eventRoutingTable.getBlockRoute(transactionBlockEvent.channelId).getPayloadFormat();
+      transactionBlockEvent.encodedEvent =
+          BlockEventEncoder.encode(
+              envelopeInfo,
+              FabricEventParseUtil.getTransactionPrivateData(
+                  blockInfo.getBlockAndPrivateData(), indexedEnvelope.index),
+              FabricEventParseUtil.createEventURI(
+                  envelopeInfo.getTransactionID(),
                   blockInfo.getBlockNumber(),
                   EventType.BLOCK_EVENT),
-              transactionEnvelopeInfo.getTransactionID(),
-              transactionEnvelopeInfo.getChannelId(),
-              transactionEnvelopeInfo.getTransactionActionInfo(0).getChaincodeIDName(),
-              new String(
-                  transactionEnvelopeInfo.getTransactionActionInfo(0).getChaincodeInputArgs(0),
-                  StandardCharsets.UTF_8),
-              StringUtils.isNotEmpty(privateDataPayload));
-        }
-      }
+              transactionBlockEvent.payloadFormat,
+              fabricProperties.getEvents().isEmbedWriteSetsAsJson());
+      return transactionBlockEvent;
+    } catch (IOException e) {
+      throw new ServiceException(
+          ErrorCode.DESERIALIZATION_FAILURE,
+          "Failed to parse Transaction "
+              + envelopeInfo.getTransactionID()
+              + " of Block "
+              + blockInfo.getBlockNumber(),
+          e);
+    }
+  }
+
+  private CompletableFuture<Void> publishTransaction(
+      long blockNumber, TransactionBlockEvent transactionBlockEvent) {
+    logTransaction(blockNumber, transactionBlockEvent);
+
+    if (eventPublishServiceImpl == null) {
+      log.info("Event Publish is disabled, block event is not sent...");
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return eventPublishServiceImpl.publishBlockEvents(
+        transactionBlockEvent.encodedEvent.getPayload(),
+        transactionBlockEvent.transactionId,
+        transactionBlockEvent.channelId,
+        transactionBlockEvent.chaincodeName,
+        transactionBlockEvent.functionName,
+        transactionBlockEvent.encodedEvent.isPrivateDataPresent());
+  }
+
+  private void logTransaction(long blockNumber, TransactionBlockEvent transactionBlockEvent) {
+    log.info("Channel ID: {}", transactionBlockEvent.channelId);
+    log.info("Transaction ID: {}", transactionBlockEvent.transactionId);
+    log.info("Is Valid: {}", transactionBlockEvent.isValid);
+    log.info("Block Number: {}", blockNumber);
+    log.info("Chaincode Name: {}", transactionBlockEvent.chaincodeName);
+    log.info("Function Name: {}", transactionBlockEvent.functionName);
+    if (transactionBlockEvent.payloadFormat == EventPayloadFormat.JSON) {
+      payloadLogger.log(log, "Block event: {}", transactionBlockEvent.encodedEvent.getPayload());
+    }
+  }
+
+  private static class IndexedEnvelope {
+    private final int index;
+    private final BlockInfo.TransactionEnvelopeInfo envelopeInfo;
+
+    private IndexedEnvelope(int index, BlockInfo.TransactionEnvelopeInfo envelopeInfo) {
+      this.index = index;
+      this.envelopeInfo = envelopeInfo;
+    }
+  }
+
+  /** The transactions of a block, encoded and ready to be published. */
+  public static final class EncodedBlock {
+    private final long blockNumber;
+    private final List<TransactionBlockEvent> transactionBlockEvents;
+
+    private EncodedBlock(long blockNumber, List<TransactionBlockEvent> transactionBlockEvents) {
+      this.blockNumber = blockNumber;
+      this.transactionBlockEvents = transactionBlockEvents;
     }
+
+    /** @return the number of the block */
+    public long getBlockNumber() {
+      return blockNumber;
+    }
+  }
+
+  /** Details of a single transaction of a block, as published to the block event topics. */
+  private static class TransactionBlockEvent {
+    private String transactionId;
+    private String channelId;
+    private boolean isValid;
+    private String chaincodeName;
+    private String functionName;
+    private EventPayloadFormat payloadFormat;
+    private EncodedBlockEvent encodedEvent;
   }
 }
@@ -1,14 +1,21 @@
 package hlf.java.rest.client.listener;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import hlf.java.rest.client.config.EventRoutingTable;
 import hlf.java.rest.client.config.FabricProperties;
-import hlf.java.rest.client.model.EventType;
 import hlf.java.rest.client.sdk.StandardCCEvent;
+import hlf.java.rest.client.service.BlockCheckpointStore;
 import hlf.java.rest.client.service.EventPublishService;
 import hlf.java.rest.client.service.RecencyTransactionContext;
-import hlf.java.rest.client.util.FabricClientConstants;
 import hlf.java.rest.client.util.FabricEventParseUtil;
+import hlf.java.rest.client.util.PayloadLogger;
+import hlf.java.rest.client.util.TxId;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.hyperledger.fabric.gateway.ContractEvent;
@@ -30,9 +37,32 @@ public class ChaincodeEventListener {
 
   @Autowired private FabricProperties fabricProperties;
 
+  @Autowired private EventRoutingTable eventRoutingTable;
+
   @Autowired private RecencyTransactionContext recencyTransactionContext;
 
-  private static String eventTxnId = FabricClientConstants.FABRIC_TRANSACTION_ID;
+  @Autowired private PayloadLogger payloadLogger;
+
+  @Autowired private EventPipelines eventPipelines;
+
+  @Autowired(required = false)
+  private BlockCheckpointStore blockCheckpointStore;
+
+  // Last published transaction per channel and chaincode, only written by the pipeline of the pair.
+  // Compared as TxId, regardless of case like the former equalsIgnoreCase, at the cost of a hex
+  // parse per event, and of a SHA-256 hash for IDs that are not the hex of a hash
+  private final Map<EventPipelines.PipelineKey, TxId> lastPublishedTxIds =
+      new ConcurrentHashMap<>();
+
+  // Sends of all the events published so far per channel and chaincode, only replaced by the
+  // pipeline of the pair
+  private final Map<EventPipelines.PipelineKey, CompletableFuture<Void>> publishedEventSends =
+      new ConcurrentHashMap<>();
+
+  // Channels and chaincodes an event of which failed to send, whose checkpoint no longer moves
+  // forward
+  private final Set<EventPipelines.PipelineKey> uncheckpointedChaincodes =
+      ConcurrentHashMap.newKeySet();
 
   public void chaincodeEventListener(ContractEvent contractEvent) {
 
@@ -57,17 +87,8 @@ public class ChaincodeEventListener {
       return;
     }
 
-    if (recencyTransactionContext.validateAndRemoveTransactionContext(txId)) {
-      publishChaincodeEvent(
-          txId, chaincodeId, eventName, payload, channelName, blockNumber, isValidTransaction);
-      return;
-    }
-
-    log.info(
-        "TxnID {} for Block Number {} qualifies as a duplicate event.. Discarding the payload {} from being published.",
-        txId,
-        blockNumber,
-        payload);
+    publishChaincodeEvent(
+        txId, chaincodeId, eventName, payload, channelName, blockNumber, isValidTransaction, true);
   }
 
   @Deprecated
@@ -85,9 +106,14 @@ public class ChaincodeEventListener {
     String payload = new String(chaincodeEvent.getPayload(), StandardCharsets.UTF_8);
 
     publishChaincodeEvent(
-        txId, chaincodeId, eventName, payload, channelName, blockNumber, isTxnValid);
+        txId, chaincodeId, eventName, payload, channelName, blockNumber, isTxnValid, false);
   }
 
+  /**
+   * Hands the event over to the pipeline of its channel and chaincode, so that the SDK event thread
+   * is released while the events of a chaincode are still published in order. The recency check of
+   * a deduplicated event runs on the pipeline too, as it may wait on the shared dedupe store.
+   */
   private void publishChaincodeEvent(
       String txId,
       String chaincodeId,
@@ -95,62 +121,159 @@ public class ChaincodeEventListener {
       String payload,
       String channelName,
       long blockNumber,
-      boolean isTransactionValid) {
-    synchronized (this) {
-      if (!txId.equalsIgnoreCase(eventTxnId)) {
-
-        log.info("Chaincode ID: {}", chaincodeId);
-        log.info("Event Name: {}", eventName);
-        log.info("Transaction ID: {}", txId);
-        log.info("Payload: {}", payload);
-        log.info("Channel Name: {}", channelName);
-        log.info("Transaction Valid state: {}", isTransactionValid);
-
-        if (eventPublishService == null) {
-          log.info("Event Publish is disabled, skipping this Chaincode event");
-          return;
-        }
-
-        String messageKey = null;
-        String payloadToPublish = payload;
-
-        if (fabricProperties.getEvents().isStandardCCEventEnabled()) {
-          // Fetch the key information for chaincode events, only if the feature is enabled.
-          // Parse the payload and use the key.
-          try {
-            StandardCCEvent standardCCEvent =
-                FabricEventParseUtil.parseString(payload, StandardCCEvent.class);
-            messageKey =
-                StringUtils.isNotBlank(standardCCEvent.getKey())
-                    ? standardCCEvent.getKey()
-                    : messageKey;
-            // Prefer the Raw Event Payload.
-            payloadToPublish =
-                StringUtils.isNotBlank(standardCCEvent.getEvent())
-                    ? standardCCEvent.getEvent()
-                    : payloadToPublish;
-          } catch (JsonProcessingException e) {
-            // Likely thrown if the Event generated from Chaincode might not be wrapped in a model
-            // that matches 'StandardCCEvent'
-            // Instead of failing the op, fallback to the defaults and proceed with the publish.
-            log.error(
-                "Failed to deserialize Event payload to StandardCCEvent structure. Incoming Event Payload and Default Key will be utilised for publishing.");
-          }
-        }
-
-        eventPublishService.publishChaincodeEvents(
-            FabricEventParseUtil.createEventStructure(
-                payloadToPublish, "", txId, blockNumber, EventType.CHAINCODE_EVENT),
-            chaincodeId,
-            txId,
-            eventName,
-            channelName,
-            messageKey,
-            isTransactionValid);
-        eventTxnId = txId;
-      } else {
-        log.debug("Duplicate Transaction; ID: {}", txId);
+      boolean isTransactionValid,
+      boolean deduplicated) {
+    EventPipelines.PipelineKey pipelineKey =
+        EventPipelines.PipelineKey.chaincode(channelName, chaincodeId);
+    eventPipelines.dispatch(
+        pipelineKey,
+        () ->
+            processChaincodeEvent(
+                pipelineKey,
+                txId,
+                chaincodeId,
+                eventName,
+                payload,
+                channelName,
+                blockNumber,
+                isTransactionValid,
+                deduplicated));
+  }
+
+  private void processChaincodeEvent(
+      EventPipelines.PipelineKey pipelineKey,
+      String txId,
+      String chaincodeId,
+      String eventName,
+      String payload,
+      String channelName,
+      long blockNumber,
+      boolean isTransactionValid,
+      boolean deduplicated) {
+    TxId packedTxId = TxId.of(txId);
+    if (packedTxId.equals(lastPublishedTxIds.get(pipelineKey))) {
+      log.debug("Duplicate Transaction; ID: {}", txId);
+      return;
+    }
+
+    if (deduplicated && !recencyTransactionContext.validateAndRemoveTransactionContext(txId)) {
+      log.info(
+          "TxnID {} for Block Number {} qualifies as a duplicate event.. Discarding the payload from being published.",
+          txId,
+          blockNumber);
+      return;
+    }
+
+    log.info("Chaincode ID: {}", chaincodeId);
+    log.info("Event Name: {}", eventName);
+    log.info("Transaction ID: {}", txId);
+    payloadLogger.log(log, "Payload: {}", payload);
+    log.info("Channel Name: {}", channelName);
+    log.info("Transaction Valid state: {}", isTransactionValid);
+
+    if (eventPublishService == null) {
+      log.info("Event Publish is disabled, skipping this Chaincode event");
+      return;
+    }
+
+    String messageKey = null;
+    String payloadToPublish = payload;
+
+    if (fabricProperties.getEvents().isStandardCCEventEnabled()) {
+      // Fetch the key information for chaincode events, only if the feature is enabled.
+      // Parse the payload and use the key.
+      try {
+        StandardCCEvent standardCCEvent =
+            FabricEventParseUtil.parseString(payload, StandardCCEvent.class);
+        messageKey =
+            StringUtils.isNotBlank(standardCCEvent.getKey())
+                ? standardCCEvent.getKey()
+                : messageKey;
+        // Prefer the Raw Event Payload.
+        payloadToPublish =
+            StringUtils.isNotBlank(standardCCEvent.getEvent())
+                ? standardCCEvent.getEvent()
+                : payloadToPublish;
+      } catch (JsonProcessingException e) {
+        // Likely thrown if the Event generated from Chaincode might not be wrapped in a model
+        // that matches 'StandardCCEvent'
+        // Instead of failing the op, fallback to the defaults and proceed with the publish.
+        log.error(
+            "Failed to deserialize Event payload to StandardCCEvent structure. Incoming Event Payload and Default Key will be utilised for publishing.");
       }
     }
+
+    byte[] encodedEvent;
+    try {
+      encodedEvent =
+          FabricEventParseUtil.encodeChaincodeEvent(
+              payloadToPublish,
+              txId,
+              blockNumber,
+              eventRoutingTable.getChaincodeRoute(channelName, chaincodeId).getPayloadFormat());
+    } catch (IOException e) {
+      log.error("Failed to encode Chaincode event of Transaction {}", txId, e);
+      return;
+    }
+
+    CompletableFuture<Void> eventSent;
+    try {
+      eventSent =
+          eventPublishService.publishChaincodeEvents(
+              encodedEvent,
+              chaincodeId,
+              txId,
+              eventName,
+              channelName,
+              messageKey,
+              isTransactionValid);
+    } catch (RuntimeException e) {
+      uncheckpointedChaincodes.add(pipelineKey);
+      throw e;
+    }
+    lastPublishedTxIds.put(pipelineKey, packedTxId);
+
+    CompletableFuture<Void> precedingSends =
+        publishedEventSends.getOrDefault(pipelineKey, CompletableFuture.completedFuture(null));
+    publishedEventSends.put(pipelineKey, CompletableFuture.allOf(precedingSends, eventSent));
+
+    // the events of the chaincode in the preceding blocks are all published, the block of this
+    // event may carry more of them and is delivered again on resume
+    if (blockCheckpointStore != null && blockNumber > 0) {
+      checkpointOnceSent(pipelineKey, channelName, chaincodeId, blockNumber - 1, precedingSends);
+    }
+  }
+
+  /**
+   * Records the checkpoint of a block once the events published before the event of the following
+   * block are all sent. Once an event fails to send, the checkpoint of the chaincode stays before
+   * its block, so that the chaincode resumes from it once the listeners are restarted.
+   */
+  private void checkpointOnceSent(
+      EventPipelines.PipelineKey pipelineKey,
+      String channelName,
+      String chaincodeId,
+      long blockNumber,
+      CompletableFuture<Void> precedingSends) {
+    if (uncheckpointedChaincodes.contains(pipelineKey)) {
+      return;
+    }
+    precedingSends.whenComplete(
+        (sent, throwable) -> {
+          if (throwable != null) {
+            if (uncheckpointedChaincodes.add(pipelineKey)) {
+              log.error(
+                  "Events of chaincode {} of channel {} failed to send, the checkpoint of the"
+                      + " chaincode stays at or before block {} until the event listeners are"
+                      + " restarted or refreshed",
+                  chaincodeId,
+                  channelName,
+                  blockNumber,
+                  throwable);
+            }
+          } else if (!uncheckpointedChaincodes.contains(pipelineKey)) {
+            blockCheckpointStore.checkpoint(channelName, chaincodeId, blockNumber);
+          }
+        });
   }
 }
@@ -1,16 +1,27 @@
 package hlf.java.rest.client.listener;
 
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.config.IntegrationPointExecutorProvider;
 import hlf.java.rest.client.config.KafkaConsumerConfig;
 import hlf.java.rest.client.config.KafkaProperties;
-import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.RetryableServiceException;
+import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
@@ -18,6 +29,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.AcknowledgingMessageListener;
 import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
@@ -45,12 +57,16 @@ public class DynamicKafkaListener {
 
   @Autowired private KafkaConsumerConfig kafkaConsumerConfig;
 
+  @Autowired private FabricProperties fabricProperties;
+
   @Autowired private TransactionConsumer transactionConsumer;
 
-  @Autowired private TaskExecutor defaultTaskExecutor;
+  @Autowired private IntegrationPointExecutorProvider integrationPointExecutorProvider;
 
   @Autowired private CommonErrorHandler topicTransactionErrorHandler;
 
+  @Autowired private BackpressureController backpressureController;
+
   @EventListener
   public void handleEvent(ContextRefreshedEvent event) {
     log.info("Initializing Kafka Consumers..");
@@ -67,6 +83,8 @@ public class DynamicKafkaListener {
 
       existingContainers.clear();
     }
+    backpressureController.clear();
+    integrationPointExecutorProvider.retire();
 
     registerKafkaConsumersInternal();
   }
@@ -86,10 +104,17 @@ public class DynamicKafkaListener {
     ContainerProperties containerProperties = new ContainerProperties(consumer.getTopic());
     containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
 
-    containerProperties.setMessageListener(determineMessageListenerForTransactions(consumer));
+    TaskExecutor taskExecutor = integrationPointExecutorProvider.getTaskExecutor(consumer);
+    BackpressureController.ConsumerBackpressure backpressure =
+        backpressureController.register(
+            consumer.getGroupId() + "/" + consumer.getTopic(), taskExecutor);
+
+    containerProperties.setMessageListener(
+        determineMessageListenerForTransactions(consumer, taskExecutor, backpressure));
 
     ConcurrentMessageListenerContainer<String, String> container =
         new ConcurrentMessageListenerContainer<>(factory, containerProperties);
+    backpressure.attach(container);
 
     int consumerListenerConcurrency = 1; // Kafka default if no concurrency is set.
 
@@ -109,11 +134,19 @@ public class DynamicKafkaListener {
             + container.metrics().keySet().iterator().next());
   }
 
-  private Object determineMessageListenerForTransactions(KafkaProperties.Consumer consumer) {
+  private Object determineMessageListenerForTransactions(
+      KafkaProperties.Consumer consumer,
+      TaskExecutor taskExecutor,
+      BackpressureController.ConsumerBackpressure backpressure) {
+
+    if (consumer.isEnableKeyOrderedListenerCapabilities()) {
+      return getKeyOrderedBatchAcknowledgingMessageListener(
+          consumer.getOrderingKeyHeader(), taskExecutor, backpressure);
+    }
 
     return consumer.isEnableParallelListenerCapabilities()
-        ? getMultithreadedBatchAcknowledgingMessageListener()
-        : getPerRecordAcknowledgingListener();
+        ? getMultithreadedBatchAcknowledgingMessageListener(taskExecutor, backpressure)
+        : getPerRecordAcknowledgingListener(backpressure);
   }
 
   /**
@@ -126,7 +159,8 @@ public class DynamicKafkaListener {
    *
    * @return
    */
-  private Object getMultithreadedBatchAcknowledgingMessageListener() {
+  private Object getMultithreadedBatchAcknowledgingMessageListener(
+      TaskExecutor taskExecutor, BackpressureController.ConsumerBackpressure backpressure) {
     return new BatchAcknowledgingMessageListener<String, String>() {
 
       @SneakyThrows
@@ -135,51 +169,256 @@ public class DynamicKafkaListener {
           List<ConsumerRecord<String, String>> consumerRecords, Acknowledgment acknowledgment) {
         log.debug("Consumer got assigned with a Batch of size : {}", consumerRecords.size());
 
-        List<CompletableFuture<Void>> transactionSubmissionTasks = new ArrayList<>();
+        List<CompletableFuture<?>> transactionSubmissionTasks = new ArrayList<>();
 
-        // Dispatch workers for asynchronously processing Individual records
+        // Dispatch workers for asynchronously processing Individual records. With async commit
+        // enabled, a worker is released as soon as its transaction is accepted by the orderer.
+        boolean isAsyncCommitEnabled = fabricProperties.getSubmission().isAsyncCommitEnabled();
+        TaskRejectedException rejection = null;
         for (ConsumerRecord<String, String> message : consumerRecords) {
+          long dispatchTime = System.currentTimeMillis();
+          backpressure.recordDispatch();
+          CompletableFuture<?> transactionSubmissionTask;
+          try {
+            if (isAsyncCommitEnabled) {
+              transactionSubmissionTask =
+                  CompletableFuture.supplyAsync(
+                          () -> transactionConsumer.listenAsync(message), taskExecutor)
+                      .thenCompose(Function.identity());
+            } else {
+              transactionSubmissionTask =
+                  CompletableFuture.runAsync(
+                      () -> {
+                        transactionConsumer.listen(message);
+                      },
+                      taskExecutor);
+            }
+          } catch (TaskRejectedException e) {
+            // the executor is saturated or shut down, the rest of the batch is re-delivered once
+            // the dispatched Records are processed, by when backpressure may have paused the
+            // consumer
+            backpressure.recordLatency(System.currentTimeMillis() - dispatchTime);
+            rejection = e;
+            break;
+          } catch (RuntimeException e) {
+            // rejected by an executor other than a TaskExecutor
+            backpressure.recordLatency(System.currentTimeMillis() - dispatchTime);
+            throw e;
+          }
           transactionSubmissionTasks.add(
-              CompletableFuture.runAsync(
-                  () -> {
-                    transactionConsumer.listen(message);
-                  },
-                  defaultTaskExecutor));
+              transactionSubmissionTask.whenComplete(
+                  (result, throwable) ->
+                      backpressure.recordLatency(System.currentTimeMillis() - dispatchTime)));
         }
 
         for (int i = 0; i < transactionSubmissionTasks.size(); i++) {
           try {
             transactionSubmissionTasks.get(i).get();
-          } catch (InterruptedException | ExecutionException e) {
+          } catch (ExecutionException e) {
+            throw new BatchListenerFailedException(
+                "Failed to process a Consumer Record from the Batch",
+                classifyRecordFailure("Async", e.getCause()),
+                i);
+          }
+        }
 
-            final Throwable cause = e.getCause();
+        if (rejection != null) {
+          log.warn(
+              "Consumer Record {} of the Batch was rejected by the executor - {}",
+              transactionSubmissionTasks.size(),
+              rejection.getMessage());
+          throw new BatchListenerFailedException(
+              "Failed to dispatch a Consumer Record from the Batch",
+              rejection,
+              transactionSubmissionTasks.size());
+        }
 
-            if (cause instanceof ServiceException) {
-              log.error(
-                  "One of the Consumer Record in Async Batch Processor failed with message {}",
-                  cause.getMessage());
-              throw new BatchListenerFailedException(
-                  "Failed to process a Consumer Record from the Batch", i);
-            }
+        // If the entire Records were processed successfully, Ack & commit the entire Batch
+        acknowledgment.acknowledge();
+      }
+    };
+  }
 
-            if (cause instanceof InterruptedException) {
-              throw e;
-            }
+  /**
+   * A Message listener, where the list of Records fetched as part of poll() is sharded into lanes
+   * by an ordering key. The ordering key is the value of the configured ordering header if present
+   * on the Record, else the Kafka Record key. Records of a lane are processed serially in the order
+   * they were polled, while different lanes are processed in parallel on the Async Task pool. This
+   * prevents two updates to the same asset from racing to the orderer within a Batch.
+   *
+   * <p>If a Record fails, the remaining Records of its lane are skipped and a partial Batch commit
+   * is performed up to the lowest failed offset across all lanes. Records without an ordering key
+   * are not ordered against any other Record.
+   *
+   * @param orderingKeyHeader optional name of the header carrying the ordering key
+   * @return
+   */
+  private Object getKeyOrderedBatchAcknowledgingMessageListener(
+      String orderingKeyHeader,
+      TaskExecutor taskExecutor,
+      BackpressureController.ConsumerBackpressure backpressure) {
+    return new BatchAcknowledgingMessageListener<String, String>() {
+
+      @SneakyThrows
+      @Override
+      public void onMessage(
+          List<ConsumerRecord<String, String>> consumerRecords, Acknowledgment acknowledgment) {
+        log.debug("Consumer got assigned with a Batch of size : {}", consumerRecords.size());
+
+        // Group the index of each record by its ordering key, retaining the poll order
+        Map<Object, List<Integer>> recordLanes = new LinkedHashMap<>();
+        for (int i = 0; i < consumerRecords.size(); i++) {
+          Object orderingKey = resolveOrderingKey(consumerRecords.get(i), orderingKeyHeader, i);
+          recordLanes.computeIfAbsent(orderingKey, key -> new ArrayList<>()).add(i);
+        }
+
+        log.debug(
+            "Batch of size {} is sharded into {} ordered lanes",
+            consumerRecords.size(),
+            recordLanes.size());
+
+        List<CompletableFuture<FailedRecord>> laneTasks = new ArrayList<>(recordLanes.size());
+        for (List<Integer> lane : recordLanes.values()) {
+          try {
+            laneTasks.add(
+                CompletableFuture.supplyAsync(
+                    () -> processOrderedLane(consumerRecords, lane, backpressure),
+                    taskExecutor));
+          } catch (TaskRejectedException e) {
+            // the executor is saturated or shut down, lanes are in the order of their first Record,
+            // so the lanes not dispatched are re-delivered from the first Record of this lane
+            log.warn("Lane of the Batch was rejected by the executor - {}", e.getMessage());
+            laneTasks.add(CompletableFuture.completedFuture(new FailedRecord(lane.get(0), e)));
+            break;
+          }
+        }
+
+        FailedRecord lowestFailedRecord = null;
+        for (CompletableFuture<FailedRecord> laneTask : laneTasks) {
+          FailedRecord failedRecord = laneTask.get();
+          if (failedRecord != null
+              && (lowestFailedRecord == null || failedRecord.index < lowestFailedRecord.index)) {
+            lowestFailedRecord = failedRecord;
           }
         }
+
+        if (lowestFailedRecord != null) {
+          throw new BatchListenerFailedException(
+              "Failed to process a Consumer Record from the Batch",
+              lowestFailedRecord.cause,
+              lowestFailedRecord.index);
+        }
+
         // If the entire Records were processed successfully, Ack & commit the entire Batch
         acknowledgment.acknowledge();
       }
     };
   }
 
-  private Object getPerRecordAcknowledgingListener() {
+  /**
+   * Processes the Records of a single lane serially. Processing of the lane stops at the first
+   * failed Record, so that the Records after it are re-delivered in order on the next poll().
+   *
+   * @return the failed Record of the lane, or null if every Record was processed successfully
+   */
+  private FailedRecord processOrderedLane(
+      List<ConsumerRecord<String, String>> consumerRecords,
+      List<Integer> lane,
+      BackpressureController.ConsumerBackpressure backpressure) {
+    for (Integer recordIndex : lane) {
+      try {
+        listenAndRecordLatency(consumerRecords.get(recordIndex), backpressure);
+      } catch (RuntimeException e) {
+        return new FailedRecord(recordIndex, classifyRecordFailure("Key-Ordered", e));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Classifies the failure of a Record alike for the parallel and the key-ordered listeners. The
+   * Batch is failed with the cause unwrapped from the async task, so that the error handler hands a
+   * poison payload, such as an {@link UnrecognizedTransactionPayloadException}, over to the
+   * recoverer right away, and retries the Record for any other failure.
+   *
+   * @param processor String name of the Batch processor, for logging
+   * @param failure Throwable the Record failed with
+   * @return the cause to fail the Batch with
+   */
+  private static RuntimeException classifyRecordFailure(String processor, Throwable failure) {
+    Throwable cause = failure;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+        && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+
+    if (cause instanceof UnrecognizedTransactionPayloadException) {
+      log.error(
+          "One of the Consumer Record in {} Batch Processor carries an unrecognized payload, it is"
+              + " handed over to the recoverer without retries - {}",
+          processor,
+          cause.getMessage());
+    } else {
+      log.error(
+          "One of the Consumer Record in {} Batch Processor failed with message {}",
+          processor,
+          cause.getMessage());
+    }
+
+    return cause instanceof RuntimeException
+        ? (RuntimeException) cause
+        : new RetryableServiceException(
+            ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR, cause.getMessage(), cause);
+  }
+
+  private Object resolveOrderingKey(
+      ConsumerRecord<String, String> consumerRecord, String orderingKeyHeader, int recordIndex) {
+
+    if (StringUtils.isNotBlank(orderingKeyHeader)) {
+      Header header = consumerRecord.headers().lastHeader(orderingKeyHeader);
+      if (header != null && header.value() != null) {
+        return new String(header.value(), StandardCharsets.UTF_8);
+      }
+    }
+
+    if (consumerRecord.key() != null) {
+      return consumerRecord.key();
+    }
+
+    // A Record without an ordering key gets a lane of its own
+    return recordIndex;
+  }
+
+  private Object getPerRecordAcknowledgingListener(
+      BackpressureController.ConsumerBackpressure backpressure) {
 
     return (AcknowledgingMessageListener<String, String>)
         (message, acknowledgment) -> {
-          transactionConsumer.listen(message);
+          listenAndRecordLatency(message, backpressure);
           // Manually ack the single Record
           acknowledgment.acknowledge();
         };
   }
+
+  private void listenAndRecordLatency(
+      ConsumerRecord<String, String> message,
+      BackpressureController.ConsumerBackpressure backpressure) {
+    long startTime = System.currentTimeMillis();
+    backpressure.recordDispatch();
+    try {
+      transactionConsumer.listen(message);
+    } finally {
+      backpressure.recordLatency(System.currentTimeMillis() - startTime);
+    }
+  }
+
+  private static class FailedRecord {
+    private final int index;
+    private final RuntimeException cause;
+
+    private FailedRecord(int index, RuntimeException cause) {
+      this.index = index;
+      this.cause = cause;
+    }
+  }
 }
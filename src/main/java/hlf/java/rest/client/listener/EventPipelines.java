@@ -0,0 +1,185 @@
+package hlf.java.rest.client.listener;
+
+import hlf.java.rest.client.config.FabricProperties;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sequential pipelines for processing Fabric events off the SDK event thread. Each pipeline, keyed
+ * by the blocks of a channel or the events of a chaincode, has a bounded queue drained by a single
+ * thread, so events of a pipeline are processed in the order they were received while different
+ * pipelines are processed in parallel. The state of a pipeline is only ever touched by its own
+ * thread.
+ *
+ * <p>When the queue of a pipeline is full, the dispatching SDK event thread blocks until there is
+ * room, so events are never dropped.
+ *
+ * <p>The pipelines of channels and chaincodes no longer configured are retired on refresh, once
+ * the events already queued on them are processed.
+ */
+@Slf4j
+@Component
+public class EventPipelines {
+
+  @Autowired private FabricProperties fabricProperties;
+
+  private final Map<PipelineKey, ThreadPoolExecutor> pipelines = new ConcurrentHashMap<>();
+
+  /**
+   * Queues a task on the pipeline of the key, creating the pipeline on first use.
+   *
+   * @param pipelineKey PipelineKey of the pipeline
+   * @param task Runnable processing an event
+   */
+  public void dispatch(PipelineKey pipelineKey, Runnable task) {
+    Runnable pipelineTask =
+        () -> {
+          try {
+            task.run();
+          } catch (Exception e) {
+            log.error("Failed to process event on pipeline {}", pipelineKey, e);
+          }
+        };
+    while (true) {
+      ThreadPoolExecutor pipeline = pipelines.computeIfAbsent(pipelineKey, this::createPipeline);
+      try {
+        pipeline.execute(pipelineTask);
+        return;
+      } catch (RejectedExecutionException e) {
+        // a pipeline retired concurrently is replaced, unless the pipelines are shut down
+        if (pipelines.get(pipelineKey) == pipeline) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  @EventListener(RefreshScopeRefreshedEvent.class)
+  public void onRefresh(RefreshScopeRefreshedEvent event) {
+    Set<PipelineKey> configuredKeys = configuredKeys();
+    for (PipelineKey pipelineKey : new ArrayList<>(pipelines.keySet())) {
+      if (!configuredKeys.contains(pipelineKey)) {
+        retire(pipelineKey);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pipelines.values().forEach(ThreadPoolExecutor::shutdown);
+  }
+
+  private void retire(PipelineKey pipelineKey) {
+    ThreadPoolExecutor pipeline = pipelines.remove(pipelineKey);
+    if (pipeline == null) {
+      return;
+    }
+    log.info("Retiring event pipeline {}", pipelineKey);
+    // the events already queued are still processed, then the pipeline thread terminates
+    pipeline.shutdown();
+  }
+
+  private Set<PipelineKey> configuredKeys() {
+    Set<PipelineKey> configuredKeys = new HashSet<>();
+    FabricProperties.Events events = fabricProperties.getEvents();
+    if (events == null) {
+      return configuredKeys;
+    }
+    if (events.getBlockDetails() != null) {
+      events
+          .getBlockDetails()
+          .forEach(
+              blockDetails -> configuredKeys.add(PipelineKey.block(blockDetails.getChannelName())));
+    }
+    if (events.getChaincodeDetails() != null) {
+      events
+          .getChaincodeDetails()
+          .forEach(
+              chaincodeDetails ->
+                  configuredKeys.add(
+                      PipelineKey.chaincode(
+                          chaincodeDetails.getChannelName(), chaincodeDetails.getChaincodeId())));
+    }
+    return configuredKeys;
+  }
+
+  private ThreadPoolExecutor createPipeline(PipelineKey pipelineKey) {
+    int queueCapacity =
+        fabricProperties.getEvents() != null
+            ? fabricProperties.getEvents().getPipelineQueueCapacity()
+            : 10000;
+    log.info("Creating event pipeline {} with queue capacity {}", pipelineKey, queueCapacity);
+
+    return new ThreadPoolExecutor(
+        1,
+        1,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "event-pipeline-" + pipelineKey);
+          thread.setDaemon(true);
+          return thread;
+        },
+        (runnable, executor) -> {
+          if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Event pipeline " + pipelineKey + " is shut down");
+          }
+          try {
+            executor.getQueue().put(runnable);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(
+                "Interrupted while queueing event on pipeline " + pipelineKey, e);
+          }
+        });
+  }
+
+  /**
+   * Key of a pipeline, either the blocks of a channel or the events of a chaincode on a channel.
+   * Channel and chaincode names are kept apart, so that no two pipelines share a key whatever the
+   * names contain.
+   */
+  @Getter
+  @EqualsAndHashCode
+  @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+  public static final class PipelineKey {
+
+    private final String channelName;
+
+    // null for the block pipeline of the channel
+    private final String chaincodeId;
+
+    public static PipelineKey block(String channelName) {
+      return new PipelineKey(channelName, null);
+    }
+
+    public static PipelineKey chaincode(String channelName, String chaincodeId) {
+      return new PipelineKey(channelName, chaincodeId);
+    }
+
+    @Override
+    public String toString() {
+      return chaincodeId == null
+          ? "block/" + channelName
+          : "chaincode/" + channelName + "/" + chaincodeId;
+    }
+  }
+}
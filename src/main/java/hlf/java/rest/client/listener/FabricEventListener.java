@@ -1,9 +1,11 @@
 package hlf.java.rest.client.listener;
 
 import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.service.BlockCheckpointStore;
 import hlf.java.rest.client.service.HFClientWrapper;
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.hyperledger.fabric.gateway.Contract;
 import org.hyperledger.fabric.gateway.Gateway;
@@ -37,6 +39,9 @@ public class FabricEventListener {
 
   @Autowired private ChaincodeEventListener chaincodeEventService;
 
+  @Autowired(required = false)
+  private BlockCheckpointStore blockCheckpointStore;
+
   @EventListener
   public void handleEvent(ContextRefreshedEvent event)
       throws InvalidArgumentException, TransactionException, IOException, ClassNotFoundException {
@@ -71,9 +76,12 @@ public class FabricEventListener {
             Channel newChannel =
                 hfClientWrapper.getHfClient().deSerializeChannel(channel.serializeChannel());
             log.info("Channel {} is initialized {}", channelName, newChannel.isInitialized());
+            Optional<Long> lastPublishedBlock = getLastPublishedBlock(channelName);
             for (Peer peer : channel.getPeers()) {
               Channel.PeerOptions options = channel.getPeersOptions(peer);
               options.registerEventsForPrivateData();
+              // resumes from the block following the last checkpointed one instead of the newest
+              lastPublishedBlock.ifPresent(blockNumber -> options.startEvents(blockNumber + 1));
               Peer newPeer =
                   hfClientWrapper
                       .getHfClient()
@@ -96,7 +104,15 @@ public class FabricEventListener {
           Network network = gateway.getNetwork(chaincodeDetail.getChannelName());
           Contract contract = network.getContract(chaincodeDetail.getChaincodeId());
 
-          contract.addContractListener(chaincodeEventService::chaincodeEventListener);
+          Optional<Long> lastPublishedBlock =
+              getLastPublishedBlock(
+                  chaincodeDetail.getChannelName(), chaincodeDetail.getChaincodeId());
+          if (lastPublishedBlock.isPresent()) {
+            contract.addContractListener(
+                lastPublishedBlock.get() + 1, chaincodeEventService::chaincodeEventListener);
+          } else {
+            contract.addContractListener(chaincodeEventService::chaincodeEventListener);
+          }
         }
       } else if (!CollectionUtils.isEmpty(chaincodeChannelNames)) {
         throw new InvalidArgumentException("Chaincode details are missing in the configuration");
@@ -107,4 +123,32 @@ public class FabricEventListener {
       throw ex;
     }
   }
+
+  private Optional<Long> getLastPublishedBlock(String channelName) {
+    if (blockCheckpointStore == null) {
+      return Optional.empty();
+    }
+    Optional<Long> lastPublishedBlock = blockCheckpointStore.getLastPublishedBlock(channelName);
+    lastPublishedBlock.ifPresent(
+        blockNumber ->
+            log.info(
+                "Resuming block events of channel {} from block {}", channelName, blockNumber + 1));
+    return lastPublishedBlock;
+  }
+
+  private Optional<Long> getLastPublishedBlock(String channelName, String chaincodeId) {
+    if (blockCheckpointStore == null) {
+      return Optional.empty();
+    }
+    Optional<Long> lastPublishedBlock =
+        blockCheckpointStore.getLastPublishedBlock(channelName, chaincodeId);
+    lastPublishedBlock.ifPresent(
+        blockNumber ->
+            log.info(
+                "Resuming events of chaincode {} on channel {} from block {}",
+                chaincodeId,
+                channelName,
+                blockNumber + 1));
+    return lastPublishedBlock;
+  }
 }
@@ -1,21 +1,40 @@
 package hlf.java.rest.client.listener;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ErrorConstants;
+import hlf.java.rest.client.exception.FabricTransactionException;
 import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
 import hlf.java.rest.client.metrics.EmitCustomTransactionListenerMetrics;
+import hlf.java.rest.client.model.ClientResponseModel;
 import hlf.java.rest.client.model.MultiDataTransactionPayload;
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import hlf.java.rest.client.service.BatchTransactionService;
+import hlf.java.rest.client.service.TransactionCoalescer;
 import hlf.java.rest.client.service.TransactionFulfillment;
 import hlf.java.rest.client.util.FabricClientConstants;
+import hlf.java.rest.client.util.PayloadLogger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.header.Header;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 
 /*
@@ -27,9 +46,26 @@ public class TransactionConsumer {
 
   private static final String PAYLOAD_KIND = "payload_kind";
   private static final String PL_KIND_MULTI_DATA = "multi_data";
+  private static final String PL_KIND_BATCH = "batch";
+  private static final TypeReference<List<TransactionInvocation>> BATCH_PAYLOAD_TYPE =
+      new TypeReference<List<TransactionInvocation>>() {};
+  // Bounds the failed batch Records whose committed transactions are remembered for their retry
+  private static final int MAX_RETRIED_BATCHES = 1000;
+  private static final long RETRIED_BATCH_RETENTION_IN_MINUTES = 60;
 
   @Autowired private TransactionFulfillment transactionFulfillment;
+  @Autowired private BatchTransactionService batchTransactionService;
+  @Autowired private TransactionCoalescer transactionCoalescer;
   @Autowired private ObjectMapper objectMapper;
+  @Autowired private PayloadLogger payloadLogger;
+
+  // Results of the committed transactions of failed batch Records, by topic, partition and offset
+  private final Cache<List<Object>, Map<Integer, TransactionInvocationResult>>
+      committedBatchResults =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_RETRIED_BATCHES)
+              .expireAfterWrite(RETRIED_BATCH_RETENTION_IN_MINUTES, TimeUnit.MINUTES)
+              .build();
 
   /**
    * This method routes the kafka messages to appropriate methods and acknowledges once processing
@@ -39,134 +75,53 @@ public class TransactionConsumer {
    */
   @EmitCustomTransactionListenerMetrics
   public void listen(ConsumerRecord<String, String> message) {
-    log.info(
-        "Incoming Message details : Topic : "
-            + message.topic()
-            + ", partition : "
-            + message.partition()
-            + " , offset : "
-            + message.offset()
-            + " , message :"
-            + message.value());
-
-    Header[] kafkaHeaders = message.headers().toArray();
-
-    String networkName = "";
-    String contractName = "";
-    String transactionFunctionName = "";
-    String transactionParams = "";
-    String peerNames = "";
-    String transientKey = "";
-    String collections = "";
-    String payloadKind = "";
-
     try {
-      if (!message.value().isEmpty()) {
-        transactionParams = message.value();
-      }
+      InboundTransaction inboundTransaction = parseInboundTransaction(message);
 
-      for (Header msgHeader : kafkaHeaders) {
-        log.info(
-            "Header-Key : "
-                + msgHeader.key()
-                + " Header-Value: "
-                + new String(msgHeader.value(), StandardCharsets.UTF_8));
-        switch (msgHeader.key()) {
-          case FabricClientConstants.CHANNEL_NAME:
-            networkName = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case FabricClientConstants.CHAINCODE_NAME:
-            contractName = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case FabricClientConstants.FUNCTION_NAME:
-            transactionFunctionName = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case FabricClientConstants.PEER_LIST:
-            peerNames = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case FabricClientConstants.FABRIC_TRANSIENT_KEY:
-            transientKey = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case FabricClientConstants.FABRIC_COLLECTION_NAME:
-            collections = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          case PAYLOAD_KIND:
-            payloadKind = new String(msgHeader.value(), StandardCharsets.UTF_8);
-            break;
-          default:
-            break;
-        }
+      if (inboundTransaction.isBatchTransaction()) {
+        toBatchResponse(submitBatch(message, inboundTransaction).join());
+        return;
       }
 
-      if (isIdentifiableFunction(networkName, contractName, transactionFunctionName)
-          && payloadKind.equals(PL_KIND_MULTI_DATA)) {
-
-        MultiDataTransactionPayload multiDataTransactionPayload;
-
-        try {
-          multiDataTransactionPayload =
-              objectMapper.readValue(transactionParams, MultiDataTransactionPayload.class);
-        } catch (Exception e) {
-          throw new UnrecognizedTransactionPayloadException(
-              ErrorCode.VALIDATION_FAILED, "Invalid transaction payload provided");
-        }
-
+      if (inboundTransaction.isMultiDataTransaction()) {
         transactionFulfillment.writeMultiDataTransactionToLedger(
-            networkName, contractName, transactionFunctionName, multiDataTransactionPayload);
-
+            inboundTransaction.networkName,
+            inboundTransaction.contractName,
+            inboundTransaction.transactionFunctionName,
+            readMultiDataTransactionPayload(inboundTransaction));
         return;
       }
 
-      if (isIdentifiableFunction(networkName, contractName, transactionFunctionName)
-          && !transactionParams.isEmpty()) {
-
-        if (!peerNames.isEmpty()) {
-          List<String> lstPeerNames = Arrays.asList(peerNames.split(","));
-          if (!lstPeerNames.isEmpty()) {
-            if (StringUtils.isNotBlank(collections) && StringUtils.isNotBlank(transientKey)) {
-              transactionFulfillment.writePrivateTransactionToLedger(
-                  networkName,
-                  contractName,
-                  transactionFunctionName,
-                  collections,
-                  transientKey,
-                  Optional.ofNullable(lstPeerNames),
-                  transactionParams);
-            } else {
-              transactionFulfillment.writeTransactionToLedger(
-                  networkName,
-                  contractName,
-                  transactionFunctionName,
-                  Optional.ofNullable(lstPeerNames),
-                  transactionParams);
-            }
-          }
+      if (inboundTransaction.isPrivateTransaction()) {
+        if (inboundTransaction.peerNames.isPresent()) {
+          transactionFulfillment.writePrivateTransactionToLedger(
+              inboundTransaction.networkName,
+              inboundTransaction.contractName,
+              inboundTransaction.transactionFunctionName,
+              inboundTransaction.collections,
+              inboundTransaction.transientKey,
+              inboundTransaction.peerNames,
+              inboundTransaction.transactionParams);
         } else {
-          if (StringUtils.isNotBlank(collections) && StringUtils.isNotBlank(transientKey)) {
-            transactionFulfillment.writePrivateTransactionToLedger(
-                networkName,
-                contractName,
-                transactionFunctionName,
-                collections,
-                transientKey,
-                transactionParams);
-          } else {
-            transactionFulfillment.writeTransactionToLedger(
-                networkName,
-                contractName,
-                transactionFunctionName,
-                Optional.empty(),
-                transactionParams);
-          }
+          transactionFulfillment.writePrivateTransactionToLedger(
+              inboundTransaction.networkName,
+              inboundTransaction.contractName,
+              inboundTransaction.transactionFunctionName,
+              inboundTransaction.collections,
+              inboundTransaction.transientKey,
+              inboundTransaction.transactionParams);
         }
-
-      } else {
-        log.error("Incorrect Transaction Payload");
-        throw new UnrecognizedTransactionPayloadException(
-            ErrorCode.VALIDATION_FAILED,
-            "Inbound transaction format is incorrect or doesn't contain valid parameters.");
+        return;
       }
 
+      // coalesced functions are not held back here, there are no other Records to wait for
+      transactionFulfillment.writeTransactionToLedger(
+          inboundTransaction.networkName,
+          inboundTransaction.contractName,
+          inboundTransaction.transactionFunctionName,
+          inboundTransaction.peerNames,
+          inboundTransaction.transactionParams);
+
     } catch (Exception exception) {
       log.error("Error in Submitting Transaction - Exception - " + exception.getMessage());
       /*
@@ -177,8 +132,329 @@ public class TransactionConsumer {
     }
   }
 
-  private boolean isIdentifiableFunction(
-      String networkName, String contractName, String transactionFunctionName) {
-    return !networkName.isEmpty() && !contractName.isEmpty() && !transactionFunctionName.isEmpty();
+  /**
+   * Asynchronous variant of {@link #listen(ConsumerRecord)}. The calling thread is released once
+   * the transaction is accepted by the orderer, and the returned future completes when the
+   * transaction is committed to the ledger.
+   *
+   * @param message ConsumerRecord payload from upstream system
+   * @return future completing on commit, or exceptionally if the Record could not be processed
+   */
+  @EmitCustomTransactionListenerMetrics
+  public CompletableFuture<ResponseEntity<ClientResponseModel>> listenAsync(
+      ConsumerRecord<String, String> message) {
+    CompletableFuture<ResponseEntity<ClientResponseModel>> submission;
+
+    try {
+      InboundTransaction inboundTransaction = parseInboundTransaction(message);
+
+      if (inboundTransaction.isBatchTransaction()) {
+        submission =
+            submitBatch(message, inboundTransaction)
+                .thenApply(TransactionConsumer::toBatchResponse);
+      } else if (inboundTransaction.isMultiDataTransaction()) {
+        submission =
+            transactionFulfillment.writeMultiDataTransactionToLedgerAsync(
+                inboundTransaction.networkName,
+                inboundTransaction.contractName,
+                inboundTransaction.transactionFunctionName,
+                readMultiDataTransactionPayload(inboundTransaction));
+      } else if (inboundTransaction.isPrivateTransaction()) {
+        submission =
+            transactionFulfillment.writePrivateTransactionToLedgerAsync(
+                inboundTransaction.networkName,
+                inboundTransaction.contractName,
+                inboundTransaction.transactionFunctionName,
+                inboundTransaction.collections,
+                inboundTransaction.transientKey,
+                inboundTransaction.peerNames,
+                inboundTransaction.transactionParams);
+      } else if (isCoalesced(inboundTransaction)) {
+        submission = coalesce(message, inboundTransaction);
+      } else {
+        submission =
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                inboundTransaction.networkName,
+                inboundTransaction.contractName,
+                inboundTransaction.transactionFunctionName,
+                inboundTransaction.peerNames,
+                inboundTransaction.transactionParams);
+      }
+    } catch (Exception exception) {
+      submission = new CompletableFuture<>();
+      submission.completeExceptionally(exception);
+    }
+
+    return submission.whenComplete(
+        (response, throwable) -> {
+          if (throwable != null) {
+            log.error("Error in Submitting Transaction - Exception - " + throwable.getMessage());
+          }
+        });
+  }
+
+  /**
+   * Decodes the recognised routing headers of the Record, each exactly once, into the routing
+   * record. Other headers are neither decoded nor logged.
+   */
+  private InboundTransaction parseInboundTransaction(ConsumerRecord<String, String> message) {
+    InboundTransaction inboundTransaction = new InboundTransaction();
+    String peerNames = "";
+
+    if (!message.value().isEmpty()) {
+      inboundTransaction.transactionParams = message.value();
+    }
+
+    for (Header msgHeader : message.headers()) {
+      switch (msgHeader.key()) {
+        case FabricClientConstants.CHANNEL_NAME:
+          inboundTransaction.networkName = decodeHeader(msgHeader);
+          break;
+        case FabricClientConstants.CHAINCODE_NAME:
+          inboundTransaction.contractName = decodeHeader(msgHeader);
+          break;
+        case FabricClientConstants.FUNCTION_NAME:
+          inboundTransaction.transactionFunctionName = decodeHeader(msgHeader);
+          break;
+        case FabricClientConstants.PEER_LIST:
+          peerNames = decodeHeader(msgHeader);
+          break;
+        case FabricClientConstants.FABRIC_TRANSIENT_KEY:
+          inboundTransaction.transientKey = decodeHeader(msgHeader);
+          break;
+        case FabricClientConstants.FABRIC_COLLECTION_NAME:
+          inboundTransaction.collections = decodeHeader(msgHeader);
+          break;
+        case PAYLOAD_KIND:
+          inboundTransaction.payloadKind = decodeHeader(msgHeader);
+          break;
+        default:
+          break;
+      }
+    }
+
+    log.info(
+        "Incoming Message details : Topic : {}, partition : {}, offset : {}, channel : {}, chaincode : {}, function : {}, peers : {}, collection : {}, payload_kind : {}",
+        message.topic(),
+        message.partition(),
+        message.offset(),
+        inboundTransaction.networkName,
+        inboundTransaction.contractName,
+        inboundTransaction.transactionFunctionName,
+        peerNames,
+        inboundTransaction.collections,
+        inboundTransaction.payloadKind);
+    payloadLogger.log(
+        log,
+        "Incoming Message payload for Topic : {}, partition : {}, offset : {} : {}",
+        message.value(),
+        message.topic(),
+        message.partition(),
+        message.offset());
+
+    if (!peerNames.isEmpty()) {
+      inboundTransaction.peerNames = Optional.of(Arrays.asList(peerNames.split(",")));
+    }
+
+    if (!inboundTransaction.isIdentifiableFunction()
+        || (!inboundTransaction.isMultiDataTransaction()
+            && inboundTransaction.transactionParams.isEmpty())) {
+      log.error("Incorrect Transaction Payload");
+      throw new UnrecognizedTransactionPayloadException(
+          ErrorCode.VALIDATION_FAILED,
+          "Inbound transaction format is incorrect or doesn't contain valid parameters.");
+    }
+
+    return inboundTransaction;
+  }
+
+  private static String decodeHeader(Header header) {
+    return header.value() != null ? new String(header.value(), StandardCharsets.UTF_8) : "";
+  }
+
+  /**
+   * Submits the transactions of a batch Record. The Record fails if any of its transactions fails,
+   * in which case the committed transactions are remembered, so that a retry of the Record by this
+   * connector only submits the transactions that did not commit.
+   */
+  private CompletableFuture<List<TransactionInvocationResult>> submitBatch(
+      ConsumerRecord<String, String> message, InboundTransaction inboundTransaction) {
+    List<TransactionInvocation> invocations;
+    try {
+      invocations =
+          objectMapper.readValue(inboundTransaction.transactionParams, BATCH_PAYLOAD_TYPE);
+    } catch (Exception e) {
+      throw new UnrecognizedTransactionPayloadException(
+          ErrorCode.VALIDATION_FAILED, "Invalid batch transaction payload provided");
+    }
+
+    Optional<String> defaultFunctionName =
+        Optional.ofNullable(StringUtils.trimToNull(inboundTransaction.transactionFunctionName));
+    List<Object> recordKey = Arrays.asList(message.topic(), message.partition(), message.offset());
+    Map<Integer, TransactionInvocationResult> committedResults =
+        committedBatchResults.getIfPresent(recordKey);
+    if (committedResults == null) {
+      return batchTransactionService
+          .submitBatch(
+              inboundTransaction.networkName,
+              inboundTransaction.contractName,
+              defaultFunctionName,
+              inboundTransaction.peerNames,
+              invocations,
+              result -> {})
+          .thenApply(results -> rememberCommitted(recordKey, results));
+    }
+
+    TransactionInvocationResult[] results = new TransactionInvocationResult[invocations.size()];
+    List<Integer> pendingIndices = new ArrayList<>();
+    List<TransactionInvocation> pendingInvocations = new ArrayList<>();
+    for (int index = 0; index < invocations.size(); index++) {
+      results[index] = committedResults.get(index);
+      if (results[index] == null) {
+        pendingIndices.add(index);
+        pendingInvocations.add(invocations.get(index));
+      }
+    }
+    log.info(
+        "Retry of batch Record of Topic : {}, partition : {}, offset : {} skips {} committed"
+            + " transactions",
+        message.topic(),
+        message.partition(),
+        message.offset(),
+        invocations.size() - pendingInvocations.size());
+    if (pendingInvocations.isEmpty()) {
+      return CompletableFuture.completedFuture(
+          rememberCommitted(recordKey, Arrays.asList(results)));
+    }
+
+    return batchTransactionService
+        .submitBatch(
+            inboundTransaction.networkName,
+            inboundTransaction.contractName,
+            defaultFunctionName,
+            inboundTransaction.peerNames,
+            pendingInvocations,
+            result -> {})
+        .thenApply(
+            pendingResults -> {
+              for (TransactionInvocationResult result : pendingResults) {
+                result.setIndex(pendingIndices.get(result.getIndex()));
+                results[result.getIndex()] = result;
+              }
+              return rememberCommitted(recordKey, Arrays.asList(results));
+            });
+  }
+
+  /** Remembers the committed transactions of a failed batch Record, for the retry of the Record. */
+  private List<TransactionInvocationResult> rememberCommitted(
+      List<Object> recordKey, List<TransactionInvocationResult> results) {
+    Map<Integer, TransactionInvocationResult> committedResults = new HashMap<>();
+    for (TransactionInvocationResult result : results) {
+      if (result.getStatus() == TransactionInvocationResult.Status.COMMITTED) {
+        committedResults.put(result.getIndex(), result);
+      }
+    }
+    if (committedResults.size() < results.size()) {
+      committedBatchResults.put(recordKey, committedResults);
+    } else {
+      committedBatchResults.invalidate(recordKey);
+    }
+    return results;
+  }
+
+  private static ResponseEntity<ClientResponseModel> toBatchResponse(
+      List<TransactionInvocationResult> results) {
+    List<TransactionInvocationResult> failedResults =
+        results.stream()
+            .filter(result -> result.getStatus() == TransactionInvocationResult.Status.FAILED)
+            .collect(Collectors.toList());
+    if (!failedResults.isEmpty()) {
+      throw new FabricTransactionException(
+          ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+          failedResults.size()
+              + " of "
+              + results.size()
+              + " transactions of the batch failed, first failure at index "
+              + failedResults.get(0).getIndex()
+              + ": "
+              + failedResults.get(0).getMessage());
+    }
+    return new ResponseEntity<>(
+        new ClientResponseModel(ErrorConstants.NO_ERROR, new ArrayList<>(results)), HttpStatus.OK);
+  }
+
+  private boolean isCoalesced(InboundTransaction inboundTransaction) {
+    return transactionCoalescer.isCoalesced(
+        inboundTransaction.networkName,
+        inboundTransaction.contractName,
+        inboundTransaction.transactionFunctionName);
+  }
+
+  /**
+   * Hands the Record over to the coalescer. The Record is acknowledged with the other Records of
+   * its poll once its share of the batch result is committed, and fails if the batch fails.
+   */
+  private CompletableFuture<ResponseEntity<ClientResponseModel>> coalesce(
+      ConsumerRecord<String, String> message, InboundTransaction inboundTransaction) {
+    return transactionCoalescer
+        .writeTransactionToLedger(
+            inboundTransaction.networkName,
+            inboundTransaction.contractName,
+            inboundTransaction.transactionFunctionName,
+            inboundTransaction.peerNames,
+            inboundTransaction.transactionParams)
+        .whenComplete(
+            (response, throwable) -> {
+              if (throwable == null) {
+                log.info(
+                    "Record of Topic : {}, partition : {}, offset : {} committed in a coalesced"
+                        + " batch",
+                    message.topic(),
+                    message.partition(),
+                    message.offset());
+              }
+            });
+  }
+
+  private MultiDataTransactionPayload readMultiDataTransactionPayload(
+      InboundTransaction inboundTransaction) {
+    try {
+      return objectMapper.readValue(
+          inboundTransaction.transactionParams, MultiDataTransactionPayload.class);
+    } catch (Exception e) {
+      throw new UnrecognizedTransactionPayloadException(
+          ErrorCode.VALIDATION_FAILED, "Invalid transaction payload provided");
+    }
+  }
+
+  /** Routing details of an inbound transaction Record, decoded from its headers and value. */
+  private static class InboundTransaction {
+    private String networkName = "";
+    private String contractName = "";
+    private String transactionFunctionName = "";
+    private String transactionParams = "";
+    private Optional<List<String>> peerNames = Optional.empty();
+    private String transientKey = "";
+    private String collections = "";
+    private String payloadKind = "";
+
+    private boolean isIdentifiableFunction() {
+      // the transactions of a batch may each name their function
+      return !networkName.isEmpty()
+          && !contractName.isEmpty()
+          && (!transactionFunctionName.isEmpty() || isBatchTransaction());
+    }
+
+    private boolean isBatchTransaction() {
+      return payloadKind.equals(PL_KIND_BATCH);
+    }
+
+    private boolean isMultiDataTransaction() {
+      return payloadKind.equals(PL_KIND_MULTI_DATA);
+    }
+
+    private boolean isPrivateTransaction() {
+      return StringUtils.isNotBlank(collections) && StringUtils.isNotBlank(transientKey);
+    }
   }
 }
@@ -5,6 +5,8 @@ import hlf.java.rest.client.exception.FabricTransactionException;
 import hlf.java.rest.client.exception.ServiceException;
 import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
 import io.micrometer.core.instrument.Counter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -33,25 +35,48 @@ public class EmitCustomTransactionListenerMetricsAspect {
   @Around("@annotation(" + ANNOTATION_NAME + ")")
   public Object interceptedKafkaMetricsEmissionAdvice(ProceedingJoinPoint proceedingJoinPoint)
       throws Throwable {
+    Object returnValue;
     try {
-      Object returnValue = proceedingJoinPoint.proceed();
-      customKafkaSuccessCounter.increment();
-      return returnValue;
-    } catch (UnrecognizedTransactionPayloadException e) {
+      returnValue = proceedingJoinPoint.proceed();
+    } catch (RuntimeException e) {
+      recordFailure(e);
+      throw e;
+    }
+
+    // Asynchronous listeners are accounted for once the returned future completes
+    if (returnValue instanceof CompletableFuture) {
+      return ((CompletableFuture<?>) returnValue)
+          .whenComplete(
+              (result, throwable) -> {
+                if (throwable == null) {
+                  customKafkaSuccessCounter.increment();
+                } else {
+                  recordFailure(
+                      throwable instanceof CompletionException && throwable.getCause() != null
+                          ? throwable.getCause()
+                          : throwable);
+                }
+              });
+    }
+
+    customKafkaSuccessCounter.increment();
+    return returnValue;
+  }
+
+  private void recordFailure(Throwable throwable) {
+    if (throwable instanceof UnrecognizedTransactionPayloadException) {
       invalidInboundTransactionMessageCounter.increment();
       inboundTxnProcessingFailureCounter.increment();
-      throw e;
-    } catch (FabricTransactionException e) {
+    } else if (throwable instanceof FabricTransactionException) {
       inboundTxnProcessingFailureCounter.increment();
-      if (e.getCode().equals(ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_CONTRACT_ERROR)) {
+      ErrorCode errorCode = ((FabricTransactionException) throwable).getCode();
+      if (errorCode.equals(ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_CONTRACT_ERROR)) {
         inboundTxnContractExceptionCounter.increment();
-      } else if (e.getCode().equals(ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_TIMEOUT_ERROR)) {
+      } else if (errorCode.equals(ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_TIMEOUT_ERROR)) {
         inboundTxnTimeoutExceptionCounter.increment();
       }
-      throw e;
-    } catch (ServiceException e) {
+    } else if (throwable instanceof ServiceException) {
       inboundTxnProcessingFailureCounter.increment();
-      throw e;
     }
   }
 }
@@ -0,0 +1,41 @@
+package hlf.java.rest.client.model;
+
+/** The event of a transaction of a block, along with the facts published as its headers. */
+public class BlockTransactionEvent {
+
+  private final String transactionId;
+  private final String chaincodeName;
+  private final String functionName;
+  private final EncodedBlockEvent encodedEvent;
+
+  public BlockTransactionEvent(
+      String transactionId,
+      String chaincodeName,
+      String functionName,
+      EncodedBlockEvent encodedEvent) {
+    this.transactionId = transactionId;
+    this.chaincodeName = chaincodeName;
+    this.functionName = functionName;
+    this.encodedEvent = encodedEvent;
+  }
+
+  /** @return the ID of the transaction */
+  public String getTransactionId() {
+    return transactionId;
+  }
+
+  /** @return the name of the chaincode invoked by the transaction */
+  public String getChaincodeName() {
+    return chaincodeName;
+  }
+
+  /** @return the name of the chaincode function invoked by the transaction */
+  public String getFunctionName() {
+    return functionName;
+  }
+
+  /** @return the encoded event of the transaction */
+  public EncodedBlockEvent getEncodedEvent() {
+    return encodedEvent;
+  }
+}
@@ -0,0 +1,23 @@
+package hlf.java.rest.client.model;
+
+/** A block event encoded for publishing, along with the facts published as its headers. */
+public class EncodedBlockEvent {
+
+  private final byte[] payload;
+  private final boolean privateDataPresent;
+
+  public EncodedBlockEvent(byte[] payload, boolean privateDataPresent) {
+    this.payload = payload;
+    this.privateDataPresent = privateDataPresent;
+  }
+
+  /** @return the encoded event structure */
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  /** @return whether the transaction wrote private data */
+  public boolean isPrivateDataPresent() {
+    return privateDataPresent;
+  }
+}
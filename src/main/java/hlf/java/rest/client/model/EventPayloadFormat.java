@@ -0,0 +1,9 @@
+package hlf.java.rest.client.model;
+
+/** Wire format of the payload of outbound block and chaincode events. */
+public enum EventPayloadFormat {
+  /** The JSON event structure. */
+  JSON,
+  /** The protobuf envelopes described by proto/events.proto, carrying the Fabric write-sets. */
+  PROTOBUF
+}
@@ -0,0 +1,32 @@
+package hlf.java.rest.client.model;
+
+import java.io.Serializable;
+import lombok.Builder;
+import lombok.Data;
+
+/** State of an event replay job, as reported by the replay endpoints. */
+@Data
+@Builder
+public class ReplayJobStatus implements Serializable {
+
+  private static final long serialVersionUID = 4177306253941618925L;
+
+  public enum State {
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+  }
+
+  private String jobId;
+  private String channelName;
+  private String eventType;
+  private long startBlockNumber;
+  private long endBlockNumber;
+  private State state;
+  private long replayedBlocks;
+  private double blocksPerSecond;
+  private String startedAt;
+  private String finishedAt;
+  private String failureReason;
+}
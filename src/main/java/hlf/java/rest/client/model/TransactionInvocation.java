@@ -0,0 +1,25 @@
+package hlf.java.rest.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.Serializable;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A transaction of a batch submitted to the ledger. The function defaults to the function of the
+ * batch, and a payload that is not a JSON string is passed to the chaincode as its JSON text.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransactionInvocation implements Serializable {
+
+  private static final long serialVersionUID = -3381729365604717420L;
+
+  private String id;
+  private String function;
+  private List<String> peers;
+  private String collection;
+  private String transientKey;
+  private JsonNode payload;
+}
@@ -0,0 +1,24 @@
+package hlf.java.rest.client.model;
+
+import java.io.Serializable;
+import lombok.Builder;
+import lombok.Data;
+
+/** Outcome of a transaction of a batch, reported once it is committed or has failed. */
+@Data
+@Builder
+public class TransactionInvocationResult implements Serializable {
+
+  private static final long serialVersionUID = 6720457317458249012L;
+
+  public enum Status {
+    COMMITTED,
+    FAILED
+  }
+
+  private int index;
+  private String id;
+  private Status status;
+  private Integer code;
+  private Serializable message;
+}
@@ -0,0 +1,37 @@
+package hlf.java.rest.client.service;
+
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Submits a batch of transactions to the ledger through a bounded pipeline. A bounded number of
+ * transactions are endorsed and sent to the orderer concurrently, while the commits are awaited
+ * without holding a thread, so that a batch is not submitted one transaction after the other.
+ */
+public interface BatchTransactionService {
+
+  /**
+   * Starts the submission of a batch. The batch is validated as a whole before any of its
+   * transactions is submitted.
+   *
+   * @param networkName String channel name
+   * @param contractName String chaincode name
+   * @param defaultFunctionName Optional function of the transactions that do not name their own
+   * @param defaultPeerNames Optional endorsing peers of the transactions that do not name their own
+   * @param invocations List of the transactions of the batch
+   * @param resultConsumer Consumer of the result of each transaction, in the order they commit or
+   *     fail, invoked from the submitting and committing threads
+   * @return a future completed with the results of all transactions, in the order of the batch
+   */
+  CompletableFuture<List<TransactionInvocationResult>> submitBatch(
+      String networkName,
+      String contractName,
+      Optional<String> defaultFunctionName,
+      Optional<List<String>> defaultPeerNames,
+      List<TransactionInvocation> invocations,
+      Consumer<TransactionInvocationResult> resultConsumer);
+}
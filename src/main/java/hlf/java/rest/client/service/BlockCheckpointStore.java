@@ -0,0 +1,44 @@
+package hlf.java.rest.client.service;
+
+import java.util.Optional;
+
+/**
+ * Holds the checkpoints of the blocks whose events are published, per channel for block events
+ * and per channel and chaincode for chaincode events.
+ */
+public interface BlockCheckpointStore {
+
+  /**
+   * @param channelName String name of the channel
+   * @return the number of the last block of the channel whose events are published, empty if no
+   *     block of the channel is checkpointed
+   */
+  Optional<Long> getLastPublishedBlock(String channelName);
+
+  /**
+   * @param channelName String name of the channel
+   * @param chaincodeId String ID of the chaincode
+   * @return the number of the last block whose events of the chaincode are all published, empty
+   *     if no block of the chaincode is checkpointed
+   */
+  Optional<Long> getLastPublishedBlock(String channelName, String chaincodeId);
+
+  /**
+   * Records that the events of the block are published. The checkpoint is written asynchronously,
+   * along with the other checkpoints recorded in the meantime.
+   *
+   * @param channelName String name of the channel
+   * @param blockNumber long number of the block
+   */
+  void checkpoint(String channelName, long blockNumber);
+
+  /**
+   * Records that the events of the chaincode in the block are all published. The checkpoint is
+   * written asynchronously, along with the other checkpoints recorded in the meantime.
+   *
+   * @param channelName String name of the channel
+   * @param chaincodeId String ID of the chaincode
+   * @param blockNumber long number of the block
+   */
+  void checkpoint(String channelName, String chaincodeId, long blockNumber);
+}
@@ -0,0 +1,27 @@
+package hlf.java.rest.client.service;
+
+import java.util.List;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * Resolves the endorsing peer names requested with a transaction to the {@link Peer} instances of
+ * the channel, through a per-channel index instead of a scan over the channel peers.
+ */
+public interface EndorsingPeerResolver {
+
+  /**
+   * @param network Network the transaction is submitted to
+   * @param peerNames List of requested endorsing peer names
+   * @return the peers of the channel matching the requested names, in request order. Names not
+   *     known to the channel are skipped.
+   */
+  List<Peer> resolveEndorsingPeers(Network network, List<String> peerNames);
+
+  /**
+   * Drops the peer index of a channel, so that it is rebuilt from the channel on next use.
+   *
+   * @param channelName String channel name
+   */
+  void invalidate(String channelName);
+}
@@ -8,14 +8,14 @@ public interface EventFulfillment {
   /**
    * Replay the blockchain events.
    *
-   * <p>Sends all the events from either the chaincode or the block itself since the specific block
-   * number.
+   * <p>Starts a job sending all the events from either the chaincode or the block itself since the
+   * specific block number.
    *
    * @param startBlockNumber Long since the block number for replaying the events
    * @param endBlockNumber Long until the block number
    * @param networkName String channel name
    * @param eventType String event type parameter
-   * @return responseEntity ResponseEntity Transaction Response
+   * @return responseEntity ResponseEntity with the state of the started replay job
    */
   ResponseEntity<ClientResponseModel> replayEvents(
       Long startBlockNumber,
@@ -23,4 +23,16 @@ public interface EventFulfillment {
       String transactionId,
       String networkName,
       String eventType);
+
+  /**
+   * @param jobId String ID of the replay job
+   * @return responseEntity ResponseEntity with the state and progress of the replay job
+   */
+  ResponseEntity<ClientResponseModel> getReplayJob(String jobId);
+
+  /**
+   * @param jobId String ID of the replay job
+   * @return responseEntity ResponseEntity with the state of the cancelled replay job
+   */
+  ResponseEntity<ClientResponseModel> cancelReplayJob(String jobId);
 }
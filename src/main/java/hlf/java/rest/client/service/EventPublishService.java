@@ -1,5 +1,8 @@
 package hlf.java.rest.client.service;
 
+import hlf.java.rest.client.model.BlockTransactionEvent;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 /**
@@ -10,14 +13,16 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 public interface EventPublishService {
 
   /**
-   * @param payload String message payload
+   * @param payload byte[] encoded message payload
    * @param fabricTxId String Fabric transaction ID
    * @param eventName String chaincode event-name
    * @param channelName String Name of the channel where the event was generated.
    * @param messageKey associated key for the payload.
+   * @return a future completed once the event is sent to all the topics of the chaincode, or
+   *     completed exceptionally if a send failed
    */
-  void publishChaincodeEvents(
-      final String payload,
+  CompletableFuture<Void> publishChaincodeEvents(
+      final byte[] payload,
       String chaincodeName,
       String fabricTxId,
       String eventName,
@@ -26,18 +31,41 @@ public interface EventPublishService {
       boolean isTxnValid);
 
   /**
-   * @param payload String message payload
+   * @param payload byte[] encoded message payload
    * @param fabricTxId String Fabric transaction ID
    * @param chaincodeName String chaincode name
    * @param channelName String Name of the channel where the event was generated.
    * @param functionName String Name of the function name.
    * @param isPrivateDataPresent boolean flag to check if privateData present in payload
+   * @return a future completed once the event is sent to all the topics of the channel, or
+   *     completed exceptionally if a send failed
    */
-  void publishBlockEvents(
-      final String payload,
+  CompletableFuture<Void> publishBlockEvents(
+      final byte[] payload,
       String fabricTxId,
       String channelName,
       String chaincodeName,
       String functionName,
       Boolean isPrivateDataPresent);
+
+  /**
+   * Flushes the producers of the topics the block events of the channel are published to, once all
+   * the events of a block are handed over, so that they are sent as a batch.
+   *
+   * @param channelName String Name of the channel where the block was generated.
+   * @param eventCount int number of events published for the block
+   */
+  void flushBlockEvents(String channelName, int eventCount);
+
+  /**
+   * Publishes the events of a block along with the checkpoint of the block in one Kafka
+   * transaction, so that either the events and the checkpoint are all committed or none is.
+   *
+   * @param channelName String Name of the channel where the block was generated.
+   * @param blockNumber long number of the block
+   * @param events List of the events of the transactions of the block, in block order
+   * @return whether the transaction was committed
+   */
+  boolean publishBlockEventsTransactionally(
+      String channelName, long blockNumber, List<BlockTransactionEvent> events);
 }
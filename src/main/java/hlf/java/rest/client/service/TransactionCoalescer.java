@@ -0,0 +1,41 @@
+package hlf.java.rest.client.service;
+
+import hlf.java.rest.client.model.ClientResponseModel;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Coalesces transactions calling the same chaincode function into a single transaction calling
+ * the batch sibling of the function, whose argument is the JSON array of the coalesced payloads.
+ */
+public interface TransactionCoalescer {
+
+  /**
+   * @param networkName String channel name
+   * @param contractName String chaincode name
+   * @param transactionFunctionName String function name in chaincode
+   * @return true if transactions calling the function are coalesced
+   */
+  boolean isCoalesced(String networkName, String contractName, String transactionFunctionName);
+
+  /**
+   * Adds a transaction to the pending batch of its function, which is submitted once full or once
+   * its delay elapses.
+   *
+   * @param networkName String channel name
+   * @param contractName String chaincode name
+   * @param transactionFunctionName String function name in chaincode
+   * @param peerNames Optional endorsing peers, transactions are coalesced per set of peers
+   * @param transactionParams String payload of the transaction
+   * @return a future completed with the share of the batch result of the transaction once the
+   *     batch is committed, or completed exceptionally if the batch fails
+   */
+  CompletableFuture<ResponseEntity<ClientResponseModel>> writeTransactionToLedger(
+      String networkName,
+      String contractName,
+      String transactionFunctionName,
+      Optional<List<String>> peerNames,
+      String transactionParams);
+}
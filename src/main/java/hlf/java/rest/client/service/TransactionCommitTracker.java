@@ -0,0 +1,38 @@
+package hlf.java.rest.client.service;
+
+import java.util.concurrent.CompletableFuture;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+
+/**
+ * Tracks the commit of submitted transactions through a single shared block listener per channel,
+ * so that a submitting thread need not wait for the commit of its transaction.
+ */
+public interface TransactionCommitTracker {
+
+  /**
+   * Registers a transaction for commit tracking. Must be invoked before the transaction is sent to
+   * the orderer, so that the commit event is not missed. Waits for a slot while the in-flight
+   * window is full.
+   *
+   * @param network Network the transaction is submitted to
+   * @param transactionId String Fabric transaction ID
+   * @return a future completed with the transaction event once the transaction is committed as
+   *     valid, or completed exceptionally if it is invalidated or the commit timeout elapses
+   * @throws hlf.java.rest.client.exception.FabricTransactionException if the in-flight window
+   *     stays full for the in-flight wait timeout, in which case the transaction should not be
+   *     submitted
+   */
+  CompletableFuture<BlockEvent.TransactionEvent> trackCommit(
+      Network network, String transactionId);
+
+  /**
+   * Stops tracking a transaction, typically because its submission failed.
+   *
+   * @param transactionId String Fabric transaction ID
+   */
+  void cancel(String transactionId);
+
+  /** @return number of transactions awaiting their commit event */
+  int getInFlightCount();
+}
@@ -5,6 +5,7 @@ import hlf.java.rest.client.model.EventAPIResponseModel;
 import hlf.java.rest.client.model.MultiDataTransactionPayload;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.hyperledger.fabric.gateway.ContractException;
 import org.hyperledger.fabric.gateway.GatewayRuntimeException;
 import org.springframework.http.ResponseEntity;
@@ -161,4 +162,61 @@ public interface TransactionFulfillment {
       String chaincodeName,
       String transactionFunctionName,
       MultiDataTransactionPayload multiDataTransactionPayload);
+
+  /**
+   * Asynchronous variant of {@link #writeTransactionToLedger(String, String, String, Optional,
+   * String...)}. The calling thread is held only until the endorsed transaction is accepted by the
+   * orderer; the returned future completes once the transaction is committed.
+   *
+   * @param networkName String channel name
+   * @param contractName String chaincode name
+   * @param transactionFunctionName String function name in chaincode
+   * @param peerNames List of String type peer name for endorsement
+   * @param transactionParams String[] String array for arguments to the chaincode.
+   * @return future of the Transaction Response, completed on commit
+   */
+  CompletableFuture<ResponseEntity<ClientResponseModel>> writeTransactionToLedgerAsync(
+      String networkName,
+      String contractName,
+      String transactionFunctionName,
+      Optional<List<String>> peerNames,
+      String... transactionParams);
+
+  /**
+   * Asynchronous variant of {@link #writePrivateTransactionToLedger(String, String, String, String,
+   * String, Optional, String)}.
+   *
+   * @param networkName String channel name
+   * @param contractName String chaincode name
+   * @param transactionFunctionName String function name in chaincode
+   * @param collection String Private Data collection
+   * @param transientKey String The key for the Transient Map
+   * @param peerNames List of String type peer name for endorsement
+   * @param jsonPayload String The arguments as Json Payload
+   * @return future of the Transaction Response, completed on commit
+   */
+  CompletableFuture<ResponseEntity<ClientResponseModel>> writePrivateTransactionToLedgerAsync(
+      String networkName,
+      String contractName,
+      String transactionFunctionName,
+      String collection,
+      String transientKey,
+      Optional<List<String>> peerNames,
+      String jsonPayload);
+
+  /**
+   * Asynchronous variant of {@link #writeMultiDataTransactionToLedger(String, String, String,
+   * MultiDataTransactionPayload)}.
+   *
+   * @param channelName String channel name
+   * @param chaincodeName String chaincode name
+   * @param transactionFunctionName String function name in chaincode
+   * @param multiDataTransactionPayload String The arguments as Json Payload
+   * @return future of the Transaction Response, completed on commit
+   */
+  CompletableFuture<ResponseEntity<ClientResponseModel>> writeMultiDataTransactionToLedgerAsync(
+      String channelName,
+      String chaincodeName,
+      String transactionFunctionName,
+      MultiDataTransactionPayload multiDataTransactionPayload);
 }
@@ -0,0 +1,238 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.BaseException;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
+import hlf.java.rest.client.model.ClientResponseModel;
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import hlf.java.rest.client.service.BatchTransactionService;
+import hlf.java.rest.client.service.TransactionFulfillment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+/**
+ * Submits the transactions of a batch on up to 'batchConcurrency' lanes of the batch lane executor.
+ * A lane endorses a transaction and sends it to the orderer, then moves on to the next transaction
+ * of the batch without waiting for the commit. The transactions of the batch are admitted against
+ * the in-flight window of the commit tracker, shared with the other asynchronous submissions, so a
+ * lane waits on the tracker for a free slot while the window is full.
+ *
+ * <p>A lane that finds no free thread is not started, and the batch runs on the lanes that did
+ * start. A batch none of whose lanes could start is rejected before any transaction is submitted.
+ */
+@Slf4j
+@Service
+public class BatchTransactionServiceImpl implements BatchTransactionService {
+
+  @Autowired private FabricProperties fabricProperties;
+
+  @Autowired private TransactionFulfillment transactionFulfillment;
+
+  @Autowired private TaskExecutor batchLaneTaskExecutor;
+
+  @Override
+  public CompletableFuture<List<TransactionInvocationResult>> submitBatch(
+      String networkName,
+      String contractName,
+      Optional<String> defaultFunctionName,
+      Optional<List<String>> defaultPeerNames,
+      List<TransactionInvocation> invocations,
+      Consumer<TransactionInvocationResult> resultConsumer) {
+
+    validateBatch(defaultFunctionName, invocations);
+
+    Batch batch = new Batch(invocations.size(), resultConsumer);
+    AtomicInteger nextInvocation = new AtomicInteger();
+    Runnable lane =
+        () -> {
+          for (int index = nextInvocation.getAndIncrement();
+              index < invocations.size();
+              index = nextInvocation.getAndIncrement()) {
+            submit(
+                networkName,
+                contractName,
+                defaultFunctionName,
+                defaultPeerNames,
+                index,
+                invocations.get(index),
+                batch);
+          }
+        };
+
+    int batchConcurrency = Math.max(1, fabricProperties.getSubmission().getBatchConcurrency());
+    int lanes = 0;
+    while (lanes < Math.min(batchConcurrency, invocations.size())) {
+      try {
+        batchLaneTaskExecutor.execute(lane);
+      } catch (TaskRejectedException e) {
+        break;
+      }
+      lanes++;
+    }
+    if (lanes == 0) {
+      throw new ServiceException(
+          ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+          "No batch lane is free, the batch is not submitted");
+    }
+
+    log.info(
+        "Submitting a batch of {} transactions to channel {} and chaincode {} on {} lanes",
+        invocations.size(),
+        networkName,
+        contractName,
+        lanes);
+    return batch.completion;
+  }
+
+  private void validateBatch(
+      Optional<String> defaultFunctionName, List<TransactionInvocation> invocations) {
+    int maxBatchSize = fabricProperties.getSubmission().getMaxBatchSize();
+    if (invocations == null || invocations.isEmpty() || invocations.size() > maxBatchSize) {
+      throw new UnrecognizedTransactionPayloadException(
+          ErrorCode.VALIDATION_FAILED,
+          "A batch should contain between 1 and " + maxBatchSize + " transactions");
+    }
+
+    for (int index = 0; index < invocations.size(); index++) {
+      TransactionInvocation invocation = invocations.get(index);
+      if (invocation == null
+          || invocation.getPayload() == null
+          || (StringUtils.isBlank(invocation.getFunction()) && !defaultFunctionName.isPresent())) {
+        throw new UnrecognizedTransactionPayloadException(
+            ErrorCode.VALIDATION_FAILED,
+            "Transaction " + index + " of the batch has no function or no payload");
+      }
+    }
+  }
+
+  private void submit(
+      String networkName,
+      String contractName,
+      Optional<String> defaultFunctionName,
+      Optional<List<String>> defaultPeerNames,
+      int index,
+      TransactionInvocation invocation,
+      Batch batch) {
+    String functionName =
+        StringUtils.isNotBlank(invocation.getFunction())
+            ? invocation.getFunction()
+            : defaultFunctionName.get();
+    Optional<List<String>> peerNames =
+        invocation.getPeers() != null && !invocation.getPeers().isEmpty()
+            ? Optional.of(invocation.getPeers())
+            : defaultPeerNames;
+    String payload =
+        invocation.getPayload().isTextual()
+            ? invocation.getPayload().asText()
+            : invocation.getPayload().toString();
+
+    CompletableFuture<ResponseEntity<ClientResponseModel>> submission;
+    try {
+      if (StringUtils.isNotBlank(invocation.getCollection())
+          && StringUtils.isNotBlank(invocation.getTransientKey())) {
+        submission =
+            transactionFulfillment.writePrivateTransactionToLedgerAsync(
+                networkName,
+                contractName,
+                functionName,
+                invocation.getCollection(),
+                invocation.getTransientKey(),
+                peerNames,
+                payload);
+      } else {
+        submission =
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                networkName, contractName, functionName, peerNames, payload);
+      }
+    } catch (Exception e) {
+      submission = new CompletableFuture<>();
+      submission.completeExceptionally(e);
+    }
+
+    submission.whenComplete(
+        (response, throwable) -> {
+          batch.complete(toResult(index, invocation, response, throwable));
+        });
+  }
+
+  private static TransactionInvocationResult toResult(
+      int index,
+      TransactionInvocation invocation,
+      ResponseEntity<ClientResponseModel> response,
+      Throwable throwable) {
+    TransactionInvocationResult.TransactionInvocationResultBuilder result =
+        TransactionInvocationResult.builder().index(index).id(invocation.getId());
+
+    if (throwable == null) {
+      ClientResponseModel responseModel = response.getBody();
+      return result
+          .status(TransactionInvocationResult.Status.COMMITTED)
+          .code(responseModel != null ? responseModel.getCode() : null)
+          .message(responseModel != null ? responseModel.getMessage() : null)
+          .build();
+    }
+
+    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+    int code =
+        cause instanceof BaseException
+            ? ((BaseException) cause).getCode().getValue()
+            : ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR.getValue();
+    return result
+        .status(TransactionInvocationResult.Status.FAILED)
+        .code(code)
+        .message(cause.getMessage())
+        .build();
+  }
+
+  /** Results of a batch, completing once every transaction of the batch has a result. */
+  private static class Batch {
+
+    private final AtomicReferenceArray<TransactionInvocationResult> results;
+
+    private final AtomicInteger pendingResults;
+
+    private final Consumer<TransactionInvocationResult> resultConsumer;
+
+    private final CompletableFuture<List<TransactionInvocationResult>> completion =
+        new CompletableFuture<>();
+
+    private Batch(int size, Consumer<TransactionInvocationResult> resultConsumer) {
+      this.results = new AtomicReferenceArray<>(size);
+      this.pendingResults = new AtomicInteger(size);
+      this.resultConsumer = resultConsumer;
+    }
+
+    private void complete(TransactionInvocationResult result) {
+      results.set(result.getIndex(), result);
+      try {
+        resultConsumer.accept(result);
+      } catch (RuntimeException e) {
+        log.warn("Result of transaction {} of the batch was not consumed", result.getIndex(), e);
+      }
+
+      if (pendingResults.decrementAndGet() == 0) {
+        List<TransactionInvocationResult> batchResults = new ArrayList<>(results.length());
+        for (int index = 0; index < results.length(); index++) {
+          batchResults.add(results.get(index));
+        }
+        completion.complete(batchResults);
+      }
+    }
+  }
+}
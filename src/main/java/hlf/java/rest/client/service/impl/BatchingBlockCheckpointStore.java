@@ -0,0 +1,115 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.service.BlockCheckpointStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Base of the checkpoint stores, which collects the recorded checkpoints and writes them in
+ * batches. Checkpoints are keyed by the channel name, or by the channel name and chaincode ID
+ * joined with a '/', which channel names cannot contain.
+ */
+@Slf4j
+public abstract class BatchingBlockCheckpointStore implements BlockCheckpointStore {
+
+  private static final String CHAINCODE_KEY_SEPARATOR = "/";
+
+  @Autowired private FabricProperties fabricProperties;
+
+  // Highest recorded block per key, awaiting its write
+  private final Map<String, Long> pendingCheckpoints = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService flushScheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-flush");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @PostConstruct
+  private void scheduleFlush() {
+    long flushIntervalInMillis =
+        fabricProperties.getEvents().getCheckpoint().getFlushIntervalInMillis();
+    flushScheduler.scheduleWithFixedDelay(
+        this::flush, flushIntervalInMillis, flushIntervalInMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    flushScheduler.shutdown();
+    flush();
+  }
+
+  @Override
+  public Optional<Long> getLastPublishedBlock(String channelName) {
+    return getLastPublishedBlockOf(channelName);
+  }
+
+  @Override
+  public Optional<Long> getLastPublishedBlock(String channelName, String chaincodeId) {
+    return getLastPublishedBlockOf(channelName + CHAINCODE_KEY_SEPARATOR + chaincodeId);
+  }
+
+  @Override
+  public void checkpoint(String channelName, long blockNumber) {
+    pendingCheckpoints.merge(channelName, blockNumber, Math::max);
+  }
+
+  @Override
+  public void checkpoint(String channelName, String chaincodeId, long blockNumber) {
+    pendingCheckpoints.merge(
+        channelName + CHAINCODE_KEY_SEPARATOR + chaincodeId, blockNumber, Math::max);
+  }
+
+  private Optional<Long> getLastPublishedBlockOf(String checkpointKey) {
+    // the pending checkpoint is looked up first, it is only dropped once written
+    Long pendingBlockNumber = pendingCheckpoints.get(checkpointKey);
+    Optional<Long> writtenBlockNumber = read(checkpointKey);
+    if (pendingBlockNumber == null) {
+      return writtenBlockNumber;
+    }
+    return Optional.of(Math.max(pendingBlockNumber, writtenBlockNumber.orElse(Long.MIN_VALUE)));
+  }
+
+  synchronized void flush() {
+    if (pendingCheckpoints.isEmpty()) {
+      return;
+    }
+    Map<String, Long> batch = new HashMap<>(pendingCheckpoints);
+    try {
+      write(batch);
+    } catch (Exception e) {
+      log.error(
+          "Failed to write {} checkpoints, they are retried with the next batch", batch.size(), e);
+      return;
+    }
+    // checkpoints recorded while the batch was written stay pending
+    batch.forEach(
+        (checkpointKey, blockNumber) -> pendingCheckpoints.remove(checkpointKey, blockNumber));
+    log.debug("Wrote {} checkpoints", batch.size());
+  }
+
+  /**
+   * @param checkpointKey String key of the checkpoint
+   * @return the block number of the written checkpoint, empty if none is written
+   */
+  protected abstract Optional<Long> read(String checkpointKey);
+
+  /**
+   * Durably writes the batch of checkpoints, a checkpoint never moves back to a lower block.
+   *
+   * @param checkpoints Map of the block numbers by checkpoint key
+   */
+  protected abstract void write(Map<String, Long> checkpoints) throws Exception;
+}
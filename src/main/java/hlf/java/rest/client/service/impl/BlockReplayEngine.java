@@ -0,0 +1,425 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.listener.BlockEventListener;
+import hlf.java.rest.client.listener.ChaincodeEventListener;
+import hlf.java.rest.client.model.EventType;
+import hlf.java.rest.client.model.ReplayJobStatus;
+import hlf.java.rest.client.service.HFClientWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hyperledger.fabric.gateway.Gateway;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.ChaincodeEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Replays the events of a range of blocks as an asynchronous job. Blocks are fetched ahead of the
+ * block being published, streamed by the deliver service of an event source peer or, when the peer
+ * rejects the stream, queried from the ledger query peers of the channel, and block events are
+ * encoded on a worker pool. Blocks complete in any order and are published strictly in block order.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "fabric.events", name = "enable", havingValue = "true")
+public class BlockReplayEngine {
+
+  private static final String REPLAYED_BLOCKS_METRIC = "fabric.events.replay.blocks";
+  private static final String ACTIVE_JOBS_METRIC = "fabric.events.replay.jobs.active";
+  private static final String CHANNEL_TAG = "channel";
+
+  @Autowired private FabricProperties fabricProperties;
+
+  @Autowired private Gateway gateway;
+
+  @Autowired private HFClientWrapper hfClientWrapper;
+
+  @Autowired private BlockEventListener blockEventListener;
+
+  @Autowired private ChaincodeEventListener chaincodeEventListener;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final Map<String, ReplayJob> jobs = new ConcurrentHashMap<>();
+
+  private final Queue<String> finishedJobIds = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger activeJobs = new AtomicInteger();
+
+  private ExecutorService jobExecutor;
+
+  // queries blocks apart from the submissions, whose executor may run them on the job thread
+  private ExecutorService fetchExecutor;
+
+  private ExecutorService decodeExecutor;
+
+  @PostConstruct
+  private void initialize() {
+    FabricProperties.Replay replay = fabricProperties.getEvents().getReplay();
+    jobExecutor = Executors.newCachedThreadPool(daemonThreads("event-replay-job-"));
+    fetchExecutor =
+        Executors.newFixedThreadPool(
+            Math.max(1, replay.getFetchThreads()), daemonThreads("event-replay-fetch-"));
+    decodeExecutor =
+        Executors.newFixedThreadPool(
+            replay.getDecodeThreads(), daemonThreads("event-replay-decode-"));
+
+    Gauge.builder(ACTIVE_JOBS_METRIC, activeJobs, AtomicInteger::get)
+        .description("Event replay jobs running")
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    jobs.values().forEach(job -> job.cancelled = true);
+    jobExecutor.shutdownNow();
+    fetchExecutor.shutdownNow();
+    decodeExecutor.shutdownNow();
+  }
+
+  /**
+   * Starts a job replaying the events of the blocks.
+   *
+   * @param channelName String name of the channel
+   * @param startBlockNumber long number of the first block to replay
+   * @param endBlockNumber long number of the last block to replay
+   * @param transactionId String ID of the only transaction whose chaincode events are replayed,
+   *     null for all
+   * @param eventType EventType of the replayed events
+   * @return the state of the started job
+   */
+  public ReplayJobStatus submit(
+      String channelName,
+      long startBlockNumber,
+      long endBlockNumber,
+      String transactionId,
+      EventType eventType) {
+    Channel channel = gateway.getNetwork(channelName).getChannel();
+
+    ReplayJob job =
+        new ReplayJob(
+            UUID.randomUUID().toString(), channelName, eventType, startBlockNumber, endBlockNumber);
+    jobs.put(job.jobId, job);
+    activeJobs.incrementAndGet();
+    jobExecutor.execute(() -> run(job, channel, transactionId));
+
+    log.info(
+        "Started replay job {} of {} from block {} to {} on channel {}",
+        job.jobId,
+        eventType,
+        startBlockNumber,
+        endBlockNumber,
+        channelName);
+    return job.toStatus();
+  }
+
+  /**
+   * @param jobId String ID of the job
+   * @return the state of the job, empty if it is unknown or no longer retained
+   */
+  public Optional<ReplayJobStatus> getJob(String jobId) {
+    return Optional.ofNullable(jobs.get(jobId)).map(ReplayJob::toStatus);
+  }
+
+  /**
+   * Cancels the job, which stops once the block being published is published.
+   *
+   * @param jobId String ID of the job
+   * @return the state of the job, empty if it is unknown or no longer retained
+   */
+  public Optional<ReplayJobStatus> cancel(String jobId) {
+    ReplayJob job = jobs.get(jobId);
+    if (job == null) {
+      return Optional.empty();
+    }
+    job.cancelled = true;
+    return Optional.of(job.toStatus());
+  }
+
+  private void run(ReplayJob job, Channel channel, String transactionId) {
+    DeliverBlockStream stream = openStream(job, channel);
+    try {
+      List<Peer> peers = new ArrayList<>(channel.getPeers(EnumSet.of(Peer.PeerRole.LEDGER_QUERY)));
+      LongFunction<CompletableFuture<BlockInfo>> fetch =
+          stream == null
+              ? blockNumber -> fetchBlock(channel, peers, blockNumber)
+              : blockNumber -> fetchStreamedBlock(stream, channel, peers, blockNumber);
+      if (job.eventType == EventType.BLOCK_EVENT) {
+        replayInOrder(
+            job,
+            blockNumber ->
+                fetch
+                    .apply(blockNumber)
+                    .thenApplyAsync(blockEventListener::encodeBlock, decodeExecutor),
+            blockEventListener::publishEncodedBlock);
+      } else {
+        replayInOrder(
+            job,
+            fetch,
+            blockInfo -> replayChaincodeEvents(blockInfo, job.channelName, transactionId));
+      }
+      job.finish(job.cancelled ? ReplayJobStatus.State.CANCELLED : ReplayJobStatus.State.COMPLETED);
+      log.info(
+          "Replay job {} {} after {} blocks", job.jobId, job.state, job.replayedBlocks.get());
+    } catch (Exception e) {
+      log.error("Replay job {} failed at block {}", job.jobId, job.nextBlockNumber(), e);
+      job.failureReason = e.getMessage();
+      job.finish(ReplayJobStatus.State.FAILED);
+    } finally {
+      if (stream != null) {
+        stream.close();
+      }
+      activeJobs.decrementAndGet();
+      retire(job.jobId);
+    }
+  }
+
+  /**
+   * Keeps up to 'prefetchWindow' blocks in flight. The window holds them in block order, and acts
+   * as the reorder buffer: its head is awaited and published before the window is refilled.
+   */
+  private <T> void replayInOrder(
+      ReplayJob job, LongFunction<CompletableFuture<T>> fetch, Consumer<T> publish) {
+    int prefetchWindow = fabricProperties.getEvents().getReplay().getPrefetchWindow();
+    Counter replayedBlocksCounter =
+        meterRegistry.counter(REPLAYED_BLOCKS_METRIC, CHANNEL_TAG, job.channelName);
+
+    Deque<CompletableFuture<T>> window = new ArrayDeque<>();
+    long nextBlockToFetch = job.startBlockNumber;
+    try {
+      while (!job.cancelled && (nextBlockToFetch <= job.endBlockNumber || !window.isEmpty())) {
+        while (nextBlockToFetch <= job.endBlockNumber && window.size() < prefetchWindow) {
+          window.add(fetch.apply(nextBlockToFetch++));
+        }
+        publish.accept(await(window.poll()));
+        job.replayedBlocks.incrementAndGet();
+        replayedBlocksCounter.increment();
+      }
+    } finally {
+      window.forEach(pendingBlock -> pendingBlock.cancel(false));
+    }
+  }
+
+  /** Opens the deliver stream of the blocks, or returns null to query them. */
+  private DeliverBlockStream openStream(ReplayJob job, Channel channel) {
+    FabricProperties.Replay replay = fabricProperties.getEvents().getReplay();
+    Collection<Peer> eventSourcePeers = channel.getPeers(EnumSet.of(Peer.PeerRole.EVENT_SOURCE));
+    if (!replay.isDeliverStream() || eventSourcePeers.isEmpty()) {
+      return null;
+    }
+
+    Peer peer = eventSourcePeers.iterator().next();
+    try {
+      return DeliverBlockStream.open(
+          hfClientWrapper.getHfClient().getUserContext(),
+          channel,
+          peer,
+          job.startBlockNumber,
+          job.endBlockNumber,
+          replay.getPrefetchWindow());
+    } catch (Exception e) {
+      log.warn(
+          "Peer {} rejected the deliver stream of replay job {}, querying the blocks instead",
+          peer.getName(),
+          job.jobId,
+          e);
+      return null;
+    }
+  }
+
+  private CompletableFuture<BlockInfo> fetchStreamedBlock(
+      DeliverBlockStream stream, Channel channel, List<Peer> peers, long blockNumber) {
+    return stream
+        .fetch(blockNumber)
+        .handle(
+            (blockInfo, e) ->
+                e == null
+                    ? CompletableFuture.completedFuture(blockInfo)
+                    : fetchBlock(channel, peers, blockNumber))
+        .thenCompose(Function.identity());
+  }
+
+  private CompletableFuture<BlockInfo> fetchBlock(
+      Channel channel, List<Peer> peers, long blockNumber) {
+    return CompletableFuture.supplyAsync(
+        () -> queryBlockByNumber(channel, peers, blockNumber), fetchExecutor);
+  }
+
+  private BlockInfo queryBlockByNumber(Channel channel, List<Peer> peers, long blockNumber) {
+    try {
+      if (!peers.isEmpty()) {
+        Peer peer = peers.get((int) (blockNumber % peers.size()));
+        try {
+          return channel.queryBlockByNumber(peer, blockNumber);
+        } catch (ProposalException e) {
+          log.warn(
+              "Failed to fetch block {} from peer {}, fetching it from any peer",
+              blockNumber,
+              peer.getName(),
+              e);
+        }
+      }
+      return channel.queryBlockByNumber(blockNumber);
+    } catch (InvalidArgumentException e) {
+      log.error(
+          "Action Failed: A problem occurred while parsing the block data with InvalidArgumentException.",
+          e);
+      throw new ServiceException(ErrorCode.HYPERLEDGER_FABRIC_CHANNEL_TXN_ERROR, e.getMessage(), e);
+    } catch (ProposalException e) {
+      log.error("Action Failed: A problem occurred while fetching transaction by block number", e);
+      throw new ServiceException(ErrorCode.HYPERLEDGER_FABRIC_CHANNEL_TXN_ERROR, e.getMessage(), e);
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> pendingBlock) {
+    try {
+      return pendingBlock.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ServiceException) {
+        throw (ServiceException) e.getCause();
+      }
+      throw new ServiceException(
+          ErrorCode.HYPERLEDGER_FABRIC_CHANNEL_TXN_ERROR, e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private void replayChaincodeEvents(
+      BlockInfo blockInfo, String channelName, String transactionId) {
+    for (BlockInfo.EnvelopeInfo info : blockInfo.getEnvelopeInfos()) {
+      if (info.getType() != BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE) {
+        continue;
+      }
+      BlockInfo.TransactionEnvelopeInfo envelopeInfo = (BlockInfo.TransactionEnvelopeInfo) info;
+      for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo transactionActionInfo :
+          envelopeInfo.getTransactionActionInfos()) {
+        ChaincodeEvent chaincodeEvent = transactionActionInfo.getEvent();
+        if (chaincodeEvent == null) {
+          continue;
+        }
+        if (Objects.isNull(transactionId) || chaincodeEvent.getTxId().equals(transactionId)) {
+          chaincodeEventListener.listener(
+              StringUtils.EMPTY, blockInfo, chaincodeEvent, channelName, info.isValid());
+        } else {
+          log.info(
+              "Event TransactionID {} does not match the provided TransactionID filter {}. Skipping event.",
+              chaincodeEvent.getTxId(),
+              transactionId);
+        }
+      }
+    }
+  }
+
+  private void retire(String jobId) {
+    finishedJobIds.add(jobId);
+    int retainedJobs = fabricProperties.getEvents().getReplay().getRetainedJobs();
+    while (finishedJobIds.size() > retainedJobs) {
+      String retiredJobId = finishedJobIds.poll();
+      if (retiredJobId != null) {
+        jobs.remove(retiredJobId);
+      }
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String namePrefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static final class ReplayJob {
+    private final String jobId;
+    private final String channelName;
+    private final EventType eventType;
+    private final long startBlockNumber;
+    private final long endBlockNumber;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong replayedBlocks = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile ReplayJobStatus.State state = ReplayJobStatus.State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String failureReason;
+
+    private ReplayJob(
+        String jobId,
+        String channelName,
+        EventType eventType,
+        long startBlockNumber,
+        long endBlockNumber) {
+      this.jobId = jobId;
+      this.channelName = channelName;
+      this.eventType = eventType;
+      this.startBlockNumber = startBlockNumber;
+      this.endBlockNumber = endBlockNumber;
+    }
+
+    private long nextBlockNumber() {
+      return startBlockNumber + replayedBlocks.get();
+    }
+
+    private void finish(ReplayJobStatus.State finalState) {
+      finishedAt = Instant.now();
+      state = finalState;
+    }
+
+    private ReplayJobStatus toStatus() {
+      Instant endedAt = finishedAt;
+      long elapsedMillis =
+          Duration.between(startedAt, endedAt != null ? endedAt : Instant.now()).toMillis();
+      long replayed = replayedBlocks.get();
+      return ReplayJobStatus.builder()
+          .jobId(jobId)
+          .channelName(channelName)
+          .eventType(eventType.name())
+          .startBlockNumber(startBlockNumber)
+          .endBlockNumber(endBlockNumber)
+          .state(state)
+          .replayedBlocks(replayed)
+          .blocksPerSecond(elapsedMillis > 0 ? replayed * 1000.0 / elapsedMillis : 0)
+          .startedAt(startedAt.toString())
+          .finishedAt(endedAt != null ? endedAt.toString() : null)
+          .failureReason(failureReason)
+          .build();
+    }
+  }
+}
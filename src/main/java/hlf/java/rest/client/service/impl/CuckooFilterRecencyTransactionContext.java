@@ -0,0 +1,188 @@
+package hlf.java.rest.client.service.impl;
+
+import com.google.common.hash.Hashing;
+import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.util.CuckooFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the recently submitted transactions in a ring of cuckoo filters, each one receiving the
+ * submissions of a time bucket. Once a bucket elapses, the oldest filter is cleared and receives
+ * the next submissions, so that a transaction is remembered for between 'timeBuckets - 1' and
+ * 'timeBuckets' bucket durations.
+ *
+ * <p>A filter holds a fingerprint of a few bits per transaction instead of its ID. In exchange, the
+ * event of a transaction that was not submitted passes validation at the configured false
+ * positive rate, and the removal of such a fingerprint can make the event of the submitted
+ * transaction sharing it be discarded.
+ */
+@Slf4j
+public class CuckooFilterRecencyTransactionContext implements RecencyTransactionContext {
+
+  private static final String LOOKUPS_METRIC = "fabric.events.dedupe.lookups";
+  private static final String FILL_RATIO_METRIC = "fabric.events.dedupe.filter.fill.ratio";
+  private static final String SIZE_METRIC = "fabric.events.dedupe.size";
+  private static final String REJECTED_METRIC = "fabric.events.dedupe.filter.rejected";
+  private static final String RESULT_TAG = "result";
+  private static final String FILTER_TAG = "filter";
+  private static final int HEX_CHARS_PER_LONG = 16;
+
+  private final CuckooFilter[] filters;
+
+  private final long bucketMillis;
+
+  private final LongSupplier clock;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final Counter rejected;
+
+  private volatile int current;
+
+  private volatile long currentBucket;
+
+  /**
+   * @param timeBuckets int number of filters, each one receiving the submissions of a bucket
+   * @param windowMillis long time the submissions are remembered for
+   * @param maxBytes long memory budget of all the filters
+   * @param falsePositiveRate double targeted rate of false positives of a filter
+   * @param meterRegistry MeterRegistry the metrics are registered in
+   */
+  public CuckooFilterRecencyTransactionContext(
+      int timeBuckets,
+      long windowMillis,
+      long maxBytes,
+      double falsePositiveRate,
+      MeterRegistry meterRegistry) {
+    this(
+        timeBuckets,
+        windowMillis,
+        maxBytes,
+        falsePositiveRate,
+        meterRegistry,
+        System::currentTimeMillis);
+  }
+
+  CuckooFilterRecencyTransactionContext(
+      int timeBuckets,
+      long windowMillis,
+      long maxBytes,
+      double falsePositiveRate,
+      MeterRegistry meterRegistry,
+      LongSupplier clock) {
+    int fingerprintBits = CuckooFilter.fingerprintBits(falsePositiveRate);
+    this.filters = new CuckooFilter[timeBuckets];
+    for (int i = 0; i < timeBuckets; i++) {
+      filters[i] = new CuckooFilter(maxBytes / timeBuckets, fingerprintBits);
+    }
+    this.bucketMillis = Math.max(1, windowMillis / timeBuckets);
+    this.clock = clock;
+    this.currentBucket = clock.getAsLong() / bucketMillis;
+
+    this.hits = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "hit");
+    this.misses = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "miss");
+    this.rejected = meterRegistry.counter(REJECTED_METRIC);
+    Gauge.builder(FILL_RATIO_METRIC, this, context -> context.filters[context.current].fillRatio())
+        .tag(FILTER_TAG, "current")
+        .description("Fill ratio of the filter receiving the submissions")
+        .register(meterRegistry);
+    Gauge.builder(FILL_RATIO_METRIC, this, CuckooFilterRecencyTransactionContext::fillRatio)
+        .tag(FILTER_TAG, "all")
+        .description("Fill ratio of all the filters")
+        .register(meterRegistry);
+    Gauge.builder(SIZE_METRIC, this, CuckooFilterRecencyTransactionContext::size)
+        .description("Transactions awaiting their events in the recency filters")
+        .register(meterRegistry);
+
+    log.info(
+        "Recency filters of {} fingerprint bits hold {} transactions per {} ms bucket",
+        fingerprintBits,
+        filters[0].capacity(),
+        bucketMillis);
+  }
+
+  @Override
+  public void setTransactionContext(String transactionId) {
+    rotate();
+    if (!filters[current].add(hash(transactionId))) {
+      rejected.increment();
+      log.warn(
+          "Recency filter is full, the event of TxnID {} will be discarded as a duplicate",
+          transactionId);
+    }
+  }
+
+  @Override
+  public boolean validateAndRemoveTransactionContext(String transactionId) {
+    rotate();
+    long hash = hash(transactionId);
+    int newest = current;
+    for (int age = 0; age < filters.length; age++) {
+      if (filters[Math.floorMod(newest - age, filters.length)].remove(hash)) {
+        hits.increment();
+        return true;
+      }
+    }
+    misses.increment();
+    return false;
+  }
+
+  /** Clears the filters of the buckets elapsed since the last rotation, the oldest first. */
+  private void rotate() {
+    long bucket = clock.getAsLong() / bucketMillis;
+    if (bucket == currentBucket) {
+      return;
+    }
+    synchronized (this) {
+      long elapsedBuckets = Math.min(filters.length, bucket - currentBucket);
+      int next = current;
+      for (long i = 0; i < elapsedBuckets; i++) {
+        next = (next + 1) % filters.length;
+        filters[next].clear();
+      }
+      current = next;
+      currentBucket = Math.max(bucket, currentBucket);
+    }
+  }
+
+  private double fillRatio() {
+    long capacity = 0;
+    for (CuckooFilter filter : filters) {
+      capacity += filter.capacity();
+    }
+    return (double) size() / capacity;
+  }
+
+  private long size() {
+    long size = 0;
+    for (CuckooFilter filter : filters) {
+      size += filter.size();
+    }
+    return size;
+  }
+
+  /**
+   * Transaction IDs are hex encoded SHA-256 hashes, whose leading 64 bits are used as they are.
+   * Other IDs are hashed.
+   */
+  static long hash(String transactionId) {
+    if (transactionId.length() >= HEX_CHARS_PER_LONG) {
+      long hash = 0;
+      for (int i = 0; i < HEX_CHARS_PER_LONG; i++) {
+        int digit = Character.digit(transactionId.charAt(i), 16);
+        if (digit < 0) {
+          return Hashing.murmur3_128().hashUnencodedChars(transactionId).asLong();
+        }
+        hash = (hash << 4) | digit;
+      }
+      return hash;
+    }
+    return Hashing.murmur3_128().hashUnencodedChars(transactionId).asLong();
+  }
+}
@@ -1,29 +1,82 @@
 package hlf.java.rest.client.service.impl;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
 import hlf.java.rest.client.service.RecencyTransactionContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
+/**
+ * Keeps the IDs of the recently submitted transactions in a cache. Validation removes the ID
+ * atomically through the map view of the cache, so that concurrent listeners do not contend on a
+ * lock and only one of them validates a transaction.
+ */
 public class DefaultCacheBasedRecencyTransactionContext implements RecencyTransactionContext {
 
-  private Cache<String, Object> recencyCache;
+  private static final String LOOKUPS_METRIC = "fabric.events.dedupe.lookups";
+  private static final String REMOVALS_METRIC = "fabric.events.dedupe.removals";
+  private static final String SIZE_METRIC = "fabric.events.dedupe.size";
+  private static final String RESULT_TAG = "result";
+  private static final String CAUSE_TAG = "cause";
+  // Approximate bytes of a cache entry besides the characters of its key: the entry, the String
+  // and its char array
+  private static final int ENTRY_OVERHEAD_BYTES = 120;
 
-  public DefaultCacheBasedRecencyTransactionContext(Cache<String, Object> recencyCache) {
+  private final Cache<String, Object> recencyCache;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  public DefaultCacheBasedRecencyTransactionContext(
+      Cache<String, Object> recencyCache, MeterRegistry meterRegistry) {
     this.recencyCache = recencyCache;
+    this.hits = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "hit");
+    this.misses = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "miss");
+    Gauge.builder(SIZE_METRIC, recencyCache, Cache::size)
+        .description("Transactions awaiting their events in the recency cache")
+        .register(meterRegistry);
   }
 
   @Override
   public void setTransactionContext(String transactionId) {
-    recencyCache.put(transactionId, 1);
+    recencyCache.put(transactionId, Boolean.TRUE);
   }
 
   @Override
   public boolean validateAndRemoveTransactionContext(String transactionId) {
-    synchronized (this) {
-      if (recencyCache.getIfPresent(transactionId) == null) {
-        return false;
-      }
-      recencyCache.invalidate(transactionId);
-      return true;
+    if (recencyCache.asMap().remove(transactionId) == null) {
+      misses.increment();
+      return false;
     }
+    hits.increment();
+    return true;
+  }
+
+  /**
+   * @param transactionId String key of the entry
+   * @param value Object value of the entry
+   * @return the approximate bytes the entry occupies, to bound the recency cache in bytes
+   */
+  public static int weigh(String transactionId, Object value) {
+    return ENTRY_OVERHEAD_BYTES + 2 * transactionId.length();
+  }
+
+  /**
+   * @param meterRegistry MeterRegistry the removals are counted in
+   * @return a listener counting the entries evicted for the size bound and those that expired
+   */
+  public static RemovalListener<String, Object> removalRecorder(MeterRegistry meterRegistry) {
+    Counter evictions = meterRegistry.counter(REMOVALS_METRIC, CAUSE_TAG, "eviction");
+    Counter expiries = meterRegistry.counter(REMOVALS_METRIC, CAUSE_TAG, "expiry");
+    return notification -> {
+      if (notification.getCause() == RemovalCause.SIZE) {
+        evictions.increment();
+      } else if (notification.getCause() == RemovalCause.EXPIRED) {
+        expiries.increment();
+      }
+    };
   }
 }
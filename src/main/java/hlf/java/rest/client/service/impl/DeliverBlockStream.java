@@ -0,0 +1,173 @@
+package hlf.java.rest.client.service.impl;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockListener;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.User;
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.TransactionException;
+import org.hyperledger.fabric.sdk.security.CryptoSuite;
+
+/**
+ * Streams a range of blocks from the deliver service of a peer, as block listeners registered from
+ * a start block do. The stream runs on a channel of its own, whose only peer seeks the start block
+ * and stops after the end block, so that the blocks are pushed over one stream instead of being
+ * queried with a signed proposal each.
+ *
+ * <p>The stream delivers up to the prefetch window of blocks ahead of the last fetched one. A block
+ * beyond the window blocks the SDK deliver thread that received it until the window moves on, or
+ * the stream is closed. This holds back the stream of this replay alone, as it runs on a channel of
+ * its own. Once the stream ends, blocks it has not delivered fail, so that they can be queried
+ * instead.
+ */
+@Slf4j
+class DeliverBlockStream implements BlockListener, AutoCloseable {
+
+  private final String channelName;
+
+  private final int prefetchWindow;
+
+  private final Map<Long, CompletableFuture<BlockInfo>> blocks = new ConcurrentHashMap<>();
+
+  private final Object deliveryLock = new Object();
+
+  // guarded by deliveryLock
+  private long lastFetchedBlockNumber;
+
+  private volatile Throwable failure;
+
+  private volatile boolean closed;
+
+  private Channel streamChannel;
+
+  DeliverBlockStream(String channelName, long startBlockNumber, int prefetchWindow) {
+    this.channelName = channelName;
+    this.prefetchWindow = prefetchWindow;
+    this.lastFetchedBlockNumber = startBlockNumber - 1;
+  }
+
+  /**
+   * Opens the stream, which fails if the peer rejects the seek of the start block.
+   *
+   * @param user User the stream is requested by
+   * @param channel Channel the blocks belong to
+   * @param peer Peer whose deliver service streams the blocks
+   * @param startBlockNumber long number of the first block to stream
+   * @param endBlockNumber long number of the last block to stream
+   * @param prefetchWindow int number of blocks delivered ahead of the last fetched one
+   * @return the opened stream
+   */
+  static DeliverBlockStream open(
+      User user,
+      Channel channel,
+      Peer peer,
+      long startBlockNumber,
+      long endBlockNumber,
+      int prefetchWindow)
+      throws ReflectiveOperationException, CryptoException, InvalidArgumentException,
+          TransactionException {
+    HFClient streamClient = HFClient.createNewInstance();
+    streamClient.setCryptoSuite(CryptoSuite.Factory.getCryptoSuite());
+    streamClient.setUserContext(user);
+
+    DeliverBlockStream stream =
+        new DeliverBlockStream(channel.getName(), startBlockNumber, prefetchWindow);
+    Peer streamPeer = streamClient.newPeer(peer.getName(), peer.getUrl(), peer.getProperties());
+    // ends the stream on a rejected seek or a broken connection instead of reconnecting
+    streamPeer.setPeerEventingServiceDisconnected(stream::disconnected);
+
+    stream.streamChannel = streamClient.newChannel(channel.getName());
+    try {
+      stream.streamChannel.addPeer(
+          streamPeer,
+          Channel.PeerOptions.createPeerOptions()
+              .setPeerRoles(EnumSet.of(Peer.PeerRole.EVENT_SOURCE, Peer.PeerRole.LEDGER_QUERY))
+              .startEvents(startBlockNumber)
+              .stopEvents(endBlockNumber));
+      stream.streamChannel.registerBlockListener(stream);
+      stream.streamChannel.initialize();
+    } catch (InvalidArgumentException | TransactionException | RuntimeException e) {
+      stream.close();
+      throw e;
+    }
+    return stream;
+  }
+
+  /**
+   * @param blockNumber long number of the block
+   * @return the block once delivered, or failed if the stream ends before delivering it
+   */
+  CompletableFuture<BlockInfo> fetch(long blockNumber) {
+    synchronized (deliveryLock) {
+      if (blockNumber > lastFetchedBlockNumber) {
+        lastFetchedBlockNumber = blockNumber;
+        deliveryLock.notifyAll();
+      }
+    }
+
+    CompletableFuture<BlockInfo> block = pending(blockNumber);
+    Throwable streamFailure = failure;
+    if (streamFailure != null) {
+      block.completeExceptionally(streamFailure);
+    }
+    return block.whenComplete((blockInfo, e) -> blocks.remove(blockNumber));
+  }
+
+  /** Blocks the deliver thread while the block is beyond the prefetch window. */
+  @Override
+  public void received(BlockEvent blockEvent) {
+    long blockNumber = blockEvent.getBlockNumber();
+    synchronized (deliveryLock) {
+      while (!closed && blockNumber > lastFetchedBlockNumber + prefetchWindow) {
+        try {
+          deliveryLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+    pending(blockNumber).complete(blockEvent);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    synchronized (deliveryLock) {
+      deliveryLock.notifyAll();
+    }
+    if (streamChannel != null) {
+      streamChannel.shutdown(true);
+    }
+  }
+
+  private CompletableFuture<BlockInfo> pending(long blockNumber) {
+    return blocks.computeIfAbsent(blockNumber, k -> new CompletableFuture<>());
+  }
+
+  void disconnected(Peer.PeerEventingServiceDisconnectEvent event) {
+    if (closed) {
+      return;
+    }
+    Throwable cause =
+        event.getExceptionThrown() != null
+            ? event.getExceptionThrown()
+            : new IllegalStateException("Deliver stream of channel " + channelName + " ended");
+    failure = cause;
+    log.warn(
+        "Deliver stream of channel {} ended after block {}, the remaining blocks are queried",
+        channelName,
+        event.getLatestBLockReceived(),
+        cause);
+    blocks.values().forEach(block -> block.completeExceptionally(cause));
+  }
+}
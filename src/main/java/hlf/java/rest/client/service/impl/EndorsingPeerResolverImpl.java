@@ -0,0 +1,150 @@
+package hlf.java.rest.client.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hlf.java.rest.client.service.EndorsingPeerResolver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.Peer;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class EndorsingPeerResolverImpl implements EndorsingPeerResolver {
+
+  private static final int MAX_CACHED_PEER_LISTS_PER_CHANNEL = 1000;
+
+  private final Map<String, ChannelPeerIndex> channelPeerIndices = new ConcurrentHashMap<>();
+
+  private final Map<String, Network> configListenerNetworks = new ConcurrentHashMap<>();
+
+  /**
+   * Resolved peer lists are cached per channel on the list of names they were requested with, a
+   * copy of which is kept as the key.
+   */
+  @Override
+  public List<Peer> resolveEndorsingPeers(Network network, List<String> peerNames) {
+    if (peerNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    ChannelPeerIndex peerIndex = getPeerIndex(network);
+    List<Peer> endorsingPeers = peerIndex.resolvedPeerLists.getIfPresent(peerNames);
+    if (endorsingPeers != null) {
+      return endorsingPeers;
+    }
+
+    if (!peerIndex.peersByName.keySet().containsAll(peerNames)) {
+      // peers may have joined through service discovery or a config update since the index was
+      // built, rebuild once before resolving
+      peerIndex = rebuildPeerIndex(network);
+    }
+
+    endorsingPeers = peerIndex.resolve(peerNames);
+    peerIndex.resolvedPeerLists.put(
+        Collections.unmodifiableList(new ArrayList<>(peerNames)), endorsingPeers);
+    return endorsingPeers;
+  }
+
+  @Override
+  public void invalidate(String channelName) {
+    if (channelPeerIndices.remove(channelName) != null) {
+      log.info("Endorsing peer index invalidated for channel {}", channelName);
+    }
+  }
+
+  @EventListener(RefreshScopeRefreshedEvent.class)
+  public void onRefresh(RefreshScopeRefreshedEvent event) {
+    log.info("Clearing endorsing peer indices..");
+    channelPeerIndices.clear();
+  }
+
+  private ChannelPeerIndex getPeerIndex(Network network) {
+    ChannelPeerIndex peerIndex = channelPeerIndices.get(network.getChannel().getName());
+    if (peerIndex != null && peerIndex.network == network) {
+      return peerIndex;
+    }
+    return rebuildPeerIndex(network);
+  }
+
+  private ChannelPeerIndex rebuildPeerIndex(Network network) {
+    String channelName = network.getChannel().getName();
+    registerConfigBlockListener(network);
+
+    ChannelPeerIndex peerIndex = new ChannelPeerIndex(network);
+    channelPeerIndices.put(channelName, peerIndex);
+    log.debug(
+        "Built endorsing peer index for channel {} with {} peers",
+        channelName,
+        peerIndex.peersByName.size());
+    return peerIndex;
+  }
+
+  /**
+   * Channel membership changes are delivered as config blocks, on which the index of the channel is
+   * dropped. Registered once per Network instance, a refreshed Gateway hands out new instances.
+   */
+  private void registerConfigBlockListener(Network network) {
+    configListenerNetworks.compute(
+        network.getChannel().getName(),
+        (channelName, listenedNetwork) -> {
+          if (listenedNetwork == network) {
+            return listenedNetwork;
+          }
+          network.addBlockListener(
+              blockEvent -> {
+                if (isConfigBlock(blockEvent)) {
+                  invalidate(channelName);
+                }
+              });
+          return network;
+        });
+  }
+
+  private static boolean isConfigBlock(BlockEvent blockEvent) {
+    for (BlockInfo.EnvelopeInfo envelopeInfo : blockEvent.getEnvelopeInfos()) {
+      if (envelopeInfo.getType() != BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class ChannelPeerIndex {
+
+    private final Network network;
+
+    private final Map<String, Peer> peersByName = new HashMap<>();
+
+    private final Cache<List<String>, List<Peer>> resolvedPeerLists =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PEER_LISTS_PER_CHANNEL).build();
+
+    private ChannelPeerIndex(Network network) {
+      this.network = network;
+      for (Peer peer : network.getChannel().getPeers()) {
+        peersByName.putIfAbsent(peer.getName(), peer);
+      }
+    }
+
+    private List<Peer> resolve(List<String> peerNames) {
+      List<Peer> endorsingPeers = new ArrayList<>(peerNames.size());
+      for (String peerName : peerNames) {
+        Peer peer = peersByName.get(peerName);
+        if (peer != null) {
+          endorsingPeers.add(peer);
+        }
+      }
+      return Collections.unmodifiableList(endorsingPeers);
+    }
+  }
+}
@@ -1,19 +1,30 @@
 package hlf.java.rest.client.service.impl;
 
-import hlf.java.rest.client.config.FabricProperties;
-import hlf.java.rest.client.config.KafkaProperties;
+import hlf.java.rest.client.config.EventRoutingTable;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.model.BlockTransactionEvent;
+import hlf.java.rest.client.model.EventPayloadFormat;
 import hlf.java.rest.client.service.EventPublishService;
+import hlf.java.rest.client.util.EventHeaderFactory;
 import hlf.java.rest.client.util.FabricClientConstants;
-import java.util.Optional;
+import hlf.java.rest.client.util.PayloadLogger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.Header;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.RoutingKafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
 
@@ -22,15 +33,32 @@ import org.springframework.util.concurrent.ListenableFutureCallback;
 @ConditionalOnProperty("kafka.event-listeners[0].topic")
 public class EventPublishServiceImpl implements EventPublishService {
 
-  @Autowired private KafkaProperties kafkaProperties;
+  // Producer side batching is observable through kafka.producer.records.per.request.avg and
+  // kafka.producer.compression.rate.avg, bound by the MicrometerProducerListener of the producers
+  private static final String BLOCK_FLUSH_METRIC = "fabric.events.block.flush";
+  private static final String BLOCK_BATCH_SIZE_METRIC = "fabric.events.block.batch.size";
+  private static final String UNROUTED_METRIC = "fabric.events.unrouted";
+  private static final String CHANNEL_TAG = "channel";
+  // Bounds the recurring chaincode, function and event names whose headers are encoded once
+  private static final int MAX_INTERNED_HEADERS = 10_000;
 
-  @Autowired private FabricProperties fabricProperties;
+  private final EventHeaderFactory headerFactory = new EventHeaderFactory(MAX_INTERNED_HEADERS);
+
+  @Autowired private EventRoutingTable eventRoutingTable;
 
   @Autowired private RoutingKafkaTemplate routingKafkaTemplate;
 
+  @Autowired(required = false)
+  @Qualifier("blockCheckpointTemplate")
+  private KafkaTemplate<Object, Object> blockCheckpointTemplate;
+
+  @Autowired private PayloadLogger payloadLogger;
+
+  @Autowired private MeterRegistry meterRegistry;
+
   @Override
-  public void publishChaincodeEvents(
-      String payload,
+  public CompletableFuture<Void> publishChaincodeEvents(
+      byte[] payload,
       String chaincodeName,
       String fabricTxId,
       String eventName,
@@ -38,48 +66,22 @@ public class EventPublishServiceImpl implements EventPublishService {
       String messageKey,
       boolean isTxnValid) {
 
-    Optional<FabricProperties.ChaincodeDetails> optionalChaincodeDetails =
-        fabricProperties.getEvents().getChaincodeDetails().stream()
-            .filter(
-                chaincodeDetail ->
-                    chaincodeDetail.getChannelName().equals(channelName)
-                        && chaincodeDetail.getChaincodeId().equals(chaincodeName))
-            .findAny();
-
-    if (optionalChaincodeDetails.isPresent()
-        && CollectionUtils.isEmpty(optionalChaincodeDetails.get().getListenerTopics())) {
-      sendMessage(
-          kafkaProperties.getEventListeners().get(0).getTopic(),
-          payload,
-          chaincodeName,
-          fabricTxId,
-          eventName,
-          channelName,
-          messageKey,
-          isTxnValid);
-      return;
-    }
-
-    for (String topic : optionalChaincodeDetails.get().getListenerTopics()) {
-      sendMessage(
-          topic,
-          payload,
-          chaincodeName,
-          fabricTxId,
-          eventName,
-          channelName,
-          messageKey,
-          isTxnValid);
+    EventRoutingTable.Route route = eventRoutingTable.getChaincodeRoute(channelName, chaincodeName);
+    countIfUnrouted(route, channelName, 1);
+    List<CompletableFuture<SendResult<Object, Object>>> sends =
+        new ArrayList<>(route.getTopics().size());
+    for (String topic : route.getTopics()) {
+      sends.add(sendMessage(topic, route, payload, fabricTxId, eventName, messageKey, isTxnValid));
     }
+    return CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
   }
 
-  private void sendMessage(
+  private CompletableFuture<SendResult<Object, Object>> sendMessage(
       String topic,
-      String payload,
-      String chaincodeName,
+      EventRoutingTable.Route route,
+      byte[] payload,
       String fabricTxId,
       String eventName,
-      String channelName,
       String messageKey,
       boolean isValidTransaction) {
     try {
@@ -88,178 +90,229 @@ public class EventPublishServiceImpl implements EventPublishService {
 
       producerRecord
           .headers()
-          .add(
-              new RecordHeader(FabricClientConstants.FABRIC_TRANSACTION_ID, fabricTxId.getBytes()));
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_CHAINCODE_NAME, chaincodeName.getBytes()));
-      producerRecord
-          .headers()
-          .add(new RecordHeader(FabricClientConstants.FABRIC_EVENT_NAME, eventName.getBytes()));
-      producerRecord
-          .headers()
-          .add(new RecordHeader(FabricClientConstants.FABRIC_CHANNEL_NAME, channelName.getBytes()));
-
+          .add(EventHeaderFactory.header(FabricClientConstants.FABRIC_TRANSACTION_ID, fabricTxId));
       producerRecord
           .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_EVENT_TYPE,
-                  FabricClientConstants.FABRIC_EVENT_TYPE_CHAINCODE.getBytes()));
-
+          .add(headerFactory.interned(FabricClientConstants.FABRIC_EVENT_NAME, eventName));
       producerRecord
           .headers()
           .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_TRANSACTION_IS_VALID,
-                  Boolean.toString(isValidTransaction).getBytes()));
+              headerFactory.interned(
+                  FabricClientConstants.FABRIC_TRANSACTION_IS_VALID, isValidTransaction));
+      addRouteHeaders(producerRecord, route);
 
       log.info("Publishing Chaincode event to outbound topic {}", topic);
 
-      ListenableFuture<SendResult<Object, Object>> future =
-          routingKafkaTemplate.send(producerRecord);
-
-      future.addCallback(
-          new ListenableFutureCallback<SendResult<Object, Object>>() {
-
-            @Override
-            public void onSuccess(SendResult<Object, Object> result) {
-              log.info(
-                  "Sent message '{}' to partition {} for offset {}",
-                  payload,
-                  result.getRecordMetadata().partition(),
-                  result.getRecordMetadata().offset());
-            }
-
-            @Override
-            public void onFailure(Throwable ex) {
-              log.error(
-                  "Failed to send message event for Transaction ID {} due to {}",
-                  fabricTxId,
-                  ex.getMessage());
-            }
-          });
+      return send(producerRecord, route, payload, fabricTxId).completable();
 
     } catch (Exception ex) {
       log.error("Error sending message - {}", ex.getMessage());
+      CompletableFuture<SendResult<Object, Object>> failedSend = new CompletableFuture<>();
+      failedSend.completeExceptionally(ex);
+      return failedSend;
     }
   }
 
   @Override
-  public void publishBlockEvents(
-      String payload,
+  public CompletableFuture<Void> publishBlockEvents(
+      byte[] payload,
       String fabricTxId,
       String channelName,
       String chaincodeName,
       String functionName,
       Boolean isPrivateDataPresent) {
 
-    Optional<FabricProperties.BlockDetails> optionalBlockDetails =
-        fabricProperties.getEvents().getBlockDetails().stream()
-            .filter(blockDetails -> blockDetails.getChannelName().equals(channelName))
-            .findAny();
-
-    if (optionalBlockDetails.isPresent()
-        && CollectionUtils.isEmpty(optionalBlockDetails.get().getListenerTopics())) {
-      sendMessage(
-          kafkaProperties.getEventListeners().get(0).getTopic(),
-          payload,
-          fabricTxId,
-          channelName,
-          chaincodeName,
-          functionName,
-          isPrivateDataPresent);
-      return;
-    }
-
-    for (String topic : optionalBlockDetails.get().getListenerTopics()) {
-      sendMessage(
-          topic,
-          payload,
-          fabricTxId,
-          channelName,
-          chaincodeName,
-          functionName,
-          isPrivateDataPresent);
+    EventRoutingTable.Route route = eventRoutingTable.getBlockRoute(channelName);
+    countIfUnrouted(route, channelName, 1);
+    List<CompletableFuture<SendResult<Object, Object>>> sends =
+        new ArrayList<>(route.getTopics().size());
+    for (String topic : route.getTopics()) {
+      sends.add(
+          sendMessage(
+              topic,
+              route,
+              payload,
+              fabricTxId,
+              chaincodeName,
+              functionName,
+              isPrivateDataPresent));
     }
+    return CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
   }
 
-  private void sendMessage(
+  private CompletableFuture<SendResult<Object, Object>> sendMessage(
       String topic,
-      String payload,
+      EventRoutingTable.Route route,
+      byte[] payload,
       String fabricTxId,
-      String channelName,
       String chaincodeName,
       String functionName,
       Boolean isPrivateDataPresent) {
     try {
 
       ProducerRecord<Object, Object> producerRecord =
-          new ProducerRecord<>(topic, String.valueOf(payload.hashCode()), payload);
+          blockEventRecord(
+              topic, route, payload, fabricTxId, chaincodeName, functionName, isPrivateDataPresent);
 
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(FabricClientConstants.FABRIC_TRANSACTION_ID, fabricTxId.getBytes()));
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_CHAINCODE_NAME, chaincodeName.getBytes()));
-      producerRecord
-          .headers()
-          .add(new RecordHeader(FabricClientConstants.FABRIC_CHANNEL_NAME, channelName.getBytes()));
+      log.info("Publishing Block event to outbound topic {}", topic);
 
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_EVENT_TYPE,
-                  FabricClientConstants.FABRIC_EVENT_TYPE_BLOCK.getBytes()));
+      return send(producerRecord, route, payload, fabricTxId).completable();
 
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.FABRIC_EVENT_FUNC_NAME, functionName.getBytes()));
+    } catch (Exception ex) {
+      log.error("Error sending message - " + ex.getMessage());
+      CompletableFuture<SendResult<Object, Object>> failedSend = new CompletableFuture<>();
+      failedSend.completeExceptionally(ex);
+      return failedSend;
+    }
+  }
 
-      producerRecord
-          .headers()
-          .add(
-              new RecordHeader(
-                  FabricClientConstants.IS_PRIVATE_DATA_PRESENT,
-                  isPrivateDataPresent.toString().getBytes()));
+  private ProducerRecord<Object, Object> blockEventRecord(
+      String topic,
+      EventRoutingTable.Route route,
+      byte[] payload,
+      String fabricTxId,
+      String chaincodeName,
+      String functionName,
+      boolean isPrivateDataPresent) {
+    ProducerRecord<Object, Object> producerRecord =
+        new ProducerRecord<>(topic, messageKey(payload), payload);
+
+    producerRecord
+        .headers()
+        .add(EventHeaderFactory.header(FabricClientConstants.FABRIC_TRANSACTION_ID, fabricTxId));
+    producerRecord
+        .headers()
+        .add(headerFactory.interned(FabricClientConstants.FABRIC_CHAINCODE_NAME, chaincodeName));
+    producerRecord
+        .headers()
+        .add(headerFactory.interned(FabricClientConstants.FABRIC_EVENT_FUNC_NAME, functionName));
+    producerRecord
+        .headers()
+        .add(
+            headerFactory.interned(
+                FabricClientConstants.IS_PRIVATE_DATA_PRESENT, isPrivateDataPresent));
+    addRouteHeaders(producerRecord, route);
+    return producerRecord;
+  }
 
-      log.info("Publishing Block event to outbound topic {}", topic);
+  @Override
+  public boolean publishBlockEventsTransactionally(
+      String channelName, long blockNumber, List<BlockTransactionEvent> events) {
+    if (blockCheckpointTemplate == null) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED, "Exactly-once block publishing is not enabled");
+    }
 
-      ListenableFuture<SendResult<Object, Object>> future =
-          routingKafkaTemplate.send(producerRecord);
+    EventRoutingTable.Route route = eventRoutingTable.getBlockRoute(channelName);
+    countIfUnrouted(route, channelName, events.size());
+    try {
+      blockCheckpointTemplate.executeInTransaction(
+          operations -> {
+            for (BlockTransactionEvent event : events) {
+              for (String topic : route.getTopics()) {
+                operations.send(
+                    blockEventRecord(
+                        topic,
+                        route,
+                        event.getEncodedEvent().getPayload(),
+                        event.getTransactionId(),
+                        event.getChaincodeName(),
+                        event.getFunctionName(),
+                        event.getEncodedEvent().isPrivateDataPresent()));
+              }
+            }
+            operations.sendDefault(channelName, Long.toString(blockNumber));
+            return null;
+          });
+    } catch (Exception ex) {
+      log.error(
+          "Failed to commit the events of block {} of channel {}", blockNumber, channelName, ex);
+      return false;
+    }
 
-      future.addCallback(
-          new ListenableFutureCallback<SendResult<Object, Object>>() {
+    log.info(
+        "Committed {} events and the checkpoint of block {} of channel {}",
+        events.size(),
+        blockNumber,
+        channelName);
+    return true;
+  }
 
-            @Override
-            public void onSuccess(SendResult<Object, Object> result) {
-              log.info(
-                  "Sent message '{}' to partition {} for offset {}",
-                  payload,
-                  result.getRecordMetadata().partition(),
-                  result.getRecordMetadata().offset());
-            }
+  @Override
+  public void flushBlockEvents(String channelName, int eventCount) {
+    Timer.Sample flushSample = Timer.start(meterRegistry);
+    for (String topic : eventRoutingTable.getBlockRoute(channelName).getTopics()) {
+      try (Producer<Object, Object> producer =
+          routingKafkaTemplate.getProducerFactory(topic).createProducer()) {
+        producer.flush();
+      } catch (Exception ex) {
+        log.error("Failed to flush block events of channel {} to topic {}", channelName, topic, ex);
+      }
+    }
+    flushSample.stop(meterRegistry.timer(BLOCK_FLUSH_METRIC, CHANNEL_TAG, channelName));
+    meterRegistry.summary(BLOCK_BATCH_SIZE_METRIC, CHANNEL_TAG, channelName).record(eventCount);
+  }
 
-            @Override
-            public void onFailure(Throwable ex) {
-              log.error(
-                  "Failed to send message event for Transaction ID {} due to {}",
-                  fabricTxId,
-                  ex.getMessage());
+  /** Counts the events dropped for want of topics, the routing table warns once per route. */
+  private void countIfUnrouted(EventRoutingTable.Route route, String channelName, int eventCount) {
+    if (route.getTopics().isEmpty()) {
+      meterRegistry.counter(UNROUTED_METRIC, CHANNEL_TAG, channelName).increment(eventCount);
+    }
+  }
+
+  private static void addRouteHeaders(
+      ProducerRecord<Object, Object> producerRecord, EventRoutingTable.Route route) {
+    for (Header header : route.getHeaders()) {
+      producerRecord.headers().add(header);
+    }
+  }
+
+  private ListenableFuture<SendResult<Object, Object>> send(
+      ProducerRecord<Object, Object> producerRecord,
+      EventRoutingTable.Route route,
+      byte[] payload,
+      String fabricTxId) {
+    ListenableFuture<SendResult<Object, Object>> future =
+        routingKafkaTemplate.send(producerRecord);
+
+    future.addCallback(
+        new ListenableFutureCallback<SendResult<Object, Object>>() {
+
+          @Override
+          public void onSuccess(SendResult<Object, Object> result) {
+            log.info(
+                "Sent message for Transaction ID {} to partition {} for offset {}",
+                fabricTxId,
+                result.getRecordMetadata().partition(),
+                result.getRecordMetadata().offset());
+            // binary payloads are not logged
+            if (route.getPayloadFormat() == EventPayloadFormat.JSON) {
+              payloadLogger.log(
+                  log, "Sent message for Transaction ID {} : {}", payload, fabricTxId);
             }
-          });
+          }
+
+          @Override
+          public void onFailure(Throwable ex) {
+            log.error(
+                "Failed to send message event for Transaction ID {} due to {}",
+                fabricTxId,
+                ex.getMessage());
+          }
+        });
+    return future;
+  }
 
-    } catch (Exception ex) {
-      log.error("Error sending message - " + ex.getMessage());
+  /**
+   * Hashes the payload as String.hashCode does, so that block events keep the message keys they
+   * were published with while their payloads were Strings. The encoded payload is ASCII unless the
+   * write-sets carry non-ASCII text that is not sanitised away.
+   */
+  private static String messageKey(byte[] payload) {
+    int hash = 0;
+    for (byte b : payload) {
+      hash = 31 * hash + (b & 0xff);
     }
+    return String.valueOf(hash);
   }
 }
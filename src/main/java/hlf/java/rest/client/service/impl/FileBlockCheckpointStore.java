@@ -0,0 +1,132 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the checkpoints in a local properties file. A batch is written to a temporary file, which
+ * is synced to disk and then atomically renamed over the checkpoint file, so that a crash leaves
+ * either the previous or the new checkpoints behind.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "fabric.events.checkpoint", name = "store", havingValue = "FILE")
+public class FileBlockCheckpointStore extends BatchingBlockCheckpointStore {
+
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  @Autowired private FabricProperties fabricProperties;
+
+  private final Map<String, Long> writtenCheckpoints = new ConcurrentHashMap<>();
+
+  private Path checkpointFile;
+
+  @PostConstruct
+  private void loadCheckpoints() throws IOException {
+    if (fabricProperties.getEvents().isExactlyOnceBlockPublishing()) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED,
+          "Exactly-once block publishing commits its checkpoints to Kafka, the checkpoint store"
+              + " should be KAFKA");
+    }
+
+    checkpointFile =
+        Paths.get(fabricProperties.getEvents().getCheckpoint().getFilePath()).toAbsolutePath();
+    if (Files.exists(checkpointFile)) {
+      Properties checkpoints = new Properties();
+      try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+        checkpoints.load(reader);
+      }
+      for (String checkpointKey : checkpoints.stringPropertyNames()) {
+        writtenCheckpoints.put(
+            checkpointKey, Long.parseLong(checkpoints.getProperty(checkpointKey)));
+      }
+    }
+    log.info("Loaded {} checkpoints from {}", writtenCheckpoints.size(), checkpointFile);
+  }
+
+  @Override
+  protected Optional<Long> read(String checkpointKey) {
+    return Optional.ofNullable(writtenCheckpoints.get(checkpointKey));
+  }
+
+  @Override
+  protected void write(Map<String, Long> checkpoints) throws IOException {
+    Map<String, Long> mergedCheckpoints = new HashMap<>(writtenCheckpoints);
+    checkpoints.forEach(
+        (checkpointKey, blockNumber) ->
+            mergedCheckpoints.merge(checkpointKey, blockNumber, Math::max));
+
+    Properties properties = new Properties();
+    mergedCheckpoints.forEach(
+        (checkpointKey, blockNumber) ->
+            properties.setProperty(checkpointKey, blockNumber.toString()));
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    try (Writer writer = new OutputStreamWriter(content, StandardCharsets.UTF_8)) {
+      properties.store(writer, "Last published block per channel and per channel/chaincode");
+    }
+
+    Path parentDirectory = checkpointFile.getParent();
+    if (parentDirectory != null) {
+      Files.createDirectories(parentDirectory);
+    }
+    Path temporaryFile =
+        checkpointFile.resolveSibling(checkpointFile.getFileName() + TEMPORARY_FILE_SUFFIX);
+    try (FileChannel channel =
+        FileChannel.open(
+            temporaryFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(content.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(
+        temporaryFile,
+        checkpointFile,
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    syncDirectory(parentDirectory);
+
+    writtenCheckpoints.putAll(mergedCheckpoints);
+  }
+
+  /** Syncs the rename to disk, where the platform allows a directory to be opened. */
+  private static void syncDirectory(Path directory) {
+    if (directory == null) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      log.debug("Directory {} could not be synced", directory, e);
+    }
+  }
+}
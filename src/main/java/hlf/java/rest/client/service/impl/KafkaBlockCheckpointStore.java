@@ -0,0 +1,143 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.KafkaCheckpointStoreCondition;
+import hlf.java.rest.client.config.KafkaProperties;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the checkpoints in a compacted Kafka topic. A checkpoint is a record of the checkpoint
+ * topic keyed by the checkpoint key, whose value is the block number. A batch is committed in a
+ * single transaction, and checkpoints are read back with read_committed isolation.
+ *
+ * <p>The topic is read once, and each later lookup only reads the checkpoints committed since the
+ * previous one, which also picks up the checkpoints committed by exactly-once block publishing.
+ * Checkpoints below the ones read or written before are not written again.
+ *
+ * <p>With exactly-once block publishing, the checkpoints of the channels are committed along with
+ * the events of their blocks instead of being recorded in this store.
+ */
+@Slf4j
+@Service
+@Conditional(KafkaCheckpointStoreCondition.class)
+public class KafkaBlockCheckpointStore extends BatchingBlockCheckpointStore {
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+  @Autowired private KafkaProperties kafkaProperties;
+
+  @Autowired private ConsumerFactory<String, String> blockCheckpointConsumerFactory;
+
+  @Autowired
+  @Qualifier("blockCheckpointTemplate")
+  private KafkaTemplate<Object, Object> blockCheckpointTemplate;
+
+  // guarded by this, the checkpoints read or written so far and the offsets read up to
+  private final Map<String, Long> readCheckpoints = new HashMap<>();
+  private final Map<TopicPartition, Long> readOffsets = new HashMap<>();
+
+  @Override
+  protected synchronized Optional<Long> read(String checkpointKey) {
+    String checkpointTopic = kafkaProperties.getBlockCheckpoint().getTopic();
+    readNewCheckpoints(checkpointTopic);
+
+    Long lastPublishedBlock = readCheckpoints.get(checkpointKey);
+    log.info(
+        "Last published block of {} checkpointed in topic {} is {}",
+        checkpointKey,
+        checkpointTopic,
+        lastPublishedBlock);
+    return Optional.ofNullable(lastPublishedBlock);
+  }
+
+  /** Reads the checkpoints committed after the offsets read up to, to the end of the topic. */
+  private void readNewCheckpoints(String checkpointTopic) {
+    try (Consumer<String, String> consumer = blockCheckpointConsumerFactory.createConsumer()) {
+      List<PartitionInfo> partitionInfos = consumer.partitionsFor(checkpointTopic);
+      if (partitionInfos == null || partitionInfos.isEmpty()) {
+        log.warn("Checkpoint topic {} does not exist, no checkpoint is read", checkpointTopic);
+        return;
+      }
+      List<TopicPartition> partitions =
+          partitionInfos.stream()
+              .map(partitionInfo -> new TopicPartition(checkpointTopic, partitionInfo.partition()))
+              .collect(Collectors.toList());
+      consumer.assign(partitions);
+      for (TopicPartition partition : partitions) {
+        Long readOffset = readOffsets.get(partition);
+        if (readOffset == null) {
+          consumer.seekToBeginning(Collections.singletonList(partition));
+        } else {
+          consumer.seek(partition, readOffset);
+        }
+      }
+      // with read_committed isolation, the end offsets stop at the last committed transaction
+      Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+      while (!isEndReached(consumer, endOffsets)) {
+        for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+          if (record.key() != null && record.value() != null) {
+            readCheckpoints.put(record.key(), Long.parseLong(record.value()));
+          }
+        }
+      }
+      for (TopicPartition partition : partitions) {
+        readOffsets.put(partition, consumer.position(partition));
+      }
+    }
+  }
+
+  @Override
+  protected synchronized void write(Map<String, Long> checkpoints) {
+    if (readOffsets.isEmpty()) {
+      readNewCheckpoints(kafkaProperties.getBlockCheckpoint().getTopic());
+    }
+    // a checkpoint never moves back to a lower block than the one read or written before
+    Map<String, Long> advancedCheckpoints = new HashMap<>();
+    checkpoints.forEach(
+        (checkpointKey, blockNumber) -> {
+          Long readBlockNumber = readCheckpoints.get(checkpointKey);
+          if (readBlockNumber == null || blockNumber > readBlockNumber) {
+            advancedCheckpoints.put(checkpointKey, blockNumber);
+          }
+        });
+    if (advancedCheckpoints.isEmpty()) {
+      return;
+    }
+
+    blockCheckpointTemplate.executeInTransaction(
+        operations -> {
+          advancedCheckpoints.forEach(
+              (checkpointKey, blockNumber) ->
+                  operations.sendDefault(checkpointKey, blockNumber.toString()));
+          return null;
+        });
+    readCheckpoints.putAll(advancedCheckpoints);
+  }
+
+  private static boolean isEndReached(
+      Consumer<String, String> consumer, Map<TopicPartition, Long> endOffsets) {
+    for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+      if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,246 @@
+package hlf.java.rest.client.service.impl;
+
+import com.google.common.cache.Cache;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.service.RecencyTransactionContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Shares the recently submitted transactions of the connector replicas through a compacted topic,
+ * keyed by transaction ID. Every replica materialises the topic into a bounded local index, which
+ * also serves the transactions submitted by the replica itself as soon as they are submitted.
+ *
+ * <p>The replica that submitted a transaction publishes its event as soon as it receives it,
+ * deciding from its local index alone, and appends a tombstone removing the transaction from the
+ * indexes of all the replicas. The other replicas receiving the event wait for the tombstone. Once
+ * it is not materialised within the claim timeout, the submitter is presumed gone: they append a
+ * claim and, as all the records of a transaction land in one partition, every replica sees the same
+ * first claim, and only the replica that made it publishes the event in its stead. A submitter
+ * whose event is delayed past the claim timeout has the transaction removed by the tombstone of the
+ * stand-in, unless it receives the event before the tombstone is materialised.
+ */
+@Slf4j
+public class KafkaRecencyTransactionContext implements RecencyTransactionContext, AutoCloseable {
+
+  private static final String SUBMITTED = "SUBMITTED";
+  private static final String CLAIMED_BY = "CLAIMED_BY:";
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+  private static final String LOOKUPS_METRIC = "fabric.events.dedupe.lookups";
+  private static final String CLAIM_TIMEOUTS_METRIC = "fabric.events.dedupe.claim.timeouts";
+  private static final String RESULT_TAG = "result";
+
+  private final String replicaId = UUID.randomUUID().toString();
+
+  private final Cache<String, Object> recencyIndex;
+
+  private final KafkaTemplate<String, String> dedupeTemplate;
+
+  private final ConsumerFactory<String, String> dedupeConsumerFactory;
+
+  private final long claimTimeoutInMillis;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final Counter claimTimeouts;
+
+  private volatile boolean closed;
+
+  private Consumer<String, String> consumer;
+
+  private Thread materialiser;
+
+  public KafkaRecencyTransactionContext(
+      Cache<String, Object> recencyIndex,
+      KafkaTemplate<String, String> dedupeTemplate,
+      ConsumerFactory<String, String> dedupeConsumerFactory,
+      long claimTimeoutInMillis,
+      MeterRegistry meterRegistry) {
+    this.recencyIndex = recencyIndex;
+    this.dedupeTemplate = dedupeTemplate;
+    this.dedupeConsumerFactory = dedupeConsumerFactory;
+    this.claimTimeoutInMillis = claimTimeoutInMillis;
+    this.hits = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "hit");
+    this.misses = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "miss");
+    this.claimTimeouts = meterRegistry.counter(CLAIM_TIMEOUTS_METRIC);
+  }
+
+  /** Starts materialising the dedupe topic, from its beginning. */
+  public void start() {
+    String topic = dedupeTemplate.getDefaultTopic();
+    consumer = dedupeConsumerFactory.createConsumer();
+    List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+    if (partitionInfos == null || partitionInfos.isEmpty()) {
+      consumer.close();
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED, "Dedupe topic " + topic + " has no partitions");
+    }
+    List<TopicPartition> partitions =
+        partitionInfos.stream()
+            .map(partitionInfo -> new TopicPartition(topic, partitionInfo.partition()))
+            .collect(Collectors.toList());
+    consumer.assign(partitions);
+    consumer.seekToBeginning(partitions);
+
+    materialiser = new Thread(this::materialise, "dedupe-materialiser");
+    materialiser.setDaemon(true);
+    materialiser.start();
+    log.info("Replica {} materialising recent transactions from topic {}", replicaId, topic);
+  }
+
+  @Override
+  public void setTransactionContext(String transactionId) {
+    RecencyEntry entry = entry(transactionId);
+    entry.submitted = true;
+    entry.submittedLocally = true;
+    dedupeTemplate.sendDefault(transactionId, SUBMITTED);
+  }
+
+  @Override
+  public boolean validateAndRemoveTransactionContext(String transactionId) {
+    RecencyEntry entry = (RecencyEntry) recencyIndex.getIfPresent(transactionId);
+    if (entry == null || !entry.submitted) {
+      misses.increment();
+      return false;
+    }
+
+    if (entry.submittedLocally) {
+      return publish(transactionId, entry);
+    }
+    if (awaitPublished(transactionId, entry)) {
+      misses.increment();
+      return false;
+    }
+
+    dedupeTemplate.sendDefault(transactionId, CLAIMED_BY + replicaId);
+    if (!replicaId.equals(awaitClaimant(entry))) {
+      misses.increment();
+      return false;
+    }
+    return publish(transactionId, entry);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    if (consumer != null) {
+      consumer.wakeup();
+    }
+  }
+
+  /**
+   * Marks the event as published by this replica, unless it already is by another one, and removes
+   * the transaction from the indexes of all the replicas.
+   */
+  private boolean publish(String transactionId, RecencyEntry entry) {
+    if (!entry.published.complete(null)) {
+      misses.increment();
+      return false;
+    }
+    recencyIndex.invalidate(transactionId);
+    dedupeTemplate.sendDefault(transactionId, null);
+    hits.increment();
+    return true;
+  }
+
+  /** Waits for the tombstone of the replica publishing the event, the submitter presumably. */
+  private boolean awaitPublished(String transactionId, RecencyEntry entry) {
+    try {
+      entry.published.get(claimTimeoutInMillis, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      claimTimeouts.increment();
+      log.warn(
+          "Event of TxnID {} not published by its submitter within {} ms, claiming it",
+          transactionId,
+          claimTimeoutInMillis);
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return true;
+    } catch (ExecutionException e) {
+      return true;
+    }
+  }
+
+  /** Waits for the first claim of the transaction, which every replica sees alike. */
+  private String awaitClaimant(RecencyEntry entry) {
+    try {
+      return entry.claimant.get(claimTimeoutInMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException | TimeoutException e) {
+      return null;
+    }
+  }
+
+  private void materialise() {
+    try {
+      while (!closed) {
+        for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+          apply(record);
+        }
+      }
+    } catch (WakeupException e) {
+      if (!closed) {
+        throw e;
+      }
+    } catch (Exception e) {
+      log.error("Replica {} stopped materialising recent transactions", replicaId, e);
+    } finally {
+      consumer.close();
+    }
+  }
+
+  private void apply(ConsumerRecord<String, String> record) {
+    String transactionId = record.key();
+    String value = record.value();
+    if (transactionId == null) {
+      return;
+    }
+    if (value == null) {
+      RecencyEntry entry = (RecencyEntry) recencyIndex.getIfPresent(transactionId);
+      if (entry != null) {
+        entry.published.complete(null);
+      }
+      recencyIndex.invalidate(transactionId);
+    } else if (SUBMITTED.equals(value)) {
+      entry(transactionId).submitted = true;
+    } else if (value.startsWith(CLAIMED_BY)) {
+      // later claims of the transaction are ignored, the first one wins
+      entry(transactionId).claimant.complete(value.substring(CLAIMED_BY.length()));
+    }
+  }
+
+  private RecencyEntry entry(String transactionId) {
+    return (RecencyEntry)
+        recencyIndex.asMap().computeIfAbsent(transactionId, k -> new RecencyEntry());
+  }
+
+  private static final class RecencyEntry {
+    private final CompletableFuture<Void> published = new CompletableFuture<>();
+    private final CompletableFuture<String> claimant = new CompletableFuture<>();
+    private volatile boolean submitted;
+    private volatile boolean submittedLocally;
+  }
+}
@@ -0,0 +1,311 @@
+package hlf.java.rest.client.service.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.model.ClientResponseModel;
+import hlf.java.rest.client.service.TransactionCoalescer;
+import hlf.java.rest.client.service.TransactionFulfillment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds back the transactions of the coalesced functions in a pending batch per channel,
+ * chaincode, function and set of endorsing peers. A batch is submitted on the coalescing executor
+ * once it holds 'maxBatchSize' transactions or 'maxDelayInMillis' after its first transaction. A
+ * batch the executor rejects fails, so that the flush timer never submits a batch itself.
+ *
+ * <p>If the batch function returns a JSON array with an element per transaction, each transaction
+ * is answered with its element, else every transaction is answered with the whole result. A
+ * failed batch fails all of its transactions.
+ */
+@Slf4j
+@Service
+public class TransactionCoalescerImpl implements TransactionCoalescer {
+
+  @Autowired private FabricProperties fabricProperties;
+
+  @Autowired private TransactionFulfillment transactionFulfillment;
+
+  @Autowired private TaskExecutor coalescingTaskExecutor;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final Map<List<String>, FabricProperties.Coalescing> coalescedFunctions =
+      new HashMap<>();
+
+  // guarded by itself
+  private final Map<List<Object>, PendingBatch> pendingBatches = new HashMap<>();
+
+  private final ScheduledExecutorService flushScheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "transaction-coalescer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private ObjectReader jsonReader;
+
+  private DistributionSummary batchSizes;
+
+  private Counter coalescedTransactions;
+
+  @PostConstruct
+  private void initialize() {
+    // a payload such as 'true story' is a string rather than the JSON value 'true'
+    jsonReader = objectMapper.reader().with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    for (FabricProperties.Coalescing coalescing :
+        fabricProperties.getSubmission().getCoalescing()) {
+      coalescedFunctions.put(
+          Arrays.asList(
+              coalescing.getChannelName(),
+              coalescing.getChaincodeName(),
+              coalescing.getFunctionName()),
+          coalescing);
+      log.info(
+          "Transactions calling {} of chaincode {} on channel {} are coalesced into {}",
+          coalescing.getFunctionName(),
+          coalescing.getChaincodeName(),
+          coalescing.getChannelName(),
+          coalescing.getBatchFunctionName());
+    }
+
+    batchSizes =
+        DistributionSummary.builder("fabric.transactions.coalesced.batch.size")
+            .description("Transactions coalesced into a submitted batch")
+            .register(meterRegistry);
+    coalescedTransactions =
+        Counter.builder("fabric.transactions.coalesced")
+            .description("Transactions submitted as part of a coalesced batch")
+            .register(meterRegistry);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    flushScheduler.shutdownNow();
+    synchronized (pendingBatches) {
+      for (PendingBatch batch : pendingBatches.values()) {
+        batch.fail(
+            new ServiceException(
+                ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+                "Coalesced batch was not submitted before shutdown"));
+      }
+      pendingBatches.clear();
+    }
+  }
+
+  @Override
+  public boolean isCoalesced(
+      String networkName, String contractName, String transactionFunctionName) {
+    return coalescedFunctions.containsKey(
+        Arrays.asList(networkName, contractName, transactionFunctionName));
+  }
+
+  @Override
+  public CompletableFuture<ResponseEntity<ClientResponseModel>> writeTransactionToLedger(
+      String networkName,
+      String contractName,
+      String transactionFunctionName,
+      Optional<List<String>> peerNames,
+      String transactionParams) {
+    FabricProperties.Coalescing coalescing =
+        coalescedFunctions.get(Arrays.asList(networkName, contractName, transactionFunctionName));
+    if (coalescing == null) {
+      throw new ServiceException(
+          ErrorCode.NOT_SUPPORTED,
+          "Transactions calling " + transactionFunctionName + " are not coalesced");
+    }
+
+    List<Object> batchKey =
+        Arrays.asList(networkName, contractName, transactionFunctionName, peerNames);
+    CompletableFuture<ResponseEntity<ClientResponseModel>> transaction = new CompletableFuture<>();
+    PendingBatch fullBatch = null;
+
+    synchronized (pendingBatches) {
+      PendingBatch batch = pendingBatches.get(batchKey);
+      if (batch == null) {
+        PendingBatch newBatch = new PendingBatch(networkName, contractName, coalescing, peerNames);
+        newBatch.flushTimer =
+            flushScheduler.schedule(
+                () -> flushOnDelay(batchKey, newBatch),
+                coalescing.getMaxDelayInMillis(),
+                TimeUnit.MILLISECONDS);
+        pendingBatches.put(batchKey, newBatch);
+        batch = newBatch;
+      }
+      batch.payloads.add(transactionParams);
+      batch.transactions.add(transaction);
+
+      if (batch.transactions.size() >= coalescing.getMaxBatchSize()) {
+        pendingBatches.remove(batchKey);
+        batch.flushTimer.cancel(false);
+        fullBatch = batch;
+      }
+    }
+
+    if (fullBatch != null) {
+      flush(fullBatch);
+    }
+    return transaction;
+  }
+
+  private void flushOnDelay(List<Object> batchKey, PendingBatch batch) {
+    synchronized (pendingBatches) {
+      if (!pendingBatches.remove(batchKey, batch)) {
+        return;
+      }
+    }
+    flush(batch);
+  }
+
+  private void flush(PendingBatch batch) {
+    try {
+      coalescingTaskExecutor.execute(() -> submit(batch));
+    } catch (RuntimeException e) {
+      batch.fail(e);
+    }
+  }
+
+  private void submit(PendingBatch batch) {
+    int batchSize = batch.transactions.size();
+    batchSizes.record(batchSize);
+    coalescedTransactions.increment(batchSize);
+    log.debug(
+        "Submitting {} coalesced transactions to {} of chaincode {}",
+        batchSize,
+        batch.coalescing.getBatchFunctionName(),
+        batch.contractName);
+
+    CompletableFuture<ResponseEntity<ClientResponseModel>> submission;
+    try {
+      submission =
+          transactionFulfillment.writeTransactionToLedgerAsync(
+              batch.networkName,
+              batch.contractName,
+              batch.coalescing.getBatchFunctionName(),
+              batch.peerNames,
+              toBatchPayload(batch.payloads));
+    } catch (Exception e) {
+      batch.fail(e);
+      return;
+    }
+
+    submission.whenComplete(
+        (response, throwable) -> {
+          if (throwable != null) {
+            batch.fail(
+                throwable instanceof CompletionException ? throwable.getCause() : throwable);
+          } else {
+            batch.complete(response, jsonReader);
+          }
+        });
+  }
+
+  /** Passes JSON payloads to the batch function as they are, and other payloads as strings. */
+  private String toBatchPayload(List<String> payloads) {
+    ArrayNode batchPayload = objectMapper.createArrayNode();
+    for (String payload : payloads) {
+      JsonNode payloadNode = readJson(jsonReader, payload);
+      batchPayload.add(payloadNode != null ? payloadNode : new TextNode(payload));
+    }
+    return batchPayload.toString();
+  }
+
+  private static JsonNode readJson(ObjectReader jsonReader, String json) {
+    try {
+      JsonNode jsonNode = jsonReader.readTree(json);
+      return jsonNode == null || jsonNode.isMissingNode() ? null : jsonNode;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static class PendingBatch {
+
+    private final String networkName;
+
+    private final String contractName;
+
+    private final FabricProperties.Coalescing coalescing;
+
+    private final Optional<List<String>> peerNames;
+
+    private final List<String> payloads = new ArrayList<>();
+
+    private final List<CompletableFuture<ResponseEntity<ClientResponseModel>>> transactions =
+        new ArrayList<>();
+
+    private ScheduledFuture<?> flushTimer;
+
+    private PendingBatch(
+        String networkName,
+        String contractName,
+        FabricProperties.Coalescing coalescing,
+        Optional<List<String>> peerNames) {
+      this.networkName = networkName;
+      this.contractName = contractName;
+      this.coalescing = coalescing;
+      this.peerNames = peerNames;
+    }
+
+    private void complete(ResponseEntity<ClientResponseModel> response, ObjectReader jsonReader) {
+      ClientResponseModel batchResponse = response.getBody();
+      JsonNode results =
+          batchResponse != null && batchResponse.getMessage() instanceof String
+              ? readJson(jsonReader, (String) batchResponse.getMessage())
+              : null;
+
+      if (results == null || !results.isArray() || results.size() != transactions.size()) {
+        transactions.forEach(transaction -> transaction.complete(response));
+        return;
+      }
+      for (int index = 0; index < transactions.size(); index++) {
+        JsonNode result = results.get(index);
+        transactions
+            .get(index)
+            .complete(
+                new ResponseEntity<>(
+                    new ClientResponseModel(
+                        batchResponse.getTransactionId(),
+                        batchResponse.getCode(),
+                        result.isTextual() ? result.asText() : result.toString()),
+                    response.getStatusCode()));
+      }
+    }
+
+    private void fail(Throwable cause) {
+      transactions.forEach(transaction -> transaction.completeExceptionally(cause));
+    }
+  }
+}
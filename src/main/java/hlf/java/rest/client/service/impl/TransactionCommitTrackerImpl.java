@@ -0,0 +1,199 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.FabricTransactionException;
+import hlf.java.rest.client.service.TransactionCommitTracker;
+import hlf.java.rest.client.util.TxId;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class TransactionCommitTrackerImpl implements TransactionCommitTracker {
+
+  @Autowired private FabricProperties fabricProperties;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  // keyed by the packed ID, which hashes without running over the 64 characters of the ID
+  private final Map<TxId, CompletableFuture<BlockEvent.TransactionEvent>> pendingCommits =
+      new ConcurrentHashMap<>();
+
+  private final Map<String, Network> trackedChannels = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService commitTimeoutScheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "commit-timeout-scheduler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private Semaphore inFlightWindow;
+
+  @PostConstruct
+  private void initialize() {
+    inFlightWindow =
+        new Semaphore(fabricProperties.getSubmission().getMaxInFlightTransactions(), true);
+
+    Gauge.builder("fabric.transactions.inflight", pendingCommits, Map::size)
+        .description("Transactions submitted to the orderer and awaiting their commit event")
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    commitTimeoutScheduler.shutdownNow();
+  }
+
+  @Override
+  public CompletableFuture<BlockEvent.TransactionEvent> trackCommit(
+      Network network, String transactionId) {
+
+    int commitTimeoutInSeconds =
+        fabricProperties.getOrgConnectionConfig().getDefaultCommitTimeoutInSeconds();
+
+    acquireInFlightSlot(transactionId);
+    TxId txId = TxId.of(transactionId);
+    CompletableFuture<BlockEvent.TransactionEvent> commitFuture = new CompletableFuture<>();
+    try {
+      registerChannelListener(network);
+      pendingCommits.put(txId, commitFuture);
+
+      ScheduledFuture<?> commitTimeout =
+          commitTimeoutScheduler.schedule(
+              () ->
+                  failPendingCommit(
+                      txId,
+                      new FabricTransactionException(
+                          ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_TIMEOUT_ERROR,
+                          "Commit event for Transaction "
+                              + transactionId
+                              + " was not received within "
+                              + commitTimeoutInSeconds
+                              + " seconds")),
+              commitTimeoutInSeconds,
+              TimeUnit.SECONDS);
+
+      commitFuture.whenComplete(
+          (transactionEvent, throwable) -> {
+            commitTimeout.cancel(false);
+            inFlightWindow.release();
+          });
+    } catch (RuntimeException e) {
+      // the slot is only released by the completion of a tracked commit
+      pendingCommits.remove(txId, commitFuture);
+      inFlightWindow.release();
+      throw e;
+    }
+
+    return commitFuture;
+  }
+
+  @Override
+  public void cancel(String transactionId) {
+    CompletableFuture<BlockEvent.TransactionEvent> commitFuture =
+        pendingCommits.remove(TxId.of(transactionId));
+    if (commitFuture != null) {
+      commitFuture.cancel(false);
+    }
+  }
+
+  @Override
+  public int getInFlightCount() {
+    return pendingCommits.size();
+  }
+
+  /**
+   * Waits a bounded time for a slot of the in-flight window. Every tracked commit frees its slot
+   * within the commit timeout, so a submission only fails if the window stays saturated.
+   */
+  private void acquireInFlightSlot(String transactionId) {
+    long inFlightWaitTimeoutInMillis =
+        fabricProperties.getSubmission().getInFlightWaitTimeoutInMillis();
+    try {
+      if (inFlightWindow.tryAcquire(inFlightWaitTimeoutInMillis, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FabricTransactionException(
+          ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+          "Interrupted while waiting for an in-flight slot, Transaction "
+              + transactionId
+              + " not submitted",
+          e);
+    }
+    throw new FabricTransactionException(
+        ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+        "In-flight transaction window stayed full for "
+            + inFlightWaitTimeoutInMillis
+            + " ms, Transaction "
+            + transactionId
+            + " not submitted");
+  }
+
+  /**
+   * Registers the shared block listener of the channel, once per Network instance. A refreshed
+   * Gateway hands out new Network instances, in which case the listener is registered again.
+   */
+  private void registerChannelListener(Network network) {
+    trackedChannels.compute(
+        network.getChannel().getName(),
+        (channelName, trackedNetwork) -> {
+          if (trackedNetwork == network) {
+            return trackedNetwork;
+          }
+          log.info("Registering commit tracking block listener for channel {}", channelName);
+          network.addBlockListener(this::onBlockEvent);
+          return network;
+        });
+  }
+
+  private void onBlockEvent(BlockEvent blockEvent) {
+    for (BlockEvent.TransactionEvent transactionEvent : blockEvent.getTransactionEvents()) {
+      CompletableFuture<BlockEvent.TransactionEvent> commitFuture =
+          pendingCommits.remove(TxId.of(transactionEvent.getTransactionID()));
+
+      if (commitFuture == null) {
+        continue;
+      }
+
+      if (transactionEvent.isValid()) {
+        commitFuture.complete(transactionEvent);
+      } else {
+        commitFuture.completeExceptionally(
+            new FabricTransactionException(
+                ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
+                "Transaction "
+                    + transactionEvent.getTransactionID()
+                    + " was invalidated with validation code "
+                    + transactionEvent.getValidationCode()));
+      }
+    }
+  }
+
+  private void failPendingCommit(TxId txId, FabricTransactionException exception) {
+    CompletableFuture<BlockEvent.TransactionEvent> commitFuture = pendingCommits.remove(txId);
+    if (commitFuture != null) {
+      log.warn(exception.getMessage());
+      commitFuture.completeExceptionally(exception);
+    }
+  }
+}
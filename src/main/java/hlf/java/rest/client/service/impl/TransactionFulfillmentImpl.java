@@ -1,6 +1,7 @@
 package hlf.java.rest.client.service.impl;
 
 import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.BaseException;
 import hlf.java.rest.client.exception.ErrorCode;
 import hlf.java.rest.client.exception.ErrorConstants;
 import hlf.java.rest.client.exception.FabricTransactionException;
@@ -13,8 +14,10 @@ import hlf.java.rest.client.model.EventAPIResponseModel;
 import hlf.java.rest.client.model.EventType;
 import hlf.java.rest.client.model.MultiDataTransactionPayload;
 import hlf.java.rest.client.model.MultiPrivateDataTransactionPayloadValidator;
+import hlf.java.rest.client.service.EndorsingPeerResolver;
 import hlf.java.rest.client.service.HFClientWrapper;
 import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.service.TransactionCommitTracker;
 import hlf.java.rest.client.service.TransactionFulfillment;
 import hlf.java.rest.client.util.FabricClientConstants;
 import hlf.java.rest.client.util.FabricEventParseUtil;
@@ -28,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -41,6 +45,8 @@ import org.hyperledger.fabric.gateway.GatewayRuntimeException;
 import org.hyperledger.fabric.gateway.Network;
 import org.hyperledger.fabric.gateway.Transaction;
 import org.hyperledger.fabric.gateway.spi.CommitHandler;
+import org.hyperledger.fabric.gateway.spi.CommitHandlerFactory;
+import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.BlockInfo;
 import org.hyperledger.fabric.sdk.ChaincodeResponse;
 import org.hyperledger.fabric.sdk.Channel;
@@ -67,6 +73,10 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
 
   @Autowired private RecencyTransactionContext recencyTransactionContext;
 
+  @Autowired private TransactionCommitTracker transactionCommitTracker;
+
+  @Autowired private EndorsingPeerResolver endorsingPeerResolver;
+
   @Override
   public ResponseEntity<ClientResponseModel> initSmartContract(
       String networkName,
@@ -87,16 +97,7 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
     transactionProposalRequest.setTransactionContext(channel.newTransactionContext());
     transactionProposalRequest.setArgs(transactionParams);
 
-    List<Peer> endorsingPeers =
-        peerNames.orElse(Collections.emptyList()).stream()
-            .map(
-                peerName ->
-                    network.getChannel().getPeers().stream()
-                        .filter(peer -> peer.getName().equals(peerName))
-                        .findFirst()
-                        .orElse(null))
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
+    List<Peer> endorsingPeers = resolveEndorsingPeers(network, peerNames);
 
     Collection<ProposalResponse> proposalResponses;
     try {
@@ -173,27 +174,13 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
 
     try {
       Network network = gateway.getNetwork(networkName);
-      Contract contract = network.getContract(contractName);
-      Transaction fabricTransaction = contract.createTransaction(transactionFunctionName);
-      fabricTransaction.setCommitHandler(DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
-      fabricTransaction.setCommitTimeout(
-          fabricProperties.getOrgConnectionConfig().getDefaultCommitTimeoutInSeconds(),
-          TimeUnit.SECONDS);
-
-      List<Peer> endorsingPeers =
-          peerNames.orElse(Collections.emptyList()).stream()
-              .map(
-                  peerName ->
-                      network.getChannel().getPeers().stream()
-                          .filter(peer -> peer.getName().equals(peerName))
-                          .findFirst()
-                          .orElse(null))
-              .filter(Objects::nonNull)
-              .collect(Collectors.toList());
-
-      if (!endorsingPeers.isEmpty()) {
-        fabricTransaction.setEndorsingPeers(endorsingPeers);
-      }
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network,
+              contractName,
+              transactionFunctionName,
+              peerNames,
+              DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
 
       recencyTransactionContext.setTransactionContext(fabricTransaction.getTransactionId());
 
@@ -213,6 +200,28 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
         new ClientResponseModel(ErrorConstants.NO_ERROR, resultString), HttpStatus.OK);
   }
 
+  @Override
+  public CompletableFuture<ResponseEntity<ClientResponseModel>> writeTransactionToLedgerAsync(
+      String networkName,
+      String contractName,
+      String transactionFunctionName,
+      Optional<List<String>> peerNames,
+      String... transactionParams) {
+
+    log.info("Initiate the asynchronous Write Transaction to Ledger process");
+
+    try {
+      Network network = gateway.getNetwork(networkName);
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network, contractName, transactionFunctionName, peerNames, DefaultCommitHandlers.NONE);
+
+      return submitTransactionAsync(network, fabricTransaction, transactionParams);
+    } catch (Exception exception) {
+      return failedTransactionFuture(exception);
+    }
+  }
+
   @Override
   public ResponseEntity<ClientResponseModel> writePrivateTransactionToLedger(
       String networkName,
@@ -247,27 +256,13 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
 
     try {
       Network network = gateway.getNetwork(networkName);
-      Contract contract = network.getContract(contractName);
-      Transaction fabricTransaction = contract.createTransaction(transactionFunctionName);
-      fabricTransaction.setCommitHandler(DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
-      fabricTransaction.setCommitTimeout(
-          fabricProperties.getOrgConnectionConfig().getDefaultCommitTimeoutInSeconds(),
-          TimeUnit.SECONDS);
-
-      List<Peer> endorsingPeers =
-          peerNames.orElse(Collections.emptyList()).stream()
-              .map(
-                  peerName ->
-                      network.getChannel().getPeers().stream()
-                          .filter(peer -> peer.getName().equals(peerName))
-                          .findFirst()
-                          .orElse(null))
-              .filter(Objects::nonNull)
-              .collect(Collectors.toList());
-
-      if (!endorsingPeers.isEmpty()) {
-        fabricTransaction.setEndorsingPeers(endorsingPeers);
-      }
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network,
+              contractName,
+              transactionFunctionName,
+              peerNames,
+              DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
 
       transientParam.put(transientKey, jsonPayload.getBytes());
       fabricTransaction.setTransient(transientParam);
@@ -287,6 +282,35 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
         new ClientResponseModel(ErrorConstants.NO_ERROR, resultString), HttpStatus.OK);
   }
 
+  @Override
+  public CompletableFuture<ResponseEntity<ClientResponseModel>>
+      writePrivateTransactionToLedgerAsync(
+          String networkName,
+          String contractName,
+          String transactionFunctionName,
+          String collection,
+          String transientKey,
+          Optional<List<String>> peerNames,
+          String jsonPayload) {
+
+    log.info("Initiate the asynchronous Write Transaction to Ledger process");
+    Map<String, byte[]> transientParam = new HashMap<>();
+
+    try {
+      Network network = gateway.getNetwork(networkName);
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network, contractName, transactionFunctionName, peerNames, DefaultCommitHandlers.NONE);
+
+      transientParam.put(transientKey, jsonPayload.getBytes());
+      fabricTransaction.setTransient(transientParam);
+
+      return submitTransactionAsync(network, fabricTransaction, collection, transientKey);
+    } catch (Exception exception) {
+      return failedTransactionFuture(exception);
+    }
+  }
+
   @Override
   public ResponseEntity<ClientResponseModel> readTransactionFromLedger(
       String networkName,
@@ -450,71 +474,24 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
         new MultiPrivateDataTransactionPayloadValidator();
     validator.validate(multiDataTransactionPayload);
 
-    Collection<Peer> endorsingPeers;
     String resultString = StringUtils.EMPTY;
 
     try {
 
       // get the network object through connection profile
       Network network = gateway.getNetwork(channelName);
-      // fetch associated smart contract information from the blockchain
-      // network
-      Contract contract = network.getContract(chaincodeName);
-      // start composing the transaction
-      Transaction fabricTransaction = contract.createTransaction(transactionFunctionName);
-      // override default commithandler to wait for any response from msp
-      fabricTransaction.setCommitHandler(DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
-      fabricTransaction.setCommitTimeout(
-          fabricProperties.getOrgConnectionConfig().getDefaultCommitTimeoutInSeconds(),
-          TimeUnit.SECONDS);
-
-      endorsingPeers =
-          network.getChannel().getPeers().stream()
-              .filter(
-                  peer ->
-                      Objects.nonNull(multiDataTransactionPayload.getPeerNames())
-                          && multiDataTransactionPayload.getPeerNames().contains(peer.getName()))
-              .collect(Collectors.toList());
-
-      if (!endorsingPeers.isEmpty()) {
-        fabricTransaction.setEndorsingPeers(endorsingPeers);
-      }
-
-      List<String> publicParamsList = new ArrayList<>();
-
-      /*
-       * Scan through Private Data details the incoming transaction Request. If the Private data
-       * details consist of a Collection name, then add the key-value pair to the transient map and
-       * also ensure that the Collection name and key name is also part of the public params list.
-       * If Collection name is not present, simply populate the key-value pair to the transient map.
-       */
-      if (!CollectionUtils.isEmpty(multiDataTransactionPayload.getPrivatePayload())) {
-        Map<String, byte[]> transientParam = new HashMap<>();
-        multiDataTransactionPayload
-            .getPrivatePayload()
-            .forEach(
-                privateTransactionPayload -> {
-                  if (StringUtils.isNotBlank(privateTransactionPayload.getCollectionName())) {
-                    publicParamsList.add(privateTransactionPayload.getCollectionName());
-                    publicParamsList.add(privateTransactionPayload.getKey());
-                  }
-
-                  transientParam.put(
-                      privateTransactionPayload.getKey(),
-                      privateTransactionPayload.getData().getBytes(StandardCharsets.UTF_8));
-                });
-
-        fabricTransaction.setTransient(transientParam);
-      }
-
-      // Check if Public params are also passed in the request. If provided, append them to the
-      // public params list
-      if (!CollectionUtils.isEmpty(multiDataTransactionPayload.getPublicPayload())) {
-        publicParamsList.addAll(multiDataTransactionPayload.getPublicPayload());
-      }
-
-      // Map to String Array for dispatching via SDK method
-      String[] publicDataArgs = publicParamsList.toArray(new String[publicParamsList.size()]);
+      // start composing the transaction, overriding the default commithandler to wait for any
+      // response from msp
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network,
+              chaincodeName,
+              transactionFunctionName,
+              Optional.ofNullable(multiDataTransactionPayload.getPeerNames()),
+              DefaultCommitHandlers.MSPID_SCOPE_ANYFORTX);
+
+      String[] publicDataArgs =
+          prepareMultiDataArguments(fabricTransaction, multiDataTransactionPayload);
 
       recencyTransactionContext.setTransactionContext(fabricTransaction.getTransactionId());
 
@@ -532,36 +509,208 @@ public class TransactionFulfillmentImpl implements TransactionFulfillment {
         new ClientResponseModel(ErrorConstants.NO_ERROR, resultString), HttpStatus.OK);
   }
 
+  @Override
+  public CompletableFuture<ResponseEntity<ClientResponseModel>>
+      writeMultiDataTransactionToLedgerAsync(
+          String channelName,
+          String chaincodeName,
+          String transactionFunctionName,
+          MultiDataTransactionPayload multiDataTransactionPayload) {
+
+    try {
+      // Validate the incoming payload
+      AbstractModelValidator<MultiDataTransactionPayload> validator =
+          new MultiPrivateDataTransactionPayloadValidator();
+      validator.validate(multiDataTransactionPayload);
+
+      Network network = gateway.getNetwork(channelName);
+      Transaction fabricTransaction =
+          createWriteTransaction(
+              network,
+              chaincodeName,
+              transactionFunctionName,
+              Optional.ofNullable(multiDataTransactionPayload.getPeerNames()),
+              DefaultCommitHandlers.NONE);
+
+      String[] publicDataArgs =
+          prepareMultiDataArguments(fabricTransaction, multiDataTransactionPayload);
+
+      return submitTransactionAsync(network, fabricTransaction, publicDataArgs);
+    } catch (Exception exception) {
+      return failedTransactionFuture(exception);
+    }
+  }
+
+  /**
+   * Composes a transaction for submission, with the commit strategy and endorsing peers applied.
+   *
+   * @param commitHandlerFactory {@link DefaultCommitHandlers#NONE} for asynchronous submissions
+   *     whose commit is tracked by {@link TransactionCommitTracker}
+   */
+  private Transaction createWriteTransaction(
+      Network network,
+      String contractName,
+      String transactionFunctionName,
+      Optional<List<String>> peerNames,
+      CommitHandlerFactory commitHandlerFactory) {
+
+    // fetch associated smart contract information from the blockchain network
+    Contract contract = network.getContract(contractName);
+    Transaction fabricTransaction = contract.createTransaction(transactionFunctionName);
+    fabricTransaction.setCommitHandler(commitHandlerFactory);
+    fabricTransaction.setCommitTimeout(
+        fabricProperties.getOrgConnectionConfig().getDefaultCommitTimeoutInSeconds(),
+        TimeUnit.SECONDS);
+
+    List<Peer> endorsingPeers = resolveEndorsingPeers(network, peerNames);
+
+    if (!endorsingPeers.isEmpty()) {
+      fabricTransaction.setEndorsingPeers(endorsingPeers);
+    }
+    return fabricTransaction;
+  }
+
+  private List<Peer> resolveEndorsingPeers(Network network, Optional<List<String>> peerNames) {
+    if (!peerNames.isPresent() || peerNames.get().isEmpty()) {
+      return Collections.emptyList();
+    }
+    return endorsingPeerResolver.resolveEndorsingPeers(network, peerNames.get());
+  }
+
+  /**
+   * Scan through Private Data details the incoming transaction Request. If the Private data details
+   * consist of a Collection name, then add the key-value pair to the transient map and also ensure
+   * that the Collection name and key name is also part of the public params list. If Collection
+   * name is not present, simply populate the key-value pair to the transient map.
+   *
+   * @return the public arguments for dispatching via SDK method
+   */
+  private String[] prepareMultiDataArguments(
+      Transaction fabricTransaction, MultiDataTransactionPayload multiDataTransactionPayload) {
+
+    List<String> publicParamsList = new ArrayList<>();
+
+    if (!CollectionUtils.isEmpty(multiDataTransactionPayload.getPrivatePayload())) {
+      Map<String, byte[]> transientParam = new HashMap<>();
+      multiDataTransactionPayload
+          .getPrivatePayload()
+          .forEach(
+              privateTransactionPayload -> {
+                if (StringUtils.isNotBlank(privateTransactionPayload.getCollectionName())) {
+                  publicParamsList.add(privateTransactionPayload.getCollectionName());
+                  publicParamsList.add(privateTransactionPayload.getKey());
+                }
+
+                transientParam.put(
+                    privateTransactionPayload.getKey(),
+                    privateTransactionPayload.getData().getBytes(StandardCharsets.UTF_8));
+              });
+
+      fabricTransaction.setTransient(transientParam);
+    }
+
+    // Check if Public params are also passed in the request. If provided, append them to the
+    // public params list
+    if (!CollectionUtils.isEmpty(multiDataTransactionPayload.getPublicPayload())) {
+      publicParamsList.addAll(multiDataTransactionPayload.getPublicPayload());
+    }
+
+    // Map to String Array for dispatching via SDK method
+    return publicParamsList.toArray(new String[publicParamsList.size()]);
+  }
+
+  /**
+   * Endorses the transaction and sends it to the orderer on the calling thread, then hands the wait
+   * for the commit event over to the {@link TransactionCommitTracker}. The commit tracking is
+   * registered prior to the submission, so that a fast commit is never missed. If the in-flight
+   * window stays full for the in-flight wait timeout, the transaction is not submitted and the
+   * returned future fails right away.
+   */
+  private CompletableFuture<ResponseEntity<ClientResponseModel>> submitTransactionAsync(
+      Network network, Transaction fabricTransaction, String... transactionParams) {
+
+    String transactionId = fabricTransaction.getTransactionId();
+    CompletableFuture<BlockEvent.TransactionEvent> commitFuture;
+    try {
+      commitFuture = transactionCommitTracker.trackCommit(network, transactionId);
+    } catch (Exception exception) {
+      return failedTransactionFuture(exception);
+    }
+
+    byte[] result;
+    try {
+      recencyTransactionContext.setTransactionContext(transactionId);
+
+      log.info("Performing asynchronous Write Transaction to Ledger with Tx ID {}", transactionId);
+      result = fabricTransaction.submit(transactionParams);
+    } catch (Exception exception) {
+      transactionCommitTracker.cancel(transactionId);
+      return failedTransactionFuture(exception);
+    }
+
+    String resultString = new String(result, StandardCharsets.UTF_8);
+    log.info("Transaction {} accepted by the orderer - Response: {}", transactionId, resultString);
+
+    // Composed on the submitting thread to retain the trace details of the request
+    ClientResponseModel clientResponseModel =
+        new ClientResponseModel(ErrorConstants.NO_ERROR, resultString);
+
+    return commitFuture.thenApply(
+        transactionEvent -> {
+          log.info(
+              "Transaction {} committed in Block {}",
+              transactionId,
+              transactionEvent.getBlockEvent().getBlockNumber());
+          return new ResponseEntity<>(clientResponseModel, HttpStatus.OK);
+        });
+  }
+
+  private CompletableFuture<ResponseEntity<ClientResponseModel>> failedTransactionFuture(
+      Exception exception) {
+    CompletableFuture<ResponseEntity<ClientResponseModel>> failedFuture =
+        new CompletableFuture<>();
+    failedFuture.completeExceptionally(translateTransactionException(exception));
+    return failedFuture;
+  }
+
   private void handleTransactionException(Exception incomingException) {
+    throw translateTransactionException(incomingException);
+  }
+
+  private BaseException translateTransactionException(Exception incomingException) {
 
     log.error(
         "An error occurred while submitting the transaction to the Network. Error Type: {} & Error Message: {}",
         incomingException.getClass().getSimpleName(),
         incomingException.getMessage());
 
+    if (incomingException instanceof BaseException) {
+      return (BaseException) incomingException;
+    }
+
     /** Exceptions that are preferred to be get retried are wrapped as FabricTransactionException */
     if (incomingException instanceof ContractException) {
-      throw new FabricTransactionException(
+      return new FabricTransactionException(
           ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_CONTRACT_ERROR,
           incomingException.getMessage(),
           incomingException);
     }
 
     if (incomingException instanceof TimeoutException) {
-      throw new FabricTransactionException(
+      return new FabricTransactionException(
           ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_TIMEOUT_ERROR,
           incomingException.getMessage(),
           incomingException);
     }
 
     if (incomingException instanceof GatewayRuntimeException) {
-      throw new FabricTransactionException(
+      return new FabricTransactionException(
           ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_GATEWAY_ERROR,
           incomingException.getMessage(),
           incomingException);
     }
 
-    throw new ServiceException(
+    return new ServiceException(
         ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_ERROR,
         incomingException.getMessage(),
         incomingException);
@@ -0,0 +1,138 @@
+package hlf.java.rest.client.service.impl;
+
+import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.util.TxId;
+import hlf.java.rest.client.util.TxIdSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the recently submitted transactions as packed IDs in open-addressed sets, striped across
+ * segments by the leading bits of the IDs. A segment holds two generations: submissions are added
+ * to the current one, which replaces the previous one once it is full or half the recency window
+ * old. A transaction is thereby remembered for at least half the window and at most the window,
+ * and the window holds between half and all of 'recencyWindowSize' transactions.
+ */
+public class TxIdRecencyTransactionContext implements RecencyTransactionContext {
+
+  private static final String LOOKUPS_METRIC = "fabric.events.dedupe.lookups";
+  private static final String SIZE_METRIC = "fabric.events.dedupe.size";
+  private static final String RESULT_TAG = "result";
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  private final long generationMillis;
+
+  private final LongSupplier clock;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  /**
+   * @param recencyWindowSize int number of transactions the window holds at most
+   * @param windowMillis long time the submissions are remembered for at most
+   * @param meterRegistry MeterRegistry the metrics are registered in
+   */
+  public TxIdRecencyTransactionContext(
+      int recencyWindowSize, long windowMillis, MeterRegistry meterRegistry) {
+    this(recencyWindowSize, windowMillis, meterRegistry, System::currentTimeMillis);
+  }
+
+  TxIdRecencyTransactionContext(
+      int recencyWindowSize, long windowMillis, MeterRegistry meterRegistry, LongSupplier clock) {
+    int generationCapacity = Math.max(1, recencyWindowSize / SEGMENTS / 2);
+    this.clock = clock;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(generationCapacity, clock.getAsLong());
+    }
+    this.generationMillis = Math.max(1, windowMillis / 2);
+
+    this.hits = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "hit");
+    this.misses = meterRegistry.counter(LOOKUPS_METRIC, RESULT_TAG, "miss");
+    Gauge.builder(SIZE_METRIC, this, TxIdRecencyTransactionContext::size)
+        .description("Transactions awaiting their events in the recency window")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void setTransactionContext(String transactionId) {
+    TxId txId = TxId.of(transactionId);
+    segmentOf(txId).add(txId, clock.getAsLong(), generationMillis);
+  }
+
+  @Override
+  public boolean validateAndRemoveTransactionContext(String transactionId) {
+    TxId txId = TxId.of(transactionId);
+    if (segmentOf(txId).remove(txId, clock.getAsLong(), generationMillis)) {
+      hits.increment();
+      return true;
+    }
+    misses.increment();
+    return false;
+  }
+
+  private Segment segmentOf(TxId txId) {
+    // the low bits of the hash pick the slot within the segment
+    return segments[(txId.hashCode() >>> 28) & (SEGMENTS - 1)];
+  }
+
+  private long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private static final class Segment {
+    private TxIdSet current;
+    private TxIdSet previous;
+    private long currentStartedAt;
+
+    private Segment(int generationCapacity, long now) {
+      this.current = new TxIdSet(generationCapacity);
+      this.previous = new TxIdSet(generationCapacity);
+      this.currentStartedAt = now;
+    }
+
+    private synchronized void add(TxId txId, long now, long generationMillis) {
+      expire(now, generationMillis);
+      if (!current.add(txId)) {
+        rotate(now);
+        current.add(txId);
+      }
+    }
+
+    private synchronized boolean remove(TxId txId, long now, long generationMillis) {
+      expire(now, generationMillis);
+      return current.remove(txId) || previous.remove(txId);
+    }
+
+    private synchronized int size() {
+      return current.size() + previous.size();
+    }
+
+    private void expire(long now, long generationMillis) {
+      long currentAge = now - currentStartedAt;
+      if (currentAge >= 2 * generationMillis) {
+        current.clear();
+        previous.clear();
+        currentStartedAt = now;
+      } else if (currentAge >= generationMillis) {
+        rotate(now);
+      }
+    }
+
+    private void rotate(long now) {
+      TxIdSet cleared = previous;
+      cleared.clear();
+      previous = current;
+      current = cleared;
+      currentStartedAt = now;
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package hlf.java.rest.client.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.model.EncodedBlockEvent;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+
+/**
+ * Encodes block events straight from the protobuf write-sets of the transaction into a per thread
+ * buffer. No write-set POJOs or intermediate Strings are created.
+ *
+ * <p>The JSON event structure is written through a streaming JSON generator. By default the
+ * write-sets are embedded as JSON strings, byte for byte as the event structure has always been
+ * published. Optionally they are embedded as JSON arrays, sparing the consumers the second parse
+ * and the escaping of every quote.
+ *
+ * <p>The protobuf envelope, described by proto/events.proto, carries the Fabric KVWrite messages as
+ * they are, without sanitisation, and is written with a CodedOutputStream.
+ */
+@UtilityClass
+public class BlockEventEncoder {
+
+  // Buffers grown beyond this size by an unusually large event are not retained by the thread
+  private final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final ThreadLocal<ReusableByteArrayOutputStream> EVENT_BUFFERS =
+      ThreadLocal.withInitial(ReusableByteArrayOutputStream::new);
+
+  private final ThreadLocal<ReusableByteArrayOutputStream> WRITE_SET_BUFFERS =
+      ThreadLocal.withInitial(ReusableByteArrayOutputStream::new);
+
+  /**
+   * @param transactionEnvelopeInfo transaction whose write-set is encoded
+   * @param privateData private read-write sets of the transaction, keyed by transaction index
+   * @param eventURI String URI of the event
+   * @param payloadFormat EventPayloadFormat to encode the event in
+   * @param embedWriteSetsAsJson whether to embed the write-sets as JSON arrays instead of strings
+   * @return the encoded event
+   */
+  public EncodedBlockEvent encode(
+      BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo,
+      Map<Long, Rwset.TxPvtReadWriteSet> privateData,
+      String eventURI,
+      EventPayloadFormat payloadFormat,
+      boolean embedWriteSetsAsJson)
+      throws IOException {
+    List<KvRwset.KVRWSet> writeSets = new ArrayList<>();
+    for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo txnActionInfo :
+        transactionEnvelopeInfo.getTransactionActionInfos()) {
+      for (TxReadWriteSetInfo.NsRwsetInfo rwSetInfo :
+          txnActionInfo.getTxReadWriteSet().getNsRwsetInfos()) {
+        writeSets.add(rwSetInfo.getRwset());
+      }
+    }
+    return encode(writeSets, privateData, eventURI, payloadFormat, embedWriteSetsAsJson);
+  }
+
+  /**
+   * @param writeSets public read-write sets of the transaction
+   * @param privateData private read-write sets of the transaction, keyed by transaction index
+   * @param eventURI String URI of the event
+   * @param payloadFormat EventPayloadFormat to encode the event in
+   * @param embedWriteSetsAsJson whether to embed the write-sets as JSON arrays instead of strings
+   * @return the encoded event
+   */
+  public EncodedBlockEvent encode(
+      List<KvRwset.KVRWSet> writeSets,
+      Map<Long, Rwset.TxPvtReadWriteSet> privateData,
+      String eventURI,
+      EventPayloadFormat payloadFormat,
+      boolean embedWriteSetsAsJson)
+      throws IOException {
+    if (payloadFormat == EventPayloadFormat.PROTOBUF) {
+      return encodeProtobuf(writeSets, privateData, eventURI);
+    }
+    return encodeJson(writeSets, privateData, eventURI, embedWriteSetsAsJson);
+  }
+
+  private EncodedBlockEvent encodeJson(
+      List<KvRwset.KVRWSet> writeSets,
+      Map<Long, Rwset.TxPvtReadWriteSet> privateData,
+      String eventURI,
+      boolean embedWriteSetsAsJson)
+      throws IOException {
+    ReusableByteArrayOutputStream eventBuffer = EVENT_BUFFERS.get();
+    try {
+      int privateWriteCount;
+      try (JsonGenerator generator = JSON_FACTORY.createGenerator(eventBuffer)) {
+        generator.writeStartObject();
+
+        generator.writeFieldName("data");
+        if (embedWriteSetsAsJson) {
+          writeWriteSet(generator, writeSets);
+        } else {
+          ReusableByteArrayOutputStream writeSetBuffer = WRITE_SET_BUFFERS.get();
+          try {
+            try (JsonGenerator writeSetGenerator = JSON_FACTORY.createGenerator(writeSetBuffer)) {
+              writeWriteSet(writeSetGenerator, writeSets);
+            }
+            writeSetBuffer.writeAsString(generator);
+          } finally {
+            release(WRITE_SET_BUFFERS, writeSetBuffer);
+          }
+        }
+
+        generator.writeFieldName("privateData");
+        if (embedWriteSetsAsJson) {
+          privateWriteCount = writePrivateDataWriteSet(generator, privateData);
+        } else {
+          ReusableByteArrayOutputStream writeSetBuffer = WRITE_SET_BUFFERS.get();
+          try {
+            try (JsonGenerator writeSetGenerator = JSON_FACTORY.createGenerator(writeSetBuffer)) {
+              privateWriteCount = writePrivateDataWriteSet(writeSetGenerator, privateData);
+            }
+            // the private data of a transaction without private writes was published as empty
+            if (privateWriteCount == 0) {
+              generator.writeString("");
+            } else {
+              writeSetBuffer.writeAsString(generator);
+            }
+          } finally {
+            release(WRITE_SET_BUFFERS, writeSetBuffer);
+          }
+        }
+
+        generator.writeNullField("error");
+        generator.writeStringField("eventURI", eventURI);
+        generator.writeEndObject();
+      }
+      return new EncodedBlockEvent(eventBuffer.toByteArray(), privateWriteCount > 0);
+    } finally {
+      release(EVENT_BUFFERS, eventBuffer);
+    }
+  }
+
+  private EncodedBlockEvent encodeProtobuf(
+      List<KvRwset.KVRWSet> writeSets,
+      Map<Long, Rwset.TxPvtReadWriteSet> privateData,
+      String eventURI)
+      throws IOException {
+    ReusableByteArrayOutputStream eventBuffer = EVENT_BUFFERS.get();
+    try {
+      CodedOutputStream output = CodedOutputStream.newInstance(eventBuffer);
+      output.writeString(1, eventURI);
+      for (KvRwset.KVRWSet writeSet : writeSets) {
+        for (KvRwset.KVWrite kvWrite : writeSet.getWritesList()) {
+          output.writeMessage(2, kvWrite);
+        }
+      }
+      int privateWriteCount =
+          forEachPrivateWrite(
+              privateData,
+              (nsRWSet, pvtRWSet, kvWrite) -> {
+                output.writeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(
+                    CodedOutputStream.computeStringSize(1, nsRWSet.getNamespace())
+                        + CodedOutputStream.computeStringSize(2, pvtRWSet.getCollectionName())
+                        + CodedOutputStream.computeMessageSize(3, kvWrite));
+                output.writeString(1, nsRWSet.getNamespace());
+                output.writeString(2, pvtRWSet.getCollectionName());
+                output.writeMessage(3, kvWrite);
+              });
+      output.flush();
+      return new EncodedBlockEvent(eventBuffer.toByteArray(), privateWriteCount > 0);
+    } finally {
+      release(EVENT_BUFFERS, eventBuffer);
+    }
+  }
+
+  /**
+   * Writes the private data writes as a JSON array.
+   *
+   * @return the number of writes
+   */
+  int writePrivateDataWriteSet(
+      JsonGenerator generator, Map<Long, Rwset.TxPvtReadWriteSet> privateData) throws IOException {
+    TextSanitiser textSanitiser = FabricEventParseUtil.getTextSanitiser();
+
+    generator.writeStartArray();
+    int writeCount =
+        forEachPrivateWrite(
+            privateData,
+            (nsRWSet, pvtRWSet, kvWrite) -> {
+              generator.writeStartObject();
+              // the flag is written twice, as the write-set POJOs have always been serialized
+              generator.writeBooleanField("delete", kvWrite.getIsDelete());
+              generator.writeStringField(
+                  "namespace", textSanitiser.sanitise(nsRWSet.getNamespaceBytes()));
+              generator.writeStringField(
+                  "collection_name", textSanitiser.sanitise(pvtRWSet.getCollectionNameBytes()));
+              generator.writeStringField("key", textSanitiser.sanitise(kvWrite.getKeyBytes()));
+              generator.writeStringField("value", textSanitiser.sanitise(kvWrite.getValue()));
+              generator.writeBooleanField("is_delete", kvWrite.getIsDelete());
+              generator.writeEndObject();
+            });
+    generator.writeEndArray();
+    return writeCount;
+  }
+
+  /** @return the number of private writes visited */
+  private int forEachPrivateWrite(
+      Map<Long, Rwset.TxPvtReadWriteSet> privateData, PrivateWriteVisitor visitor)
+      throws IOException {
+    int writeCount = 0;
+    for (Rwset.TxPvtReadWriteSet privateDataValue : privateData.values()) {
+      Rwset.TxReadWriteSet.DataModel dataModel = privateDataValue.getDataModel();
+      for (Rwset.NsPvtReadWriteSet nsRWSet : privateDataValue.getNsPvtRwsetList()) {
+        for (Rwset.CollectionPvtReadWriteSet pvtRWSet : nsRWSet.getCollectionPvtRwsetList()) {
+          if (dataModel != Rwset.TxReadWriteSet.DataModel.KV) {
+            throw new ServiceException(
+                ErrorCode.HYPERLEDGER_FABRIC_NOT_SUPPORTED, "Private Data but not KV Set");
+          }
+          KvRwset.KVRWSet kvrwset = KvRwset.KVRWSet.parseFrom(pvtRWSet.getRwset());
+          for (KvRwset.KVWrite kvWrite : kvrwset.getWritesList()) {
+            visitor.visit(nsRWSet, pvtRWSet, kvWrite);
+            writeCount++;
+          }
+        }
+      }
+    }
+    return writeCount;
+  }
+
+  private void writeWriteSet(JsonGenerator generator, List<KvRwset.KVRWSet> writeSets)
+      throws IOException {
+    generator.writeStartArray();
+    for (KvRwset.KVRWSet writeSet : writeSets) {
+      writeWrites(generator, writeSet);
+    }
+    generator.writeEndArray();
+  }
+
+  private void writeWrites(JsonGenerator generator, KvRwset.KVRWSet kvrwset) throws IOException {
+    TextSanitiser textSanitiser = FabricEventParseUtil.getTextSanitiser();
+    for (KvRwset.KVWrite kvWrite : kvrwset.getWritesList()) {
+      generator.writeStartObject();
+      // the flag is written twice, as the write-set POJOs have always been serialized
+      generator.writeBooleanField("delete", kvWrite.getIsDelete());
+      generator.writeStringField("key", textSanitiser.sanitise(kvWrite.getKeyBytes()));
+      generator.writeStringField("value", textSanitiser.sanitise(kvWrite.getValue()));
+      generator.writeBooleanField("is_delete", kvWrite.getIsDelete());
+      generator.writeEndObject();
+    }
+  }
+
+  private void release(
+      ThreadLocal<ReusableByteArrayOutputStream> buffers, ReusableByteArrayOutputStream buffer) {
+    if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffers.remove();
+    } else {
+      buffer.reset();
+    }
+  }
+
+  private interface PrivateWriteVisitor {
+    void visit(
+        Rwset.NsPvtReadWriteSet nsRWSet,
+        Rwset.CollectionPvtReadWriteSet pvtRWSet,
+        KvRwset.KVWrite kvWrite)
+        throws IOException;
+  }
+
+  private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private ReusableByteArrayOutputStream() {
+      super(4096);
+    }
+
+    private int capacity() {
+      return buf.length;
+    }
+
+    /** Writes the UTF-8 content of the buffer as a JSON string value, escaping it in place. */
+    private void writeAsString(JsonGenerator generator) throws IOException {
+      generator.writeUTF8String(buf, 0, count);
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package hlf.java.rest.client.util;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs a task rejected by a saturated executor on the submitting thread, like {@link
+ * ThreadPoolExecutor.CallerRunsPolicy}. Once the executor is shut down, the task is rejected with
+ * an exception instead of being silently dropped, so that a future depending on it fails rather
+ * than never completing.
+ */
+public class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+
+  @Override
+  public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("Executor is shut down, task " + task + " rejected");
+    }
+    task.run();
+  }
+}
@@ -0,0 +1,74 @@
+package hlf.java.rest.client.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * A TaskExecutor capping the number of concurrently running tasks of an unbounded executor, such as
+ * a virtual thread per task executor. Once the cap is reached, the submitting thread waits up to
+ * 'maxWaitInMillis' for a running task to complete, after which the task is rejected with a {@link
+ * TaskRejectedException}, as a saturated thread pool would. The submitter, typically a Kafka
+ * consumer thread, is thereby never held indefinitely, and is left to be paused by backpressure.
+ */
+public class ConcurrencyLimitedTaskExecutor implements TaskExecutor, DisposableBean {
+
+  private final ExecutorService delegate;
+  private final int maxConcurrency;
+  private final long maxWaitInMillis;
+  private final Semaphore permits;
+
+  public ConcurrencyLimitedTaskExecutor(
+      ExecutorService delegate, int maxConcurrency, long maxWaitInMillis) {
+    this.delegate = delegate;
+    this.maxConcurrency = maxConcurrency;
+    this.maxWaitInMillis = maxWaitInMillis;
+    this.permits = new Semaphore(maxConcurrency);
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    try {
+      if (!permits.tryAcquire(maxWaitInMillis, TimeUnit.MILLISECONDS)) {
+        throw new TaskRejectedException(
+            "No permit was released within " + maxWaitInMillis + " ms, task " + task + " rejected");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TaskRejectedException("Interrupted while waiting for a permit", e);
+    }
+
+    try {
+      delegate.execute(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              permits.release();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      throw new TaskRejectedException("Executor rejected task " + task, e);
+    }
+  }
+
+  /** @return maximum number of concurrently running tasks */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /** @return number of tasks that can be started without waiting */
+  public int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  @Override
+  public void destroy() {
+    delegate.shutdown();
+  }
+}
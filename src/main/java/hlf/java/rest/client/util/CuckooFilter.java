@@ -0,0 +1,237 @@
+package hlf.java.rest.client.util;
+
+import java.util.Arrays;
+
+/**
+ * Cuckoo filter over 64 bit hashes, supporting removal. Each bucket holds four fingerprints, which
+ * are bit-packed in a long array so that the filter occupies the memory budget it is sized for.
+ *
+ * <p>A fingerprint of f bits gives a false positive rate of about 8 / 2^f. Removing a hash that
+ * was never added may remove the fingerprint of another hash sharing it. Once a chain of
+ * relocations fails, the displaced fingerprint is kept aside and the filter refuses further
+ * additions until a removal makes room.
+ */
+public class CuckooFilter {
+
+  private static final int SLOTS_PER_BUCKET = 4;
+  private static final int MAX_KICKS = 500;
+  private static final int MIN_FINGERPRINT_BITS = 4;
+  private static final int MAX_FINGERPRINT_BITS = 32;
+  private static final long MAX_BUCKETS = 1L << 28;
+
+  private final int fingerprintBits;
+
+  private final long fingerprintMask;
+
+  private final int bucketMask;
+
+  private final long[] table;
+
+  private int size;
+
+  private boolean hasVictim;
+
+  private long victimFingerprint;
+
+  private int victimIndex;
+
+  private long kickSeed = 0x9E3779B97F4A7C15L;
+
+  /**
+   * @param maxBytes long memory budget of the fingerprints
+   * @param fingerprintBits int bits of a fingerprint, see {@link #fingerprintBits(double)}
+   */
+  public CuckooFilter(long maxBytes, int fingerprintBits) {
+    if (fingerprintBits < MIN_FINGERPRINT_BITS || fingerprintBits > MAX_FINGERPRINT_BITS) {
+      throw new IllegalArgumentException("Fingerprints hold 4 to 32 bits");
+    }
+    this.fingerprintBits = fingerprintBits;
+    this.fingerprintMask = (1L << fingerprintBits) - 1;
+    long buckets = maxBytes * Byte.SIZE / fingerprintBits / SLOTS_PER_BUCKET;
+    buckets = Math.min(MAX_BUCKETS, Long.highestOneBit(Math.max(1, buckets)));
+    this.bucketMask = (int) buckets - 1;
+    long tableBits = buckets * SLOTS_PER_BUCKET * fingerprintBits;
+    this.table = new long[(int) ((tableBits + Long.SIZE - 1) / Long.SIZE)];
+  }
+
+  /**
+   * @param falsePositiveRate double targeted rate of false positives
+   * @return the fingerprint bits achieving the rate
+   */
+  public static int fingerprintBits(double falsePositiveRate) {
+    int bits =
+        (int) Math.ceil(Math.log(2.0 * SLOTS_PER_BUCKET / falsePositiveRate) / Math.log(2));
+    return Math.max(MIN_FINGERPRINT_BITS, Math.min(MAX_FINGERPRINT_BITS, bits));
+  }
+
+  /**
+   * @param hash long hash of the element
+   * @return false if the filter is full and the element was not added
+   */
+  public synchronized boolean add(long hash) {
+    if (hasVictim) {
+      return false;
+    }
+    long fingerprint = fingerprint(hash);
+    int index = index(hash);
+    if (insert(index, fingerprint) || insert(altIndex(index, fingerprint), fingerprint)) {
+      size++;
+      return true;
+    }
+
+    if ((nextKick() & 1) == 0) {
+      index = altIndex(index, fingerprint);
+    }
+    for (int kick = 0; kick < MAX_KICKS; kick++) {
+      long slot = (long) index * SLOTS_PER_BUCKET + (nextKick() & (SLOTS_PER_BUCKET - 1));
+      long displaced = read(slot);
+      write(slot, fingerprint);
+      fingerprint = displaced;
+      index = altIndex(index, fingerprint);
+      if (insert(index, fingerprint)) {
+        size++;
+        return true;
+      }
+    }
+    hasVictim = true;
+    victimFingerprint = fingerprint;
+    victimIndex = index;
+    size++;
+    return true;
+  }
+
+  /**
+   * @param hash long hash of the element
+   * @return true if the element may have been added, false if it surely was not
+   */
+  public synchronized boolean mightContain(long hash) {
+    long fingerprint = fingerprint(hash);
+    int index = index(hash);
+    int altIndex = altIndex(index, fingerprint);
+    return (hasVictim
+            && victimFingerprint == fingerprint
+            && (victimIndex == index || victimIndex == altIndex))
+        || find(index, fingerprint) >= 0
+        || find(altIndex, fingerprint) >= 0;
+  }
+
+  /**
+   * @param hash long hash of the element
+   * @return true if a fingerprint of the element was found and removed
+   */
+  public synchronized boolean remove(long hash) {
+    long fingerprint = fingerprint(hash);
+    int index = index(hash);
+    int altIndex = altIndex(index, fingerprint);
+
+    if (hasVictim
+        && victimFingerprint == fingerprint
+        && (victimIndex == index || victimIndex == altIndex)) {
+      hasVictim = false;
+      size--;
+      return true;
+    }
+    long slot = find(index, fingerprint);
+    if (slot < 0) {
+      slot = find(altIndex, fingerprint);
+    }
+    if (slot < 0) {
+      return false;
+    }
+    write(slot, 0);
+    size--;
+
+    // the freed slot may take the fingerprint kept aside
+    if (hasVictim
+        && (insert(victimIndex, victimFingerprint)
+            || insert(altIndex(victimIndex, victimFingerprint), victimFingerprint))) {
+      hasVictim = false;
+    }
+    return true;
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(table, 0);
+    size = 0;
+    hasVictim = false;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /** @return the number of fingerprints the filter holds at most */
+  public long capacity() {
+    return (long) (bucketMask + 1) * SLOTS_PER_BUCKET;
+  }
+
+  public synchronized double fillRatio() {
+    return (double) size / capacity();
+  }
+
+  private long fingerprint(long hash) {
+    long fingerprint = hash & fingerprintMask;
+    // zero marks an empty slot
+    return fingerprint == 0 ? 1 : fingerprint;
+  }
+
+  private int index(long hash) {
+    return (int) (hash >>> 32) & bucketMask;
+  }
+
+  private int altIndex(int index, long fingerprint) {
+    return (index ^ (int) ((fingerprint * 0xC6A4A7935BD1E995L) >>> 32)) & bucketMask;
+  }
+
+  private boolean insert(int index, long fingerprint) {
+    long firstSlot = (long) index * SLOTS_PER_BUCKET;
+    for (long slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+      if (read(slot) == 0) {
+        write(slot, fingerprint);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long find(int index, long fingerprint) {
+    long firstSlot = (long) index * SLOTS_PER_BUCKET;
+    for (long slot = firstSlot; slot < firstSlot + SLOTS_PER_BUCKET; slot++) {
+      if (read(slot) == fingerprint) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private long read(long slot) {
+    long bit = slot * fingerprintBits;
+    int word = (int) (bit >>> 6);
+    int offset = (int) (bit & (Long.SIZE - 1));
+    long value = table[word] >>> offset;
+    if (offset + fingerprintBits > Long.SIZE) {
+      value |= table[word + 1] << (Long.SIZE - offset);
+    }
+    return value & fingerprintMask;
+  }
+
+  private void write(long slot, long fingerprint) {
+    long bit = slot * fingerprintBits;
+    int word = (int) (bit >>> 6);
+    int offset = (int) (bit & (Long.SIZE - 1));
+    table[word] = (table[word] & ~(fingerprintMask << offset)) | (fingerprint << offset);
+    if (offset + fingerprintBits > Long.SIZE) {
+      int writtenBits = Long.SIZE - offset;
+      table[word + 1] =
+          (table[word + 1] & ~(fingerprintMask >>> writtenBits)) | (fingerprint >>> writtenBits);
+    }
+  }
+
+  /** Xorshift, picking the slots to relocate deterministically. */
+  private int nextKick() {
+    kickSeed ^= kickSeed << 13;
+    kickSeed ^= kickSeed >>> 7;
+    kickSeed ^= kickSeed << 17;
+    return (int) kickSeed;
+  }
+}
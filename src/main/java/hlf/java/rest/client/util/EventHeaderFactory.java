@@ -0,0 +1,71 @@
+package hlf.java.rest.client.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+/**
+ * Creates the headers of the published events. Headers of recurring values, such as chaincode and
+ * function names or validity flags, are encoded once and shared by all the events carrying them.
+ *
+ * <p>The intern table holds at most the given number of headers, values seen once it is full are
+ * encoded for every event as unique values are.
+ */
+public class EventHeaderFactory {
+
+  private final int capacity;
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final Map<String, Map<String, Header>> internedHeaders = new ConcurrentHashMap<>();
+
+  public EventHeaderFactory(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @param key String key of the header
+   * @param value String recurring value of the header
+   * @return the shared header of the value, or a new header if the intern table is full
+   */
+  public Header interned(String key, String value) {
+    Map<String, Header> keyHeaders = internedHeaders.get(key);
+    if (keyHeaders == null) {
+      keyHeaders = internedHeaders.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+    Header header = keyHeaders.get(value);
+    if (header != null) {
+      return header;
+    }
+    if (size.get() >= capacity) {
+      return header(key, value);
+    }
+    return keyHeaders.computeIfAbsent(
+        value,
+        v -> {
+          size.incrementAndGet();
+          return header(key, v);
+        });
+  }
+
+  /**
+   * @param key String key of the header
+   * @param value boolean value of the header
+   * @return the shared header of the value
+   */
+  public Header interned(String key, boolean value) {
+    return interned(key, Boolean.toString(value));
+  }
+
+  /**
+   * @param key String key of the header
+   * @param value String value of the header
+   * @return a new header with the UTF-8 encoded value
+   */
+  public static Header header(String key, String value) {
+    return new RecordHeader(key, value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -3,14 +3,19 @@ package hlf.java.rest.client.util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import hlf.java.rest.client.exception.ErrorCode;
 import hlf.java.rest.client.exception.ServiceException;
 import hlf.java.rest.client.model.BlockEventPrivateDataWriteSet;
 import hlf.java.rest.client.model.BlockEventWriteSet;
+import hlf.java.rest.client.model.EventPayloadFormat;
 import hlf.java.rest.client.model.EventStructure;
 import hlf.java.rest.client.model.EventType;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +33,22 @@ public class FabricEventParseUtil {
 
   static ObjectMapper mapper = new ObjectMapper();
 
+  private static volatile TextSanitiser textSanitiser =
+      new TextSanitiser(TextSanitiser.Policy.STRIP);
+
+  /**
+   * Sets the policy applied to the keys, values, namespaces and collection names of ledger writes.
+   *
+   * @param policy TextSanitiser.Policy to apply
+   */
+  public static void setTextSanitisationPolicy(TextSanitiser.Policy policy) {
+    textSanitiser = new TextSanitiser(policy);
+  }
+
+  static TextSanitiser getTextSanitiser() {
+    return textSanitiser;
+  }
+
   public static String getWriteInfoFromBlock(
       BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo)
       throws JsonProcessingException, InvalidProtocolBufferException {
@@ -48,6 +69,22 @@ public class FabricEventParseUtil {
     return CollectionUtils.isEmpty(writes) ? StringUtils.EMPTY : mapper.writeValueAsString(writes);
   }
 
+  /**
+   * @param blockAndPrivateData private data of a block
+   * @param transactionIndex index of the transaction envelope within the block
+   * @return the private read-write set of the transaction keyed by its index, or empty if the
+   *     transaction has none
+   */
+  public static Map<Long, Rwset.TxPvtReadWriteSet> getTransactionPrivateData(
+      EventsPackage.BlockAndPrivateData blockAndPrivateData, long transactionIndex) {
+    if (blockAndPrivateData == null
+        || !blockAndPrivateData.containsPrivateDataMap(transactionIndex)) {
+      return Collections.emptyMap();
+    }
+    return Collections.singletonMap(
+        transactionIndex, blockAndPrivateData.getPrivateDataMapOrThrow(transactionIndex));
+  }
+
   public static List<BlockEventWriteSet> getBlockEventWriteSet(
       Iterable<BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo> transactionActionInfos,
       String chaincodeName)
@@ -71,8 +108,8 @@ public class FabricEventParseUtil {
 
     List<BlockEventWriteSet> writes = new ArrayList<>();
     for (KvRwset.KVWrite writeSet : writeList) {
-      String key = cleanTextContent(writeSet.getKey());
-      String value = cleanTextContent(writeSet.getValue().toStringUtf8());
+      String key = textSanitiser.sanitise(writeSet.getKeyBytes());
+      String value = textSanitiser.sanitise(writeSet.getValue());
       boolean isDelete = writeSet.getIsDelete();
       writes.add(getBlockEventWriteSet(key, value, isDelete));
     }
@@ -88,18 +125,18 @@ public class FabricEventParseUtil {
       Rwset.TxReadWriteSet.DataModel dataModel = privateDataValue.getDataModel();
       List<Rwset.NsPvtReadWriteSet> privateDataNsList = privateDataValue.getNsPvtRwsetList();
       for (Rwset.NsPvtReadWriteSet nsRWSet : privateDataNsList) {
-        String namespace = cleanTextContent(nsRWSet.getNamespace());
+        String namespace = textSanitiser.sanitise(nsRWSet.getNamespaceBytes());
         List<Rwset.CollectionPvtReadWriteSet> collectionRwSet = nsRWSet.getCollectionPvtRwsetList();
         for (Rwset.CollectionPvtReadWriteSet pvtRWSet : collectionRwSet) {
-          String collectionName = cleanTextContent(pvtRWSet.getCollectionName());
+          String collectionName = textSanitiser.sanitise(pvtRWSet.getCollectionNameBytes());
           ByteString serializedRWSet = pvtRWSet.getRwset();
           switch (dataModel) {
             case KV:
               KvRwset.KVRWSet kvrwset = KvRwset.KVRWSet.parseFrom(serializedRWSet);
               // for each KVRWSet add an entry to send back
               for (KvRwset.KVWrite writeSet : kvrwset.getWritesList()) {
-                String key = cleanTextContent(writeSet.getKey());
-                String value = cleanTextContent(writeSet.getValue().toStringUtf8());
+                String key = textSanitiser.sanitise(writeSet.getKeyBytes());
+                String value = textSanitiser.sanitise(writeSet.getValue());
                 boolean isDelete = writeSet.getIsDelete();
                 writes.add(
                     getBlockEventPrivateDataWriteSet(
@@ -154,16 +191,6 @@ public class FabricEventParseUtil {
     return blockEventWriteSet;
   }
 
-  private static String cleanTextContent(String text) {
-    // strips off all non-ASCII characters
-    text = text.replaceAll("[^\\x00-\\x7F]", "");
-    // erases all the ASCII control characters
-    text = text.replaceAll("[\\p{Cntrl}&&[^\r\n\t]]", "");
-    // removes non-printable characters from Unicode
-    text = text.replaceAll("\\p{C}", "");
-    return text.trim();
-  }
-
   public static String stringify(Object obj) throws JsonProcessingException {
     return mapper.writeValueAsString(obj);
   }
@@ -174,16 +201,7 @@ public class FabricEventParseUtil {
       String transactionId,
       Long blockNumber,
       EventType eventType) {
-    String uri =
-        UriComponentsBuilder.fromUriString(
-                FabricClientConstants.URI_PATH_BLOCKS
-                    + blockNumber
-                    + FabricClientConstants.URI_PATH_TRANSACTIONS
-                    + transactionId
-                    + FabricClientConstants.URI_QUERY_PARAM_EVENTS)
-            .queryParam(FabricClientConstants.URI_QUERY_PARAM_EVENT_TYPE, eventType.toString())
-            .build()
-            .toUriString();
+    String uri = createEventURI(transactionId, blockNumber, eventType);
     String message = null;
     try {
       message =
@@ -199,6 +217,53 @@ public class FabricEventParseUtil {
     return message;
   }
 
+  /**
+   * @param payload String payload of the chaincode event
+   * @param transactionId String Fabric transaction ID
+   * @param blockNumber Long number of the block carrying the transaction
+   * @param payloadFormat EventPayloadFormat to encode the event in
+   * @return the chaincode event encoded in the payload format
+   */
+  public static byte[] encodeChaincodeEvent(
+      String payload, String transactionId, Long blockNumber, EventPayloadFormat payloadFormat)
+      throws IOException {
+    if (payloadFormat != EventPayloadFormat.PROTOBUF) {
+      String message =
+          createEventStructure(payload, "", transactionId, blockNumber, EventType.CHAINCODE_EVENT);
+      return message == null ? null : message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    String uri = createEventURI(transactionId, blockNumber, EventType.CHAINCODE_EVENT);
+    ByteString payloadBytes = ByteString.copyFromUtf8(payload);
+    int envelopeSize =
+        CodedOutputStream.computeStringSize(1, uri)
+            + CodedOutputStream.computeBytesSize(2, payloadBytes);
+    byte[] envelope = new byte[envelopeSize];
+    CodedOutputStream output = CodedOutputStream.newInstance(envelope);
+    output.writeString(1, uri);
+    output.writeBytes(2, payloadBytes);
+    output.checkNoSpaceLeft();
+    return envelope;
+  }
+
+  /**
+   * @param transactionId String Fabric transaction ID
+   * @param blockNumber Long number of the block carrying the transaction
+   * @param eventType EventType of the event
+   * @return the URI under which the event can be retrieved
+   */
+  public static String createEventURI(String transactionId, Long blockNumber, EventType eventType) {
+    return UriComponentsBuilder.fromUriString(
+            FabricClientConstants.URI_PATH_BLOCKS
+                + blockNumber
+                + FabricClientConstants.URI_PATH_TRANSACTIONS
+                + transactionId
+                + FabricClientConstants.URI_QUERY_PARAM_EVENTS)
+        .queryParam(FabricClientConstants.URI_QUERY_PARAM_EVENT_TYPE, eventType.toString())
+        .build()
+        .toUriString();
+  }
+
   public static <T> T parseString(String string, Class<T> toClass) throws JsonProcessingException {
     return mapper.readValue(string, toClass);
   }
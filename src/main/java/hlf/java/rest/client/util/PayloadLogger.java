@@ -0,0 +1,113 @@
+package hlf.java.rest.client.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+
+/**
+ * Applies the configured payload logging policy, so that transaction and event payloads are
+ * logged consistently by the consumer, the event listeners and the event publisher. Logging a
+ * payload in full at INFO level is more expensive than the Fabric call at high volumes.
+ */
+public class PayloadLogger {
+
+  public enum Mode {
+    /** Payloads are not logged. */
+    OFF,
+    /** Payloads are logged at INFO level, truncated to the configured maximum length. */
+    TRUNCATED,
+    /** One in every N payloads is logged at INFO level, truncated to the maximum length. */
+    SAMPLED,
+    /** Payloads are logged in full at DEBUG level. */
+    FULL
+  }
+
+  private final Mode mode;
+  private final int maxLength;
+  private final int sampleRate;
+  private final AtomicLong sampleCounter = new AtomicLong();
+
+  public PayloadLogger(Mode mode, int maxLength, int sampleRate) {
+    this.mode = mode;
+    this.maxLength = maxLength;
+    this.sampleRate = Math.max(sampleRate, 1);
+  }
+
+  /**
+   * Logs a message carrying a payload according to the policy. The payload fills the last
+   * placeholder of the format, after the arguments.
+   *
+   * @param logger Logger of the calling class
+   * @param format String SLF4J message format
+   * @param payload String payload to be logged
+   * @param arguments Object arguments preceding the payload in the format
+   */
+  public void log(Logger logger, String format, String payload, Object... arguments) {
+    if (shouldLog(logger)) {
+      logger.info(format, withPayload(arguments, truncate(payload)));
+    } else if (mode == Mode.FULL && logger.isDebugEnabled()) {
+      logger.debug(format, withPayload(arguments, payload));
+    }
+  }
+
+  /**
+   * Logs a message carrying an encoded payload according to the policy. The payload is decoded as
+   * UTF-8 only as far as it is logged.
+   *
+   * @param logger Logger of the calling class
+   * @param format String SLF4J message format
+   * @param payload byte[] UTF-8 encoded payload to be logged
+   * @param arguments Object arguments preceding the payload in the format
+   */
+  public void log(Logger logger, String format, byte[] payload, Object... arguments) {
+    if (shouldLog(logger)) {
+      logger.info(format, withPayload(arguments, truncate(payload)));
+    } else if (mode == Mode.FULL && logger.isDebugEnabled()) {
+      logger.debug(
+          format,
+          withPayload(
+              arguments, payload == null ? null : new String(payload, StandardCharsets.UTF_8)));
+    }
+  }
+
+  /** @return whether a truncated payload is to be logged at INFO level */
+  private boolean shouldLog(Logger logger) {
+    switch (mode) {
+      case TRUNCATED:
+        return logger.isInfoEnabled();
+      case SAMPLED:
+        return logger.isInfoEnabled() && sampleCounter.getAndIncrement() % sampleRate == 0;
+      case FULL:
+      case OFF:
+      default:
+        return false;
+    }
+  }
+
+  private String truncate(String payload) {
+    if (payload == null || payload.length() <= maxLength) {
+      return payload;
+    }
+    return payload.substring(0, maxLength) + "...(" + payload.length() + " chars)";
+  }
+
+  private String truncate(byte[] payload) {
+    if (payload == null) {
+      return null;
+    }
+    if (payload.length <= maxLength) {
+      return new String(payload, StandardCharsets.UTF_8);
+    }
+    return new String(payload, 0, maxLength, StandardCharsets.UTF_8)
+        + "...("
+        + payload.length
+        + " bytes)";
+  }
+
+  private static Object[] withPayload(Object[] arguments, String payload) {
+    Object[] formatArguments = Arrays.copyOf(arguments, arguments.length + 1);
+    formatArguments[arguments.length] = payload;
+    return formatArguments;
+  }
+}
@@ -0,0 +1,117 @@
+package hlf.java.rest.client.util;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Sanitises the keys and values of ledger writes before they are embedded in outbound events. Works
+ * on the raw protobuf bytes in a single pass, without regular expressions.
+ */
+public class TextSanitiser {
+
+  public enum Policy {
+    /**
+     * Drops every byte outside printable ASCII and trims the surrounding spaces. Equivalent to the
+     * regular expression based cleansing used historically.
+     */
+    STRIP,
+    /** Keeps printable ASCII and escapes any other character as a Unicode escape sequence. */
+    ESCAPE,
+    /** Passes the raw bytes through, Base64 encoded. */
+    BASE64
+  }
+
+  private static final byte FIRST_PRINTABLE = 0x20;
+  private static final byte LAST_PRINTABLE = 0x7E;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Policy policy;
+
+  public TextSanitiser(Policy policy) {
+    this.policy = policy;
+  }
+
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * @param bytes UTF-8 encoded content
+   * @return the content sanitised according to the policy
+   */
+  public String sanitise(ByteString bytes) {
+    if (bytes.isEmpty()) {
+      return "";
+    }
+    switch (policy) {
+      case ESCAPE:
+        return escape(bytes);
+      case BASE64:
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+      case STRIP:
+      default:
+        return strip(bytes);
+    }
+  }
+
+  private static String strip(ByteString bytes) {
+    int size = bytes.size();
+
+    // Fast path, content which is printable ASCII throughout and needs no trimming is copied as is
+    boolean clean = bytes.byteAt(0) != FIRST_PRINTABLE && bytes.byteAt(size - 1) != FIRST_PRINTABLE;
+    for (int i = 0; clean && i < size; i++) {
+      clean = isPrintable(bytes.byteAt(i));
+    }
+    if (clean) {
+      return bytes.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    byte[] kept = new byte[size];
+    int length = 0;
+    for (int i = 0; i < size; i++) {
+      byte b = bytes.byteAt(i);
+      // bytes of multi-byte UTF-8 sequences are negative and are dropped along with the controls
+      if (isPrintable(b)) {
+        kept[length++] = b;
+      }
+    }
+
+    int start = 0;
+    while (start < length && kept[start] == FIRST_PRINTABLE) {
+      start++;
+    }
+    while (length > start && kept[length - 1] == FIRST_PRINTABLE) {
+      length--;
+    }
+    return new String(kept, start, length - start, StandardCharsets.ISO_8859_1);
+  }
+
+  private static String escape(ByteString bytes) {
+    String text = bytes.toStringUtf8();
+    StringBuilder escaped = null;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= FIRST_PRINTABLE && c <= LAST_PRINTABLE && c != '\\') {
+        if (escaped != null) {
+          escaped.append(c);
+        }
+        continue;
+      }
+      if (escaped == null) {
+        escaped = new StringBuilder(text.length() + 16);
+        escaped.append(text, 0, i);
+      }
+      escaped.append('\\').append('u');
+      escaped.append(HEX_DIGITS[(c >> 12) & 0xF]);
+      escaped.append(HEX_DIGITS[(c >> 8) & 0xF]);
+      escaped.append(HEX_DIGITS[(c >> 4) & 0xF]);
+      escaped.append(HEX_DIGITS[c & 0xF]);
+    }
+    return escaped == null ? text : escaped.toString();
+  }
+
+  private static boolean isPrintable(byte b) {
+    return b >= FIRST_PRINTABLE && b <= LAST_PRINTABLE;
+  }
+}
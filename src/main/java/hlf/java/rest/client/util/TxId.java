@@ -0,0 +1,127 @@
+package hlf.java.rest.client.util;
+
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Fabric transaction ID packed into the four longs of the SHA-256 hash it is the hex encoding of,
+ * occupying a fraction of the 64 character String. IDs that are not 64 hex characters are
+ * identified by the SHA-256 hash of their lower-cased characters instead, so that transaction IDs
+ * compare regardless of their case either way. Packing a hex ID only parses its digits, the hash
+ * is only computed for the IDs of other formats.
+ */
+public final class TxId {
+
+  /** Number of longs a transaction ID is packed into. */
+  public static final int WORDS = 4;
+
+  private static final int HEX_CHARS_PER_WORD = 16;
+  private static final int HEX_LENGTH = WORDS * HEX_CHARS_PER_WORD;
+
+  private final long word0;
+  private final long word1;
+  private final long word2;
+  private final long word3;
+
+  private TxId(long word0, long word1, long word2, long word3) {
+    this.word0 = word0;
+    this.word1 = word1;
+    this.word2 = word2;
+    this.word3 = word3;
+  }
+
+  /**
+   * @param transactionId String transaction ID, read regardless of its case
+   * @return the packed transaction ID
+   */
+  public static TxId of(String transactionId) {
+    if (transactionId.length() == HEX_LENGTH) {
+      long[] words = new long[WORDS];
+      if (parseHex(transactionId, words)) {
+        return new TxId(words[0], words[1], words[2], words[3]);
+      }
+    }
+    ByteBuffer hash =
+        ByteBuffer.wrap(
+            Hashing.sha256().hashUnencodedChars(transactionId.toLowerCase(Locale.ROOT)).asBytes());
+    return new TxId(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+  }
+
+  /**
+   * @param words long[] the words are written to, from 'offset' on
+   * @param offset int index of the first word
+   */
+  public void writeTo(long[] words, int offset) {
+    words[offset] = word0;
+    words[offset + 1] = word1;
+    words[offset + 2] = word2;
+    words[offset + 3] = word3;
+  }
+
+  /**
+   * @param words long[] holding words from 'offset' on
+   * @param offset int index of the first word
+   * @return true if the words are the ones of this transaction ID
+   */
+  public boolean matches(long[] words, int offset) {
+    return words[offset] == word0
+        && words[offset + 1] == word1
+        && words[offset + 2] == word2
+        && words[offset + 3] == word3;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TxId)) {
+      return false;
+    }
+    TxId txId = (TxId) o;
+    return word0 == txId.word0
+        && word1 == txId.word1
+        && word2 == txId.word2
+        && word3 == txId.word3;
+  }
+
+  /** The words are bits of a SHA-256 hash, the leading ones hash the transaction ID as they are. */
+  @Override
+  public int hashCode() {
+    return hash(word0);
+  }
+
+  /** @return the hex encoding of the packed hash, lower case */
+  @Override
+  public String toString() {
+    StringBuilder hex = new StringBuilder(HEX_LENGTH);
+    for (long word : new long[] {word0, word1, word2, word3}) {
+      String wordHex = Long.toHexString(word);
+      for (int i = wordHex.length(); i < HEX_CHARS_PER_WORD; i++) {
+        hex.append('0');
+      }
+      hex.append(wordHex);
+    }
+    return hex.toString();
+  }
+
+  static int hash(long word0) {
+    return (int) (word0 ^ (word0 >>> 32));
+  }
+
+  private static boolean parseHex(String transactionId, long[] words) {
+    for (int word = 0; word < WORDS; word++) {
+      long value = 0;
+      for (int i = word * HEX_CHARS_PER_WORD; i < (word + 1) * HEX_CHARS_PER_WORD; i++) {
+        int digit = Character.digit(transactionId.charAt(i), 16);
+        if (digit < 0) {
+          return false;
+        }
+        value = (value << 4) | digit;
+      }
+      words[word] = value;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,115 @@
+package hlf.java.rest.client.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of transaction IDs of a fixed capacity, open-addressed with linear probing over a long array
+ * holding the packed IDs inline. An entry occupies 45 to 90 bytes, depending on how far the table
+ * is rounded up to a power of two, instead of the hundreds taken by a String ID in a hash map. Not
+ * thread safe.
+ */
+public class TxIdSet {
+
+  private static final double MAX_LOAD_FACTOR = 0.75;
+
+  private final int capacity;
+
+  private final int slotMask;
+
+  private final long[] words;
+
+  private final boolean[] occupied;
+
+  private int size;
+
+  /** @param capacity int number of IDs the set holds at most */
+  public TxIdSet(int capacity) {
+    this.capacity = Math.max(1, capacity);
+    int slots = Integer.highestOneBit((int) Math.ceil(this.capacity / MAX_LOAD_FACTOR));
+    if (slots < this.capacity / MAX_LOAD_FACTOR) {
+      slots <<= 1;
+    }
+    this.slotMask = slots - 1;
+    this.words = new long[slots * TxId.WORDS];
+    this.occupied = new boolean[slots];
+  }
+
+  /**
+   * @param txId TxId to add
+   * @return false if the set is full and the ID was not added
+   */
+  public boolean add(TxId txId) {
+    int slot = homeSlot(txId);
+    while (occupied[slot]) {
+      if (txId.matches(words, slot * TxId.WORDS)) {
+        return true;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    if (size >= capacity) {
+      return false;
+    }
+    txId.writeTo(words, slot * TxId.WORDS);
+    occupied[slot] = true;
+    size++;
+    return true;
+  }
+
+  public boolean contains(TxId txId) {
+    return find(txId) >= 0;
+  }
+
+  /**
+   * @param txId TxId to remove
+   * @return true if the ID was in the set
+   */
+  public boolean remove(TxId txId) {
+    int hole = find(txId);
+    if (hole < 0) {
+      return false;
+    }
+
+    // shifts back the entries probed past the hole, so that no tombstone is left behind
+    int slot = (hole + 1) & slotMask;
+    while (occupied[slot]) {
+      int homeSlot = TxId.hash(words[slot * TxId.WORDS]) & slotMask;
+      if (((slot - homeSlot) & slotMask) >= ((slot - hole) & slotMask)) {
+        System.arraycopy(words, slot * TxId.WORDS, words, hole * TxId.WORDS, TxId.WORDS);
+        occupied[hole] = true;
+        hole = slot;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    occupied[hole] = false;
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(occupied, false);
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  private int find(TxId txId) {
+    int slot = homeSlot(txId);
+    while (occupied[slot]) {
+      if (txId.matches(words, slot * TxId.WORDS)) {
+        return slot;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    return -1;
+  }
+
+  private int homeSlot(TxId txId) {
+    return txId.hashCode() & slotMask;
+  }
+}
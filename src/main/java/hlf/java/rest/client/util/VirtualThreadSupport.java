@@ -0,0 +1,77 @@
+package hlf.java.rest.client.util;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates virtual thread executors when running on Java 21 or later. The build targets Java 8, so
+ * the virtual thread API is reached reflectively and is absent on older runtimes.
+ */
+@Slf4j
+@UtilityClass
+public class VirtualThreadSupport {
+
+  /** @return true if the running JVM supports virtual threads */
+  public boolean isAvailable() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param threadNamePrefix String prefix of the names of the virtual threads, suffixed with a
+   *     counter
+   * @return a factory of virtual threads, or empty if the running JVM does not support virtual
+   *     threads
+   */
+  public Optional<ThreadFactory> newVirtualThreadFactory(String threadNamePrefix) {
+    if (!isAvailable()) {
+      return Optional.empty();
+    }
+
+    try {
+      Object threadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> threadBuilderClass = Class.forName("java.lang.Thread$Builder");
+      threadBuilder =
+          threadBuilderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(threadBuilder, threadNamePrefix, 0L);
+      return Optional.of(
+          (ThreadFactory) threadBuilderClass.getMethod("factory").invoke(threadBuilder));
+    } catch (ReflectiveOperationException e) {
+      log.warn("Failed to create a virtual thread factory - {}", e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @param threadNamePrefix String prefix of the names of the virtual threads, suffixed with a
+   *     counter
+   * @return an executor starting a new virtual thread per task, or empty if the running JVM does
+   *     not support virtual threads
+   */
+  public Optional<ExecutorService> newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+    Optional<ThreadFactory> threadFactory = newVirtualThreadFactory(threadNamePrefix);
+    if (!threadFactory.isPresent()) {
+      return Optional.empty();
+    }
+
+    try {
+      Method newThreadPerTaskExecutor =
+          Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return Optional.of(
+          (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory.get()));
+    } catch (ReflectiveOperationException e) {
+      log.warn("Failed to create a virtual thread executor - {}", e.getMessage());
+      return Optional.empty();
+    }
+  }
+}
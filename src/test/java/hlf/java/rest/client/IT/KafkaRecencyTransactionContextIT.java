@@ -0,0 +1,156 @@
+package hlf.java.rest.client.IT;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hlf.java.rest.client.service.impl.KafkaRecencyTransactionContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+/** Three replicas sharing the dedupe topic publish the event of a transaction exactly once. */
+public class KafkaRecencyTransactionContextIT {
+
+  private static final String DEDUPE_TOPIC = "test-dedupe-topic";
+  private static final int REPLICAS = 3;
+
+  private static EmbeddedKafkaBroker embeddedKafkaBroker;
+
+  @BeforeAll
+  public static void setUpClass() {
+    embeddedKafkaBroker = new EmbeddedKafkaBroker(1, false, 2, DEDUPE_TOPIC);
+    embeddedKafkaBroker.afterPropertiesSet();
+  }
+
+  @AfterAll
+  public static void tearDownClass() {
+    embeddedKafkaBroker.destroy();
+  }
+
+  @Test
+  public void eventOfATransactionIsValidatedByOneReplica() {
+    List<Cache<String, Object>> recencyIndexes = new ArrayList<>();
+    List<KafkaRecencyTransactionContext> replicas = new ArrayList<>();
+    for (int i = 0; i < REPLICAS; i++) {
+      recencyIndexes.add(CacheBuilder.newBuilder().maximumSize(1000).build());
+      replicas.add(newReplica(recencyIndexes.get(i), 10_000));
+    }
+    ExecutorService eventListeners = Executors.newFixedThreadPool(REPLICAS);
+
+    try {
+      for (int transaction = 0; transaction < 20; transaction++) {
+        String transactionId = "tx" + transaction;
+        replicas.get(transaction % REPLICAS).setTransactionContext(transactionId);
+        awaitSubmission(recencyIndexes, transactionId);
+
+        assertEquals(
+            1,
+            countValidations(replicas, transactionId, eventListeners),
+            "replicas publishing " + transactionId);
+      }
+      assertFalse(replicas.get(0).validateAndRemoveTransactionContext("unknown"));
+    } finally {
+      eventListeners.shutdownNow();
+      replicas.forEach(KafkaRecencyTransactionContext::close);
+    }
+  }
+
+  @Test
+  public void eventOfATransactionWhoseSubmitterIsGoneIsValidatedByOneReplica() {
+    List<Cache<String, Object>> recencyIndexes = new ArrayList<>();
+    List<KafkaRecencyTransactionContext> replicas = new ArrayList<>();
+    for (int i = 0; i < REPLICAS; i++) {
+      recencyIndexes.add(CacheBuilder.newBuilder().maximumSize(1000).build());
+      replicas.add(newReplica(recencyIndexes.get(i), 1000));
+    }
+    ExecutorService eventListeners = Executors.newFixedThreadPool(REPLICAS);
+
+    try {
+      replicas.get(0).setTransactionContext("tx-gone");
+      awaitSubmission(recencyIndexes, "tx-gone");
+      replicas.remove(0).close();
+
+      assertEquals(1, countValidations(replicas, "tx-gone", eventListeners));
+    } finally {
+      eventListeners.shutdownNow();
+      replicas.forEach(KafkaRecencyTransactionContext::close);
+    }
+  }
+
+  /** Events are received once the submission has been shared, as they follow its commit. */
+  private static void awaitSubmission(
+      List<Cache<String, Object>> recencyIndexes, String transactionId) {
+    Awaitility.await()
+        .atMost(10, TimeUnit.SECONDS)
+        .until(
+            () ->
+                recencyIndexes.stream()
+                    .allMatch(recencyIndex -> recencyIndex.getIfPresent(transactionId) != null));
+  }
+
+  private static long countValidations(
+      List<KafkaRecencyTransactionContext> replicas,
+      String transactionId,
+      ExecutorService eventListeners) {
+    List<CompletableFuture<Boolean>> validations =
+        replicas.stream()
+            .map(
+                replica ->
+                    CompletableFuture.supplyAsync(
+                        () -> replica.validateAndRemoveTransactionContext(transactionId),
+                        eventListeners))
+            .collect(Collectors.toList());
+    return validations.stream().filter(CompletableFuture::join).count();
+  }
+
+  private static KafkaRecencyTransactionContext newReplica(
+      Cache<String, Object> recencyIndex, long claimTimeoutInMillis) {
+    Map<String, Object> producerProps = new HashMap<>();
+    producerProps.put(
+        ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafkaBroker.getBrokersAsString());
+    producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    producerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    KafkaTemplate<String, String> dedupeTemplate =
+        new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerProps), true);
+    dedupeTemplate.setDefaultTopic(DEDUPE_TOPIC);
+
+    Map<String, Object> consumerProps = new HashMap<>();
+    consumerProps.put(
+        ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafkaBroker.getBrokersAsString());
+    consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+    KafkaRecencyTransactionContext replica =
+        new KafkaRecencyTransactionContext(
+            recencyIndex,
+            dedupeTemplate,
+            new DefaultKafkaConsumerFactory<>(consumerProps),
+            claimTimeoutInMillis,
+            new SimpleMeterRegistry());
+    replica.start();
+    return replica;
+  }
+}
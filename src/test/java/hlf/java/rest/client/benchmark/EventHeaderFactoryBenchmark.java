@@ -0,0 +1,75 @@
+package hlf.java.rest.client.benchmark;
+
+import hlf.java.rest.client.util.EventHeaderFactory;
+import hlf.java.rest.client.util.FabricClientConstants;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares building the per-event headers of a block event by encoding every value against
+ * building them from interned headers. Run with the gc profiler to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventHeaderFactoryBenchmark {
+
+  private static final String TX_ID =
+      "4f3ab1c2d9e8f7a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2";
+  private static final String CHAINCODE_NAME = "basic";
+  private static final String FUNCTION_NAME = "TransferAsset";
+
+  private final EventHeaderFactory headerFactory = new EventHeaderFactory(1024);
+
+  @Benchmark
+  public Headers encodedPerEvent() {
+    Headers headers = new RecordHeaders();
+    headers.add(new RecordHeader(FabricClientConstants.FABRIC_TRANSACTION_ID, TX_ID.getBytes()));
+    headers.add(
+        new RecordHeader(FabricClientConstants.FABRIC_CHAINCODE_NAME, CHAINCODE_NAME.getBytes()));
+    headers.add(
+        new RecordHeader(FabricClientConstants.FABRIC_EVENT_FUNC_NAME, FUNCTION_NAME.getBytes()));
+    headers.add(
+        new RecordHeader(
+            FabricClientConstants.IS_PRIVATE_DATA_PRESENT, Boolean.FALSE.toString().getBytes()));
+    return headers;
+  }
+
+  @Benchmark
+  public Headers interned() {
+    Headers headers = new RecordHeaders();
+    headers.add(EventHeaderFactory.header(FabricClientConstants.FABRIC_TRANSACTION_ID, TX_ID));
+    headers.add(
+        headerFactory.interned(FabricClientConstants.FABRIC_CHAINCODE_NAME, CHAINCODE_NAME));
+    headers.add(
+        headerFactory.interned(FabricClientConstants.FABRIC_EVENT_FUNC_NAME, FUNCTION_NAME));
+    headers.add(headerFactory.interned(FabricClientConstants.IS_PRIVATE_DATA_PRESENT, false));
+    return headers;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(EventHeaderFactoryBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build())
+        .run();
+  }
+}
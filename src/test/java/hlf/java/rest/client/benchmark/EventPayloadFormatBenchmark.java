@@ -0,0 +1,105 @@
+package hlf.java.rest.client.benchmark;
+
+import com.google.protobuf.ByteString;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.util.BlockEventEncoder;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the serialization cost of the block event payload formats. The size in bytes of an
+ * event in each format is printed before the benchmarks are run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventPayloadFormatBenchmark {
+
+  private static final String EVENT_URI =
+      "/blocks/1024/transactions/4f3ab1c2d9e8f7a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2"
+          + "/events?event_type=BLOCK_EVENT";
+
+  @Param({"1", "10", "100"})
+  private int writesPerTransaction;
+
+  private List<KvRwset.KVRWSet> writeSets;
+
+  @Setup
+  public void setUp() {
+    KvRwset.KVRWSet.Builder writeSet = KvRwset.KVRWSet.newBuilder();
+    for (int i = 0; i < writesPerTransaction; i++) {
+      writeSet.addWrites(
+          KvRwset.KVWrite.newBuilder()
+              .setKey("asset" + i)
+              .setValue(
+                  ByteString.copyFromUtf8(
+                      "{\"ID\":\"asset"
+                          + i
+                          + "\",\"Color\":\"blue\",\"Size\":5,\"Owner\":\"Tomoko\","
+                          + "\"AppraisedValue\":300}")));
+    }
+    writeSets = Collections.singletonList(writeSet.build());
+  }
+
+  @Benchmark
+  public byte[] json() throws IOException {
+    return encode(EventPayloadFormat.JSON, false);
+  }
+
+  @Benchmark
+  public byte[] jsonWithEmbeddedWriteSets() throws IOException {
+    return encode(EventPayloadFormat.JSON, true);
+  }
+
+  @Benchmark
+  public byte[] protobuf() throws IOException {
+    return encode(EventPayloadFormat.PROTOBUF, false);
+  }
+
+  private byte[] encode(EventPayloadFormat payloadFormat, boolean embedWriteSetsAsJson)
+      throws IOException {
+    return BlockEventEncoder.encode(
+            writeSets, Collections.emptyMap(), EVENT_URI, payloadFormat, embedWriteSetsAsJson)
+        .getPayload();
+  }
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    EventPayloadFormatBenchmark benchmark = new EventPayloadFormatBenchmark();
+    for (int writesPerTransaction : new int[] {1, 10, 100}) {
+      benchmark.writesPerTransaction = writesPerTransaction;
+      benchmark.setUp();
+      System.out.printf(
+          "%d writes: JSON %d bytes, JSON with embedded write-sets %d bytes, protobuf %d bytes%n",
+          writesPerTransaction,
+          benchmark.json().length,
+          benchmark.jsonWithEmbeddedWriteSets().length,
+          benchmark.protobuf().length);
+    }
+
+    new Runner(
+            new OptionsBuilder()
+                .include(EventPayloadFormatBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,117 @@
+package hlf.java.rest.client.benchmark;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.service.impl.DefaultCacheBasedRecencyTransactionContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the recency check under contention: 32 threads record submitted transactions and
+ * validate their events, against a context serialising the validations through a lock as the
+ * recency cache did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class RecencyTransactionContextBenchmark {
+
+  private static final int TRANSACTION_IDS = 1 << 16;
+
+  @Param({"atomicRemove", "synchronized"})
+  private String implementation;
+
+  private final String[] transactionIds = new String[TRANSACTION_IDS];
+
+  private RecencyTransactionContext recencyTransactionContext;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < TRANSACTION_IDS; i++) {
+      transactionIds[i] = UUID.randomUUID().toString().replace("-", "");
+    }
+    Cache<String, Object> recencyCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(TRANSACTION_IDS)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+    recencyTransactionContext =
+        "synchronized".equals(implementation)
+            ? new SynchronizedRecencyTransactionContext(recencyCache)
+            : new DefaultCacheBasedRecencyTransactionContext(
+                recencyCache, new SimpleMeterRegistry());
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadCursor {
+    private int next;
+  }
+
+  @Benchmark
+  public boolean submitAndValidate(ThreadCursor cursor) {
+    String transactionId = transactionIds[cursor.next++ & (TRANSACTION_IDS - 1)];
+    recencyTransactionContext.setTransactionContext(transactionId);
+    return recencyTransactionContext.validateAndRemoveTransactionContext(transactionId);
+  }
+
+  @Benchmark
+  public boolean validateUnknown(ThreadCursor cursor) {
+    return recencyTransactionContext.validateAndRemoveTransactionContext(
+        transactionIds[cursor.next++ & (TRANSACTION_IDS - 1)]);
+  }
+
+  private static final class SynchronizedRecencyTransactionContext
+      implements RecencyTransactionContext {
+
+    private final Cache<String, Object> recencyCache;
+
+    private SynchronizedRecencyTransactionContext(Cache<String, Object> recencyCache) {
+      this.recencyCache = recencyCache;
+    }
+
+    @Override
+    public void setTransactionContext(String transactionId) {
+      recencyCache.put(transactionId, 1);
+    }
+
+    @Override
+    public boolean validateAndRemoveTransactionContext(String transactionId) {
+      synchronized (this) {
+        if (recencyCache.getIfPresent(transactionId) == null) {
+          return false;
+        }
+        recencyCache.invalidate(transactionId);
+        return true;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(RecencyTransactionContextBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,79 @@
+package hlf.java.rest.client.benchmark;
+
+import com.google.protobuf.ByteString;
+import hlf.java.rest.client.util.TextSanitiser;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the single-pass sanitiser with the regular expression based cleansing it replaces, on
+ * write-set values of various sizes. Run from the test classpath, through the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSanitiserBenchmark {
+
+  @Param({"64", "1024", "16384"})
+  private int valueSize;
+
+  // Percentage of the value made up of control and non-ASCII characters
+  @Param({"0", "5"})
+  private int dirtyPercentage;
+
+  private ByteString value;
+
+  private final TextSanitiser textSanitiser = new TextSanitiser(TextSanitiser.Policy.STRIP);
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    StringBuilder text = new StringBuilder(valueSize);
+    while (text.length() < valueSize) {
+      if (random.nextInt(100) < dirtyPercentage) {
+        text.append(random.nextBoolean() ? '\u0000' : '\u00e9');
+      } else {
+        text.append((char) (0x21 + random.nextInt(0x5E)));
+      }
+    }
+    value = ByteString.copyFrom(text.toString(), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String regularExpressions() {
+    String text = value.toStringUtf8();
+    text = text.replaceAll("[^\\x00-\\x7F]", "");
+    text = text.replaceAll("[\\p{Cntrl}&&[^\r\n\t]]", "");
+    text = text.replaceAll("\\p{C}", "");
+    return text.trim();
+  }
+
+  @Benchmark
+  public String singlePass() {
+    return textSanitiser.sanitise(value);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(TextSanitiserBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
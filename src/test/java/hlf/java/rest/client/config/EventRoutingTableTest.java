@@ -0,0 +1,127 @@
+package hlf.java.rest.client.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.util.FabricClientConstants;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class EventRoutingTableTest {
+
+  private final FabricProperties fabricProperties = new FabricProperties();
+
+  private final KafkaProperties kafkaProperties = new KafkaProperties();
+
+  private final EventRoutingTable eventRoutingTable = new EventRoutingTable();
+
+  @BeforeEach
+  public void setup() {
+    FabricProperties.BlockDetails blockDetails = new FabricProperties.BlockDetails();
+    blockDetails.setChannelName("mychannel");
+    blockDetails.setListenerTopics(Arrays.asList("blocks", "audit"));
+    blockDetails.setPayloadFormat(EventPayloadFormat.PROTOBUF);
+    FabricProperties.ChaincodeDetails chaincodeDetails = new FabricProperties.ChaincodeDetails();
+    chaincodeDetails.setChannelName("mychannel");
+    chaincodeDetails.setChaincodeId("basic");
+    fabricProperties.setEvents(new FabricProperties.Events());
+    fabricProperties.getEvents().setBlockDetails(Collections.singletonList(blockDetails));
+    fabricProperties.getEvents().setChaincodeDetails(Collections.singletonList(chaincodeDetails));
+
+    kafkaProperties.setEventListeners(Collections.singletonList(eventProducer("events")));
+
+    ReflectionTestUtils.setField(eventRoutingTable, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(eventRoutingTable, "kafkaProperties", kafkaProperties);
+    ReflectionTestUtils.invokeMethod(eventRoutingTable, "initialize");
+  }
+
+  @Test
+  public void configuredRoutesAreResolved() {
+    EventRoutingTable.Route blockRoute = eventRoutingTable.getBlockRoute("mychannel");
+    assertEquals(Arrays.asList("blocks", "audit"), blockRoute.getTopics());
+    assertEquals(EventPayloadFormat.PROTOBUF, blockRoute.getPayloadFormat());
+    assertHeader(blockRoute.getHeaders(), FabricClientConstants.FABRIC_CHANNEL_NAME, "mychannel");
+    assertHeader(
+        blockRoute.getHeaders(),
+        FabricClientConstants.FABRIC_EVENT_TYPE,
+        FabricClientConstants.FABRIC_EVENT_TYPE_BLOCK);
+    assertHeader(
+        blockRoute.getHeaders(), FabricClientConstants.FABRIC_EVENT_PAYLOAD_FORMAT, "PROTOBUF");
+
+    EventRoutingTable.Route chaincodeRoute =
+        eventRoutingTable.getChaincodeRoute("mychannel", "basic");
+    assertEquals(Collections.singletonList("events"), chaincodeRoute.getTopics());
+    assertEquals(EventPayloadFormat.JSON, chaincodeRoute.getPayloadFormat());
+    assertHeader(chaincodeRoute.getHeaders(), FabricClientConstants.FABRIC_CHAINCODE_NAME, "basic");
+  }
+
+  @Test
+  public void unknownChannelsAndChaincodesFallBackToTheFirstEventListener() {
+    EventRoutingTable.Route blockRoute = eventRoutingTable.getBlockRoute("otherchannel");
+    assertEquals(Collections.singletonList("events"), blockRoute.getTopics());
+    assertEquals(EventPayloadFormat.JSON, blockRoute.getPayloadFormat());
+    assertHeader(
+        blockRoute.getHeaders(), FabricClientConstants.FABRIC_CHANNEL_NAME, "otherchannel");
+    assertSame(blockRoute, eventRoutingTable.getBlockRoute("otherchannel"));
+
+    EventRoutingTable.Route chaincodeRoute =
+        eventRoutingTable.getChaincodeRoute("mychannel", "other");
+    assertEquals(Collections.singletonList("events"), chaincodeRoute.getTopics());
+    assertHeader(chaincodeRoute.getHeaders(), FabricClientConstants.FABRIC_CHAINCODE_NAME, "other");
+  }
+
+  @Test
+  public void routesWithoutEventListenersHaveNoTopics() {
+    kafkaProperties.setEventListeners(null);
+    eventRoutingTable.onRefresh(Mockito.mock(RefreshScopeRefreshedEvent.class));
+
+    assertTrue(eventRoutingTable.getBlockRoute("otherchannel").getTopics().isEmpty());
+    assertTrue(eventRoutingTable.getChaincodeRoute("mychannel", "basic").getTopics().isEmpty());
+    assertEquals(
+        Arrays.asList("blocks", "audit"), eventRoutingTable.getBlockRoute("mychannel").getTopics());
+  }
+
+  @Test
+  public void routesAreRebuiltOnRefresh() {
+    EventRoutingTable.Route fallbackRoute = eventRoutingTable.getBlockRoute("otherchannel");
+
+    kafkaProperties.setEventListeners(Collections.singletonList(eventProducer("refreshed")));
+    fabricProperties.getEvents().getBlockDetails().get(0).setListenerTopics(null);
+    eventRoutingTable.onRefresh(Mockito.mock(RefreshScopeRefreshedEvent.class));
+
+    assertEquals(
+        Collections.singletonList("refreshed"),
+        eventRoutingTable.getBlockRoute("mychannel").getTopics());
+    EventRoutingTable.Route refreshedFallbackRoute =
+        eventRoutingTable.getBlockRoute("otherchannel");
+    assertEquals(Collections.singletonList("refreshed"), refreshedFallbackRoute.getTopics());
+    assertNotSame(fallbackRoute, refreshedFallbackRoute);
+  }
+
+  private static KafkaProperties.EventProducer eventProducer(String topic) {
+    KafkaProperties.EventProducer eventProducer = new KafkaProperties.EventProducer();
+    eventProducer.setTopic(topic);
+    return eventProducer;
+  }
+
+  private static void assertHeader(List<Header> headers, String key, String value) {
+    Header header =
+        headers.stream()
+            .filter(candidate -> candidate.key().equals(key))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No header " + key));
+    assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), header.value());
+  }
+}
@@ -0,0 +1,102 @@
+package hlf.java.rest.client.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IntegrationPointExecutorProviderTest {
+
+  private final TaskExecutor submissionTaskExecutor = Mockito.mock(TaskExecutor.class);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final IntegrationPointExecutorProvider executorProvider =
+      new IntegrationPointExecutorProvider();
+
+  private final KafkaProperties.Consumer consumer = new KafkaProperties.Consumer();
+
+  @BeforeEach
+  public void setup() {
+    consumer.setGroupId("group");
+    consumer.setTopic("topic");
+    KafkaProperties.ExecutorProfile executorProfile = new KafkaProperties.ExecutorProfile();
+    executorProfile.setCorePoolSize(1);
+    executorProfile.setMaxPoolSize(1);
+    executorProfile.setQueueCapacity(1);
+    consumer.setExecutor(executorProfile);
+
+    ReflectionTestUtils.setField(
+        executorProvider, "submissionTaskExecutor", submissionTaskExecutor);
+    ReflectionTestUtils.setField(executorProvider, "meterRegistry", meterRegistry);
+  }
+
+  @AfterEach
+  public void shutdown() {
+    executorProvider.shutdown();
+  }
+
+  @Test
+  public void integrationPointsWithoutProfileShareTheSubmissionExecutor() {
+    consumer.setExecutor(null);
+
+    assertSame(submissionTaskExecutor, executorProvider.getTaskExecutor(consumer));
+  }
+
+  @Test
+  public void replacedExecutorIsDrainedWithoutBlockingTheSwap() throws Exception {
+    ThreadPoolTaskExecutor staleExecutor =
+        (ThreadPoolTaskExecutor) executorProvider.getTaskExecutor(consumer);
+    CountDownLatch taskStarted = new CountDownLatch(1);
+    CountDownLatch releaseTask = new CountDownLatch(1);
+    CountDownLatch taskCompleted = new CountDownLatch(1);
+    staleExecutor.execute(
+        () -> {
+          taskStarted.countDown();
+          try {
+            releaseTask.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          taskCompleted.countDown();
+        });
+    assertTrue(taskStarted.await(5, TimeUnit.SECONDS));
+
+    long swapStart = System.nanoTime();
+    TaskExecutor freshExecutor = executorProvider.getTaskExecutor(consumer);
+
+    assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - swapStart) < 1);
+    assertNotSame(staleExecutor, freshExecutor);
+    assertTrue(staleExecutor.getThreadPoolExecutor().isShutdown());
+    assertFalse(staleExecutor.getThreadPoolExecutor().isTerminated());
+    assertEquals(1, meterRegistry.find("executor.pool.core").meters().size());
+
+    releaseTask.countDown();
+    assertTrue(taskCompleted.await(5, TimeUnit.SECONDS));
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> staleExecutor.getThreadPoolExecutor().isTerminated());
+  }
+
+  @Test
+  public void retiringTheExecutorsRemovesTheirMeters() {
+    executorProvider.getTaskExecutor(consumer);
+
+    executorProvider.retire();
+
+    assertTrue(meterRegistry.find("executor.pool.core").meters().isEmpty());
+  }
+}
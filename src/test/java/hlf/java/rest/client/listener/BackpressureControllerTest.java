@@ -0,0 +1,115 @@
+package hlf.java.rest.client.listener;
+
+import hlf.java.rest.client.config.KafkaProperties;
+import hlf.java.rest.client.util.ConcurrencyLimitedTaskExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class BackpressureControllerTest {
+
+  private final KafkaProperties kafkaProperties = new KafkaProperties();
+
+  private final BackpressureController backpressureController = new BackpressureController();
+
+  @BeforeEach
+  public void setup() {
+    KafkaProperties.Backpressure backpressure = new KafkaProperties.Backpressure();
+    backpressure.setEnabled(true);
+    backpressure.setInFlightHighWatermark(4);
+    backpressure.setLatencyHighWatermarkInMillis(Long.MAX_VALUE);
+    backpressure.setResumeRatio(0.5);
+    kafkaProperties.setBackpressure(backpressure);
+    ReflectionTestUtils.setField(backpressureController, "kafkaProperties", kafkaProperties);
+  }
+
+  @Test
+  public void containerIsPausedAtTheWatermarkAndResumedBelowTheResumeRatio() {
+    ConcurrentMessageListenerContainer<?, ?> container = runningContainer();
+    BackpressureController.ConsumerBackpressure backpressure =
+        backpressureController.register("group/topic", new SyncTaskExecutor());
+    backpressure.attach(container);
+
+    for (int i = 0; i < 3; i++) {
+      backpressure.recordDispatch();
+    }
+    backpressureController.samplePressure();
+    Mockito.verify(container, Mockito.never()).pause();
+
+    backpressure.recordDispatch();
+    backpressureController.samplePressure();
+    Mockito.verify(container).pause();
+
+    // 2 of 4 in flight is not below the resume ratio of 0.5
+    backpressure.recordLatency(1);
+    backpressure.recordLatency(1);
+    backpressureController.samplePressure();
+    Mockito.verify(container, Mockito.never()).resume();
+
+    backpressure.recordLatency(1);
+    backpressureController.samplePressure();
+    Mockito.verify(container).resume();
+  }
+
+  @Test
+  public void containersArePausedIndependently() {
+    ConcurrentMessageListenerContainer<?, ?> busyContainer = runningContainer();
+    ConcurrentMessageListenerContainer<?, ?> idleContainer = runningContainer();
+    BackpressureController.ConsumerBackpressure busy =
+        backpressureController.register("busy/topic", new SyncTaskExecutor());
+    busy.attach(busyContainer);
+    backpressureController.register("idle/topic", new SyncTaskExecutor()).attach(idleContainer);
+
+    for (int i = 0; i < 4; i++) {
+      busy.recordDispatch();
+    }
+    backpressureController.samplePressure();
+
+    Mockito.verify(busyContainer).pause();
+    Mockito.verify(idleContainer, Mockito.never()).pause();
+  }
+
+  @Test
+  public void pausedContainersAreResumedOnceBackpressureIsDisabled() {
+    ConcurrentMessageListenerContainer<?, ?> container = runningContainer();
+    BackpressureController.ConsumerBackpressure backpressure =
+        backpressureController.register("group/topic", new SyncTaskExecutor());
+    backpressure.attach(container);
+    for (int i = 0; i < 4; i++) {
+      backpressure.recordDispatch();
+    }
+    backpressureController.samplePressure();
+
+    kafkaProperties.getBackpressure().setEnabled(false);
+    backpressureController.samplePressure();
+
+    Mockito.verify(container).resume();
+  }
+
+  @Test
+  public void containerIsPausedAsTheConcurrencyCapOfItsExecutorFillsUp() {
+    ConcurrentMessageListenerContainer<?, ?> container = runningContainer();
+    ConcurrencyLimitedTaskExecutor taskExecutor =
+        Mockito.mock(ConcurrencyLimitedTaskExecutor.class);
+    Mockito.when(taskExecutor.getMaxConcurrency()).thenReturn(10);
+    Mockito.when(taskExecutor.getAvailablePermits()).thenReturn(3, 1);
+    backpressureController.register("group/topic", taskExecutor).attach(container);
+
+    // 7 of 10 running is below the utilisation high watermark of 0.8
+    backpressureController.samplePressure();
+    Mockito.verify(container, Mockito.never()).pause();
+
+    backpressureController.samplePressure();
+    Mockito.verify(container).pause();
+  }
+
+  private static ConcurrentMessageListenerContainer<?, ?> runningContainer() {
+    ConcurrentMessageListenerContainer<?, ?> container =
+        Mockito.mock(ConcurrentMessageListenerContainer.class);
+    Mockito.when(container.isRunning()).thenReturn(true);
+    return container;
+  }
+}
@@ -0,0 +1,248 @@
+package hlf.java.rest.client.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+
+import com.google.protobuf.ByteString;
+import hlf.java.rest.client.config.EventRoutingTable;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.service.EventPublishService;
+import hlf.java.rest.client.util.PayloadLogger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.protos.peer.EventsPackage;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class BlockEventListenerTest {
+
+  private final EventPublishService eventPublishService = Mockito.mock(EventPublishService.class);
+
+  private final FabricProperties fabricProperties = new FabricProperties();
+
+  private final BlockEventListener blockEventListener = new BlockEventListener();
+
+  @BeforeEach
+  public void setup() {
+    fabricProperties.setEvents(new FabricProperties.Events());
+    EventRoutingTable.Route route = Mockito.mock(EventRoutingTable.Route.class);
+    Mockito.when(route.getPayloadFormat()).thenReturn(EventPayloadFormat.JSON);
+    EventRoutingTable eventRoutingTable = Mockito.mock(EventRoutingTable.class);
+    Mockito.when(eventRoutingTable.getBlockRoute(anyString())).thenReturn(route);
+    Mockito.when(
+            eventPublishService.publishBlockEvents(
+                any(), anyString(), anyString(), anyString(), anyString(), anyBoolean()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    ReflectionTestUtils.setField(
+        blockEventListener, "eventPublishServiceImpl", eventPublishService);
+    ReflectionTestUtils.setField(blockEventListener, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(blockEventListener, "eventRoutingTable", eventRoutingTable);
+    ReflectionTestUtils.setField(
+        blockEventListener, "payloadLogger", new PayloadLogger(PayloadLogger.Mode.OFF, 0, 1));
+  }
+
+  @Test
+  public void everyTransactionOfTheBlockIsPublishedInBlockOrder() throws Exception {
+    List<BlockInfo.EnvelopeInfo> envelopeInfos = new ArrayList<>();
+    List<String> transactionIds = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      if (i == 1) {
+        BlockInfo.EnvelopeInfo configEnvelope = Mockito.mock(BlockInfo.EnvelopeInfo.class);
+        Mockito.when(configEnvelope.getType()).thenReturn(BlockInfo.EnvelopeType.ENVELOPE);
+        envelopeInfos.add(configEnvelope);
+        continue;
+      }
+      transactionIds.add("tx" + i);
+      envelopeInfos.add(transactionEnvelope("tx" + i));
+    }
+    // private data is keyed by the index of the envelope within the block, config included
+    BlockInfo blockInfo = block(7, envelopeInfos, privateDataOfEnvelope(2));
+
+    blockEventListener.receivedBlockInfo(blockInfo);
+
+    ArgumentCaptor<String> publishedTransactionIds = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<Boolean> privateDataPresent = ArgumentCaptor.forClass(Boolean.class);
+    Mockito.verify(eventPublishService, Mockito.times(transactionIds.size()))
+        .publishBlockEvents(
+            any(),
+            publishedTransactionIds.capture(),
+            Mockito.eq("mychannel"),
+            Mockito.eq("basic"),
+            Mockito.eq("createAsset"),
+            privateDataPresent.capture());
+    assertEquals(transactionIds, publishedTransactionIds.getAllValues());
+    for (int i = 0; i < transactionIds.size(); i++) {
+      assertEquals(
+          transactionIds.get(i).equals("tx2"), privateDataPresent.getAllValues().get(i));
+    }
+  }
+
+  @Test
+  public void batchedBlockIsFlushedOnceAfterItsEvents() throws Exception {
+    fabricProperties.getEvents().setBlockBatchPublishing(true);
+    List<BlockInfo.EnvelopeInfo> envelopeInfos = new ArrayList<>();
+    envelopeInfos.add(transactionEnvelope("tx0"));
+    envelopeInfos.add(transactionEnvelope("tx1"));
+    envelopeInfos.add(transactionEnvelope("tx2"));
+
+    blockEventListener.receivedBlockInfo(block(7, envelopeInfos, null));
+
+    InOrder inOrder = Mockito.inOrder(eventPublishService);
+    inOrder
+        .verify(eventPublishService, Mockito.times(3))
+        .publishBlockEvents(any(), any(), any(), any(), any(), any());
+    inOrder.verify(eventPublishService).flushBlockEvents("mychannel", 3);
+  }
+
+  @Test
+  public void unbatchedBlockIsNotFlushed() throws Exception {
+    blockEventListener.receivedBlockInfo(
+        block(7, Collections.singletonList(transactionEnvelope("tx0")), null));
+
+    Mockito.verify(eventPublishService, Mockito.never()).flushBlockEvents(any(), Mockito.anyInt());
+  }
+
+  @Test
+  public void blockWithATransactionThatFailsToEncodeIsNotPublished() throws Exception {
+    BlockInfo.TransactionEnvelopeInfo brokenEnvelope = transactionEnvelope("tx1");
+    Mockito.when(brokenEnvelope.getTransactionActionInfos().iterator().next().getTxReadWriteSet())
+        .thenThrow(new IllegalStateException("Malformed read-write set"));
+    List<BlockInfo.EnvelopeInfo> envelopeInfos = new ArrayList<>();
+    envelopeInfos.add(transactionEnvelope("tx0"));
+    envelopeInfos.add(brokenEnvelope);
+    BlockInfo blockInfo = block(7, envelopeInfos, null);
+
+    assertThrows(
+        IllegalStateException.class, () -> blockEventListener.receivedBlockInfo(blockInfo));
+
+    Mockito.verify(eventPublishService, Mockito.never())
+        .publishBlockEvents(any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  public void blockWithoutTransactionsPublishesNothing() throws Exception {
+    blockEventListener.receivedBlockInfo(block(7, Collections.emptyList(), null));
+
+    Mockito.verify(eventPublishService, Mockito.never())
+        .publishBlockEvents(any(), any(), any(), any(), any(), any());
+    Mockito.verify(eventPublishService, Mockito.never()).flushBlockEvents(any(), Mockito.anyInt());
+  }
+
+  @Test
+  public void blockThatFailsToCommitIsRetriedBeforeTheNextBlock() throws Exception {
+    fabricProperties.getEvents().setExactlyOnceBlockPublishing(true);
+    fabricProperties.getEvents().getBlockPublishRetry().setInitialBackoffInMillis(1);
+    EventPipelines eventPipelines = Mockito.mock(EventPipelines.class);
+    Mockito.doAnswer(
+            invocation -> {
+              invocation.<Runnable>getArgument(1).run();
+              return null;
+            })
+        .when(eventPipelines)
+        .dispatch(any(), any());
+    ReflectionTestUtils.setField(blockEventListener, "eventPipelines", eventPipelines);
+    Mockito.when(
+            eventPublishService.publishBlockEventsTransactionally(
+                Mockito.eq("mychannel"), Mockito.anyLong(), any()))
+        .thenReturn(false, false, true);
+
+    blockEventListener.received(blockEvent(7, transactionEnvelope("tx0")));
+    blockEventListener.received(blockEvent(8, transactionEnvelope("tx1")));
+
+    InOrder inOrder = Mockito.inOrder(eventPublishService);
+    inOrder
+        .verify(eventPublishService, Mockito.times(3))
+        .publishBlockEventsTransactionally(Mockito.eq("mychannel"), Mockito.eq(7L), any());
+    inOrder
+        .verify(eventPublishService)
+        .publishBlockEventsTransactionally(Mockito.eq("mychannel"), Mockito.eq(8L), any());
+  }
+
+  private static BlockEvent blockEvent(
+      long blockNumber, BlockInfo.TransactionEnvelopeInfo envelopeInfo) {
+    BlockEvent.TransactionEvent transactionEvent = Mockito.mock(BlockEvent.TransactionEvent.class);
+    Mockito.when(transactionEvent.getChannelId()).thenReturn("mychannel");
+    BlockEvent blockEvent = Mockito.mock(BlockEvent.class);
+    Mockito.when(blockEvent.getBlockNumber()).thenReturn(blockNumber);
+    Mockito.when(blockEvent.getEnvelopeInfos())
+        .thenReturn(Collections.<BlockInfo.EnvelopeInfo>singletonList(envelopeInfo));
+    Mockito.when(blockEvent.getTransactionEvents())
+        .thenReturn(Collections.singletonList(transactionEvent));
+    return blockEvent;
+  }
+
+  private static BlockInfo block(
+      long blockNumber,
+      List<BlockInfo.EnvelopeInfo> envelopeInfos,
+      EventsPackage.BlockAndPrivateData blockAndPrivateData) {
+    BlockInfo blockInfo = Mockito.mock(BlockInfo.class);
+    Mockito.when(blockInfo.getBlockNumber()).thenReturn(blockNumber);
+    Mockito.when(blockInfo.getEnvelopeInfos()).thenReturn(envelopeInfos);
+    Mockito.when(blockInfo.getBlockAndPrivateData()).thenReturn(blockAndPrivateData);
+    return blockInfo;
+  }
+
+  private static BlockInfo.TransactionEnvelopeInfo transactionEnvelope(String transactionId)
+      throws Exception {
+    TxReadWriteSetInfo txReadWriteSetInfo = Mockito.mock(TxReadWriteSetInfo.class);
+    Mockito.when(txReadWriteSetInfo.getNsRwsetInfos()).thenReturn(Collections.emptyList());
+    BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo transactionActionInfo =
+        Mockito.mock(BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo.class);
+    Mockito.when(transactionActionInfo.getChaincodeIDName()).thenReturn("basic");
+    Mockito.when(transactionActionInfo.getChaincodeInputArgs(0))
+        .thenReturn("createAsset".getBytes(StandardCharsets.UTF_8));
+    Mockito.when(transactionActionInfo.getTxReadWriteSet()).thenReturn(txReadWriteSetInfo);
+
+    BlockInfo.TransactionEnvelopeInfo envelopeInfo =
+        Mockito.mock(BlockInfo.TransactionEnvelopeInfo.class);
+    Mockito.when(envelopeInfo.getType()).thenReturn(BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE);
+    Mockito.when(envelopeInfo.getTransactionID()).thenReturn(transactionId);
+    Mockito.when(envelopeInfo.getChannelId()).thenReturn("mychannel");
+    Mockito.when(envelopeInfo.isValid()).thenReturn(true);
+    Mockito.when(envelopeInfo.getTransactionActionInfo(0)).thenReturn(transactionActionInfo);
+    Mockito.when(envelopeInfo.getTransactionActionInfos())
+        .thenReturn(Collections.singletonList(transactionActionInfo));
+    return envelopeInfo;
+  }
+
+  private static EventsPackage.BlockAndPrivateData privateDataOfEnvelope(long envelopeIndex) {
+    KvRwset.KVRWSet kvrwset =
+        KvRwset.KVRWSet.newBuilder()
+            .addWrites(
+                KvRwset.KVWrite.newBuilder()
+                    .setKey("asset2")
+                    .setValue(ByteString.copyFromUtf8("{\"owner\":\"Tom\"}")))
+            .build();
+    return EventsPackage.BlockAndPrivateData.newBuilder()
+        .putPrivateDataMap(
+            envelopeIndex,
+            Rwset.TxPvtReadWriteSet.newBuilder()
+                .setDataModel(Rwset.TxReadWriteSet.DataModel.KV)
+                .addNsPvtRwset(
+                    Rwset.NsPvtReadWriteSet.newBuilder()
+                        .setNamespace("basic")
+                        .addCollectionPvtRwset(
+                            Rwset.CollectionPvtReadWriteSet.newBuilder()
+                                .setCollectionName("assetCollection")
+                                .setRwset(kvrwset.toByteString())))
+                .build())
+        .build();
+  }
+}
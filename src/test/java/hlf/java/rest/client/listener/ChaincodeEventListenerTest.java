@@ -0,0 +1,168 @@
+package hlf.java.rest.client.listener;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+
+import hlf.java.rest.client.config.EventRoutingTable;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.service.BlockCheckpointStore;
+import hlf.java.rest.client.service.EventPublishService;
+import hlf.java.rest.client.service.RecencyTransactionContext;
+import hlf.java.rest.client.util.PayloadLogger;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.hyperledger.fabric.gateway.ContractEvent;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ChaincodeEventListenerTest {
+
+  private static final String TX_ID =
+      "7c2f1a5e9b3d4c6f8a0b1c2d3e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1e2f";
+
+  private static final String OTHER_TX_ID =
+      "0e4b8d2f6a1c3e5b7d9f0a2c4e6b8d1f3a5c7e9b0d2f4a6c8e1b3d5f7a9c0e2b";
+
+  private static final String THIRD_TX_ID =
+      "5a9e3c7b1d4f6a8c0e2b4d6f8a1c3e5b7d9f2a4c6e8b0d3f5a7c9e1b4d6f8a0c";
+
+  private final EventPublishService eventPublishService = Mockito.mock(EventPublishService.class);
+
+  private final RecencyTransactionContext recencyTransactionContext =
+      Mockito.mock(RecencyTransactionContext.class);
+
+  private final EventPipelines eventPipelines = Mockito.mock(EventPipelines.class);
+
+  private final BlockCheckpointStore blockCheckpointStore =
+      Mockito.mock(BlockCheckpointStore.class);
+
+  private final ChaincodeEventListener chaincodeEventListener = new ChaincodeEventListener();
+
+  @BeforeEach
+  public void setup() {
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.setEvents(new FabricProperties.Events());
+    EventRoutingTable.Route route = Mockito.mock(EventRoutingTable.Route.class);
+    Mockito.when(route.getPayloadFormat()).thenReturn(EventPayloadFormat.JSON);
+    EventRoutingTable eventRoutingTable = Mockito.mock(EventRoutingTable.class);
+    Mockito.when(eventRoutingTable.getChaincodeRoute(anyString(), anyString())).thenReturn(route);
+    Mockito.when(
+            eventPublishService.publishChaincodeEvents(
+                any(), any(), any(), any(), any(), any(), anyBoolean()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    ReflectionTestUtils.setField(
+        chaincodeEventListener, "eventPublishService", eventPublishService);
+    ReflectionTestUtils.setField(chaincodeEventListener, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(chaincodeEventListener, "eventRoutingTable", eventRoutingTable);
+    ReflectionTestUtils.setField(
+        chaincodeEventListener, "recencyTransactionContext", recencyTransactionContext);
+    ReflectionTestUtils.setField(
+        chaincodeEventListener, "payloadLogger", new PayloadLogger(PayloadLogger.Mode.OFF, 0, 1));
+    ReflectionTestUtils.setField(chaincodeEventListener, "eventPipelines", eventPipelines);
+    ReflectionTestUtils.setField(
+        chaincodeEventListener, "blockCheckpointStore", blockCheckpointStore);
+  }
+
+  @Test
+  public void recencyIsCheckedOnThePipelineRatherThanTheEventThread() {
+    Mockito.when(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID))
+        .thenReturn(true);
+
+    chaincodeEventListener.chaincodeEventListener(contractEvent(TX_ID, 7));
+
+    Mockito.verifyNoInteractions(recencyTransactionContext);
+    pipelineTask().run();
+    Mockito.verify(recencyTransactionContext).validateAndRemoveTransactionContext(TX_ID);
+    Mockito.verify(eventPublishService)
+        .publishChaincodeEvents(
+            any(), Mockito.eq("basic"), Mockito.eq(TX_ID), any(), any(), any(), anyBoolean());
+  }
+
+  @Test
+  public void recentlyPublishedTransactionIsDiscardedOnThePipeline() {
+    chaincodeEventListener.chaincodeEventListener(contractEvent(TX_ID, 7));
+
+    pipelineTask().run();
+
+    Mockito.verify(recencyTransactionContext).validateAndRemoveTransactionContext(TX_ID);
+    Mockito.verifyNoInteractions(eventPublishService);
+  }
+
+  @Test
+  public void precedingBlockIsCheckpointedOnceItsEventsAreSent() {
+    Mockito.when(recencyTransactionContext.validateAndRemoveTransactionContext(anyString()))
+        .thenReturn(true);
+    CompletableFuture<Void> firstEventSent = new CompletableFuture<>();
+    Mockito.when(
+            eventPublishService.publishChaincodeEvents(
+                any(), any(), Mockito.eq(TX_ID), any(), any(), any(), anyBoolean()))
+        .thenReturn(firstEventSent);
+
+    publish(TX_ID, 7);
+    publish(OTHER_TX_ID, 8);
+    Mockito.verify(blockCheckpointStore).checkpoint("mychannel", "basic", 6);
+    Mockito.verify(blockCheckpointStore, Mockito.never()).checkpoint("mychannel", "basic", 7);
+
+    firstEventSent.complete(null);
+    Mockito.verify(blockCheckpointStore).checkpoint("mychannel", "basic", 7);
+  }
+
+  @Test
+  public void failedSendStopsTheCheckpointOfTheChaincode() {
+    Mockito.when(recencyTransactionContext.validateAndRemoveTransactionContext(anyString()))
+        .thenReturn(true);
+    CompletableFuture<Void> failedSend = new CompletableFuture<>();
+    failedSend.completeExceptionally(new IllegalStateException("Broker unavailable"));
+    Mockito.when(
+            eventPublishService.publishChaincodeEvents(
+                any(), any(), Mockito.eq(TX_ID), any(), any(), any(), anyBoolean()))
+        .thenReturn(failedSend);
+
+    publish(TX_ID, 7);
+    publish(OTHER_TX_ID, 8);
+    publish(THIRD_TX_ID, 9);
+
+    Mockito.verify(blockCheckpointStore).checkpoint("mychannel", "basic", 6);
+    Mockito.verifyNoMoreInteractions(blockCheckpointStore);
+  }
+
+  private void publish(String transactionId, long blockNumber) {
+    chaincodeEventListener.chaincodeEventListener(contractEvent(transactionId, blockNumber));
+    pipelineTask().run();
+  }
+
+  private Runnable pipelineTask() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Mockito.verify(eventPipelines, Mockito.atLeastOnce())
+        .dispatch(
+            Mockito.eq(EventPipelines.PipelineKey.chaincode("mychannel", "basic")),
+            task.capture());
+    return task.getValue();
+  }
+
+  private static ContractEvent contractEvent(String transactionId, long blockNumber) {
+    BlockEvent blockEvent = Mockito.mock(BlockEvent.class);
+    Mockito.when(blockEvent.getBlockNumber()).thenReturn(blockNumber);
+    BlockEvent.TransactionEvent transactionEvent = Mockito.mock(BlockEvent.TransactionEvent.class);
+    Mockito.when(transactionEvent.getTransactionID()).thenReturn(transactionId);
+    Mockito.when(transactionEvent.getChannelId()).thenReturn("mychannel");
+    Mockito.when(transactionEvent.getBlockEvent()).thenReturn(blockEvent);
+    Mockito.when(transactionEvent.isValid()).thenReturn(true);
+
+    ContractEvent contractEvent = Mockito.mock(ContractEvent.class);
+    Mockito.when(contractEvent.getChaincodeId()).thenReturn("basic");
+    Mockito.when(contractEvent.getName()).thenReturn("AssetCreated");
+    Mockito.when(contractEvent.getTransactionEvent()).thenReturn(transactionEvent);
+    Mockito.when(contractEvent.getPayload())
+        .thenReturn(Optional.of("{\"owner\":\"Tom\"}".getBytes(StandardCharsets.UTF_8)));
+    return contractEvent;
+  }
+}
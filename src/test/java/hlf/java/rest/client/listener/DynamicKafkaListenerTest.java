@@ -0,0 +1,285 @@
+package hlf.java.rest.client.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.config.KafkaProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
+import hlf.java.rest.client.model.ClientResponseModel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DynamicKafkaListenerTest {
+
+  private static final String ORDERING_KEY_HEADER = "assetId";
+
+  private final TransactionConsumer transactionConsumer = Mockito.mock(TransactionConsumer.class);
+
+  private final Acknowledgment acknowledgment = Mockito.mock(Acknowledgment.class);
+
+  private final List<String> processed = new CopyOnWriteArrayList<>();
+
+  private final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+
+  private BatchAcknowledgingMessageListener<String, String> keyOrderedListener;
+
+  @BeforeEach
+  public void setup() {
+    taskExecutor.setCorePoolSize(4);
+    taskExecutor.initialize();
+
+    keyOrderedListener = keyOrderedListener(taskExecutor);
+  }
+
+  @AfterEach
+  public void shutdown() {
+    taskExecutor.shutdown();
+  }
+
+  @Test
+  public void lanesAreProcessedInParallelAndTheirRecordsInPollOrder() {
+    CountDownLatch otherLaneProcessed = new CountDownLatch(1);
+    Mockito.doAnswer(
+            invocation -> {
+              ConsumerRecord<String, String> consumerRecord = invocation.getArgument(0);
+              if (consumerRecord.offset() == 0) {
+                // only completes if the lane of asset2 runs alongside
+                assertTrue(otherLaneProcessed.await(5, TimeUnit.SECONDS));
+              }
+              processed.add(consumerRecord.value());
+              if (consumerRecord.offset() == 1) {
+                otherLaneProcessed.countDown();
+              }
+              return null;
+            })
+        .when(transactionConsumer)
+        .listen(any());
+
+    keyOrderedListener.onMessage(
+        Arrays.asList(
+            record(0, "asset1", null),
+            record(1, "asset2", null),
+            record(2, "asset1", null),
+            record(3, "asset2", null)),
+        acknowledgment);
+
+    assertEquals(4, processed.size());
+    assertTrue(processed.indexOf("record-0") < processed.indexOf("record-2"));
+    assertTrue(processed.indexOf("record-1") < processed.indexOf("record-3"));
+    Mockito.verify(acknowledgment).acknowledge();
+  }
+
+  @Test
+  public void orderingHeaderTakesPrecedenceOverTheRecordKey() {
+    Mockito.doAnswer(
+            invocation -> {
+              ConsumerRecord<String, String> consumerRecord = invocation.getArgument(0);
+              processed.add("start-" + consumerRecord.offset());
+              // gives a record of another lane the time to start
+              Thread.sleep(100);
+              processed.add("end-" + consumerRecord.offset());
+              return null;
+            })
+        .when(transactionConsumer)
+        .listen(any());
+
+    keyOrderedListener.onMessage(
+        Arrays.asList(record(0, "key1", "asset1"), record(1, "key2", "asset1")),
+        acknowledgment);
+
+    assertEquals(Arrays.asList("start-0", "end-0", "start-1", "end-1"), processed);
+  }
+
+  @Test
+  public void failedRecordStopsItsLaneAndTheBatchIsCommittedUpToIt() {
+    ServiceException failure =
+        new ServiceException(ErrorCode.HYPERLEDGER_FABRIC_NOT_SUPPORTED, "Rejected");
+    Mockito.doAnswer(
+            invocation -> {
+              ConsumerRecord<String, String> consumerRecord = invocation.getArgument(0);
+              if (consumerRecord.offset() == 1) {
+                throw failure;
+              }
+              processed.add(consumerRecord.value());
+              return null;
+            })
+        .when(transactionConsumer)
+        .listen(any());
+
+    BatchListenerFailedException batchFailure =
+        assertThrows(
+            BatchListenerFailedException.class,
+            () ->
+                keyOrderedListener.onMessage(
+                    Arrays.asList(
+                        record(0, "asset1", null),
+                        record(1, "asset2", null),
+                        record(2, "asset1", null),
+                        record(3, "asset2", null)),
+                    acknowledgment));
+
+    assertEquals(1, batchFailure.getIndex());
+    assertSame(failure, batchFailure.getCause());
+    assertEquals(Arrays.asList("record-0", "record-2"), processed);
+    Mockito.verify(acknowledgment, Mockito.never()).acknowledge();
+  }
+
+  @Test
+  public void rejectedLaneIsRedeliveredFromItsFirstRecord() {
+    AtomicInteger dispatchedLanes = new AtomicInteger();
+    BatchAcknowledgingMessageListener<String, String> saturatedListener =
+        keyOrderedListener(
+            lane -> {
+              if (dispatchedLanes.getAndIncrement() > 0) {
+                throw new TaskRejectedException("No permit was released");
+              }
+              lane.run();
+            });
+    Mockito.doAnswer(
+            invocation -> {
+              processed.add(invocation.<ConsumerRecord<String, String>>getArgument(0).value());
+              return null;
+            })
+        .when(transactionConsumer)
+        .listen(any());
+
+    BatchListenerFailedException batchFailure =
+        assertThrows(
+            BatchListenerFailedException.class,
+            () ->
+                saturatedListener.onMessage(
+                    Arrays.asList(
+                        record(0, "asset1", null),
+                        record(1, "asset2", null),
+                        record(2, "asset1", null),
+                        record(3, "asset3", null)),
+                    acknowledgment));
+
+    assertEquals(1, batchFailure.getIndex());
+    assertTrue(batchFailure.getCause() instanceof TaskRejectedException);
+    assertEquals(Arrays.asList("record-0", "record-2"), processed);
+    Mockito.verify(acknowledgment, Mockito.never()).acknowledge();
+  }
+
+  @Test
+  public void parallelListenerFailsTheBatchOnAnyRecordFailure() {
+    IllegalStateException failure = new IllegalStateException("Unexpected");
+    Mockito.doThrow(failure)
+        .when(transactionConsumer)
+        .listen(Mockito.argThat(consumerRecord -> consumerRecord.offset() == 1));
+
+    BatchListenerFailedException batchFailure =
+        assertThrows(
+            BatchListenerFailedException.class,
+            () ->
+                parallelListener(false)
+                    .onMessage(
+                        Arrays.asList(record(0, "asset1", null), record(1, "asset2", null)),
+                        acknowledgment));
+
+    assertEquals(1, batchFailure.getIndex());
+    assertSame(failure, batchFailure.getCause());
+    Mockito.verify(acknowledgment, Mockito.never()).acknowledge();
+  }
+
+  @Test
+  public void poisonPayloadFailsTheBatchWithItsOwnCauseInEitherListener() {
+    UnrecognizedTransactionPayloadException poison =
+        new UnrecognizedTransactionPayloadException(ErrorCode.VALIDATION_FAILED, "Unrecognized");
+    CompletableFuture<ResponseEntity<ClientResponseModel>> failedSubmission =
+        new CompletableFuture<>();
+    failedSubmission.completeExceptionally(new CompletionException(poison));
+    Mockito.when(transactionConsumer.listenAsync(any())).thenReturn(failedSubmission);
+    Mockito.doThrow(poison).when(transactionConsumer).listen(any());
+
+    BatchListenerFailedException parallelFailure =
+        assertThrows(
+            BatchListenerFailedException.class,
+            () ->
+                parallelListener(true)
+                    .onMessage(
+                        Collections.singletonList(record(0, "asset1", null)), acknowledgment));
+    BatchListenerFailedException keyOrderedFailure =
+        assertThrows(
+            BatchListenerFailedException.class,
+            () ->
+                keyOrderedListener.onMessage(
+                    Collections.singletonList(record(0, "asset1", null)), acknowledgment));
+
+    assertSame(poison, parallelFailure.getCause());
+    assertSame(poison, keyOrderedFailure.getCause());
+  }
+
+  private BatchAcknowledgingMessageListener<String, String> parallelListener(
+      boolean asyncCommitEnabled) {
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.getSubmission().setAsyncCommitEnabled(asyncCommitEnabled);
+    BackpressureController backpressureController = new BackpressureController();
+    ReflectionTestUtils.setField(
+        backpressureController, "kafkaProperties", new KafkaProperties());
+    DynamicKafkaListener dynamicKafkaListener = new DynamicKafkaListener();
+    ReflectionTestUtils.setField(dynamicKafkaListener, "transactionConsumer", transactionConsumer);
+    ReflectionTestUtils.setField(dynamicKafkaListener, "fabricProperties", fabricProperties);
+    return ReflectionTestUtils.invokeMethod(
+        dynamicKafkaListener,
+        "getMultithreadedBatchAcknowledgingMessageListener",
+        taskExecutor,
+        backpressureController.register("group/topic", taskExecutor));
+  }
+
+  private BatchAcknowledgingMessageListener<String, String> keyOrderedListener(
+      TaskExecutor laneExecutor) {
+    BackpressureController backpressureController = new BackpressureController();
+    ReflectionTestUtils.setField(
+        backpressureController, "kafkaProperties", new KafkaProperties());
+    DynamicKafkaListener dynamicKafkaListener = new DynamicKafkaListener();
+    ReflectionTestUtils.setField(dynamicKafkaListener, "transactionConsumer", transactionConsumer);
+    return ReflectionTestUtils.invokeMethod(
+        dynamicKafkaListener,
+        "getKeyOrderedBatchAcknowledgingMessageListener",
+        ORDERING_KEY_HEADER,
+        laneExecutor,
+        backpressureController.register("group/topic", laneExecutor));
+  }
+
+  private static ConsumerRecord<String, String> record(
+      long offset, String key, String orderingKey) {
+    ConsumerRecord<String, String> consumerRecord =
+        new ConsumerRecord<>("topic", 0, offset, key, "record-" + offset);
+    if (orderingKey != null) {
+      consumerRecord
+          .headers()
+          .add(
+              new RecordHeader(ORDERING_KEY_HEADER, orderingKey.getBytes(StandardCharsets.UTF_8)));
+    }
+    return consumerRecord;
+  }
+}
@@ -0,0 +1,107 @@
+package hlf.java.rest.client.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hlf.java.rest.client.config.FabricProperties;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class EventPipelinesTest {
+
+  private final FabricProperties fabricProperties = new FabricProperties();
+
+  private final EventPipelines eventPipelines = new EventPipelines();
+
+  @BeforeEach
+  public void setup() {
+    fabricProperties.setEvents(new FabricProperties.Events());
+    ReflectionTestUtils.setField(eventPipelines, "fabricProperties", fabricProperties);
+  }
+
+  @AfterEach
+  public void shutdown() {
+    eventPipelines.shutdown();
+  }
+
+  @Test
+  public void blockAndChaincodePipelinesDoNotShareKeys() {
+    // formerly both "block-x"
+    assertNotEquals(
+        EventPipelines.PipelineKey.block("x"), EventPipelines.PipelineKey.chaincode("block", "x"));
+    assertNotEquals(
+        EventPipelines.PipelineKey.chaincode("a-b", "c"),
+        EventPipelines.PipelineKey.chaincode("a", "b-c"));
+    assertEquals(
+        EventPipelines.PipelineKey.chaincode("a", "b"),
+        EventPipelines.PipelineKey.chaincode("a", "b"));
+  }
+
+  @Test
+  public void eventsOfAPipelineAreProcessedInOrder() {
+    List<Integer> processed = new CopyOnWriteArrayList<>();
+    EventPipelines.PipelineKey pipelineKey = EventPipelines.PipelineKey.block("mychannel");
+
+    IntStream.range(0, 100)
+        .forEach(i -> eventPipelines.dispatch(pipelineKey, () -> processed.add(i)));
+
+    Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 100);
+    assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), processed);
+  }
+
+  @Test
+  public void pipelinesNoLongerConfiguredAreRetiredOnRefresh() throws Exception {
+    FabricProperties.BlockDetails blockDetails = new FabricProperties.BlockDetails();
+    blockDetails.setChannelName("mychannel");
+    fabricProperties.getEvents().setBlockDetails(Collections.singletonList(blockDetails));
+    EventPipelines.PipelineKey configuredKey = EventPipelines.PipelineKey.block("mychannel");
+    EventPipelines.PipelineKey staleKey = EventPipelines.PipelineKey.chaincode("mychannel", "old");
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch queuedEventProcessed = new CountDownLatch(1);
+    eventPipelines.dispatch(configuredKey, () -> {});
+    eventPipelines.dispatch(staleKey, () -> awaitQuietly(release));
+    eventPipelines.dispatch(staleKey, queuedEventProcessed::countDown);
+    ThreadPoolExecutor stalePipeline = pipelines().get(staleKey);
+
+    eventPipelines.onRefresh(Mockito.mock(RefreshScopeRefreshedEvent.class));
+
+    assertEquals(Collections.singleton(configuredKey), pipelines().keySet());
+    release.countDown();
+    assertTrue(queuedEventProcessed.await(5, TimeUnit.SECONDS));
+    Awaitility.await().atMost(5, TimeUnit.SECONDS).until(stalePipeline::isTerminated);
+
+    // an event still delivered for the key gets a pipeline of its own again
+    CountDownLatch lateEventProcessed = new CountDownLatch(1);
+    eventPipelines.dispatch(staleKey, lateEventProcessed::countDown);
+    assertTrue(lateEventProcessed.await(5, TimeUnit.SECONDS));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<EventPipelines.PipelineKey, ThreadPoolExecutor> pipelines() {
+    return (Map<EventPipelines.PipelineKey, ThreadPoolExecutor>)
+        ReflectionTestUtils.getField(eventPipelines, "pipelines");
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package hlf.java.rest.client.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hlf.java.rest.client.model.ClientResponseModel;
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import hlf.java.rest.client.service.BatchTransactionService;
+import hlf.java.rest.client.util.FabricClientConstants;
+import hlf.java.rest.client.util.PayloadLogger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionConsumerTest {
+
+  @InjectMocks TransactionConsumer transactionConsumer;
+  @Mock BatchTransactionService batchTransactionService;
+  @Mock PayloadLogger payloadLogger;
+  @Spy ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void retryOfBatchRecordOnlySubmitsTheTransactionsThatDidNotCommit() {
+    Mockito.when(
+            batchTransactionService.submitBatch(
+                eq("channel"),
+                eq("chaincode"),
+                eq(Optional.of("createAsset")),
+                eq(Optional.empty()),
+                any(),
+                any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Arrays.asList(
+                    result(0, "a", TransactionInvocationResult.Status.COMMITTED),
+                    result(1, "b", TransactionInvocationResult.Status.FAILED))),
+            CompletableFuture.completedFuture(
+                Collections.singletonList(
+                    result(0, "b", TransactionInvocationResult.Status.COMMITTED))));
+    ConsumerRecord<String, String> record =
+        batchRecord(
+            "[{\"id\":\"a\",\"payload\":\"asset1\"},{\"id\":\"b\",\"payload\":\"asset2\"}]");
+
+    assertTrue(transactionConsumer.listenAsync(record).isCompletedExceptionally());
+    ResponseEntity<ClientResponseModel> response = transactionConsumer.listenAsync(record).join();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<TransactionInvocation>> invocations = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(batchTransactionService, Mockito.times(2))
+        .submitBatch(any(), any(), any(), any(), invocations.capture(), any());
+    assertEquals(2, invocations.getAllValues().get(0).size());
+    assertEquals(1, invocations.getAllValues().get(1).size());
+    assertEquals("b", invocations.getAllValues().get(1).get(0).getId());
+
+    @SuppressWarnings("unchecked")
+    List<TransactionInvocationResult> results =
+        (List<TransactionInvocationResult>) response.getBody().getMessage();
+    assertEquals("a", results.get(0).getId());
+    assertEquals("b", results.get(1).getId());
+    assertEquals(1, results.get(1).getIndex());
+    assertEquals(TransactionInvocationResult.Status.COMMITTED, results.get(1).getStatus());
+  }
+
+  private static ConsumerRecord<String, String> batchRecord(String invocations) {
+    ConsumerRecord<String, String> record =
+        new ConsumerRecord<>("transactions", 0, 42L, "key", invocations);
+    record.headers().add(header(FabricClientConstants.CHANNEL_NAME, "channel"));
+    record.headers().add(header(FabricClientConstants.CHAINCODE_NAME, "chaincode"));
+    record.headers().add(header(FabricClientConstants.FUNCTION_NAME, "createAsset"));
+    record.headers().add(header("payload_kind", "batch"));
+    return record;
+  }
+
+  private static RecordHeader header(String key, String value) {
+    return new RecordHeader(key, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static TransactionInvocationResult result(
+      int index, String id, TransactionInvocationResult.Status status) {
+    return TransactionInvocationResult.builder().index(index).id(id).status(status).build();
+  }
+}
@@ -0,0 +1,216 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorCode;
+import hlf.java.rest.client.exception.ErrorConstants;
+import hlf.java.rest.client.exception.FabricTransactionException;
+import hlf.java.rest.client.exception.ServiceException;
+import hlf.java.rest.client.exception.UnrecognizedTransactionPayloadException;
+import hlf.java.rest.client.model.ClientResponseModel;
+import hlf.java.rest.client.model.TransactionInvocation;
+import hlf.java.rest.client.model.TransactionInvocationResult;
+import hlf.java.rest.client.service.TransactionFulfillment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchTransactionServiceImplTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @InjectMocks BatchTransactionServiceImpl batchTransactionService;
+  @Spy FabricProperties fabricProperties = new FabricProperties();
+  @Spy SyncTaskExecutor batchLaneTaskExecutor = new SyncTaskExecutor();
+  @Mock TransactionFulfillment transactionFulfillment;
+
+  @Test
+  public void resultsAreReportedAsTransactionsCommit() {
+    CompletableFuture<ResponseEntity<ClientResponseModel>> firstCommit = new CompletableFuture<>();
+    CompletableFuture<ResponseEntity<ClientResponseModel>> failedSubmission =
+        new CompletableFuture<>();
+    failedSubmission.completeExceptionally(
+        new FabricTransactionException(
+            ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_CONTRACT_ERROR, "endorsement failed"));
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"), eq("chaincode"), eq("createAsset"), any(), eq("{\"id\":1}")))
+        .thenReturn(firstCommit);
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"), eq("chaincode"), eq("updateAsset"), any(), eq("asset2")))
+        .thenReturn(failedSubmission);
+
+    List<TransactionInvocationResult> reportedResults = new ArrayList<>();
+    CompletableFuture<List<TransactionInvocationResult>> batch =
+        batchTransactionService.submitBatch(
+            "channel",
+            "chaincode",
+            Optional.of("createAsset"),
+            Optional.empty(),
+            Arrays.asList(
+                invocation("a", null, OBJECT_MAPPER.createObjectNode().put("id", 1)),
+                invocation("b", "updateAsset", new TextNode("asset2"))),
+            reportedResults::add);
+
+    assertEquals(1, reportedResults.size());
+    assertEquals(1, reportedResults.get(0).getIndex());
+    assertEquals(TransactionInvocationResult.Status.FAILED, reportedResults.get(0).getStatus());
+    assertEquals(
+        ErrorCode.HYPERLEDGER_FABRIC_TRANSACTION_CONTRACT_ERROR.getValue(),
+        reportedResults.get(0).getCode());
+
+    firstCommit.complete(
+        new ResponseEntity<>(
+            new ClientResponseModel(ErrorConstants.NO_ERROR, "created"), HttpStatus.OK));
+
+    List<TransactionInvocationResult> results = batch.join();
+    assertEquals(2, reportedResults.size());
+    assertEquals("a", results.get(0).getId());
+    assertEquals(TransactionInvocationResult.Status.COMMITTED, results.get(0).getStatus());
+    assertEquals("created", results.get(0).getMessage());
+    assertEquals("b", results.get(1).getId());
+  }
+
+  @Test
+  public void batchWithoutFunctionIsRejected() {
+    List<TransactionInvocation> invocations =
+        Collections.singletonList(invocation("a", null, new TextNode("asset1")));
+
+    assertThrows(
+        UnrecognizedTransactionPayloadException.class,
+        () ->
+            batchTransactionService.submitBatch(
+                "channel", "chaincode", Optional.empty(), Optional.empty(), invocations, r -> {}));
+    Mockito.verifyNoInteractions(transactionFulfillment);
+  }
+
+  @Test
+  public void batchRunsOnTheLanesThatStart() {
+    AtomicInteger startedLanes = new AtomicInteger();
+    ReflectionTestUtils.setField(
+        batchTransactionService,
+        "batchLaneTaskExecutor",
+        (TaskExecutor)
+            lane -> {
+              if (startedLanes.getAndIncrement() > 0) {
+                throw new TaskRejectedException("No free thread");
+              }
+              lane.run();
+            });
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"), eq("chaincode"), eq("createAsset"), any(), any()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new ResponseEntity<>(
+                    new ClientResponseModel(ErrorConstants.NO_ERROR, "created"), HttpStatus.OK)));
+
+    List<TransactionInvocationResult> results =
+        batchTransactionService
+            .submitBatch(
+                "channel",
+                "chaincode",
+                Optional.of("createAsset"),
+                Optional.empty(),
+                Arrays.asList(
+                    invocation("a", null, new TextNode("asset1")),
+                    invocation("b", null, new TextNode("asset2")),
+                    invocation("c", null, new TextNode("asset3"))),
+                r -> {})
+            .join();
+
+    assertEquals(3, results.size());
+    assertEquals(2, startedLanes.get());
+  }
+
+  @Test
+  public void batchLargerThanTheInFlightWindowIsAdmittedByTheCommitTracker() {
+    // the commit tracker admits the transactions against its shared window
+    fabricProperties.getSubmission().setMaxInFlightTransactions(1);
+    CompletableFuture<ResponseEntity<ClientResponseModel>> pendingCommit =
+        new CompletableFuture<>();
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"), eq("chaincode"), eq("createAsset"), any(), any()))
+        .thenReturn(pendingCommit);
+
+    CompletableFuture<List<TransactionInvocationResult>> batch =
+        batchTransactionService.submitBatch(
+            "channel",
+            "chaincode",
+            Optional.of("createAsset"),
+            Optional.empty(),
+            Arrays.asList(
+                invocation("a", null, new TextNode("asset1")),
+                invocation("b", null, new TextNode("asset2")),
+                invocation("c", null, new TextNode("asset3"))),
+            r -> {});
+
+    Mockito.verify(transactionFulfillment, Mockito.times(3))
+        .writeTransactionToLedgerAsync(
+            eq("channel"), eq("chaincode"), eq("createAsset"), any(), any());
+    pendingCommit.complete(
+        new ResponseEntity<>(
+            new ClientResponseModel(ErrorConstants.NO_ERROR, "created"), HttpStatus.OK));
+    assertEquals(3, batch.join().size());
+  }
+
+  @Test
+  public void batchIsRejectedIfNoLaneStarts() {
+    ReflectionTestUtils.setField(
+        batchTransactionService,
+        "batchLaneTaskExecutor",
+        (TaskExecutor)
+            lane -> {
+              throw new TaskRejectedException("No free thread");
+            });
+    List<TransactionInvocation> invocations =
+        Collections.singletonList(invocation("a", null, new TextNode("asset1")));
+
+    assertThrows(
+        ServiceException.class,
+        () ->
+            batchTransactionService.submitBatch(
+                "channel",
+                "chaincode",
+                Optional.of("createAsset"),
+                Optional.empty(),
+                invocations,
+                r -> {}));
+    Mockito.verifyNoInteractions(transactionFulfillment);
+  }
+
+  private static TransactionInvocation invocation(String id, String function, JsonNode payload) {
+    TransactionInvocation invocation = new TransactionInvocation();
+    invocation.setId(id);
+    invocation.setFunction(function);
+    invocation.setPayload(payload);
+    return invocation;
+  }
+}
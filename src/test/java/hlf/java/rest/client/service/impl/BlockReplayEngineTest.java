@@ -0,0 +1,222 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.controller.EventController;
+import hlf.java.rest.client.exception.GlobalExceptionHandler;
+import hlf.java.rest.client.listener.BlockEventListener;
+import hlf.java.rest.client.listener.ChaincodeEventListener;
+import hlf.java.rest.client.model.EventType;
+import hlf.java.rest.client.model.ReplayJobStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.hyperledger.fabric.gateway.Gateway;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class BlockReplayEngineTest {
+
+  private final Channel channel = Mockito.mock(Channel.class);
+
+  private final BlockEventListener blockEventListener = Mockito.mock(BlockEventListener.class);
+
+  private final Map<Long, BlockEventListener.EncodedBlock> encodedBlocks =
+      new ConcurrentHashMap<>();
+
+  private final FabricProperties fabricProperties = new FabricProperties();
+
+  private BlockReplayEngine blockReplayEngine;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    fabricProperties.setEvents(new FabricProperties.Events());
+    FabricProperties.Replay replay = fabricProperties.getEvents().getReplay();
+    replay.setDeliverStream(false);
+    replay.setPrefetchWindow(4);
+    replay.setFetchThreads(4);
+    replay.setDecodeThreads(2);
+    replay.setRetainedJobs(1);
+
+    Network network = Mockito.mock(Network.class);
+    Mockito.when(network.getChannel()).thenReturn(channel);
+    Gateway gateway = Mockito.mock(Gateway.class);
+    Mockito.when(gateway.getNetwork("mychannel")).thenReturn(network);
+    Mockito.when(channel.queryBlockByNumber(anyLong()))
+        .thenAnswer(invocation -> block(invocation.getArgument(0)));
+    Mockito.when(blockEventListener.encodeBlock(any()))
+        .thenAnswer(
+            invocation ->
+                encodedBlocks.computeIfAbsent(
+                    invocation.<BlockInfo>getArgument(0).getBlockNumber(),
+                    blockNumber -> Mockito.mock(BlockEventListener.EncodedBlock.class)));
+
+    blockReplayEngine = new BlockReplayEngine();
+    ReflectionTestUtils.setField(blockReplayEngine, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(blockReplayEngine, "gateway", gateway);
+    ReflectionTestUtils.setField(blockReplayEngine, "blockEventListener", blockEventListener);
+    ReflectionTestUtils.setField(
+        blockReplayEngine, "chaincodeEventListener", Mockito.mock(ChaincodeEventListener.class));
+    ReflectionTestUtils.setField(blockReplayEngine, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(blockReplayEngine, "initialize");
+  }
+
+  @AfterEach
+  public void shutdown() {
+    ReflectionTestUtils.invokeMethod(blockReplayEngine, "shutdown");
+  }
+
+  @Test
+  public void blocksFetchedOutOfOrderArePublishedInBlockOrder() throws Exception {
+    CountDownLatch lastBlockFetched = new CountDownLatch(1);
+    Mockito.when(channel.queryBlockByNumber(1L))
+        .thenAnswer(
+            invocation -> {
+              assertTrue(lastBlockFetched.await(5, TimeUnit.SECONDS));
+              return block(1L);
+            });
+    Mockito.when(channel.queryBlockByNumber(3L))
+        .thenAnswer(
+            invocation -> {
+              lastBlockFetched.countDown();
+              return block(3L);
+            });
+
+    ReplayJobStatus job = blockReplayEngine.submit("mychannel", 1, 3, null, EventType.BLOCK_EVENT);
+
+    awaitState(job.getJobId(), ReplayJobStatus.State.COMPLETED);
+    assertEquals(3, blockReplayEngine.getJob(job.getJobId()).get().getReplayedBlocks());
+    InOrder inOrder = Mockito.inOrder(blockEventListener);
+    for (long blockNumber = 1; blockNumber <= 3; blockNumber++) {
+      inOrder.verify(blockEventListener).publishEncodedBlock(encodedBlocks.get(blockNumber));
+    }
+  }
+
+  @Test
+  public void jobIsPolledAndCancelledThroughTheEndpoints() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Mockito.when(channel.queryBlockByNumber(2L))
+        .thenAnswer(
+            invocation -> {
+              release.await(5, TimeUnit.SECONDS);
+              return block(2L);
+            });
+    MockMvc mockMvc =
+        MockMvcBuilders.standaloneSetup(eventController())
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    ReplayJobStatus job =
+        blockReplayEngine.submit("mychannel", 1, 100, null, EventType.BLOCK_EVENT);
+    String jobPath = "/blocks/events/jobs/" + job.getJobId();
+
+    mockMvc
+        .perform(get(jobPath))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.message.jobId").value(job.getJobId()))
+        .andExpect(jsonPath("$.message.state").value("RUNNING"));
+    mockMvc
+        .perform(delete(jobPath))
+        .andExpect(status().isAccepted())
+        .andExpect(jsonPath("$.message.jobId").value(job.getJobId()));
+    release.countDown();
+
+    awaitState(job.getJobId(), ReplayJobStatus.State.CANCELLED);
+    assertTrue(blockReplayEngine.getJob(job.getJobId()).get().getReplayedBlocks() < 100);
+    mockMvc.perform(delete("/blocks/events/jobs/unknown")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void onlyTheLastFinishedJobsAreRetained() {
+    ReplayJobStatus firstJob =
+        blockReplayEngine.submit("mychannel", 1, 2, null, EventType.BLOCK_EVENT);
+    awaitState(firstJob.getJobId(), ReplayJobStatus.State.COMPLETED);
+
+    ReplayJobStatus secondJob =
+        blockReplayEngine.submit("mychannel", 3, 4, null, EventType.BLOCK_EVENT);
+    awaitState(secondJob.getJobId(), ReplayJobStatus.State.COMPLETED);
+
+    // a finished job is retired right after its final state is set
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> !blockReplayEngine.getJob(firstJob.getJobId()).isPresent());
+    assertFalse(blockReplayEngine.cancel(firstJob.getJobId()).isPresent());
+    assertTrue(blockReplayEngine.getJob(secondJob.getJobId()).isPresent());
+  }
+
+  @Test
+  public void blocksTheStreamDoesNotDeliverAreQueried() throws Exception {
+    Peer peer = Mockito.mock(Peer.class);
+    BlockInfo queriedBlock = block(2L);
+    Mockito.when(channel.queryBlockByNumber(peer, 2L)).thenReturn(queriedBlock);
+    DeliverBlockStream stream = new DeliverBlockStream("mychannel", 1, 4);
+    BlockEvent streamedBlock = DeliverBlockStreamTest.blockEvent(1);
+    stream.received(streamedBlock);
+
+    stream.disconnected(Mockito.mock(Peer.PeerEventingServiceDisconnectEvent.class));
+
+    assertSame(streamedBlock, fetchStreamedBlock(stream, peer, 1L));
+    assertSame(queriedBlock, fetchStreamedBlock(stream, peer, 2L));
+    Mockito.verify(channel, Mockito.never()).queryBlockByNumber(peer, 1L);
+  }
+
+  private BlockInfo fetchStreamedBlock(DeliverBlockStream stream, Peer peer, long blockNumber)
+      throws Exception {
+    CompletableFuture<BlockInfo> block =
+        ReflectionTestUtils.invokeMethod(
+            blockReplayEngine,
+            "fetchStreamedBlock",
+            stream,
+            channel,
+            Collections.singletonList(peer),
+            blockNumber);
+    return block.get(5, TimeUnit.SECONDS);
+  }
+
+  private EventController eventController() {
+    EventFulfillmentImpl eventFulfillment = new EventFulfillmentImpl();
+    ReflectionTestUtils.setField(eventFulfillment, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(eventFulfillment, "blockReplayEngine", blockReplayEngine);
+    EventController eventController = new EventController();
+    ReflectionTestUtils.setField(eventController, "eventFulfillment", eventFulfillment);
+    return eventController;
+  }
+
+  private void awaitState(String jobId, ReplayJobStatus.State state) {
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> blockReplayEngine.getJob(jobId).get().getState() == state);
+  }
+
+  private static BlockInfo block(long blockNumber) {
+    BlockInfo blockInfo = Mockito.mock(BlockInfo.class);
+    Mockito.when(blockInfo.getBlockNumber()).thenReturn(blockNumber);
+    return blockInfo;
+  }
+}
@@ -0,0 +1,39 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class CuckooFilterRecencyTransactionContextTest {
+
+  private static final String TX_ID =
+      "4f3ab1c2d9e8f7a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2";
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final CuckooFilterRecencyTransactionContext recencyTransactionContext =
+      new CuckooFilterRecencyTransactionContext(
+          4, 4000, 1024 * 1024, 0.001, new SimpleMeterRegistry(), clock::get);
+
+  @Test
+  public void transactionIsValidatedOnlyOnce() {
+    recencyTransactionContext.setTransactionContext(TX_ID);
+    clock.addAndGet(2000);
+
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+  }
+
+  @Test
+  public void transactionIsForgottenOnceTheWindowElapses() {
+    recencyTransactionContext.setTransactionContext(TX_ID);
+    recencyTransactionContext.setTransactionContext("tx-not-hex");
+    clock.addAndGet(4000);
+
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext("tx-not-hex"));
+  }
+}
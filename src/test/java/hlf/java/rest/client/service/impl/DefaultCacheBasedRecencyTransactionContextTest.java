@@ -0,0 +1,55 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+public class DefaultCacheBasedRecencyTransactionContextTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  public void transactionIsValidatedOnlyOnce() {
+    DefaultCacheBasedRecencyTransactionContext recencyTransactionContext =
+        new DefaultCacheBasedRecencyTransactionContext(
+            CacheBuilder.newBuilder().maximumSize(10).build(), meterRegistry);
+
+    recencyTransactionContext.setTransactionContext("tx1");
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext("tx1"));
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext("tx1"));
+
+    assertEquals(
+        1, meterRegistry.counter("fabric.events.dedupe.lookups", "result", "hit").count());
+    assertEquals(
+        1, meterRegistry.counter("fabric.events.dedupe.lookups", "result", "miss").count());
+  }
+
+  @Test
+  public void cacheBoundedInBytesCountsEvictions() {
+    int entryBytes = DefaultCacheBasedRecencyTransactionContext.weigh("tx0", Boolean.TRUE);
+    Cache<String, Object> recencyCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(2L * entryBytes)
+            .weigher(DefaultCacheBasedRecencyTransactionContext::weigh)
+            .removalListener(
+                DefaultCacheBasedRecencyTransactionContext.removalRecorder(meterRegistry))
+            .build();
+    DefaultCacheBasedRecencyTransactionContext recencyTransactionContext =
+        new DefaultCacheBasedRecencyTransactionContext(recencyCache, meterRegistry);
+
+    for (int i = 0; i < 5; i++) {
+      recencyTransactionContext.setTransactionContext("tx" + i);
+    }
+
+    assertTrue(recencyCache.size() <= 2);
+    assertEquals(
+        5 - recencyCache.size(),
+        meterRegistry.counter("fabric.events.dedupe.removals", "cause", "eviction").count());
+  }
+}
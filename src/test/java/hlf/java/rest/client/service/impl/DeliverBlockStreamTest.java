@@ -0,0 +1,67 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class DeliverBlockStreamTest {
+
+  private final DeliverBlockStream stream = new DeliverBlockStream("mychannel", 1, 2);
+
+  @Test
+  public void blocksBeyondThePrefetchWindowWaitForTheFetches() throws Exception {
+    BlockEvent thirdBlock = blockEvent(3);
+    stream.received(blockEvent(1));
+    stream.received(blockEvent(2));
+    CompletableFuture<Void> thirdDelivery =
+        CompletableFuture.runAsync(() -> stream.received(thirdBlock));
+
+    Awaitility.await()
+        .during(200, TimeUnit.MILLISECONDS)
+        .atMost(1, TimeUnit.SECONDS)
+        .until(() -> !thirdDelivery.isDone());
+
+    stream.fetch(1).get(5, TimeUnit.SECONDS);
+    thirdDelivery.get(5, TimeUnit.SECONDS);
+    assertSame(thirdBlock, stream.fetch(3).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void closingTheStreamReleasesTheDeliverThread() throws Exception {
+    CompletableFuture<Void> delivery =
+        CompletableFuture.runAsync(() -> stream.received(blockEvent(5)));
+
+    stream.close();
+
+    delivery.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void blocksNotDeliveredFailOnceTheStreamEnds() {
+    CompletableFuture<BlockInfo> pendingBlock = stream.fetch(1);
+
+    Peer.PeerEventingServiceDisconnectEvent disconnect =
+        Mockito.mock(Peer.PeerEventingServiceDisconnectEvent.class);
+    Mockito.when(disconnect.getExceptionThrown()).thenReturn(new IllegalStateException("gone"));
+    stream.disconnected(disconnect);
+
+    assertTrue(pendingBlock.isCompletedExceptionally());
+    assertThrows(CompletionException.class, () -> stream.fetch(2).join());
+  }
+
+  static BlockEvent blockEvent(long blockNumber) {
+    BlockEvent blockEvent = Mockito.mock(BlockEvent.class);
+    Mockito.when(blockEvent.getBlockNumber()).thenReturn(blockNumber);
+    return blockEvent;
+  }
+}
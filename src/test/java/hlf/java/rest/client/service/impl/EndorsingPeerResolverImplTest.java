@@ -0,0 +1,129 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+
+public class EndorsingPeerResolverImplTest {
+
+  private final Peer peer1 = peer("peer1");
+
+  private final Peer peer2 = peer("peer2");
+
+  private final Peer peer3 = peer("peer3");
+
+  private final Channel channel = Mockito.mock(Channel.class);
+
+  private final Network network = Mockito.mock(Network.class);
+
+  private final EndorsingPeerResolverImpl endorsingPeerResolver = new EndorsingPeerResolverImpl();
+
+  @BeforeEach
+  public void setup() {
+    Mockito.when(channel.getName()).thenReturn("mychannel");
+    Mockito.when(channel.getPeers()).thenReturn(Arrays.asList(peer1, peer2, peer3));
+    Mockito.when(network.getChannel()).thenReturn(channel);
+  }
+
+  @Test
+  public void peersAreResolvedInRequestOrderSkippingUnknownNames() {
+    assertEquals(
+        Arrays.asList(peer3, peer1),
+        endorsingPeerResolver.resolveEndorsingPeers(network, Arrays.asList("peer3", "peer1")));
+    assertEquals(
+        Collections.singletonList(peer2),
+        endorsingPeerResolver.resolveEndorsingPeers(network, Arrays.asList("peer2", "unknown")));
+    assertEquals(
+        Collections.emptyList(),
+        endorsingPeerResolver.resolveEndorsingPeers(network, Collections.emptyList()));
+  }
+
+  @Test
+  public void resolvedPeersAreCachedPerListOfNames() {
+    List<String> peerNames = Arrays.asList("peer3", "peer1");
+    List<Peer> endorsingPeers = endorsingPeerResolver.resolveEndorsingPeers(network, peerNames);
+
+    assertSame(endorsingPeers, endorsingPeerResolver.resolveEndorsingPeers(network, peerNames));
+    assertSame(
+        endorsingPeers,
+        endorsingPeerResolver.resolveEndorsingPeers(network, new ArrayList<>(peerNames)));
+    assertNotSame(
+        endorsingPeers,
+        endorsingPeerResolver.resolveEndorsingPeers(network, Arrays.asList("peer1", "peer3")));
+    Mockito.verify(channel, Mockito.times(1)).getPeers();
+  }
+
+  @Test
+  public void indexIsRebuiltForPeersThatJoinedSinceItWasBuilt() {
+    Mockito.when(channel.getPeers())
+        .thenReturn(Collections.singletonList(peer1))
+        .thenReturn(Arrays.asList(peer1, peer2));
+    endorsingPeerResolver.resolveEndorsingPeers(network, Collections.singletonList("peer1"));
+
+    assertEquals(
+        Arrays.asList(peer1, peer2),
+        endorsingPeerResolver.resolveEndorsingPeers(network, Arrays.asList("peer1", "peer2")));
+    Mockito.verify(channel, Mockito.times(2)).getPeers();
+  }
+
+  @Test
+  public void indexIsRebuiltOnConfigBlocksRefreshAndNewNetworks() {
+    List<String> peerNames = Collections.singletonList("peer1");
+    List<Peer> endorsingPeers = endorsingPeerResolver.resolveEndorsingPeers(network, peerNames);
+
+    configBlockListener().accept(blockEvent(BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE));
+    assertSame(endorsingPeers, endorsingPeerResolver.resolveEndorsingPeers(network, peerNames));
+
+    configBlockListener().accept(blockEvent(BlockInfo.EnvelopeType.ENVELOPE));
+    endorsingPeers = endorsingPeerResolver.resolveEndorsingPeers(network, peerNames);
+    Mockito.verify(channel, Mockito.times(2)).getPeers();
+
+    endorsingPeerResolver.onRefresh(Mockito.mock(RefreshScopeRefreshedEvent.class));
+    assertNotSame(endorsingPeers, endorsingPeerResolver.resolveEndorsingPeers(network, peerNames));
+    Mockito.verify(channel, Mockito.times(3)).getPeers();
+
+    Network refreshedNetwork = Mockito.mock(Network.class);
+    Mockito.when(refreshedNetwork.getChannel()).thenReturn(channel);
+    endorsingPeerResolver.resolveEndorsingPeers(refreshedNetwork, peerNames);
+    Mockito.verify(channel, Mockito.times(4)).getPeers();
+    Mockito.verify(refreshedNetwork).addBlockListener(Mockito.any());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Consumer<BlockEvent> configBlockListener() {
+    ArgumentCaptor<Consumer<BlockEvent>> blockListener = ArgumentCaptor.forClass(Consumer.class);
+    Mockito.verify(network).addBlockListener(blockListener.capture());
+    return blockListener.getValue();
+  }
+
+  private static BlockEvent blockEvent(BlockInfo.EnvelopeType envelopeType) {
+    BlockInfo.EnvelopeInfo envelopeInfo = Mockito.mock(BlockInfo.EnvelopeInfo.class);
+    Mockito.when(envelopeInfo.getType()).thenReturn(envelopeType);
+    BlockEvent blockEvent = Mockito.mock(BlockEvent.class);
+    Mockito.when(blockEvent.getEnvelopeInfos())
+        .thenReturn(Collections.singletonList(envelopeInfo));
+    return blockEvent;
+  }
+
+  private static Peer peer(String name) {
+    Peer peer = Mockito.mock(Peer.class);
+    Mockito.when(peer.getName()).thenReturn(name);
+    return peer;
+  }
+}
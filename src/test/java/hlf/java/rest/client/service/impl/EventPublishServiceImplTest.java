@@ -0,0 +1,220 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import hlf.java.rest.client.config.EventRoutingTable;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.config.KafkaProperties;
+import hlf.java.rest.client.model.BlockTransactionEvent;
+import hlf.java.rest.client.model.EncodedBlockEvent;
+import hlf.java.rest.client.util.FabricClientConstants;
+import hlf.java.rest.client.util.PayloadLogger;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.core.RoutingKafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+public class EventPublishServiceImplTest {
+
+  @SuppressWarnings("unchecked")
+  private final KafkaTemplate<Object, Object> blockCheckpointTemplate =
+      Mockito.mock(KafkaTemplate.class);
+
+  @SuppressWarnings("unchecked")
+  private final KafkaOperations<Object, Object> transactionOperations =
+      Mockito.mock(KafkaOperations.class);
+
+  private final RoutingKafkaTemplate routingKafkaTemplate =
+      Mockito.mock(RoutingKafkaTemplate.class);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private EventPublishServiceImpl eventPublishService;
+
+  @BeforeEach
+  public void setup() {
+    FabricProperties.BlockDetails blockDetails = new FabricProperties.BlockDetails();
+    blockDetails.setChannelName("mychannel");
+    blockDetails.setListenerTopics(Arrays.asList("blocks", "audit"));
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.setEvents(new FabricProperties.Events());
+    fabricProperties.getEvents().setBlockDetails(Collections.singletonList(blockDetails));
+
+    KafkaProperties.EventProducer eventProducer = new KafkaProperties.EventProducer();
+    eventProducer.setTopic("events");
+    KafkaProperties kafkaProperties = new KafkaProperties();
+    kafkaProperties.setEventListeners(Collections.singletonList(eventProducer));
+
+    EventRoutingTable eventRoutingTable = new EventRoutingTable();
+    ReflectionTestUtils.setField(eventRoutingTable, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(eventRoutingTable, "kafkaProperties", kafkaProperties);
+    ReflectionTestUtils.invokeMethod(eventRoutingTable, "initialize");
+
+    eventPublishService = new EventPublishServiceImpl();
+    ReflectionTestUtils.setField(eventPublishService, "eventRoutingTable", eventRoutingTable);
+    ReflectionTestUtils.setField(
+        eventPublishService, "blockCheckpointTemplate", blockCheckpointTemplate);
+    ReflectionTestUtils.setField(eventPublishService, "routingKafkaTemplate", routingKafkaTemplate);
+    ReflectionTestUtils.setField(
+        eventPublishService, "payloadLogger", Mockito.mock(PayloadLogger.class));
+    ReflectionTestUtils.setField(eventPublishService, "meterRegistry", meterRegistry);
+  }
+
+  @Test
+  public void blockEventIsSentOnceSentToEveryTopic() {
+    SettableListenableFuture<SendResult<Object, Object>> blocksSend =
+        new SettableListenableFuture<>();
+    SettableListenableFuture<SendResult<Object, Object>> auditSend =
+        new SettableListenableFuture<>();
+    Mockito.when(routingKafkaTemplate.send(any(ProducerRecord.class)))
+        .thenReturn(blocksSend, auditSend);
+
+    CompletableFuture<Void> sent =
+        eventPublishService.publishBlockEvents(
+            "tx1".getBytes(StandardCharsets.UTF_8),
+            "tx1",
+            "mychannel",
+            "basic",
+            "createAsset",
+            false);
+
+    blocksSend.set(
+        new SendResult<>(
+            new ProducerRecord<>("blocks", "tx1"),
+            new RecordMetadata(new TopicPartition("blocks", 0), 0, 0, 0, 0, 0)));
+    assertFalse(sent.isDone());
+    auditSend.setException(new KafkaException("Broker unavailable"));
+    assertTrue(sent.isCompletedExceptionally());
+  }
+
+  @Test
+  public void eventsOfABlockAreCommittedAlongWithItsCheckpoint() {
+    Mockito.when(blockCheckpointTemplate.executeInTransaction(any()))
+        .thenAnswer(
+            invocation ->
+                invocation
+                    .<KafkaOperations.OperationsCallback<Object, Object, Object>>getArgument(0)
+                    .doInOperations(transactionOperations));
+
+    boolean committed =
+        eventPublishService.publishBlockEventsTransactionally(
+            "mychannel", 42, Arrays.asList(event("tx1"), event("tx2")));
+
+    assertTrue(committed);
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<ProducerRecord<Object, Object>> records =
+        ArgumentCaptor.forClass(ProducerRecord.class);
+    InOrder inOrder = Mockito.inOrder(transactionOperations);
+    inOrder.verify(transactionOperations, Mockito.times(4)).send(records.capture());
+    inOrder.verify(transactionOperations).sendDefault("mychannel", "42");
+
+    List<ProducerRecord<Object, Object>> sentRecords = records.getAllValues();
+    assertEquals("blocks", sentRecords.get(0).topic());
+    assertEquals("audit", sentRecords.get(1).topic());
+    assertEquals("blocks", sentRecords.get(2).topic());
+    assertArrayEquals(
+        "tx2".getBytes(StandardCharsets.UTF_8),
+        sentRecords
+            .get(2)
+            .headers()
+            .lastHeader(FabricClientConstants.FABRIC_TRANSACTION_ID)
+            .value());
+    assertArrayEquals(
+        "mychannel".getBytes(StandardCharsets.UTF_8),
+        sentRecords.get(3).headers().lastHeader(FabricClientConstants.FABRIC_CHANNEL_NAME).value());
+  }
+
+  @Test
+  public void failedTransactionIsReported() {
+    Mockito.when(blockCheckpointTemplate.executeInTransaction(any()))
+        .thenThrow(new KafkaException("Producer fenced"));
+
+    assertFalse(
+        eventPublishService.publishBlockEventsTransactionally(
+            "mychannel", 42, Collections.singletonList(event("tx1"))));
+  }
+
+  @Test
+  public void blockEventsAreFlushedToEveryTopicOfTheRouteAndMetered() {
+    Producer<Object, Object> blocksProducer = producerOf("blocks");
+    Producer<Object, Object> auditProducer = producerOf("audit");
+
+    eventPublishService.flushBlockEvents("mychannel", 3);
+    eventPublishService.flushBlockEvents("mychannel", 5);
+
+    Mockito.verify(blocksProducer, Mockito.times(2)).flush();
+    Mockito.verify(auditProducer, Mockito.times(2)).flush();
+    Mockito.verify(blocksProducer, Mockito.times(2)).close();
+    assertEquals(
+        2,
+        meterRegistry.get("fabric.events.block.flush").tag("channel", "mychannel").timer().count());
+    DistributionSummary batchSize =
+        meterRegistry.get("fabric.events.block.batch.size").tag("channel", "mychannel").summary();
+    assertEquals(2, batchSize.count());
+    assertEquals(8, batchSize.totalAmount());
+    assertEquals(5, batchSize.max());
+  }
+
+  @Test
+  public void failedFlushOfATopicDoesNotStopTheOthers() {
+    Producer<Object, Object> blocksProducer = producerOf("blocks");
+    Producer<Object, Object> auditProducer = producerOf("audit");
+    Mockito.doThrow(new KafkaException("Broker unavailable")).when(blocksProducer).flush();
+
+    eventPublishService.flushBlockEvents("mychannel", 1);
+
+    Mockito.verify(auditProducer).flush();
+    Mockito.verify(blocksProducer).close();
+    assertEquals(
+        1,
+        meterRegistry.get("fabric.events.block.flush").tag("channel", "mychannel").timer().count());
+    assertEquals(
+        1,
+        meterRegistry
+            .get("fabric.events.block.batch.size")
+            .tag("channel", "mychannel")
+            .summary()
+            .count());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Producer<Object, Object> producerOf(String topic) {
+    Producer<Object, Object> producer = Mockito.mock(Producer.class);
+    ProducerFactory<Object, Object> producerFactory = Mockito.mock(ProducerFactory.class);
+    Mockito.when(producerFactory.createProducer()).thenReturn(producer);
+    Mockito.when(routingKafkaTemplate.getProducerFactory(topic)).thenReturn(producerFactory);
+    return producer;
+  }
+
+  private static BlockTransactionEvent event(String transactionId) {
+    return new BlockTransactionEvent(
+        transactionId,
+        "basic",
+        "createAsset",
+        new EncodedBlockEvent(transactionId.getBytes(StandardCharsets.UTF_8), false));
+  }
+}
@@ -0,0 +1,47 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import hlf.java.rest.client.config.FabricProperties;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class FileBlockCheckpointStoreTest {
+
+  @TempDir Path checkpointDirectory;
+
+  @Test
+  public void checkpointsSurviveARestartAndNeverMoveBack() {
+    Path checkpointFile = checkpointDirectory.resolve("checkpoints.properties");
+    FileBlockCheckpointStore checkpointStore = newCheckpointStore(checkpointFile);
+
+    checkpointStore.checkpoint("mychannel", 7);
+    checkpointStore.checkpoint("mychannel", 5);
+    checkpointStore.checkpoint("mychannel", "basic", 6);
+    assertEquals(Optional.of(7L), checkpointStore.getLastPublishedBlock("mychannel"));
+    checkpointStore.flush();
+
+    FileBlockCheckpointStore restartedCheckpointStore = newCheckpointStore(checkpointFile);
+    assertEquals(Optional.of(7L), restartedCheckpointStore.getLastPublishedBlock("mychannel"));
+    assertEquals(
+        Optional.of(6L), restartedCheckpointStore.getLastPublishedBlock("mychannel", "basic"));
+    assertEquals(Optional.empty(), restartedCheckpointStore.getLastPublishedBlock("otherchannel"));
+    assertFalse(Files.exists(checkpointDirectory.resolve("checkpoints.properties.tmp")));
+  }
+
+  private static FileBlockCheckpointStore newCheckpointStore(Path checkpointFile) {
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.setEvents(new FabricProperties.Events());
+    fabricProperties.getEvents().getCheckpoint().setFilePath(checkpointFile.toString());
+
+    FileBlockCheckpointStore checkpointStore = new FileBlockCheckpointStore();
+    ReflectionTestUtils.setField(checkpointStore, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.invokeMethod(checkpointStore, "loadCheckpoints");
+    return checkpointStore;
+  }
+}
@@ -0,0 +1,140 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+
+import hlf.java.rest.client.config.KafkaProperties;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class KafkaBlockCheckpointStoreTest {
+
+  private static final String CHECKPOINT_TOPIC = "checkpoints";
+
+  private static final TopicPartition PARTITION = new TopicPartition(CHECKPOINT_TOPIC, 0);
+
+  @SuppressWarnings("unchecked")
+  private final ConsumerFactory<String, String> consumerFactory =
+      Mockito.mock(ConsumerFactory.class);
+
+  @SuppressWarnings("unchecked")
+  private final KafkaTemplate<Object, Object> blockCheckpointTemplate =
+      Mockito.mock(KafkaTemplate.class);
+
+  @SuppressWarnings("unchecked")
+  private final KafkaOperations<Object, Object> transactionOperations =
+      Mockito.mock(KafkaOperations.class);
+
+  private KafkaBlockCheckpointStore checkpointStore;
+
+  @BeforeEach
+  public void setup() {
+    KafkaProperties.Producer blockCheckpoint = new KafkaProperties.Producer();
+    blockCheckpoint.setTopic(CHECKPOINT_TOPIC);
+    KafkaProperties kafkaProperties = new KafkaProperties();
+    kafkaProperties.setBlockCheckpoint(blockCheckpoint);
+
+    checkpointStore = new KafkaBlockCheckpointStore();
+    ReflectionTestUtils.setField(checkpointStore, "kafkaProperties", kafkaProperties);
+    ReflectionTestUtils.setField(
+        checkpointStore, "blockCheckpointConsumerFactory", consumerFactory);
+    ReflectionTestUtils.setField(
+        checkpointStore, "blockCheckpointTemplate", blockCheckpointTemplate);
+  }
+
+  @Test
+  public void laterLookupsOnlyReadTheNewCheckpoints() {
+    MockConsumer<String, String> firstConsumer =
+        checkpointConsumer(0, checkpoint(0, "mychannel", 5), checkpoint(1, "mychannel", 7));
+    MockConsumer<String, String> secondConsumer =
+        checkpointConsumer(0, checkpoint(2, "mychannel/basic", 6));
+    MockConsumer<String, String> thirdConsumer = checkpointConsumer(3);
+    Mockito.when(consumerFactory.createConsumer())
+        .thenReturn(firstConsumer, secondConsumer, thirdConsumer);
+
+    assertEquals(Optional.of(7L), checkpointStore.getLastPublishedBlock("mychannel"));
+    assertEquals(Optional.of(6L), checkpointStore.getLastPublishedBlock("mychannel", "basic"));
+    assertEquals(Optional.of(7L), checkpointStore.getLastPublishedBlock("mychannel"));
+
+    Mockito.verify(secondConsumer).seek(PARTITION, 2L);
+    Mockito.verify(secondConsumer, Mockito.never()).seekToBeginning(any());
+    Mockito.verify(thirdConsumer).seek(PARTITION, 3L);
+  }
+
+  @Test
+  public void checkpointsNeverMoveBack() {
+    Mockito.when(consumerFactory.createConsumer())
+        .thenReturn(checkpointConsumer(0, checkpoint(0, "mychannel", 7)));
+    Mockito.when(blockCheckpointTemplate.executeInTransaction(any()))
+        .thenAnswer(
+            invocation ->
+                invocation
+                    .<KafkaOperations.OperationsCallback<Object, Object, Object>>getArgument(0)
+                    .doInOperations(transactionOperations));
+
+    Map<String, Long> checkpoints = new HashMap<>();
+    checkpoints.put("mychannel", 5L);
+    checkpoints.put("mychannel/basic", 6L);
+    checkpointStore.write(checkpoints);
+    checkpointStore.write(Collections.singletonMap("mychannel/basic", 4L));
+
+    Mockito.verify(transactionOperations).sendDefault("mychannel/basic", "6");
+    Mockito.verifyNoMoreInteractions(transactionOperations);
+  }
+
+  @Test
+  public void missingCheckpointTopicHasNoCheckpoints() {
+    @SuppressWarnings("unchecked")
+    Consumer<String, String> consumer = Mockito.mock(Consumer.class);
+    Mockito.when(consumer.partitionsFor(CHECKPOINT_TOPIC)).thenReturn(null);
+    Mockito.when(consumerFactory.createConsumer()).thenReturn(consumer);
+
+    assertEquals(Optional.empty(), checkpointStore.getLastPublishedBlock("mychannel"));
+    Mockito.verify(consumer).close();
+  }
+
+  /** A consumer of the checkpoint topic, which holds the records once it is assigned. */
+  @SafeVarargs
+  private static MockConsumer<String, String> checkpointConsumer(
+      long beginningOffset, ConsumerRecord<String, String>... records) {
+    MockConsumer<String, String> consumer =
+        Mockito.spy(new MockConsumer<>(OffsetResetStrategy.EARLIEST));
+    consumer.updatePartitions(
+        CHECKPOINT_TOPIC,
+        Collections.singletonList(new PartitionInfo(CHECKPOINT_TOPIC, 0, null, null, null)));
+    consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, beginningOffset));
+    long endOffset =
+        records.length == 0 ? beginningOffset : records[records.length - 1].offset() + 1;
+    Map<TopicPartition, Long> endOffsets = new HashMap<>();
+    endOffsets.put(PARTITION, endOffset);
+    consumer.updateEndOffsets(endOffsets);
+    consumer.schedulePollTask(
+        () -> {
+          for (ConsumerRecord<String, String> record : records) {
+            consumer.addRecord(record);
+          }
+        });
+    return consumer;
+  }
+
+  private static ConsumerRecord<String, String> checkpoint(
+      long offset, String checkpointKey, long blockNumber) {
+    return new ConsumerRecord<>(
+        CHECKPOINT_TOPIC, 0, offset, checkpointKey, Long.toString(blockNumber));
+  }
+}
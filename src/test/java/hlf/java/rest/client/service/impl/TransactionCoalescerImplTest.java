@@ -0,0 +1,132 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.ErrorConstants;
+import hlf.java.rest.client.model.ClientResponseModel;
+import hlf.java.rest.client.service.TransactionFulfillment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TransactionCoalescerImplTest {
+
+  private final TransactionFulfillment transactionFulfillment =
+      Mockito.mock(TransactionFulfillment.class);
+
+  private TransactionCoalescerImpl transactionCoalescer;
+
+  @BeforeEach
+  public void setup() {
+    FabricProperties.Coalescing coalescing = new FabricProperties.Coalescing();
+    coalescing.setChannelName("channel");
+    coalescing.setChaincodeName("chaincode");
+    coalescing.setFunctionName("createAsset");
+    coalescing.setBatchFunctionName("createAssetBatch");
+    coalescing.setMaxBatchSize(3);
+    coalescing.setMaxDelayInMillis(50);
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.getSubmission().getCoalescing().add(coalescing);
+
+    transactionCoalescer = new TransactionCoalescerImpl();
+    ReflectionTestUtils.setField(transactionCoalescer, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(
+        transactionCoalescer, "transactionFulfillment", transactionFulfillment);
+    ReflectionTestUtils.setField(
+        transactionCoalescer, "coalescingTaskExecutor", new SyncTaskExecutor());
+    ReflectionTestUtils.setField(transactionCoalescer, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(transactionCoalescer, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(transactionCoalescer, "initialize");
+  }
+
+  @AfterEach
+  public void shutdown() {
+    ReflectionTestUtils.invokeMethod(transactionCoalescer, "shutdown");
+  }
+
+  @Test
+  public void fullBatchIsSubmittedOnceAndItsResultIsSplit() {
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"),
+                eq("chaincode"),
+                eq("createAssetBatch"),
+                any(),
+                eq("[\"asset1\",{\"id\":2},\"true story\"]")))
+        .thenReturn(committed("[\"ok1\",{\"id\":2},\"ok3\"]"));
+
+    assertTrue(transactionCoalescer.isCoalesced("channel", "chaincode", "createAsset"));
+    assertFalse(transactionCoalescer.isCoalesced("channel", "chaincode", "updateAsset"));
+
+    CompletableFuture<ResponseEntity<ClientResponseModel>> first = write("asset1");
+    CompletableFuture<ResponseEntity<ClientResponseModel>> second = write("{\"id\":2}");
+    assertFalse(first.isDone());
+    CompletableFuture<ResponseEntity<ClientResponseModel>> third = write("true story");
+
+    assertEquals("ok1", first.join().getBody().getMessage());
+    assertEquals("{\"id\":2}", second.join().getBody().getMessage());
+    assertEquals("ok3", third.join().getBody().getMessage());
+    Mockito.verify(transactionFulfillment, Mockito.times(1))
+        .writeTransactionToLedgerAsync(anyString(), anyString(), anyString(), any(), anyString());
+  }
+
+  @Test
+  public void partialBatchIsSubmittedAfterTheDelay() throws Exception {
+    Mockito.when(
+            transactionFulfillment.writeTransactionToLedgerAsync(
+                eq("channel"), eq("chaincode"), eq("createAssetBatch"), any(), eq("[\"asset1\"]")))
+        .thenReturn(committed("done"));
+
+    ResponseEntity<ClientResponseModel> response = write("asset1").get(5, TimeUnit.SECONDS);
+
+    assertEquals("done", response.getBody().getMessage());
+  }
+
+  @Test
+  public void batchRejectedByTheExecutorFails() {
+    ReflectionTestUtils.setField(
+        transactionCoalescer,
+        "coalescingTaskExecutor",
+        (TaskExecutor)
+            task -> {
+              throw new TaskRejectedException("Coalescing queue is full");
+            });
+
+    CompletableFuture<ResponseEntity<ClientResponseModel>> first = write("asset1");
+    write("asset2");
+    CompletableFuture<ResponseEntity<ClientResponseModel>> third = write("asset3");
+
+    assertTrue(first.isCompletedExceptionally());
+    assertTrue(third.isCompletedExceptionally());
+    Mockito.verifyNoInteractions(transactionFulfillment);
+  }
+
+  private CompletableFuture<ResponseEntity<ClientResponseModel>> write(String payload) {
+    return transactionCoalescer.writeTransactionToLedger(
+        "channel", "chaincode", "createAsset", Optional.empty(), payload);
+  }
+
+  private static CompletableFuture<ResponseEntity<ClientResponseModel>> committed(String result) {
+    return CompletableFuture.completedFuture(
+        new ResponseEntity<>(
+            new ClientResponseModel(ErrorConstants.NO_ERROR, result), HttpStatus.OK));
+  }
+}
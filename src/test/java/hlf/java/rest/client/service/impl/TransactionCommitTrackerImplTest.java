@@ -0,0 +1,154 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import hlf.java.rest.client.config.FabricProperties;
+import hlf.java.rest.client.exception.FabricTransactionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TransactionCommitTrackerImplTest {
+
+  private final Network network = Mockito.mock(Network.class);
+
+  private TransactionCommitTrackerImpl commitTracker;
+
+  @BeforeEach
+  public void setup() {
+    Channel channel = Mockito.mock(Channel.class);
+    Mockito.when(channel.getName()).thenReturn("mychannel");
+    Mockito.when(network.getChannel()).thenReturn(channel);
+
+    FabricProperties.OrgConnectionConfig orgConnectionConfig =
+        new FabricProperties.OrgConnectionConfig();
+    orgConnectionConfig.setDefaultCommitTimeoutInSeconds(1);
+    FabricProperties fabricProperties = new FabricProperties();
+    fabricProperties.setOrgConnectionConfig(orgConnectionConfig);
+    fabricProperties.getSubmission().setMaxInFlightTransactions(1);
+    fabricProperties.getSubmission().setInFlightWaitTimeoutInMillis(200);
+
+    commitTracker = new TransactionCommitTrackerImpl();
+    ReflectionTestUtils.setField(commitTracker, "fabricProperties", fabricProperties);
+    ReflectionTestUtils.setField(commitTracker, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(commitTracker, "initialize");
+  }
+
+  @AfterEach
+  public void shutdown() {
+    ReflectionTestUtils.invokeMethod(commitTracker, "shutdown");
+  }
+
+  @Test
+  public void commitReleasesTheInFlightSlot() {
+    CompletableFuture<BlockEvent.TransactionEvent> commit =
+        commitTracker.trackCommit(network, "tx1");
+    BlockEvent.TransactionEvent transactionEvent = transactionEvent("tx1", true);
+
+    blockListener().accept(blockEvent(transactionEvent));
+
+    assertSame(transactionEvent, commit.join());
+    assertEquals(0, commitTracker.getInFlightCount());
+    assertFalse(commitTracker.trackCommit(network, "tx2").isDone());
+  }
+
+  @Test
+  public void fullInFlightWindowFailsOnceTheWaitTimesOut() {
+    commitTracker.trackCommit(network, "tx1");
+
+    long start = System.nanoTime();
+    assertThrows(
+        FabricTransactionException.class, () -> commitTracker.trackCommit(network, "tx2"));
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+    assertEquals(1, commitTracker.getInFlightCount());
+  }
+
+  @Test
+  public void submissionWaitsForASlotOfTheFullInFlightWindow() throws Exception {
+    commitTracker.trackCommit(network, "tx1");
+    CompletableFuture<CompletableFuture<BlockEvent.TransactionEvent>> waitingCommit =
+        CompletableFuture.supplyAsync(() -> commitTracker.trackCommit(network, "tx2"));
+    Thread.sleep(50);
+    assertFalse(waitingCommit.isDone());
+
+    blockListener().accept(blockEvent(transactionEvent("tx1", true)));
+
+    assertFalse(waitingCommit.get(5, TimeUnit.SECONDS).isDone());
+    assertEquals(1, commitTracker.getInFlightCount());
+  }
+
+  @Test
+  public void invalidatedTransactionFailsItsCommit() {
+    CompletableFuture<BlockEvent.TransactionEvent> commit =
+        commitTracker.trackCommit(network, "tx1");
+
+    blockListener().accept(blockEvent(transactionEvent("tx1", false)));
+
+    assertTrue(commit.isCompletedExceptionally());
+    assertFalse(commitTracker.trackCommit(network, "tx2").isDone());
+  }
+
+  @Test
+  public void commitTimeoutReleasesTheInFlightSlot() throws Exception {
+    CompletableFuture<BlockEvent.TransactionEvent> commit =
+        commitTracker.trackCommit(network, "tx1");
+
+    ExecutionException timeout =
+        assertThrows(ExecutionException.class, () -> commit.get(5, TimeUnit.SECONDS));
+
+    assertTrue(timeout.getCause() instanceof FabricTransactionException);
+    assertEquals(0, commitTracker.getInFlightCount());
+    assertFalse(commitTracker.trackCommit(network, "tx2").isDone());
+  }
+
+  @Test
+  public void failedListenerRegistrationReleasesTheInFlightSlot() {
+    Mockito.when(network.addBlockListener(any()))
+        .thenThrow(new IllegalStateException("Channel is shut down"))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    assertThrows(IllegalStateException.class, () -> commitTracker.trackCommit(network, "tx1"));
+
+    assertEquals(0, commitTracker.getInFlightCount());
+    assertFalse(commitTracker.trackCommit(network, "tx2").isDone());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Consumer<BlockEvent> blockListener() {
+    ArgumentCaptor<Consumer<BlockEvent>> blockListener = ArgumentCaptor.forClass(Consumer.class);
+    Mockito.verify(network).addBlockListener(blockListener.capture());
+    return blockListener.getValue();
+  }
+
+  private static BlockEvent blockEvent(BlockEvent.TransactionEvent transactionEvent) {
+    BlockEvent blockEvent = Mockito.mock(BlockEvent.class);
+    Mockito.when(blockEvent.getTransactionEvents())
+        .thenReturn(Collections.singletonList(transactionEvent));
+    return blockEvent;
+  }
+
+  private static BlockEvent.TransactionEvent transactionEvent(String transactionId, boolean valid) {
+    BlockEvent.TransactionEvent transactionEvent = Mockito.mock(BlockEvent.TransactionEvent.class);
+    Mockito.when(transactionEvent.getTransactionID()).thenReturn(transactionId);
+    Mockito.when(transactionEvent.isValid()).thenReturn(valid);
+    return transactionEvent;
+  }
+}
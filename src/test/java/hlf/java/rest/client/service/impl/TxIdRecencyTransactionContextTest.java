@@ -0,0 +1,64 @@
+package hlf.java.rest.client.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class TxIdRecencyTransactionContextTest {
+
+  private static final String TX_ID =
+      "4f3ab1c2d9e8f7a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2";
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final TxIdRecencyTransactionContext recencyTransactionContext =
+      new TxIdRecencyTransactionContext(1024, 4000, meterRegistry, clock::get);
+
+  @Test
+  public void transactionIsValidatedOnlyOnce() {
+    recencyTransactionContext.setTransactionContext(TX_ID);
+    clock.addAndGet(1000);
+
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertEquals(1, meterRegistry.get("fabric.events.dedupe.lookups").tag("result", "hit").count());
+    assertEquals(
+        1, meterRegistry.get("fabric.events.dedupe.lookups").tag("result", "miss").count());
+  }
+
+  @Test
+  public void transactionIsRememberedByThePreviousGeneration() {
+    recencyTransactionContext.setTransactionContext(TX_ID);
+    clock.addAndGet(2500);
+
+    assertEquals(1, meterRegistry.get("fabric.events.dedupe.size").gauge().value());
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertEquals(0, meterRegistry.get("fabric.events.dedupe.size").gauge().value());
+  }
+
+  @Test
+  public void transactionIsForgottenOnceTheWindowElapses() {
+    recencyTransactionContext.setTransactionContext(TX_ID);
+    recencyTransactionContext.setTransactionContext("tx-not-hex");
+    clock.addAndGet(4000);
+
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertFalse(recencyTransactionContext.validateAndRemoveTransactionContext("tx-not-hex"));
+  }
+
+  @Test
+  public void transactionIsValidatedRegardlessOfItsCase() {
+    recencyTransactionContext.setTransactionContext(TX_ID.toUpperCase(Locale.ROOT));
+    recencyTransactionContext.setTransactionContext("Tx-Not-Hex");
+
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext(TX_ID));
+    assertTrue(recencyTransactionContext.validateAndRemoveTransactionContext("tx-not-hex"));
+  }
+}
@@ -0,0 +1,214 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+import hlf.java.rest.client.model.EncodedBlockEvent;
+import hlf.java.rest.client.model.EventPayloadFormat;
+import hlf.java.rest.client.model.EventType;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class BlockEventEncoderTest {
+
+  private static final String EVENT_URI =
+      FabricEventParseUtil.createEventURI("tx1", 1L, EventType.BLOCK_EVENT);
+
+  @Test
+  public void privateDataIsEncodedAsTheWriteSetPojosAreSerialized() throws Exception {
+    Map<Long, Rwset.TxPvtReadWriteSet> privateData = privateData();
+
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    int writeCount;
+    try (JsonGenerator generator = new JsonFactory().createGenerator(encoded)) {
+      writeCount = BlockEventEncoder.writePrivateDataWriteSet(generator, privateData);
+    }
+
+    assertEquals(2, writeCount);
+    assertEquals(
+        FabricEventParseUtil.stringify(
+            FabricEventParseUtil.getPrivateDataBlockEventWriteSet(privateData)),
+        new String(encoded.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void jsonEventIsTheSerializedEventStructure() throws Exception {
+    BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo = transactionEnvelopeInfo();
+    Map<Long, Rwset.TxPvtReadWriteSet> privateData = privateData();
+
+    EncodedBlockEvent encodedEvent =
+        BlockEventEncoder.encode(
+            transactionEnvelopeInfo, privateData, EVENT_URI, EventPayloadFormat.JSON, false);
+
+    String previousEvent =
+        FabricEventParseUtil.createEventStructure(
+            FabricEventParseUtil.getWriteInfoFromBlock(transactionEnvelopeInfo),
+            FabricEventParseUtil.stringify(
+                FabricEventParseUtil.getPrivateDataBlockEventWriteSet(privateData)),
+            "tx1",
+            1L,
+            EventType.BLOCK_EVENT);
+    assertEquals(previousEvent, new String(encodedEvent.getPayload(), StandardCharsets.UTF_8));
+    assertTrue(encodedEvent.isPrivateDataPresent());
+  }
+
+  @Test
+  public void jsonEventWithoutPrivateDataIsTheSerializedEventStructure() throws Exception {
+    BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo = transactionEnvelopeInfo();
+
+    EncodedBlockEvent encodedEvent =
+        BlockEventEncoder.encode(
+            transactionEnvelopeInfo,
+            Collections.emptyMap(),
+            EVENT_URI,
+            EventPayloadFormat.JSON,
+            false);
+
+    String previousEvent =
+        FabricEventParseUtil.createEventStructure(
+            FabricEventParseUtil.getWriteInfoFromBlock(transactionEnvelopeInfo),
+            "",
+            "tx1",
+            1L,
+            EventType.BLOCK_EVENT);
+    assertEquals(previousEvent, new String(encodedEvent.getPayload(), StandardCharsets.UTF_8));
+    assertFalse(encodedEvent.isPrivateDataPresent());
+  }
+
+  @Test
+  public void embeddedWriteSetsAreTheWriteSetsTheEventStructureCarriesAsStrings()
+      throws Exception {
+    BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo = transactionEnvelopeInfo();
+    Map<Long, Rwset.TxPvtReadWriteSet> privateData = privateData();
+
+    EncodedBlockEvent encodedEvent =
+        BlockEventEncoder.encode(
+            transactionEnvelopeInfo, privateData, EVENT_URI, EventPayloadFormat.JSON, true);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNode event = objectMapper.readTree(encodedEvent.getPayload());
+    assertEquals(
+        objectMapper.readTree(FabricEventParseUtil.getWriteInfoFromBlock(transactionEnvelopeInfo)),
+        event.get("data"));
+    assertEquals(
+        objectMapper.readTree(
+            FabricEventParseUtil.stringify(
+                FabricEventParseUtil.getPrivateDataBlockEventWriteSet(privateData))),
+        event.get("privateData"));
+    assertEquals(EVENT_URI, event.get("eventURI").asText());
+  }
+
+  @Test
+  public void protobufEnvelopeCarriesTheWritesAsTheyAre() throws Exception {
+    KvRwset.KVWrite kvWrite =
+        KvRwset.KVWrite.newBuilder()
+            .setKey("asset\u00001")
+            .setValue(ByteString.copyFrom(new byte[] {0, (byte) 0xff}))
+            .build();
+
+    EncodedBlockEvent encodedEvent =
+        BlockEventEncoder.encode(
+            Collections.singletonList(KvRwset.KVRWSet.newBuilder().addWrites(kvWrite).build()),
+            Collections.emptyMap(),
+            "/blocks/1/transactions/tx1/events?event_type=BLOCK_EVENT",
+            EventPayloadFormat.PROTOBUF,
+            false);
+
+    UnknownFieldSet envelope = UnknownFieldSet.parseFrom(encodedEvent.getPayload());
+    assertEquals(
+        "/blocks/1/transactions/tx1/events?event_type=BLOCK_EVENT",
+        envelope.getField(1).getLengthDelimitedList().get(0).toStringUtf8());
+    assertEquals(
+        kvWrite, KvRwset.KVWrite.parseFrom(envelope.getField(2).getLengthDelimitedList().get(0)));
+    assertFalse(encodedEvent.isPrivateDataPresent());
+  }
+
+  /** A transaction of two actions, the first of which writes to two namespaces. */
+  private static BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo() throws Exception {
+    BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo firstAction =
+        transactionActionInfo(
+            KvRwset.KVRWSet.newBuilder()
+                .addWrites(
+                    KvRwset.KVWrite.newBuilder()
+                        .setKey("asset\u00001")
+                        .setValue(ByteString.copyFromUtf8("{\"owner\":\"Zo\u00eb\",\"size\":5}")))
+                .addWrites(KvRwset.KVWrite.newBuilder().setKey("asset2").setIsDelete(true))
+                .build(),
+            KvRwset.KVRWSet.newBuilder()
+                .addWrites(
+                    KvRwset.KVWrite.newBuilder()
+                        .setKey("lscc")
+                        .setValue(ByteString.copyFrom(new byte[] {0, (byte) 0xff, '\n'})))
+                .build());
+    BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo secondAction =
+        transactionActionInfo(
+            KvRwset.KVRWSet.newBuilder()
+                .addWrites(
+                    KvRwset.KVWrite.newBuilder()
+                        .setKey("asset3")
+                        .setValue(ByteString.copyFromUtf8("\\ \"quoted\" \t")))
+                .build());
+
+    BlockInfo.TransactionEnvelopeInfo transactionEnvelopeInfo =
+        Mockito.mock(BlockInfo.TransactionEnvelopeInfo.class);
+    Mockito.when(transactionEnvelopeInfo.getTransactionActionInfos())
+        .thenReturn(Arrays.asList(firstAction, secondAction));
+    return transactionEnvelopeInfo;
+  }
+
+  private static BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo transactionActionInfo(
+      KvRwset.KVRWSet... writeSets) throws Exception {
+    TxReadWriteSetInfo.NsRwsetInfo[] nsRwsetInfos =
+        new TxReadWriteSetInfo.NsRwsetInfo[writeSets.length];
+    for (int i = 0; i < writeSets.length; i++) {
+      nsRwsetInfos[i] = Mockito.mock(TxReadWriteSetInfo.NsRwsetInfo.class);
+      Mockito.when(nsRwsetInfos[i].getRwset()).thenReturn(writeSets[i]);
+    }
+    TxReadWriteSetInfo txReadWriteSetInfo = Mockito.mock(TxReadWriteSetInfo.class);
+    Mockito.when(txReadWriteSetInfo.getNsRwsetInfos()).thenReturn(Arrays.asList(nsRwsetInfos));
+
+    BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo transactionActionInfo =
+        Mockito.mock(BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo.class);
+    Mockito.when(transactionActionInfo.getTxReadWriteSet()).thenReturn(txReadWriteSetInfo);
+    return transactionActionInfo;
+  }
+
+  private static Map<Long, Rwset.TxPvtReadWriteSet> privateData() {
+    KvRwset.KVRWSet kvrwset =
+        KvRwset.KVRWSet.newBuilder()
+            .addWrites(
+                KvRwset.KVWrite.newBuilder()
+                    .setKey("asset\u00001")
+                    .setValue(ByteString.copyFromUtf8(" {\"owner\":\"Tom\"}\n")))
+            .addWrites(KvRwset.KVWrite.newBuilder().setKey("asset2").setIsDelete(true))
+            .build();
+    return Collections.singletonMap(
+        3L,
+        Rwset.TxPvtReadWriteSet.newBuilder()
+            .setDataModel(Rwset.TxReadWriteSet.DataModel.KV)
+            .addNsPvtRwset(
+                Rwset.NsPvtReadWriteSet.newBuilder()
+                    .setNamespace("basic")
+                    .addCollectionPvtRwset(
+                        Rwset.CollectionPvtReadWriteSet.newBuilder()
+                            .setCollectionName("assetCollection")
+                            .setRwset(kvrwset.toByteString())))
+            .build());
+  }
+}
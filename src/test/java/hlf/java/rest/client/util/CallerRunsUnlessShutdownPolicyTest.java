@@ -0,0 +1,62 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class CallerRunsUnlessShutdownPolicyTest {
+
+  @Test
+  public void saturatedExecutorRunsTaskOnCaller() throws Exception {
+    ThreadPoolTaskExecutor taskExecutor = newTaskExecutor();
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      taskExecutor.execute(
+          () -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+      taskExecutor.execute(() -> {});
+
+      String callerThread = Thread.currentThread().getName();
+      assertEquals(
+          callerThread,
+          CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), taskExecutor)
+              .get());
+    } finally {
+      release.countDown();
+      taskExecutor.shutdown();
+    }
+  }
+
+  @Test
+  public void shutDownExecutorRejectsTask() {
+    ThreadPoolTaskExecutor taskExecutor = newTaskExecutor();
+    taskExecutor.shutdown();
+
+    TaskRejectedException rejection =
+        assertThrows(
+            TaskRejectedException.class,
+            () -> CompletableFuture.runAsync(() -> {}, taskExecutor));
+    assertEquals(RejectedExecutionException.class, rejection.getCause().getClass());
+  }
+
+  private static ThreadPoolTaskExecutor newTaskExecutor() {
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(1);
+    taskExecutor.setMaxPoolSize(1);
+    taskExecutor.setQueueCapacity(1);
+    taskExecutor.setRejectedExecutionHandler(new CallerRunsUnlessShutdownPolicy());
+    taskExecutor.initialize();
+    return taskExecutor;
+  }
+}
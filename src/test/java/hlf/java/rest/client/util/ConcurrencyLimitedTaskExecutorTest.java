@@ -0,0 +1,90 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+public class ConcurrencyLimitedTaskExecutorTest {
+
+  private final ExecutorService delegate = Executors.newCachedThreadPool();
+
+  private final ConcurrencyLimitedTaskExecutor taskExecutor =
+      new ConcurrencyLimitedTaskExecutor(delegate, 1, 100);
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  public void shutdown() {
+    release.countDown();
+    taskExecutor.destroy();
+  }
+
+  @Test
+  public void taskBeyondTheCapIsRejectedOnceTheWaitTimesOut() {
+    taskExecutor.execute(this::awaitRelease);
+
+    long start = System.nanoTime();
+    assertThrows(TaskRejectedException.class, () -> taskExecutor.execute(() -> {}));
+
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+    assertEquals(0, taskExecutor.getAvailablePermits());
+  }
+
+  @Test
+  public void taskBeyondTheCapStartsOnceARunningTaskCompletes() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    taskExecutor.execute(
+        () -> {
+          started.countDown();
+          awaitRelease();
+        });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    CountDownLatch waitingTaskRun = new CountDownLatch(1);
+    release.countDown();
+    taskExecutor.execute(waitingTaskRun::countDown);
+
+    assertTrue(waitingTaskRun.await(5, TimeUnit.SECONDS));
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> taskExecutor.getAvailablePermits() == 1);
+  }
+
+  @Test
+  public void permitIsReleasedIfTheDelegateRejectsTheTask() {
+    delegate.shutdown();
+
+    assertThrows(TaskRejectedException.class, () -> taskExecutor.execute(() -> {}));
+
+    assertEquals(1, taskExecutor.getAvailablePermits());
+  }
+
+  @Test
+  public void permitIsReleasedIfTheTaskFails() {
+    taskExecutor.execute(
+        () -> {
+          throw new IllegalStateException("Task failed");
+        });
+
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> taskExecutor.getAvailablePermits() == 1);
+  }
+
+  private void awaitRelease() {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
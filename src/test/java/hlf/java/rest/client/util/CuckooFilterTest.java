@@ -0,0 +1,49 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class CuckooFilterTest {
+
+  @Test
+  public void addedHashesAreFoundUntilRemoved() {
+    CuckooFilter filter = new CuckooFilter(64 * 1024, CuckooFilter.fingerprintBits(0.001));
+    Random random = new Random(7);
+    long[] hashes = new long[(int) (filter.capacity() * 0.9)];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = random.nextLong();
+      assertTrue(filter.add(hashes[i]));
+    }
+
+    for (long hash : hashes) {
+      assertTrue(filter.mightContain(hash));
+    }
+    for (long hash : hashes) {
+      assertTrue(filter.remove(hash));
+    }
+    assertEquals(0, filter.size());
+    assertFalse(filter.mightContain(hashes[0]));
+  }
+
+  @Test
+  public void falsePositiveRateIsBounded() {
+    CuckooFilter filter = new CuckooFilter(64 * 1024, CuckooFilter.fingerprintBits(0.01));
+    Random random = new Random(11);
+    for (int i = 0; i < filter.capacity() * 0.9; i++) {
+      filter.add(random.nextLong());
+    }
+
+    int falsePositives = 0;
+    int lookups = 100_000;
+    for (int i = 0; i < lookups; i++) {
+      if (filter.mightContain(random.nextLong())) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < lookups * 0.01, "false positives " + falsePositives);
+  }
+}
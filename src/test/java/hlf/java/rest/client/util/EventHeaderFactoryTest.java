@@ -0,0 +1,28 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.Test;
+
+public class EventHeaderFactoryTest {
+
+  @Test
+  public void recurringValuesShareTheirHeaderUntilTheTableIsFull() {
+    EventHeaderFactory headerFactory = new EventHeaderFactory(2);
+
+    Header chaincodeName = headerFactory.interned("chaincode_name", "basic");
+    Header isValid = headerFactory.interned("fabric_tx_is_valid", true);
+    Header functionName = headerFactory.interned("function_name", "CreateAsset");
+
+    assertSame(chaincodeName, headerFactory.interned("chaincode_name", "basic"));
+    assertSame(isValid, headerFactory.interned("fabric_tx_is_valid", true));
+    assertNotSame(functionName, headerFactory.interned("function_name", "CreateAsset"));
+    assertArrayEquals(
+        "CreateAsset".getBytes(StandardCharsets.UTF_8),
+        headerFactory.interned("function_name", "CreateAsset").value());
+  }
+}
@@ -0,0 +1,102 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+public class PayloadLoggerTest {
+
+  private static final String PAYLOAD = "{\"owner\":\"Tom\"}";
+
+  private final Logger logger = Mockito.mock(Logger.class);
+
+  @BeforeEach
+  public void setup() {
+    Mockito.when(logger.isInfoEnabled()).thenReturn(true);
+  }
+
+  @Test
+  public void offLogsNothing() {
+    Mockito.when(logger.isDebugEnabled()).thenReturn(true);
+
+    new PayloadLogger(PayloadLogger.Mode.OFF, 100, 1).log(logger, "Payload: {}", PAYLOAD);
+
+    assertTrue(logged("info").isEmpty());
+    assertTrue(logged("debug").isEmpty());
+  }
+
+  @Test
+  public void truncatedLogsAtInfoUpToTheMaximumLength() {
+    PayloadLogger payloadLogger = new PayloadLogger(PayloadLogger.Mode.TRUNCATED, 5, 1);
+
+    payloadLogger.log(logger, "Topic {}: {}", PAYLOAD, "topic");
+    payloadLogger.log(logger, "Topic {}: {}", PAYLOAD.getBytes(StandardCharsets.UTF_8), "topic");
+    payloadLogger.log(logger, "Payload: {}", "short");
+
+    assertEquals(
+        Arrays.asList(
+            Arrays.asList("Topic {}: {}", "topic", "{\"own...(15 chars)"),
+            Arrays.asList("Topic {}: {}", "topic", "{\"own...(15 bytes)"),
+            Arrays.asList("Payload: {}", "short")),
+        logged("info"));
+  }
+
+  @Test
+  public void truncatedLogsNothingWithInfoDisabled() {
+    Mockito.when(logger.isInfoEnabled()).thenReturn(false);
+
+    new PayloadLogger(PayloadLogger.Mode.TRUNCATED, 100, 1).log(logger, "Payload: {}", PAYLOAD);
+
+    assertTrue(logged("info").isEmpty());
+  }
+
+  @Test
+  public void sampledLogsOneInEveryNPayloads() {
+    PayloadLogger payloadLogger = new PayloadLogger(PayloadLogger.Mode.SAMPLED, 100, 3);
+
+    for (int i = 0; i < 7; i++) {
+      payloadLogger.log(logger, "Payload {}: {}", PAYLOAD, i);
+    }
+
+    assertEquals(
+        Arrays.asList(
+            Arrays.asList("Payload {}: {}", 0, PAYLOAD),
+            Arrays.asList("Payload {}: {}", 3, PAYLOAD),
+            Arrays.asList("Payload {}: {}", 6, PAYLOAD)),
+        logged("info"));
+  }
+
+  @Test
+  public void fullLogsTheWholePayloadAtDebug() {
+    PayloadLogger payloadLogger = new PayloadLogger(PayloadLogger.Mode.FULL, 5, 1);
+
+    payloadLogger.log(logger, "Payload: {}", PAYLOAD);
+    assertTrue(logged("debug").isEmpty());
+
+    Mockito.when(logger.isDebugEnabled()).thenReturn(true);
+    payloadLogger.log(logger, "Payload: {}", PAYLOAD);
+    payloadLogger.log(logger, "Payload: {}", PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(
+        Arrays.asList(
+            Arrays.asList("Payload: {}", PAYLOAD), Arrays.asList("Payload: {}", PAYLOAD)),
+        logged("debug"));
+    assertTrue(logged("info").isEmpty());
+  }
+
+  /** @return the format and arguments of each message logged at the level */
+  private List<List<Object>> logged(String level) {
+    return Mockito.mockingDetails(logger).getInvocations().stream()
+        .filter(invocation -> invocation.getMethod().getName().equals(level))
+        .map(invocation -> Arrays.asList(invocation.getArguments()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,61 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TextSanitiserTest {
+
+  private static final char[] SAMPLE_CHARACTERS = {
+    'a', 'Z', '0', ' ', '{', '"', '\\', '~', '\t', '\r', '\n', '\u0000', '\u007f', '\u00a0',
+    '\u00e9', '\u200b', '\u4e2d', '\ud83d', '\ude00'
+  };
+
+  @Test
+  public void stripMatchesRegularExpressionCleansing() {
+    TextSanitiser textSanitiser = new TextSanitiser(TextSanitiser.Policy.STRIP);
+    Random random = new Random(7);
+
+    for (int sample = 0; sample < 10000; sample++) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(24);
+      for (int i = 0; i < length; i++) {
+        text.append(SAMPLE_CHARACTERS[random.nextInt(SAMPLE_CHARACTERS.length)]);
+      }
+      ByteString bytes = ByteString.copyFrom(text.toString(), StandardCharsets.UTF_8);
+
+      assertEquals(cleanTextContent(bytes.toStringUtf8()), textSanitiser.sanitise(bytes));
+    }
+  }
+
+  @Test
+  public void escapeKeepsPrintableAsciiAndEscapesTheRest() {
+    TextSanitiser textSanitiser = new TextSanitiser(TextSanitiser.Policy.ESCAPE);
+
+    assertEquals(
+        "asset\\u0000001 caf\\u00e9\\u005c",
+        textSanitiser.sanitise(ByteString.copyFromUtf8("asset\u0000001 caf\u00e9\\")));
+    assertEquals("plain value", textSanitiser.sanitise(ByteString.copyFromUtf8("plain value")));
+  }
+
+  @Test
+  public void base64PassesTheRawBytesThrough() {
+    TextSanitiser textSanitiser = new TextSanitiser(TextSanitiser.Policy.BASE64);
+    byte[] raw = {0, 1, (byte) 0xff, 'a'};
+
+    assertEquals(
+        Base64.getEncoder().encodeToString(raw), textSanitiser.sanitise(ByteString.copyFrom(raw)));
+  }
+
+  // The regular expression based cleansing the sanitiser replaces
+  private static String cleanTextContent(String text) {
+    text = text.replaceAll("[^\\x00-\\x7F]", "");
+    text = text.replaceAll("[\\p{Cntrl}&&[^\r\n\t]]", "");
+    text = text.replaceAll("\\p{C}", "");
+    return text.trim();
+  }
+}
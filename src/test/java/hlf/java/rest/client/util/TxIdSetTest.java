@@ -0,0 +1,44 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class TxIdSetTest {
+
+  private static final String TX_ID =
+      "4f3ab1c2d9e8f7a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2";
+
+  @Test
+  public void hexTransactionIdsArePackedRegardlessOfCase() {
+    assertEquals(TxId.of(TX_ID), TxId.of(TX_ID.toUpperCase()));
+    assertEquals(TX_ID, TxId.of(TX_ID).toString());
+    assertEquals(TxId.of("tx1"), TxId.of("tx1"));
+    assertFalse(TxId.of("tx1").equals(TxId.of("TX1")));
+  }
+
+  @Test
+  public void removalKeepsTheProbedEntriesReachable() {
+    TxIdSet txIdSet = new TxIdSet(1000);
+    List<TxId> txIds = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      TxId txId = TxId.of(UUID.randomUUID().toString());
+      txIds.add(txId);
+      assertTrue(txIdSet.add(txId));
+    }
+    assertFalse(txIdSet.add(TxId.of(TX_ID)));
+
+    for (int i = 0; i < txIds.size(); i += 2) {
+      assertTrue(txIdSet.remove(txIds.get(i)));
+    }
+    for (int i = 0; i < txIds.size(); i++) {
+      assertEquals(i % 2 == 1, txIdSet.contains(txIds.get(i)));
+    }
+    assertEquals(500, txIdSet.size());
+  }
+}
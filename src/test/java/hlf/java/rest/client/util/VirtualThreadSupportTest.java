@@ -0,0 +1,57 @@
+package hlf.java.rest.client.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadSupportTest {
+
+  @Test
+  public void availabilityFollowsTheRunningJvm() {
+    assertEquals(hasMethod(Thread.class, "ofVirtual"), VirtualThreadSupport.isAvailable());
+  }
+
+  @Test
+  public void factoryCreatesNamedVirtualThreadsOrIsEmpty() throws Exception {
+    Optional<ThreadFactory> threadFactory =
+        VirtualThreadSupport.newVirtualThreadFactory("virtual-test-");
+
+    assertEquals(VirtualThreadSupport.isAvailable(), threadFactory.isPresent());
+    if (threadFactory.isPresent()) {
+      Thread thread = threadFactory.get().newThread(() -> {});
+      assertEquals("virtual-test-0", thread.getName());
+      assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+    }
+  }
+
+  @Test
+  public void executorRunsTasksOnVirtualThreadsOrIsEmpty() throws Exception {
+    Optional<ExecutorService> executorService =
+        VirtualThreadSupport.newVirtualThreadPerTaskExecutor("virtual-test-");
+
+    assertEquals(VirtualThreadSupport.isAvailable(), executorService.isPresent());
+    if (executorService.isPresent()) {
+      try {
+        Thread thread =
+            executorService.get().submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+        assertTrue(thread.getName().startsWith("virtual-test-"));
+      } finally {
+        executorService.get().shutdown();
+      }
+    }
+  }
+
+  private static boolean hasMethod(Class<?> type, String methodName) {
+    try {
+      type.getMethod(methodName);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}